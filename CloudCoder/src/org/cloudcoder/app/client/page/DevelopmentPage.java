@@ -27,6 +27,7 @@ import org.cloudcoder.app.client.model.PageStack;
 import org.cloudcoder.app.client.model.QuizInProgress;
 import org.cloudcoder.app.client.model.Session;
 import org.cloudcoder.app.client.model.StatusMessage;
+import org.cloudcoder.app.client.rpc.AwaitSubmission;
 import org.cloudcoder.app.client.rpc.RPC;
 import org.cloudcoder.app.client.view.ChoiceDialogBox;
 import org.cloudcoder.app.client.view.CompilerDiagnosticListView;
@@ -840,7 +841,13 @@ public class DevelopmentPage extends CloudCoderPage {
 				public void run() {
 					if (!checking) {
 						checking = true;
-						checkSubmissionRPC();
+						// Wait for the submission to complete, then get the result
+						AwaitSubmission.await(new Runnable() {
+							@Override
+							public void run() {
+								checkSubmissionRPC();
+							}
+						});
 					}
 				}
 
@@ -25,6 +25,7 @@ import org.cloudcoder.app.client.model.PageId;
 import org.cloudcoder.app.client.model.PageStack;
 import org.cloudcoder.app.client.model.Session;
 import org.cloudcoder.app.client.model.StatusMessage;
+import org.cloudcoder.app.client.rpc.AwaitSubmission;
 import org.cloudcoder.app.client.rpc.RPC;
 import org.cloudcoder.app.client.view.CompilerDiagnosticListView;
 import org.cloudcoder.app.client.view.IResultsTabPanelWidget;
@@ -427,7 +428,13 @@ public class PlaygroundPage extends CloudCoderPage
                 public void run() {
                     if (!checking) {
                         checking = true;
-                        checkSubmissionRPC();
+                        // Wait for the submission to complete, then get the result
+                        AwaitSubmission.await(new Runnable() {
+                            @Override
+                            public void run() {
+                                checkSubmissionRPC();
+                            }
+                        });
                     }
                 }
 
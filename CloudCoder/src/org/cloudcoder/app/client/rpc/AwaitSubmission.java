@@ -0,0 +1,70 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.client.rpc;
+
+import com.google.gwt.core.client.GWT;
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.RequestException;
+import com.google.gwt.http.client.Response;
+
+/**
+ * Wait for the submission pending in the user's session to complete,
+ * using a long-poll request to the AwaitSubmission servlet.
+ * Once it completes, the result can be retrieved (without waiting)
+ * using the checkSubmission method of {@link SubmitService} or
+ * {@link RunService}.
+ * 
+ * @author David Hovemeyer
+ */
+public abstract class AwaitSubmission {
+	/**
+	 * Wait for the pending submission to complete.
+	 * If the long-poll request fails for any reason, the callback is
+	 * invoked immediately, so the caller falls back on polling
+	 * using checkSubmission.
+	 * 
+	 * @param onReady callback to invoke when the submission has completed
+	 */
+	public static void await(final Runnable onReady) {
+		RequestBuilder builder = new RequestBuilder(RequestBuilder.GET, GWT.getModuleBaseURL() + "awaitSubmission");
+		try {
+			builder.sendRequest(null, new RequestCallback() {
+				@Override
+				public void onResponseReceived(Request request, Response response) {
+					if (response.getStatusCode() == Response.SC_OK && response.getText().equals("pending")) {
+						// Timed out: wait some more
+						await(onReady);
+					} else {
+						onReady.run();
+					}
+				}
+				
+				@Override
+				public void onError(Request request, Throwable exception) {
+					GWT.log("Error waiting for submission", exception);
+					onReady.run();
+				}
+			});
+		} catch (RequestException e) {
+			GWT.log("Could not send request to wait for submission", e);
+			onReady.run();
+		}
+	}
+}
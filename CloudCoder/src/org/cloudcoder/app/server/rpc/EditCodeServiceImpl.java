@@ -20,7 +20,10 @@ package org.cloudcoder.app.server.rpc;
 import java.util.List;
 
 import org.cloudcoder.app.client.rpc.EditCodeService;
+import org.cloudcoder.app.server.persist.ChangeWriter;
+import org.cloudcoder.app.server.persist.CurrentTextCache;
 import org.cloudcoder.app.server.persist.Database;
+import org.cloudcoder.app.server.persist.PersistenceException;
 import org.cloudcoder.app.shared.model.ApplyChangeToTextDocument;
 import org.cloudcoder.app.shared.model.Change;
 import org.cloudcoder.app.shared.model.ChangeType;
@@ -123,6 +126,26 @@ public class EditCodeServiceImpl extends RemoteServiceServlet implements EditCod
     }
 
 	protected ProblemText doLoadCurrentText(User user, Problem problem) {
+		// If the text is cached, there is no need to replay changes
+		CurrentTextCache cache = CurrentTextCache.getInstance();
+		long cacheVersion = 0L;
+		if (cache != null) {
+			String text = cache.getText(user.getId(), problem.getProblemId());
+			if (text != null) {
+				return new ProblemText(text, false);
+			}
+			
+			// Must be done before flushing, so that text which misses a
+			// concurrently logged change isn't cached
+			cacheVersion = cache.startLoad(user.getId(), problem.getProblemId());
+		}
+		
+		// Make sure the user's logged changes have been written
+		ChangeWriter writer = ChangeWriter.getInstance();
+		if (writer != null) {
+			writer.flush(user.getId(), problem.getProblemId());
+		}
+		
     	Change mostRecent = Database.getInstance().getMostRecentChange(user, problem.getProblemId());
 
     	if (mostRecent == null) {
@@ -134,12 +157,17 @@ public class EditCodeServiceImpl extends RemoteServiceServlet implements EditCod
     		String initialText = problem.hasSkeleton() ? problem.getSkeleton() : "";
     		ProblemText initialProblemText = new ProblemText(initialText, true);
     		
+    		// Nothing is cached: the text is new until the client logs
+    		// the skeleton as a full-text change, which creates the entry
     		return initialProblemText;
     	} else {
     		Change change = mostRecent; // result.get(0);
 
     		// If the Change is a full text change, great.
     		if (change.getType() == ChangeType.FULL_TEXT) {
+    			if (cache != null) {
+    				cache.put(user.getId(), problem.getProblemId(), change.getText(), 0, cacheVersion);
+    			}
     			return new ProblemText(change.getText(), false);
     		}
 
@@ -172,6 +200,9 @@ public class EditCodeServiceImpl extends RemoteServiceServlet implements EditCod
 	    		for (Change delta : deltaList) {
 	    			applicator.apply(delta, textDocument);
 	    		}
+	    		if (cache != null) {
+	    			cache.put(user.getId(), problem.getProblemId(), textDocument.getText(), deltaList.size(), cacheVersion);
+	    		}
 	    		return new ProblemText(textDocument.getText(), false);
     		} catch (RuntimeException e) {
     			// FIXME: should do something smarter than this 
@@ -237,8 +268,36 @@ public class EditCodeServiceImpl extends RemoteServiceServlet implements EditCod
 			change.getEvent().setTimestamp(orig + clientServerTimeDelta);
 		}
 
-		// Insert changes
-		Database.getInstance().storeChanges(changeList);
+		// Keep the cached text up to date, adding checkpoints as needed
+		CurrentTextCache cache = CurrentTextCache.getInstance();
+		if (cache != null) {
+			changeList = cache.addChanges(changeList);
+		}
+
+		// Insert changes: if write-behind is enabled, they will be
+		// stored by the ChangeWriter's thread
+		try {
+			ChangeWriter writer = ChangeWriter.getInstance();
+			if (writer != null) {
+				writer.enqueue(changeList);
+			} else {
+				Database.getInstance().storeChanges(changeList);
+			}
+		} catch (PersistenceException e) {
+			// Earlier changes were lost (or these changes couldn't be stored):
+			// fail, so that the client reports the error and resends this batch
+			logger.error("logChange: could not store changes for user " + user.getId(), e);
+			if (cache != null) {
+				for (Change change : changeList) {
+					cache.invalidate(change.getEvent().getUserId(), change.getEvent().getProblemId());
+				}
+			}
+			throw e;
+		} finally {
+			if (cache != null) {
+				cache.changesQueued(changeList);
+			}
+		}
 		
 		return true;
 	}
@@ -22,10 +22,15 @@ import java.util.List;
 import javax.servlet.http.HttpSession;
 
 import org.cloudcoder.app.client.rpc.SubmitService;
+import org.cloudcoder.app.server.persist.ChangeWriter;
+import org.cloudcoder.app.server.persist.CurrentTextCache;
 import org.cloudcoder.app.server.persist.Database;
+import org.cloudcoder.app.server.persist.PersistenceException;
 import org.cloudcoder.app.server.submitsvc.DefaultSubmitService;
 import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
 import org.cloudcoder.app.server.submitsvc.ISubmitService;
+import org.cloudcoder.app.server.submitsvc.SubmissionOrigin;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
 import org.cloudcoder.app.shared.model.Change;
 import org.cloudcoder.app.shared.model.ChangeType;
 import org.cloudcoder.app.shared.model.CloudCoderAuthenticationException;
@@ -84,6 +89,18 @@ public class SubmitServiceImpl extends RemoteServiceServlet implements SubmitSer
 			}
 		}
 
+		// Write any queued changes first, so that the full-text change
+		// is ordered after the edits it reflects.
+		ChangeWriter writer = ChangeWriter.getInstance();
+		if (writer != null) {
+			try {
+				writer.flush(user.getId(), problem.getProblemId());
+			} catch (PersistenceException e) {
+				// The full-text change restores the stored text
+				logger.warn("Some changes for user " + user.getId() + " were not stored", e);
+			}
+		}
+		
 		// Insert a full-text change into the database.
 		Change fullTextChange = new Change(
 				ChangeType.FULL_TEXT,
@@ -91,7 +108,18 @@ public class SubmitServiceImpl extends RemoteServiceServlet implements SubmitSer
 				System.currentTimeMillis(),
 				user.getId(), problem.getProblemId(),
 				programText);
-		Database.getInstance().storeChanges(new Change[]{fullTextChange});
+		Change[] fullTextChangeList = new Change[]{fullTextChange};
+		CurrentTextCache cache = CurrentTextCache.getInstance();
+		if (cache != null) {
+			cache.addChanges(fullTextChangeList);
+		}
+		try {
+			Database.getInstance().storeChanges(fullTextChangeList);
+		} finally {
+			if (cache != null) {
+				cache.changesQueued(fullTextChangeList);
+			}
+		}
 		
 		// Get test cases.  (TODO: cache them?)
 		List<TestCase> testCaseList = Database.getInstance().getTestCasesForProblem(problemId);
@@ -99,7 +127,9 @@ public class SubmitServiceImpl extends RemoteServiceServlet implements SubmitSer
 		ISubmitService submitService = DefaultSubmitService.getInstance();
 
 		logger.info("Passing submission to submit service...");
-		IFutureSubmissionResult future = submitService.submitAsync(problem, testCaseList, programText);
+		SubmissionPriority priority = (quiz != null) ? SubmissionPriority.QUIZ : SubmissionPriority.SUBMIT;
+		IFutureSubmissionResult future = submitService.submitAsync(problem, testCaseList, programText,
+				SubmissionOrigin.forProblem(priority, user.getId(), problem));
 		
 		// Put the full-text Change and IFutureSubmissionResult in the user's session.
 		addSessionObjects(session, fullTextChange, future);
@@ -0,0 +1,111 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.servlet;
+
+import java.io.IOException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+
+import org.cloudcoder.app.server.rpc.SessionAttributeKeys;
+import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
+import org.cloudcoder.app.server.submitsvc.ISubmissionCompletionListener;
+import org.cloudcoder.app.shared.model.SubmissionException;
+import org.eclipse.jetty.continuation.Continuation;
+import org.eclipse.jetty.continuation.ContinuationSupport;
+
+/**
+ * Long-poll servlet allowing the client to wait for the submission
+ * pending in its session to complete.  The request is suspended
+ * (without occupying a container thread) until the submission completes
+ * or a timeout expires.  The response is "ready" if the client should
+ * now call the checkSubmission RPC method to get the result, or
+ * "pending" if the timeout expired and the client should try again.
+ * The result itself is always delivered by checkSubmission, so that
+ * it is stored in the database exactly as before.
+ * 
+ * Suspending requests uses Jetty continuations, which use Servlet 3
+ * async support on containers that have it, and block the request
+ * thread otherwise.
+ * 
+ * @author David Hovemeyer
+ */
+public class AwaitSubmission extends HttpServlet {
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Maximum time a request is suspended waiting for the submission to complete.
+	 */
+	private static final long SUSPEND_TIMEOUT_MS = 30000L;
+
+	@Override
+	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+		// If there is no pending submission (or no session), let
+		// checkSubmission report the problem to the client
+		HttpSession session = req.getSession(false);
+		IFutureSubmissionResult future = (session != null)
+				? (IFutureSubmissionResult) session.getAttribute(SessionAttributeKeys.FUTURE_SUBMISSION_RESULT_KEY)
+				: null;
+		if (future == null || isComplete(future)) {
+			sendStatus(resp, "ready");
+			return;
+		}
+		
+		final Continuation continuation = ContinuationSupport.getContinuation(req);
+		if (continuation.isExpired()) {
+			sendStatus(resp, "pending");
+			return;
+		}
+		
+		// Suspend the request until the submission completes: the request
+		// will then be redispatched, and will find the submission complete
+		continuation.setTimeout(SUSPEND_TIMEOUT_MS);
+		continuation.suspend();
+		future.addCompletionListener(new ISubmissionCompletionListener() {
+			@Override
+			public void onSubmissionComplete(IFutureSubmissionResult future) {
+				try {
+					continuation.resume();
+				} catch (IllegalStateException e) {
+					// The continuation already expired
+				}
+			}
+		});
+	}
+
+	private boolean isComplete(IFutureSubmissionResult future) {
+		try {
+			return future.waitFor(0L) != null;
+		} catch (SubmissionException e) {
+			// Completed with an error
+			return true;
+		} catch (InterruptedException e) {
+			return false;
+		}
+	}
+
+	private void sendStatus(HttpServletResponse resp, String status) throws IOException {
+		resp.setStatus(HttpServletResponse.SC_OK);
+		resp.setContentType("text/plain");
+		resp.setHeader("Cache-Control", "no-cache");
+		resp.getWriter().print(status);
+	}
+}
@@ -26,6 +26,9 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.cloudcoder.app.server.model.HealthDataSingleton;
+import org.cloudcoder.app.server.persist.ChangeWriter;
+import org.cloudcoder.app.server.persist.ConnectionPoolStatistics;
+import org.cloudcoder.app.server.persist.Database;
 import org.cloudcoder.app.shared.model.HealthData;
 import org.cloudcoder.app.shared.model.json.JSONConversion;
 import org.json.simple.JSONValue;
@@ -42,6 +45,24 @@ public class Health extends HttpServlet {
 	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 		HealthData healthData = HealthDataSingleton.getInstance().getHealthData();
 		
+		ConnectionPoolStatistics poolStats = Database.getInstance().getConnectionPoolStatistics();
+		healthData.setDbPoolConnections(poolStats.getNumConnections());
+		healthData.setDbPoolBusyConnections(poolStats.getNumBusyConnections());
+		healthData.setDbPoolIdleConnections(poolStats.getNumIdleConnections());
+		healthData.setDbPoolThreadsAwaiting(poolStats.getNumThreadsAwaiting());
+		healthData.setDbPoolCachedStatements(poolStats.getNumCachedStatements());
+		healthData.setDbPoolLeaksDetected(poolStats.getNumLeaksDetected());
+		
+		ChangeWriter changeWriter = ChangeWriter.getInstance();
+		if (changeWriter != null) {
+			healthData.setChangeWriterQueuedChanges(changeWriter.getNumQueuedChanges());
+			healthData.setChangeWriterTransactions(changeWriter.getNumTransactions());
+			healthData.setChangeWriterWriteErrors(changeWriter.getNumWriteErrors());
+			int[] latencies = changeWriter.getBatchLatencies();
+			healthData.setChangeWriterLatencyAvg(latencies[0]);
+			healthData.setChangeWriterLatencyP99(latencies[1]);
+		}
+		
 		resp.setStatus(HttpServletResponse.SC_OK);
 		resp.setContentType("application/json");
 		Object jsonValue = JSONConversion.convertModelObjectToJSON(healthData, healthData.getSchema());
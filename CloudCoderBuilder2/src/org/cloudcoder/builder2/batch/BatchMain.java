@@ -19,17 +19,22 @@
 package org.cloudcoder.builder2.batch;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Reader;
-import java.io.StringWriter;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Locale;
 import java.util.Properties;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
@@ -39,73 +44,155 @@ import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.ProblemAndTestCaseList;
 import org.cloudcoder.app.shared.model.SubmissionResult;
 import org.cloudcoder.app.shared.model.TestCase;
-import org.cloudcoder.app.shared.model.TestOutcome;
 import org.cloudcoder.app.shared.model.TestResult;
 import org.cloudcoder.app.shared.model.json.JSONConversion;
 import org.cloudcoder.app.shared.model.json.ReflectionFactory;
+import org.cloudcoder.builder2.process.TestExecutionScheduler;
 import org.cloudcoder.builder2.server.Builder2;
+import org.cloudcoder.builder2.server.Global;
 import org.cloudcoder.daemon.IOUtil;
 
 /**
  * Front-end for batch-mode testing.
+ * Submissions are tested by a pool of worker threads, and each result
+ * is written (in the selected {@link OutputFormat}) as soon as it is
+ * available, so results appear in order of completion rather than
+ * in the order of the source file list.  If a {@link Checkpoint} file
+ * is specified, source files tested by a previous (interrupted)
+ * run are skipped (except those that failed with a builder error,
+ * which are tested again).  Progress (throughput and estimated time remaining)
+ * is reported periodically on stderr.
  * 
  * @author David Hovemeyer
  */
 public class BatchMain {
-	private static class Result {
-		final String sourceFile;
-		final SubmissionResult submissionResult;
-		
-		public Result(String sourceFile, SubmissionResult submissionResult) {
-			this.sourceFile = sourceFile;
-			this.submissionResult = submissionResult;
-		}
-	}
+	/** Minimum interval between progress reports. */
+	private static final long PROGRESS_INTERVAL_MILLIS = 10000L;
+	
+	/** Marks the end of the source queue. */
+	private static final String END_OF_QUEUE = new String("<end of queue>");
 	
 	private ProblemAndTestCaseList exercise;
 	private List<String> sourceFileList;
-	private LinkedBlockingQueue<String> sourceQueue;
-	private LinkedBlockingQueue<Result> resultQueue;
+	private int numWorkers;
+	private int maxConcurrentTests;
+	private OutputFormat outputFormat;
+	private File outputFile;
+	private File checkpointFile;
+	private String exerciseHash;
+	private BlockingQueue<String> sourceQueue;
 	private Builder2 builder2;
 	
+	// Output state: guarded by lock
+	private final Object lock = new Object();
+	private PrintWriter out;
+	private Checkpoint checkpoint;
+	private int numToTest;
+	private int numFinished;
+	private long startMillis;
+	private long lastReportMillis;
+	
 	private class Worker implements Runnable {
-		volatile boolean done = false;
 		@Override
 		public void run() {
-			while (!done && !Thread.interrupted()) {
+			while (true) {
+				String sourceFile;
 				try {
-					String sourceFile = sourceQueue.take();
-					// Read source text
-					try {
-						FileReader fileReader = new FileReader(sourceFile);
-						String programText;
-						try {
-							programText = IOUtils.toString(fileReader);
-						} finally {
-							IOUtil.closeQuietly(fileReader);
-						}
-						
-						// Test the submission
-						SubmissionResult result =
-								builder2.testSubmission(exercise.getProblem(), exercise.getTestCaseData(), programText);
-						
-						resultQueue.put(new Result(sourceFile, result));
-					} catch (IOException e) {
-						System.err.println("Could not read " + sourceFile);
-						resultQueue.put(new Result(sourceFile, null));
-					}
+					sourceFile = sourceQueue.take();
 				} catch (InterruptedException e) {
 					break;
 				}
+				if (sourceFile == END_OF_QUEUE) {
+					break;
+				}
+				
+				// Read source text
+				String programText;
+				try {
+					FileReader fileReader = new FileReader(sourceFile);
+					try {
+						programText = IOUtils.toString(fileReader);
+					} finally {
+						IOUtil.closeQuietly(fileReader);
+					}
+				} catch (IOException e) {
+					System.err.println("Could not read " + sourceFile);
+					onResult(sourceFile, null);
+					continue;
+				}
+				
+				// Test the submission
+				SubmissionResult result =
+						builder2.testSubmission(exercise.getProblem(), exercise.getTestCaseData(), programText);
+				onResult(sourceFile, result);
 			}
 		}
 	}
 	
+	/**
+	 * Constructor.
+	 * 
+	 * @param exercise       the exercise (Problem and TestCases)
+	 * @param sourceFileList the source files to test
+	 */
 	public BatchMain(ProblemAndTestCaseList exercise, List<String> sourceFileList) {
 		this.exercise = exercise;
 		this.sourceFileList = sourceFileList;
-		this.sourceQueue = new LinkedBlockingQueue<String>();
-		this.resultQueue = new LinkedBlockingQueue<BatchMain.Result>();
+		this.numWorkers = TestExecutionScheduler.getNumAvailableCpus();
+		this.outputFormat = OutputFormat.TEXT;
+	}
+	
+	/**
+	 * Set the number of worker threads.
+	 * The default is the number of available CPUs.
+	 * 
+	 * @param numWorkers the number of worker threads
+	 */
+	public void setNumWorkers(int numWorkers) {
+		this.numWorkers = numWorkers;
+	}
+	
+	/**
+	 * Set the maximum number of tests executed concurrently
+	 * (see {@link TestExecutionScheduler}).  The default (0) is the
+	 * scheduler's default, the number of available CPUs, regardless
+	 * of the number of worker threads.
+	 * 
+	 * @param maxConcurrentTests the maximum number of concurrent tests
+	 */
+	public void setMaxConcurrentTests(int maxConcurrentTests) {
+		this.maxConcurrentTests = maxConcurrentTests;
+	}
+	
+	/**
+	 * Set the {@link OutputFormat}.  The default is {@link OutputFormat#TEXT}.
+	 * 
+	 * @param outputFormat the {@link OutputFormat}
+	 */
+	public void setOutputFormat(OutputFormat outputFormat) {
+		this.outputFormat = outputFormat;
+	}
+	
+	/**
+	 * Set the file to which results are written.
+	 * The default (null) is to write results to stdout.
+	 * 
+	 * @param outputFile the output file
+	 */
+	public void setOutputFile(File outputFile) {
+		this.outputFile = outputFile;
+	}
+	
+	/**
+	 * Set the {@link Checkpoint} file.  The default (null) is not
+	 * to use a checkpoint file.
+	 * 
+	 * @param checkpointFile the checkpoint file
+	 * @param exerciseHash   hash of the exercise (see {@link Checkpoint#computeExerciseHash(byte[])})
+	 */
+	public void setCheckpointFile(File checkpointFile, String exerciseHash) {
+		this.checkpointFile = checkpointFile;
+		this.exerciseHash = exerciseHash;
 	}
 	
 	public static void main(String[] args) throws IOException, InterruptedException {
@@ -113,20 +200,70 @@ public class BatchMain {
 		Logger.getRootLogger().removeAllAppenders();
 		Logger.getRootLogger().addAppender(new NullAppender());
 		
-		if (args.length != 2) {
-			System.err.println("Usage: java -jar cloudcoderBuilder.jar batch <exercise JSON> <source file list>");
+		List<String> argList = new ArrayList<String>();
+		int numWorkers = -1;
+		int maxConcurrentTests = -1;
+		OutputFormat outputFormat = OutputFormat.TEXT;
+		File outputFile = null;
+		File checkpointFile = null;
+		for (String arg : args) {
+			try {
+				if (arg.startsWith("--threads=")) {
+					numWorkers = Integer.parseInt(arg.substring("--threads=".length()));
+					if (numWorkers < 1) {
+						throw new IllegalArgumentException();
+					}
+				} else if (arg.startsWith("--max-concurrent-tests=")) {
+					maxConcurrentTests = Integer.parseInt(arg.substring("--max-concurrent-tests=".length()));
+					if (maxConcurrentTests < 1) {
+						throw new IllegalArgumentException();
+					}
+				} else if (arg.startsWith("--format=")) {
+					outputFormat = OutputFormat.valueOf(arg.substring("--format=".length()).toUpperCase(Locale.ENGLISH));
+				} else if (arg.startsWith("--output=")) {
+					outputFile = new File(arg.substring("--output=".length()));
+				} else if (arg.startsWith("--checkpoint=")) {
+					checkpointFile = new File(arg.substring("--checkpoint=".length()));
+				} else if (arg.startsWith("--")) {
+					throw new IllegalArgumentException();
+				} else {
+					argList.add(arg);
+				}
+			} catch (IllegalArgumentException e) {
+				System.err.println("Invalid option: " + arg);
+				argList.clear();
+				break;
+			}
+		}
+		
+		if (argList.size() != 2) {
+			System.err.println("Usage: java -jar cloudcoderBuilder.jar batch [options] <exercise JSON> <source file list>");
+			System.err.println("Options:");
+			System.err.println("  --threads=<n>         number of worker threads (default: number of CPUs)");
+			System.err.println("  --max-concurrent-tests=<n>");
+			System.err.println("                        number of tests executed at once (default: number of CPUs)");
+			System.err.println("  --format=<format>     output format: text, csv, or json (default: text)");
+			System.err.println("  --output=<file>       write results to file (default: stdout)");
+			System.err.println("  --checkpoint=<file>   record completed source files, and skip them when resuming");
 			System.exit(1);
 		}
 		
-		String exerciseJSON = args[0];
-		String sourceFileListFilename = args[1];
+		String exerciseJSON = argList.get(0);
+		String sourceFileListFilename = argList.get(1);
 
 		ProblemAndTestCaseList exercise = new ProblemAndTestCaseList();
 		
 		// Read the exercise (Problem and TestCases)
+		byte[] exerciseData;
+		FileInputStream in = new FileInputStream(exerciseJSON);
+		try {
+			exerciseData = IOUtils.toByteArray(in);
+		} finally {
+			IOUtil.closeQuietly(in);
+		}
 		Reader r = null;
 		try {
-			r = new BufferedReader(new FileReader(exerciseJSON));
+			r = new InputStreamReader(new ByteArrayInputStream(exerciseData), "UTF-8");
 			JSONConversion.readProblemAndTestCaseData(
 					exercise,
 					ReflectionFactory.forClass(Problem.class),
@@ -155,6 +292,15 @@ public class BatchMain {
 		}
 		
 		BatchMain batchMain = new BatchMain(exercise, sourceFileList);
+		if (numWorkers > 0) {
+			batchMain.setNumWorkers(numWorkers);
+		}
+		if (maxConcurrentTests > 0) {
+			batchMain.setMaxConcurrentTests(maxConcurrentTests);
+		}
+		batchMain.setOutputFormat(outputFormat);
+		batchMain.setOutputFile(outputFile);
+		batchMain.setCheckpointFile(checkpointFile, Checkpoint.computeExerciseHash(exerciseData));
 		batchMain.execute();
 	}
 	
@@ -166,96 +312,146 @@ public class BatchMain {
 		config.setProperty("cloudcoder.submitsvc.oop.easysandbox.enable", "true");
 		config.setProperty("cloudcoder.submitsvc.oop.easysandbox.heapsize", "8388608");
 		config.setProperty("cloudcoder.builder2.tmpdir", "/tmp");
+		if (maxConcurrentTests > 0) {
+			config.setProperty("cloudcoder.builder2.maxConcurrentTests", String.valueOf(maxConcurrentTests));
+		}
 		
+		Global.setup(config);
 		builder2 = new Builder2(config);
 		
-		Map<String, String> resultMap = new HashMap<String, String>();
+		// Find the source files not tested by a previous run
+		List<String> toTest = new ArrayList<String>();
+		boolean resuming = false;
+		if (checkpointFile != null) {
+			checkpoint = new Checkpoint(checkpointFile, exerciseHash);
+			resuming = checkpoint.getNumCompleted() > 0;
+		}
+		for (String sourceFile : sourceFileList) {
+			if (checkpoint == null || !checkpoint.isCompleted(sourceFile)) {
+				toTest.add(sourceFile);
+			}
+		}
+		if (resuming) {
+			System.err.println("Resuming: " + (sourceFileList.size() - toTest.size()) + " source file(s) already tested");
+		}
+		
+		// When resuming, append to the output file from the previous run
+		if (outputFile != null) {
+			out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(outputFile, resuming), "UTF-8"));
+		} else {
+			out = new PrintWriter(new OutputStreamWriter(System.out));
+		}
+		if (!resuming) {
+			outputFormat.writeHeader(out, exercise.getTestCaseList());
+			out.flush();
+		}
 		
-		TestCase[] testCaseList = exercise.getTestCaseList();
+		numToTest = toTest.size();
+		startMillis = lastReportMillis = System.currentTimeMillis();
 		
-		Worker[] workers = new Worker[/*Runtime.getRuntime().availableProcessors() * 2*/1];
-		Thread[] threads = new Thread[workers.length];
+		// The source queue is bounded, so source files are handed out
+		// as workers become available
+		sourceQueue = new ArrayBlockingQueue<String>(numWorkers * 2);
+		Thread[] threads = new Thread[numWorkers];
 		
 		try {
 			// Start workers
-			for (int i = 0; i < workers.length; i++) {
-				workers[i] = new Worker();
-				threads[i] = new Thread(workers[i]);
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new Thread(new Worker(), "BatchWorker-" + i);
 				threads[i].start();
-			}			
+			}
 			
-			// Add files to source queue
-			int submissionCount = 0;
-			for (String sourceFile : sourceFileList) {
+			// Add files to source queue, followed by one end marker per worker
+			for (String sourceFile : toTest) {
 				sourceQueue.put(sourceFile);
-				submissionCount++;
+			}
+			for (int i = 0; i < threads.length; i++) {
+				sourceQueue.put(END_OF_QUEUE);
 			}
 			
-			// Wait for finished Results to come back
-			int finishCount = 0;
-			while (finishCount < submissionCount) {
-				Result r = resultQueue.take();
-				finishCount++;
-				
-				String sourceFile = r.sourceFile;
-				SubmissionResult result = r.submissionResult;
-				
-				if (result == null) {
-					continue;
+			// Wait for workers to finish
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			reportProgress(true);
+		} finally {
+			// Shut down workers (if execute was interrupted)
+			for (Thread thread : threads) {
+				if (thread != null) {
+					thread.interrupt();
+					thread.join();
 				}
-				
-				// FIXME: For now, just a hard-coded output format summarizing compilation status and test results
-				StringWriter sw = new StringWriter();
-				PrintWriter pw = new PrintWriter(sw);
-				
-				pw.print(sourceFile);
-				pw.print(":");
-				pw.print(result.getCompilationResult().getOutcome());
-				TestResult[] testResults = result.getTestResults();
-				boolean allPassed = true;
-				for (int i = 0; i < testCaseList.length; i++) {
-					pw.print(",");
-					pw.print(testCaseList[i].getTestCaseName());
-					pw.print("=");
-					if (i >= testResults.length) {
-						pw.print("false");
-					} else {
-						boolean passed = testResults[i].getOutcome() == TestOutcome.PASSED;
-						pw.print(String.valueOf(passed));
-						if (!passed) {
-							allPassed = false;
-						}
-					}
+			}
+			synchronized (lock) {
+				out.flush();
+				if (outputFile != null) {
+					out.close();
+				}
+				if (checkpoint != null) {
+					checkpoint.close();
 				}
-				pw.flush();
+			}
+			Global.cleanup(config);
+		}
+	}
+	
+	private void onResult(String sourceFile, SubmissionResult result) {
+		synchronized (lock) {
+			numFinished++;
+			if (result != null && result.getCompilationResult().getOutcome() == CompilationOutcome.BUILDER_ERROR
+					&& checkpoint != null) {
+				// Not recorded as completed (or written), so that it is tested
+				// again when the run is resumed
+				System.err.println(sourceFile + ": builder error, will be retested when resuming");
+			} else if (result != null) {
+				TestCase[] testCaseList = exercise.getTestCaseList();
+				outputFormat.writeResult(out, sourceFile, result, testCaseList);
+				out.flush();
 				
-				resultMap.put(sourceFile, sw.toString());
+				// Record the source file as completed only after its
+				// result has been written
+				if (checkpoint != null) {
+					checkpoint.markCompleted(sourceFile);
+				}
 				
 				// If the submission did not pass all tests,
 				// write failure report to stderr.
-				if (!allPassed) {
+				if (!OutputFormat.isAllPassed(result, testCaseList)) {
 					writeFailureReport(sourceFile, result, testCaseList);
 				}
-			
 			}
-			
-			// Print results, in the order of the source files in the source file list.
-			for (String sourceFile : sourceFileList) {
-				String result = resultMap.get(sourceFile);
-				if (result != null) {
-					System.out.println(result);
-				}
+			reportProgress(false);
+		}
+	}
+	
+	private void reportProgress(boolean done) {
+		synchronized (lock) {
+			long now = System.currentTimeMillis();
+			if (!done && now - lastReportMillis < PROGRESS_INTERVAL_MILLIS) {
+				return;
 			}
+			lastReportMillis = now;
 			
-		} finally {
-			// Shut down workers and wait for threads to finish
-			for (int i = 0; i < workers.length; i++) {
-				if (workers[i] != null) {
-					workers[i].done = true;
-					threads[i].interrupt();
-					threads[i].join();
-				}
+			double elapsedSecs = Math.max(now - startMillis, 1L) / 1000.0;
+			double rate = numFinished / elapsedSecs;
+			StringBuilder buf = new StringBuilder();
+			buf.append(String.format("Tested %d/%d submission(s) in %s (%.2f/s)",
+					numFinished, numToTest, formatDuration((long) elapsedSecs), rate));
+			if (!done && rate > 0) {
+				buf.append(", ETA ");
+				buf.append(formatDuration((long) ((numToTest - numFinished) / rate)));
 			}
+			System.err.println(buf.toString());
+		}
+	}
+	
+	private static String formatDuration(long secs) {
+		if (secs >= 3600) {
+			return String.format("%dh%02dm%02ds", secs / 3600, (secs / 60) % 60, secs % 60);
+		} else if (secs >= 60) {
+			return String.format("%dm%02ds", secs / 60, secs % 60);
+		} else {
+			return secs + "s";
 		}
 	}
 
@@ -0,0 +1,139 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2013, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2013, David H. Hovemeyer <david.hovemeyer@gmail.com>
+// Copyright (C) 2013-2014, York College of Pennsylvania
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package org.cloudcoder.builder2.batch;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.cloudcoder.app.shared.model.ConvertBytesToHex;
+import org.cloudcoder.app.shared.model.SHA1;
+import org.cloudcoder.daemon.IOUtil;
+
+/**
+ * Checkpoint file recording which source files have been tested
+ * in a batch run, so that an interrupted run can be resumed.
+ * The first line of the file records a hash of the exercise,
+ * so that a run isn't resumed with a different exercise.
+ * It is followed by the name of each completed source file,
+ * one per line, and is appended to (and flushed) as results
+ * are written.
+ * 
+ * @author David Hovemeyer
+ */
+public class Checkpoint {
+	private static final String EXERCISE_PREFIX = "exercise ";
+	
+	private final Set<String> completed;
+	private final PrintWriter out;
+	
+	/**
+	 * Constructor.  Reads the names of source files completed
+	 * by previous runs (if the checkpoint file exists), and opens
+	 * the checkpoint file for appending.
+	 * 
+	 * @param file          the checkpoint file
+	 * @param exerciseHash  hash of the exercise (see {@link #computeExerciseHash(byte[])})
+	 * @throws IOException if the checkpoint file can't be read, or was written
+	 *                     for a different exercise
+	 */
+	public Checkpoint(File file, String exerciseHash) throws IOException {
+		this.completed = new HashSet<String>();
+		boolean hasHeader = false;
+		if (file.exists()) {
+			BufferedReader r = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+			try {
+				String header = r.readLine();
+				if (header != null) {
+					if (!header.equals(EXERCISE_PREFIX + exerciseHash)) {
+						throw new IOException("Checkpoint file " + file + " was not written for this exercise");
+					}
+					hasHeader = true;
+				}
+				while (true) {
+					String line = r.readLine();
+					if (line == null) {
+						break;
+					}
+					// An incomplete last line (from a killed run) does no harm:
+					// that source file is simply tested again
+					completed.add(line);
+				}
+			} finally {
+				IOUtil.closeQuietly(r);
+			}
+		}
+		this.out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(file, hasHeader), "UTF-8"));
+		if (!hasHeader) {
+			out.println(EXERCISE_PREFIX + exerciseHash);
+			out.flush();
+		}
+	}
+	
+	/**
+	 * Compute the hash of an exercise recorded in a checkpoint file.
+	 * 
+	 * @param exerciseJSON the exercise JSON file's contents
+	 * @return the hash
+	 */
+	public static String computeExerciseHash(byte[] exerciseJSON) {
+		return new ConvertBytesToHex(new SHA1().digest(exerciseJSON)).convert();
+	}
+	
+	/**
+	 * @param sourceFile a source file
+	 * @return true if the source file was tested by a previous run
+	 */
+	public boolean isCompleted(String sourceFile) {
+		return completed.contains(sourceFile);
+	}
+	
+	/**
+	 * @return number of source files tested by previous runs
+	 */
+	public int getNumCompleted() {
+		return completed.size();
+	}
+	
+	/**
+	 * Record that a source file has been tested.
+	 * Should be called only after the result has been written.
+	 * 
+	 * @param sourceFile the source file
+	 */
+	public void markCompleted(String sourceFile) {
+		out.println(sourceFile);
+		out.flush();
+	}
+	
+	/**
+	 * Close the checkpoint file.
+	 */
+	public void close() {
+		out.close();
+	}
+}
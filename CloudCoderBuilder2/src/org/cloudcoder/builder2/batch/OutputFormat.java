@@ -0,0 +1,175 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2013, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2013, David H. Hovemeyer <david.hovemeyer@gmail.com>
+// Copyright (C) 2013-2014, York College of Pennsylvania
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+
+package org.cloudcoder.builder2.batch;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.app.shared.model.TestCase;
+import org.cloudcoder.app.shared.model.TestOutcome;
+import org.cloudcoder.app.shared.model.TestResult;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Output formats for batch-mode test results.
+ * Each result is written as a single line, so that results can be
+ * written as soon as they are available.
+ * 
+ * @author David Hovemeyer
+ */
+public enum OutputFormat {
+	/**
+	 * Source file name, compilation outcome, and
+	 * <code>name=passed</code> for each test case.
+	 */
+	TEXT {
+		@Override
+		public void writeHeader(PrintWriter out, TestCase[] testCaseList) {
+			// No header
+		}
+		
+		@Override
+		public void writeResult(PrintWriter out, String sourceFile, SubmissionResult result, TestCase[] testCaseList) {
+			out.print(sourceFile);
+			out.print(":");
+			out.print(result.getCompilationResult().getOutcome());
+			for (int i = 0; i < testCaseList.length; i++) {
+				out.print(",");
+				out.print(testCaseList[i].getTestCaseName());
+				out.print("=");
+				out.print(String.valueOf(isPassed(result, i)));
+			}
+			out.println();
+		}
+	},
+	
+	/**
+	 * Comma-separated values, with a header row naming the test cases.
+	 */
+	CSV {
+		@Override
+		public void writeHeader(PrintWriter out, TestCase[] testCaseList) {
+			out.print("sourceFile,compilationOutcome");
+			for (TestCase testCase : testCaseList) {
+				out.print(",");
+				out.print(csvField(testCase.getTestCaseName()));
+			}
+			out.println(",allPassed");
+		}
+		
+		@Override
+		public void writeResult(PrintWriter out, String sourceFile, SubmissionResult result, TestCase[] testCaseList) {
+			out.print(csvField(sourceFile));
+			out.print(",");
+			out.print(result.getCompilationResult().getOutcome());
+			for (int i = 0; i < testCaseList.length; i++) {
+				out.print(",");
+				out.print(String.valueOf(isPassed(result, i)));
+			}
+			out.print(",");
+			out.println(String.valueOf(isAllPassed(result, testCaseList)));
+		}
+	},
+	
+	/**
+	 * One JSON object per line.
+	 */
+	JSON {
+		@Override
+		public void writeHeader(PrintWriter out, TestCase[] testCaseList) {
+			// No header
+		}
+		
+		@Override
+		public void writeResult(PrintWriter out, String sourceFile, SubmissionResult result, TestCase[] testCaseList) {
+			StringWriter sw = new StringWriter();
+			try {
+				JsonGenerator gen = jsonFactory.createGenerator(sw);
+				gen.writeStartObject();
+				gen.writeStringField("sourceFile", sourceFile);
+				gen.writeStringField("compilationOutcome", result.getCompilationResult().getOutcome().toString());
+				gen.writeObjectFieldStart("testResults");
+				for (int i = 0; i < testCaseList.length; i++) {
+					gen.writeBooleanField(testCaseList[i].getTestCaseName(), isPassed(result, i));
+				}
+				gen.writeEndObject();
+				gen.writeBooleanField("allPassed", isAllPassed(result, testCaseList));
+				gen.writeEndObject();
+				gen.close();
+			} catch (IOException e) {
+				// Can't happen when writing to a StringWriter
+				throw new IllegalStateException("Could not generate JSON", e);
+			}
+			out.println(sw.toString());
+		}
+	};
+	
+	private static final JsonFactory jsonFactory = new JsonFactory();
+	
+	/**
+	 * Write the header (if any) that precedes the results.
+	 * 
+	 * @param out          the PrintWriter to write to
+	 * @param testCaseList the exercise's test cases
+	 */
+	public abstract void writeHeader(PrintWriter out, TestCase[] testCaseList);
+	
+	/**
+	 * Write the result of testing one submission.
+	 * 
+	 * @param out          the PrintWriter to write to
+	 * @param sourceFile   the submission's source file
+	 * @param result       the {@link SubmissionResult}
+	 * @param testCaseList the exercise's test cases
+	 */
+	public abstract void writeResult(PrintWriter out, String sourceFile, SubmissionResult result, TestCase[] testCaseList);
+	
+	/**
+	 * Determine whether a submission passed all of the test cases.
+	 * 
+	 * @param result       the {@link SubmissionResult}
+	 * @param testCaseList the exercise's test cases
+	 * @return true if all tests passed
+	 */
+	public static boolean isAllPassed(SubmissionResult result, TestCase[] testCaseList) {
+		for (int i = 0; i < testCaseList.length; i++) {
+			if (!isPassed(result, i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean isPassed(SubmissionResult result, int i) {
+		TestResult[] testResults = result.getTestResults();
+		return i < testResults.length && testResults[i].getOutcome() == TestOutcome.PASSED;
+	}
+	
+	private static String csvField(String s) {
+		if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) {
+			return s;
+		}
+		return "\"" + s.replace("\"", "\"\"") + "\"";
+	}
+}
@@ -0,0 +1,411 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.ccompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.cloudcoder.app.shared.model.ConvertBytesToHex;
+import org.cloudcoder.builder2.model.WrapperMode;
+import org.cloudcoder.builder2.process.ProcessRunner;
+import org.cloudcoder.builder2.util.DeleteDirectoryRecursively;
+import org.cloudcoder.builder2.util.SingletonHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Content-addressed on-disk cache of the results of compiling
+ * C/C++ programs with the {@link Compiler}.  Entries are keyed by a hash of
+ * the compiler version, the complete compiler command (including all flags),
+ * and the name and text of each source file.  Each entry stores the
+ * compiler output (from which the compiler diagnostics are produced), and,
+ * if the compilation succeeded, the executable.  When the total size of the
+ * cached entries exceeds the configured maximum, the least recently used
+ * entries are deleted.  The cache directory is kept when the Builder exits,
+ * and its entries are reused when the Builder is restarted.
+ * 
+ * Configuration properties:
+ * <ul>
+ * <li><code>cloudcoder.builder2.ccompiler.cacheSize</code>: maximum total size
+ *     of cached entries in bytes (0 to disable the cache)</li>
+ * <li><code>cloudcoder.builder2.ccompiler.cacheDir</code>: directory in which
+ *     to store cached entries (the default is a subdirectory of the
+ *     Builder's temporary directory)</li>
+ * </ul>
+ * 
+ * @author David Hovemeyer
+ */
+public class CompiledExecutableCache {
+	private static final Logger logger = LoggerFactory.getLogger(CompiledExecutableCache.class);
+	
+	/** Default maximum total size of cached entries. */
+	public static final long DEFAULT_CACHE_SIZE = 256L * 1024L * 1024L;
+	
+	private static final String EXE_FILE = "exe";
+	private static final String OUTPUT_FILE = "output.txt";
+	private static final String STATUS_FILE = "status.txt";
+	
+	private static final SingletonHolder<CompiledExecutableCache, Properties> holder = new SingletonHolder<CompiledExecutableCache, Properties>() {
+		@Override
+		protected CompiledExecutableCache onCreate(Properties arg) {
+			return new CompiledExecutableCache(arg);
+		}
+	};
+	
+	/**
+	 * Get the singleton instance.
+	 * 
+	 * @param config the Builder configuration properties
+	 * @return the singleton instance
+	 */
+	public static CompiledExecutableCache getInstance(Properties config) {
+		return holder.get(config);
+	}
+	
+	/**
+	 * Check whether or not the singleton instance was created.
+	 * 
+	 * @return true if the singleton instance was created, false if not
+	 */
+	public static boolean isCreated() {
+		return holder.isCreated();
+	}
+	
+	/**
+	 * A cached compilation result.
+	 */
+	public static class Entry {
+		private final boolean success;
+		private final String statusMessage;
+		private final List<String> compilerOutput;
+		private final File exe;
+		
+		Entry(boolean success, String statusMessage, List<String> compilerOutput, File exe) {
+			this.success = success;
+			this.statusMessage = statusMessage;
+			this.compilerOutput = compilerOutput;
+			this.exe = exe;
+		}
+		
+		/**
+		 * @return true if the compilation succeeded
+		 */
+		public boolean isSuccess() {
+			return success;
+		}
+		
+		/**
+		 * @return the compilation status message
+		 */
+		public String getStatusMessage() {
+			return statusMessage;
+		}
+		
+		/**
+		 * @return the lines of compiler output
+		 */
+		public List<String> getCompilerOutput() {
+			return compilerOutput;
+		}
+		
+		/**
+		 * @return the cached executable (null if the compilation failed)
+		 */
+		public File getExe() {
+			return exe;
+		}
+	}
+	
+	private final Properties config;
+	private final long maxSize;
+	private final File cacheDir;
+	private final Random rng;
+	private final Map<String, String> compilerVersions;
+	private final Object lock;
+	// Sizes of cached entries, from least to most recently used
+	private final LinkedHashMap<String, Long> entrySizes;
+	private long totalSize;
+	private int numHits;
+	private int numMisses;
+	
+	/**
+	 * Constructor.  Normally, the singleton instance
+	 * (see {@link #getInstance(Properties)}) should be used.
+	 * 
+	 * @param config the Builder configuration properties
+	 */
+	public CompiledExecutableCache(Properties config) {
+		this.config = config;
+		this.maxSize = Long.parseLong(config.getProperty(
+				"cloudcoder.builder2.ccompiler.cacheSize", String.valueOf(DEFAULT_CACHE_SIZE)));
+		String dir = config.getProperty("cloudcoder.builder2.ccompiler.cacheDir");
+		if (dir == null) {
+			dir = new File(config.getProperty("cloudcoder.builder2.tmpdir"), "cloudcoder-ccompiler-cache").getPath();
+		}
+		this.cacheDir = new File(dir);
+		this.rng = new Random();
+		this.compilerVersions = new ConcurrentHashMap<String, String>();
+		this.lock = new Object();
+		this.entrySizes = new LinkedHashMap<String, Long>(16, 0.75f, true);
+		
+		if (maxSize > 0) {
+			if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+				logger.error("Could not create compiled executable cache directory {}", cacheDir);
+			} else {
+				loadExistingEntries();
+			}
+		}
+	}
+	
+	/**
+	 * @return true if the cache is enabled
+	 */
+	public boolean isEnabled() {
+		return maxSize > 0 && cacheDir.isDirectory();
+	}
+	
+	/**
+	 * Compute the key identifying the result of a compilation.
+	 * 
+	 * @param compilerExe  the compiler executable (e.g., "gcc")
+	 * @param wrapperMode  the {@link WrapperMode} used to run the compiler
+	 * @param cmd          the complete compiler command
+	 * @param modules      the source files being compiled
+	 * @return the key, or null if the compiler version can't be determined
+	 */
+	public String getKey(String compilerExe, WrapperMode wrapperMode, String[] cmd, List<Compiler.Module> modules) {
+		String version = getCompilerVersion(compilerExe, wrapperMode);
+		if (version == null) {
+			return null;
+		}
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			update(md, version);
+			for (String arg : cmd) {
+				update(md, arg);
+			}
+			for (Compiler.Module m : modules) {
+				update(md, m.sourceFileName);
+				update(md, m.code);
+			}
+			return new ConvertBytesToHex(md.digest()).convert();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 not supported", e);
+		}
+	}
+	
+	/**
+	 * Look up a cached compilation result.
+	 * 
+	 * @param key the key (returned by {@link #getKey(String, WrapperMode, String[], List)})
+	 * @return the cached {@link Entry}, or null if there is none
+	 */
+	public Entry get(String key) {
+		synchronized (lock) {
+			if (entrySizes.get(key) == null) {
+				numMisses++;
+				return null;
+			}
+			numHits++;
+		}
+		
+		File entryDir = new File(cacheDir, key);
+		try {
+			List<String> status = FileUtils.readLines(new File(entryDir, STATUS_FILE), "UTF-8");
+			List<String> output = FileUtils.readLines(new File(entryDir, OUTPUT_FILE), "UTF-8");
+			boolean success = status.get(0).equals("success");
+			File exe = success ? new File(entryDir, EXE_FILE) : null;
+			entryDir.setLastModified(System.currentTimeMillis());
+			return new Entry(success, status.size() > 1 ? status.get(1) : "", output, exe);
+		} catch (IOException e) {
+			// Most likely the entry was evicted
+			logger.info("Could not read compiled executable cache entry {}", key);
+			return null;
+		}
+	}
+	
+	/**
+	 * Add a compilation result to the cache.
+	 * 
+	 * @param key            the key (returned by {@link #getKey(String, WrapperMode, String[], List)})
+	 * @param success        true if the compilation succeeded
+	 * @param statusMessage  the compilation status message
+	 * @param compilerOutput the lines of compiler output
+	 * @param exe            the executable (ignored if the compilation failed)
+	 */
+	public void put(String key, boolean success, String statusMessage, List<String> compilerOutput, File exe) {
+		// Write the entry to a temporary directory, and then
+		// rename it, so that incomplete entries are never visible
+		File tmpDir = new File(cacheDir, key + ".tmp-" + String.format("%x", rng.nextLong()));
+		File entryDir = new File(cacheDir, key);
+		try {
+			if (!tmpDir.mkdir()) {
+				throw new IOException("Could not create directory " + tmpDir);
+			}
+			FileUtils.writeLines(new File(tmpDir, STATUS_FILE), "UTF-8",
+					Arrays.asList(success ? "success" : "failure", statusMessage));
+			FileUtils.writeLines(new File(tmpDir, OUTPUT_FILE), "UTF-8", compilerOutput);
+			if (success) {
+				File cachedExe = new File(tmpDir, EXE_FILE);
+				FileUtils.copyFile(exe, cachedExe);
+				cachedExe.setExecutable(true);
+			}
+			long size = FileUtils.sizeOfDirectory(tmpDir);
+			
+			synchronized (lock) {
+				if (entrySizes.containsKey(key) || !tmpDir.renameTo(entryDir)) {
+					// Another thread added the same entry
+					new DeleteDirectoryRecursively(tmpDir).delete();
+					return;
+				}
+				entrySizes.put(key, size);
+				totalSize += size;
+				evict();
+			}
+		} catch (IOException e) {
+			logger.warn("Could not add entry to compiled executable cache", e);
+			new DeleteDirectoryRecursively(tmpDir).delete();
+		}
+	}
+	
+	/**
+	 * @return number of lookups that found a cached entry
+	 */
+	public int getNumHits() {
+		synchronized (lock) {
+			return numHits;
+		}
+	}
+	
+	/**
+	 * @return number of lookups that didn't find a cached entry
+	 */
+	public int getNumMisses() {
+		synchronized (lock) {
+			return numMisses;
+		}
+	}
+	
+	/**
+	 * @return total size in bytes of the cached entries
+	 */
+	public long getTotalSize() {
+		synchronized (lock) {
+			return totalSize;
+		}
+	}
+	
+	/**
+	 * Delete least recently used entries until the total size
+	 * no longer exceeds the maximum.  Must be called with the lock held.
+	 */
+	private void evict() {
+		Iterator<Map.Entry<String, Long>> i = entrySizes.entrySet().iterator();
+		while (totalSize > maxSize && i.hasNext()) {
+			Map.Entry<String, Long> eldest = i.next();
+			i.remove();
+			totalSize -= eldest.getValue();
+			new DeleteDirectoryRecursively(new File(cacheDir, eldest.getKey())).delete();
+			logger.debug("Evicted compiled executable cache entry {}", eldest.getKey());
+		}
+	}
+	
+	/**
+	 * Add entries left in the cache directory by a previous Builder
+	 * process, in order of last use.  Incomplete entries are deleted.
+	 */
+	private void loadExistingEntries() {
+		File[] files = cacheDir.listFiles();
+		if (files == null) {
+			return;
+		}
+		List<File> entryDirs = new ArrayList<File>();
+		for (File f : files) {
+			if (f.getName().contains(".tmp-")) {
+				new DeleteDirectoryRecursively(f).delete();
+			} else if (f.isDirectory()) {
+				entryDirs.add(f);
+			}
+		}
+		Collections.sort(entryDirs, new Comparator<File>() {
+			@Override
+			public int compare(File o1, File o2) {
+				long t1 = o1.lastModified(), t2 = o2.lastModified();
+				return t1 < t2 ? -1 : (t1 > t2 ? 1 : 0);
+			}
+		});
+		synchronized (lock) {
+			for (File entryDir : entryDirs) {
+				long size = FileUtils.sizeOfDirectory(entryDir);
+				entrySizes.put(entryDir.getName(), size);
+				totalSize += size;
+			}
+			evict();
+		}
+		logger.info("Compiled executable cache has {} entries ({} bytes)", entrySizes.size(), totalSize);
+	}
+	
+	/**
+	 * Get the version of a compiler (the first line of the output
+	 * of running it with the <code>--version</code> option.)
+	 * 
+	 * @return the compiler version, or null if it can't be determined
+	 */
+	private String getCompilerVersion(String compilerExe, WrapperMode wrapperMode) {
+		String version = compilerVersions.get(compilerExe);
+		if (version == null) {
+			ProcessRunner runner = new ProcessRunner(config);
+			runner.setWrapperMode(wrapperMode);
+			if (!runner.runSynchronous(cacheDir, compilerExe, "--version") || runner.getExitCode() != 0
+					|| runner.getStdoutAsList().isEmpty()) {
+				logger.warn("Could not determine version of {}", compilerExe);
+				return null;
+			}
+			version = runner.getStdoutAsList().get(0);
+			compilerVersions.put(compilerExe, version);
+		}
+		return version;
+	}
+	
+	private static void update(MessageDigest md, String s) {
+		try {
+			byte[] bytes = s.getBytes("UTF-8");
+			// Include the length, so that the boundaries between
+			// strings are unambiguous
+			md.update((bytes.length + ":").getBytes("UTF-8"));
+			md.update(bytes);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 not supported", e);
+		}
+	}
+}
@@ -28,6 +28,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Properties;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.cloudcoder.app.shared.model.CompilerDiagnostic;
 import org.cloudcoder.app.shared.model.Language;
@@ -85,6 +86,8 @@ public class Compiler {
 	private List<String> compilerOutput;
 	private WrapperMode wrapperMode;
 	private Language language;
+	private CompiledExecutableCache cache;
+	private boolean compilerRan;
 
 	/**
 	 * Constructor for programs compiled from a single source file.
@@ -168,6 +171,18 @@ public class Compiler {
 		return Collections.unmodifiableList(modules);
 	}
 
+	/**
+	 * Set the {@link CompiledExecutableCache} to use to avoid recompiling
+	 * programs that were compiled previously.  Should not be used
+	 * for compilations whose results depend on anything other than
+	 * the compiler command and the source files.
+	 * 
+	 * @param cache the {@link CompiledExecutableCache}, or null if compilation results shouldn't be cached
+	 */
+	public void setCache(CompiledExecutableCache cache) {
+		this.cache = cache;
+	}
+
 	/**
 	 * Attempt to compile the program.
 	 * 
@@ -190,12 +205,46 @@ public class Compiler {
 			}
 		}
 
-		if (!runCommand(workDir, getCompileCmd())) {
-			return false;
+		String[] cmd = getCompileCmd();
+		String cacheKey = null;
+		if (cache != null && cache.isEnabled()) {
+			cacheKey = cache.getKey(getCompilerExe(), wrapperMode, cmd, modules);
+			if (cacheKey != null) {
+				CompiledExecutableCache.Entry entry = cache.get(cacheKey);
+				if (entry != null && useCachedResult(entry)) {
+					return entry.isSuccess();
+				}
+			}
+		}
+
+		boolean success = runCommand(workDir, cmd);
+		if (success) {
+			// success!
+			statusMessage = "Compilation succeeded";
 		}
 
-		// success!
-		statusMessage = "Compilation succeeded";
+		// Results of running the compiler are deterministic, so
+		// cache them (whether or not the compilation succeeded)
+		if (cacheKey != null && compilerRan) {
+			cache.put(cacheKey, success, statusMessage, compilerOutput, new File(workDir, getExeFileName()));
+		}
+
+		return success;
+	}
+	
+	private boolean useCachedResult(CompiledExecutableCache.Entry entry) {
+		if (entry.isSuccess()) {
+			File exe = new File(workDir, getExeFileName());
+			try {
+				FileUtils.copyFile(entry.getExe(), exe);
+			} catch (IOException e) {
+				logger.info("Could not copy cached executable, recompiling", e);
+				return false;
+			}
+			exe.setExecutable(true);
+		}
+		compilerOutput.addAll(entry.getCompilerOutput());
+		statusMessage = entry.getStatusMessage();
 		return true;
 	}
 	
@@ -259,6 +308,7 @@ public class Compiler {
 			return false;
 		}
 
+		compilerRan = true;
 		compilerOutput.addAll(runner.getStderrAsList());
 		if (runner.getExitCode() != 0) {
 			statusMessage = cmd[0] + " exited with non-zero exit code " + runner.getExitCode();
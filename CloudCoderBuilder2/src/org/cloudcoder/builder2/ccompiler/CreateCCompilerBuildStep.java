@@ -90,6 +90,9 @@ public class CreateCCompilerBuildStep implements IBuildStep {
 		// For both C and C++ submissions, link with -lm
 		compiler.addEndFlag("-lm");
 		
+		// Reuse the results of previous compilations of the same program
+		compiler.setCache(CompiledExecutableCache.getInstance(config));
+		
 		submission.addArtifact(compiler);
 	}
 
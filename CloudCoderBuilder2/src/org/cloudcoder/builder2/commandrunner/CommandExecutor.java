@@ -19,6 +19,8 @@
 package org.cloudcoder.builder2.commandrunner;
 
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.cloudcoder.builder2.model.Command;
 import org.cloudcoder.builder2.model.CommandExecutionPreferences;
@@ -28,6 +30,8 @@ import org.cloudcoder.builder2.model.CommandResult;
 import org.cloudcoder.builder2.model.ProcessStatus;
 import org.cloudcoder.builder2.process.LimitedProcessRunner;
 import org.cloudcoder.builder2.process.ProcessRunner;
+import org.cloudcoder.builder2.process.ProcessSupervisor;
+import org.cloudcoder.builder2.process.TestExecutionScheduler;
 import org.cloudcoder.builder2.util.ArrayUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -48,15 +52,9 @@ public class CommandExecutor implements Runnable {
 	private Properties config;
 	private CommandExecutionPreferences prefs;
 	
-	private Thread thread;
+	private Future<?> task;
 	private CommandResult commandResult;
 
-	/**
-	 * Number of milliseconds between polls to see if a test case
-	 * process has completed.
-	 */
-	public static final int POLL_INTERVAL_IN_MILLIS = 500;
-
 	/**
 	 * Maximum number of seconds (wall time) to allow a command process to run
 	 * by default.
@@ -117,22 +115,23 @@ public class CommandExecutor implements Runnable {
 		processRunner.getEnv().putAll(command.getEnv());
 
 		String[] cmd = ArrayUtil.toArray(command.getArgs(), String.class);
-		processRunner.runAsynchronous(command.getDir(), cmd);
-
-		int elapsed = 0;
-		while (processRunner.isRunning() && elapsed < maxWaitTimeSec * 1000) {
-			try {
-				Thread.sleep(CommandExecutor.POLL_INTERVAL_IN_MILLIS);
-			} catch (InterruptedException e) {
-				// can't happen
-			}
-
-			elapsed += CommandExecutor.POLL_INTERVAL_IN_MILLIS;
+		processRunner.setTimeLimit(maxWaitTimeSec * 1000L);
+		
+		// Wait until the scheduler admits the command:
+		// the time limit starts when the process starts
+		TestExecutionScheduler scheduler = TestExecutionScheduler.getInstance(config);
+		scheduler.acquire();
+		boolean started;
+		try {
+			started = processRunner.runSynchronous(command.getDir(), cmd);
+		} finally {
+			scheduler.release();
 		}
-
-		if (processRunner.isRunning()) {
+		
+		if (!started) {
+			commandResult = new CommandResult(ProcessStatus.COULD_NOT_START, processRunner.getStatusMessage());
+		} else if (processRunner.getStatus() == ProcessStatus.TIMED_OUT) {
 			// timed out!
-			processRunner.killProcess();
 			commandResult = new CommandResult(ProcessStatus.TIMED_OUT, processRunner.getStatusMessage());
 		} else {
 			// Either completed normally or killed by signal
@@ -153,8 +152,7 @@ public class CommandExecutor implements Runnable {
 	 * Start executing the {@link Command}.
 	 */
 	public void start() {
-		thread = new Thread(this);
-		thread.start();
+		task = ProcessSupervisor.getInstance().execute(this);
 	}
 
 	/**
@@ -165,7 +163,11 @@ public class CommandExecutor implements Runnable {
 		int numAttempts = 0;
 		while (!done && numAttempts < MAX_TEST_EXECUTOR_JOIN_ATTEMPTS) {
 			try {
-				thread.join();
+				task.get();
+				done = true;
+			} catch (ExecutionException e) {
+				logger.error("test executor failed", e.getCause());
+				commandResult = new CommandResult(ProcessStatus.COULD_NOT_START, "Command executor failed");
 				done = true;
 			} catch (InterruptedException e) {
 				logger.error("test executor interrupted unexpectedly");
@@ -45,6 +45,11 @@ public class GCovCCompilerBuildStep implements IBuildStep {
 		// See: https://gcc.gnu.org/onlinedocs/gcc/Invoking-Gcov.html
 		compiler.addFlag("-fprofile-arcs");
 		compiler.addFlag("-ftest-coverage");
+		
+		// The instrumented executable writes its coverage data next to
+		// the .gcno files produced by the compiler, so it must really
+		// be compiled in the submission's work directory
+		compiler.setCache(null);
 	}
 
 }
@@ -53,6 +53,19 @@ public class ByteArrayAndExternalLibraryClassLoader extends ClassLoader {
 	 * @throws IOException
 	 */
 	public ByteArrayAndExternalLibraryClassLoader(Map<String, byte[]> classes, String externalLibraryFileName) throws IOException {
+		this(classes, externalLibraryFileName, ClassLoader.getSystemClassLoader());
+	}
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param classes                  map of class names to classes compiled in memory
+	 * @param externalLibraryFileName  filename of an external jarfile whose classes should also be available
+	 * @param parent                   the parent class loader
+	 * @throws IOException
+	 */
+	public ByteArrayAndExternalLibraryClassLoader(Map<String, byte[]> classes, String externalLibraryFileName, ClassLoader parent) throws IOException {
+		super(parent);
 		this.classes = new HashMap<String, byte[]>();
 		this.classes.putAll(classes);
 		this.externalLibraryFileName = externalLibraryFileName;
@@ -48,12 +48,25 @@ public class ByteArrayClassLoader extends ClassLoader {
         this.classes = classes;
     }
 
+    /**
+     * Creates a new instance of ByteArrayClassLoader with given parent
+     * @param classes a map from binary class names to class files stored as byte arrays
+     * @param parent the parent class loader
+     */
+    public ByteArrayClassLoader(Map<String, byte[]> classes, ClassLoader parent) {
+        super(parent);
+        this.classes = classes;
+    }
+
     @Override
     public Class<?> loadClass(String name) throws ClassNotFoundException {
         try {
             return super.loadClass(name);
         } catch (ClassNotFoundException e) {
             byte[] classData = classes.get(name);
+            if (classData == null) {
+                throw e;
+            }
             return defineClass(name, classData, 0, classData.length);
         }
     }
@@ -18,18 +18,15 @@
 
 package org.cloudcoder.builder2.javacompiler;
 
-import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Properties;
 
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
-import javax.tools.JavaCompiler;
 import javax.tools.JavaCompiler.CompilationTask;
 import javax.tools.JavaFileObject;
-import javax.tools.ToolProvider;
 
 import org.cloudcoder.app.shared.model.CompilationOutcome;
 import org.cloudcoder.app.shared.model.CompilationResult;
@@ -46,23 +43,25 @@ public class InMemoryJavaCompiler
 {
 	private static final Logger logger=LoggerFactory.getLogger(InMemoryJavaCompiler.class);
 
+	private JavaCompilerService service;
 	private MemoryFileManager fm;
-	private JavaCompiler compiler;
 	private CompilationResult compileResult;
 	private List<JavaFileObject> sources;
 	private String extraClasspath;
 
 	/**
 	 * Constructor.
+	 * The compiler must be used only by the thread that created it.
+	 * 
+	 * @param config the Builder configuration properties
 	 */
-	public InMemoryJavaCompiler() {
-		compiler = ToolProvider.getSystemJavaCompiler();
-		fm = new MemoryFileManager(compiler.getStandardFileManager(null, null, null));
+	public InMemoryJavaCompiler(Properties config) {
+		service = JavaCompilerService.getInstance(config);
 		sources = new ArrayList<JavaFileObject>();
 	}
 	
 	/**
-	 * Set extra classpath entries to be added to the system classpath
+	 * Set extra classpath entries to be added to the classpath
 	 * when compiling.
 	 * 
 	 * @param extraClasspath extra classpath entries
@@ -91,17 +90,11 @@ public class InMemoryJavaCompiler
 	public boolean compile() {
 		DiagnosticCollector<JavaFileObject> collector= new DiagnosticCollector<JavaFileObject>();
 		
-		// Prepare compiler options.
-		// We use this opportunity to set the classpath.
-		StringBuilder fullClasspath = new StringBuilder();
-		fullClasspath.append(System.getProperty("java.class.path"));
-		if (extraClasspath != null) {
-			fullClasspath.append(File.pathSeparatorChar);
-			fullClasspath.append(extraClasspath);
-		}
-		List<String> options = Arrays.asList("-classpath", fullClasspath.toString());
+		// Use this thread's file manager, with the classpath
+		// set for this compilation
+		fm = new MemoryFileManager(service.getFileManager(extraClasspath));
 		
-		CompilationTask task = compiler.getTask(null, fm, collector, options, null, sources);
+		CompilationTask task = service.getCompiler().getTask(null, fm, collector, null, null, sources);
 		
 		if (!task.call()) {
 			// Compiler error
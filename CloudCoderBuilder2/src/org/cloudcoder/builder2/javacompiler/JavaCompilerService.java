@@ -0,0 +1,125 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.javacompiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.cloudcoder.builder2.model.InternalBuilderException;
+import org.cloudcoder.builder2.util.SingletonHolder;
+
+/**
+ * Long-lived state shared by all {@link InMemoryJavaCompiler}s.
+ * The system Java compiler is looked up once, and each thread
+ * that compiles code reuses its own StandardJavaFileManager,
+ * so that jar files on the classpath (and javac's index of their
+ * contents) stay open from one compilation to the next.
+ * 
+ * Submitted code is compiled against a minimal classpath: the
+ * platform classes, any entries specified by the
+ * <code>cloudcoder.builder2.javacompiler.classpath</code> configuration
+ * property, and the submission's external library (if any).
+ * The Builder's own classpath is not visible to submitted code.
+ * 
+ * @author David Hovemeyer
+ */
+public class JavaCompilerService {
+	private static final SingletonHolder<JavaCompilerService, Properties> holder = new SingletonHolder<JavaCompilerService, Properties>() {
+		@Override
+		protected JavaCompilerService onCreate(Properties arg) {
+			return new JavaCompilerService(arg);
+		}
+	};
+	
+	/**
+	 * Get the singleton instance.
+	 * 
+	 * @param config the Builder configuration properties
+	 * @return the singleton instance
+	 */
+	public static JavaCompilerService getInstance(Properties config) {
+		return holder.get(config);
+	}
+	
+	private final JavaCompiler compiler;
+	private final List<File> baseClasspath;
+	private final ThreadLocal<StandardJavaFileManager> fileManager;
+	
+	private JavaCompilerService(Properties config) {
+		this.compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new InternalBuilderException(JavaCompilerService.class, "No system Java compiler (is the Builder running on a JRE?)");
+		}
+		this.baseClasspath = parseClasspath(config.getProperty("cloudcoder.builder2.javacompiler.classpath"));
+		this.fileManager = new ThreadLocal<StandardJavaFileManager>() {
+			@Override
+			protected StandardJavaFileManager initialValue() {
+				return compiler.getStandardFileManager(null, null, Charset.forName("UTF-8"));
+			}
+		};
+	}
+	
+	/**
+	 * @return the system Java compiler
+	 */
+	public JavaCompiler getCompiler() {
+		return compiler;
+	}
+	
+	/**
+	 * Get the calling thread's StandardJavaFileManager, with its
+	 * classpath set for compiling a submission.
+	 * 
+	 * @param extraClasspath extra classpath entries needed by the submission
+	 *                       (e.g., the external library), or null if none
+	 * @return the StandardJavaFileManager
+	 */
+	public StandardJavaFileManager getFileManager(String extraClasspath) {
+		List<File> classpath = new ArrayList<File>(baseClasspath);
+		classpath.addAll(parseClasspath(extraClasspath));
+		
+		StandardJavaFileManager fm = fileManager.get();
+		try {
+			fm.setLocation(StandardLocation.CLASS_PATH, classpath);
+		} catch (IOException e) {
+			throw new InternalBuilderException(JavaCompilerService.class, "Could not set classpath " + classpath, e);
+		}
+		return fm;
+	}
+	
+	private static List<File> parseClasspath(String classpath) {
+		List<File> result = new ArrayList<File>();
+		if (classpath != null) {
+			for (String entry : classpath.split(File.pathSeparator)) {
+				if (!entry.trim().equals("")) {
+					result.add(new File(entry.trim()));
+				}
+			}
+		}
+		return result;
+	}
+}
@@ -40,9 +40,41 @@ public class AddJavaMethodTestDriverBuildStep implements IBuildStep {
 
 	@Override
 	public void execute(BuilderSubmission submission, Properties config) {
+		// If test drivers are cached, then the test driver is added
+		// after the submission is compiled, by CompileJavaMethodTestDriverBuildStep
+		if (JavaMethodTestDriverCache.getInstance(config).isEnabled()) {
+			return;
+		}
+		
 		TestCase[] testCaseList = submission.requireArtifact(this.getClass(), TestCase[].class);
 		Problem problem = submission.requireArtifact(this.getClass(), Problem.class);
 
+        String testerCode = createTestDriverSource(problem, testCaseList);
+
+        // Create ProgramSource for test driver
+        ProgramSource testerProgramSource = new ProgramSource(testerCode);
+
+        // Get existing ProgramSource objects
+        ProgramSource[] programSourceList = submission.requireArtifact(this.getClass(), ProgramSource[].class);
+
+		// Build array of all ProgramSource
+		List<ProgramSource> allProgramSourceList = new ArrayList<ProgramSource>();
+		allProgramSourceList.add(testerProgramSource);
+		allProgramSourceList.addAll(Arrays.asList(programSourceList));
+		
+		// Add updated ProgramSource array to submission
+		submission.addArtifact(ArrayUtil.toArray(allProgramSourceList, ProgramSource.class));
+	}
+
+	/**
+	 * Create the source code of the test driver class (<code>Tester</code>)
+	 * for given {@link Problem} and {@link TestCase}s.
+	 * 
+	 * @param problem       the {@link Problem}
+	 * @param testCaseList  the {@link TestCase}s
+	 * @return source code of the test driver
+	 */
+	public static String createTestDriverSource(Problem problem, TestCase[] testCaseList) {
         StringBuilder tester = new StringBuilder();
         tester.append("public class Tester {\n");
         
@@ -73,21 +105,6 @@ public class AddJavaMethodTestDriverBuildStep implements IBuildStep {
             tester.append("\t\t}\n");
         }
         tester.append("}");
-        String testerCode = tester.toString();
-
-        // Create ProgramSource for test driver
-        ProgramSource testerProgramSource = new ProgramSource(testerCode);
-
-        // Get existing ProgramSource objects
-        ProgramSource[] programSourceList = submission.requireArtifact(this.getClass(), ProgramSource[].class);
-
-		// Build array of all ProgramSource
-		List<ProgramSource> allProgramSourceList = new ArrayList<ProgramSource>();
-		allProgramSourceList.add(testerProgramSource);
-		allProgramSourceList.addAll(Arrays.asList(programSourceList));
-		
-		// Add updated ProgramSource array to submission
-		submission.addArtifact(ArrayUtil.toArray(allProgramSourceList, ProgramSource.class));
+        return tester.toString();
 	}
-
 }
@@ -0,0 +1,355 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.javamethod;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.GenericArrayType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.ProblemType;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.app.shared.model.TestCase;
+import org.cloudcoder.builder2.javacompiler.ByteArrayAndExternalLibraryClassLoader;
+import org.cloudcoder.builder2.javacompiler.ByteArrayClassLoader;
+import org.cloudcoder.builder2.javacompiler.InMemoryJavaCompiler;
+import org.cloudcoder.builder2.javacompiler.JavaCompilerBuildStep;
+import org.cloudcoder.builder2.model.BuilderSubmission;
+import org.cloudcoder.builder2.model.Bytecode;
+import org.cloudcoder.builder2.model.ExternalLibrary;
+import org.cloudcoder.builder2.model.IBuildStep;
+import org.cloudcoder.builder2.model.ProgramSource;
+import org.cloudcoder.builder2.util.ArrayUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Add the compiled test driver to a compiled {@link ProblemType#JAVA_METHOD}
+ * submission, when test drivers are cached by {@link JavaMethodTestDriverCache}.
+ * This step should be executed <em>after</em> {@link JavaCompilerBuildStep}
+ * has compiled the scaffolded submission (by itself).
+ * 
+ * The test driver is compiled against a stub version of the
+ * <code>Test</code> class, which declares only the tested method(s),
+ * with the same signatures as the submission.  Because the stub is
+ * all that the test driver depends on, the compiled test driver can
+ * be reused for later submissions with the same signature.
+ * If the test driver can't be compiled against the stub, then it is
+ * compiled with the submission, so that the student sees exactly the
+ * same compiler errors as if test drivers were not cached.
+ * 
+ * @author David Hovemeyer
+ */
+public class CompileJavaMethodTestDriverBuildStep implements IBuildStep {
+	private static final Logger logger = LoggerFactory.getLogger(CompileJavaMethodTestDriverBuildStep.class);
+
+	@Override
+	public void execute(BuilderSubmission submission, Properties config) {
+		JavaMethodTestDriverCache cache = JavaMethodTestDriverCache.getInstance(config);
+		if (!cache.isEnabled()) {
+			// The test driver was compiled along with the submission
+			return;
+		}
+		
+		Problem problem = submission.requireArtifact(this.getClass(), Problem.class);
+		TestCase[] testCaseList = submission.requireArtifact(this.getClass(), TestCase[].class);
+		Bytecode[] bytecodeList = submission.requireArtifact(this.getClass(), Bytecode[].class);
+		ExternalLibrary extlib = submission.getArtifact(ExternalLibrary.class);
+		
+		String testerCode = AddJavaMethodTestDriverBuildStep.createTestDriverSource(problem, testCaseList);
+		String stubCode = createStubSource(bytecodeList, extlib, problem.getTestname());
+		
+		if (stubCode != null) {
+			String key = JavaMethodTestDriverCache.computeKey(testerCode, stubCode);
+			Bytecode[] testerBytecodeList = cache.get(key);
+			if (testerBytecodeList == null) {
+				testerBytecodeList = compileTestDriver(testerCode, stubCode, submission, config);
+				if (testerBytecodeList != null) {
+					cache.put(key, testerBytecodeList);
+				}
+			}
+			
+			if (testerBytecodeList != null) {
+				// Link the cached test driver with the submission
+				List<Bytecode> allBytecodeList = new ArrayList<Bytecode>();
+				allBytecodeList.addAll(Arrays.asList(bytecodeList));
+				allBytecodeList.addAll(Arrays.asList(testerBytecodeList));
+				submission.addArtifact(ArrayUtil.toArray(allBytecodeList, Bytecode.class));
+				return;
+			}
+		}
+		
+		// Compile the test driver along with the submission
+		logger.debug("Compiling test driver with submission");
+		ProgramSource[] programSourceList = submission.requireArtifact(this.getClass(), ProgramSource[].class);
+		InMemoryJavaCompiler compiler = new JavaCompilerBuildStep().getJavaCompiler(submission, config);
+		compiler.addSourceFile("Tester", testerCode);
+		compiler.addSourceFile("Test", programSourceList[0].getProgramText());
+		if (!compiler.compile()) {
+			submission.addArtifact(new SubmissionResult(compiler.getCompileResult()));
+			return;
+		}
+		submission.addArtifact(toBytecodeList(compiler.getFileManager().getClasses(), false));
+	}
+
+	/**
+	 * Compile the test driver against the stub <code>Test</code> class.
+	 * 
+	 * @return the test driver's classes, or null if it could not be compiled
+	 */
+	private Bytecode[] compileTestDriver(String testerCode, String stubCode, BuilderSubmission submission, Properties config) {
+		InMemoryJavaCompiler compiler = new JavaCompilerBuildStep().getJavaCompiler(submission, config);
+		compiler.addSourceFile("Tester", testerCode);
+		compiler.addSourceFile("Test", stubCode);
+		if (!compiler.compile()) {
+			return null;
+		}
+		return toBytecodeList(compiler.getFileManager().getClasses(), true);
+	}
+
+	private static Bytecode[] toBytecodeList(Map<String, byte[]> classes, boolean omitTestClasses) {
+		List<Bytecode> result = new ArrayList<Bytecode>();
+		for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+			String className = entry.getKey();
+			if (omitTestClasses && (className.equals("Test") || className.startsWith("Test$"))) {
+				continue;
+			}
+			result.add(new Bytecode(className, entry.getValue()));
+		}
+		return ArrayUtil.toArray(result, Bytecode.class);
+	}
+
+	/**
+	 * Create the source code of a stub <code>Test</code> class which
+	 * declares the same constructor and tested methods as the
+	 * compiled submission.  The submission's classes are loaded
+	 * (but not initialized) in order to find the signatures.
+	 * 
+	 * @param bytecodeList  the compiled submission
+	 * @param extlib        the external library, or null if none
+	 * @param methodName    the name of the tested method
+	 * @return the stub source code, or null if a stub can't be created
+	 */
+	static String createStubSource(Bytecode[] bytecodeList, ExternalLibrary extlib, String methodName) {
+		Map<String, byte[]> classes = new HashMap<String, byte[]>();
+		for (Bytecode bytecode : bytecodeList) {
+			classes.put(bytecode.getClassName(), bytecode.getCode());
+		}
+		
+		try {
+			ClassLoader classLoader = (extlib == null)
+					? new ByteArrayClassLoader(classes)
+					: new ByteArrayAndExternalLibraryClassLoader(classes, extlib.getFileName());
+			Class<?> testCls = Class.forName("Test", false, classLoader);
+			if (Modifier.isAbstract(testCls.getModifiers())) {
+				return null;
+			}
+			
+			StringBuilder buf = new StringBuilder();
+			buf.append("public class Test {\n");
+			
+			// The test driver instantiates Test using its no-arg constructor
+			Constructor<?> ctor;
+			try {
+				ctor = testCls.getDeclaredConstructor();
+			} catch (NoSuchMethodException e) {
+				return null;
+			}
+			buf.append("\t");
+			appendModifiers(buf, ctor.getModifiers());
+			buf.append("Test()");
+			if (!appendThrows(buf, ctor.getGenericExceptionTypes())) {
+				return null;
+			}
+			buf.append(" { }\n");
+			
+			// Declare each method with the tested method's name
+			for (Method m : testCls.getDeclaredMethods()) {
+				if (!m.getName().equals(methodName) || m.isSynthetic() || m.isBridge()) {
+					continue;
+				}
+				buf.append("\t");
+				appendModifiers(buf, m.getModifiers());
+				if (!appendTypeParameters(buf, m.getTypeParameters())
+						|| !appendType(buf, m.getGenericReturnType())) {
+					return null;
+				}
+				buf.append(" ");
+				buf.append(methodName);
+				buf.append("(");
+				Type[] paramTypes = m.getGenericParameterTypes();
+				for (int i = 0; i < paramTypes.length; i++) {
+					if (i > 0) {
+						buf.append(", ");
+					}
+					if (i == paramTypes.length - 1 && m.isVarArgs()) {
+						if (!appendType(buf, getComponentType(paramTypes[i]))) {
+							return null;
+						}
+						buf.append("...");
+					} else if (!appendType(buf, paramTypes[i])) {
+						return null;
+					}
+					buf.append(" p" + i);
+				}
+				buf.append(")");
+				if (!appendThrows(buf, m.getGenericExceptionTypes())) {
+					return null;
+				}
+				buf.append(" { throw new UnsupportedOperationException(); }\n");
+			}
+			
+			buf.append("}\n");
+			return buf.toString();
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (IOException e) {
+			return null;
+		} catch (LinkageError e) {
+			// Most likely some type used in a signature can't be loaded
+			return null;
+		} catch (RuntimeException e) {
+			// E.g., TypeNotPresentException, MalformedParameterizedTypeException
+			return null;
+		}
+	}
+
+	private static void appendModifiers(StringBuilder buf, int modifiers) {
+		if (Modifier.isPublic(modifiers)) {
+			buf.append("public ");
+		} else if (Modifier.isProtected(modifiers)) {
+			buf.append("protected ");
+		} else if (Modifier.isPrivate(modifiers)) {
+			buf.append("private ");
+		}
+		if (Modifier.isStatic(modifiers)) {
+			buf.append("static ");
+		}
+	}
+
+	private static boolean appendTypeParameters(StringBuilder buf, TypeVariable<?>[] typeParams) {
+		if (typeParams.length == 0) {
+			return true;
+		}
+		buf.append("<");
+		for (int i = 0; i < typeParams.length; i++) {
+			if (i > 0) {
+				buf.append(", ");
+			}
+			buf.append(typeParams[i].getName());
+			Type[] bounds = typeParams[i].getBounds();
+			if (bounds.length == 1 && bounds[0] == Object.class) {
+				continue;
+			}
+			for (int j = 0; j < bounds.length; j++) {
+				buf.append(j == 0 ? " extends " : " & ");
+				if (!appendType(buf, bounds[j])) {
+					return false;
+				}
+			}
+		}
+		buf.append("> ");
+		return true;
+	}
+
+	private static boolean appendThrows(StringBuilder buf, Type[] exceptionTypes) {
+		for (int i = 0; i < exceptionTypes.length; i++) {
+			buf.append(i == 0 ? " throws " : ", ");
+			if (!appendType(buf, exceptionTypes[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Append the source form of a type.
+	 * 
+	 * @return false if the type can't be named in the stub
+	 *         (e.g., a class nested in the submission)
+	 */
+	private static boolean appendType(StringBuilder buf, Type type) {
+		if (type instanceof Class) {
+			String name = ((Class<?>) type).getCanonicalName();
+			if (name == null || name.equals("Test") || name.startsWith("Test.")) {
+				return false;
+			}
+			buf.append(name);
+			return true;
+		} else if (type instanceof ParameterizedType) {
+			ParameterizedType pt = (ParameterizedType) type;
+			if (!appendType(buf, pt.getRawType())) {
+				return false;
+			}
+			buf.append("<");
+			Type[] args = pt.getActualTypeArguments();
+			for (int i = 0; i < args.length; i++) {
+				if (i > 0) {
+					buf.append(", ");
+				}
+				if (!appendType(buf, args[i])) {
+					return false;
+				}
+			}
+			buf.append(">");
+			return true;
+		} else if (type instanceof GenericArrayType) {
+			if (!appendType(buf, ((GenericArrayType) type).getGenericComponentType())) {
+				return false;
+			}
+			buf.append("[]");
+			return true;
+		} else if (type instanceof WildcardType) {
+			WildcardType wt = (WildcardType) type;
+			buf.append("?");
+			if (wt.getLowerBounds().length > 0) {
+				buf.append(" super ");
+				return appendType(buf, wt.getLowerBounds()[0]);
+			}
+			Type[] upper = wt.getUpperBounds();
+			if (upper.length > 0 && upper[0] != Object.class) {
+				buf.append(" extends ");
+				return appendType(buf, upper[0]);
+			}
+			return true;
+		} else if (type instanceof TypeVariable) {
+			buf.append(((TypeVariable<?>) type).getName());
+			return true;
+		}
+		return false;
+	}
+
+	private static Type getComponentType(Type arrayType) {
+		if (arrayType instanceof GenericArrayType) {
+			return ((GenericArrayType) arrayType).getGenericComponentType();
+		}
+		return ((Class<?>) arrayType).getComponentType();
+	}
+}
@@ -38,6 +38,7 @@ import org.cloudcoder.builder2.model.BuilderSubmission;
 import org.cloudcoder.builder2.model.IBuildStep;
 import org.cloudcoder.builder2.model.InternalBuilderException;
 import org.cloudcoder.builder2.model.LoadedClasses;
+import org.cloudcoder.builder2.process.TestExecutionScheduler;
 
 /**
  * Execute {@link ProblemType#JAVA_METHOD} tests and create a
@@ -82,6 +83,7 @@ public class ExecuteJavaMethodTestsBuildStep implements IBuildStep {
                                 "Took too long!  Check for infinite loops, or recursion without a proper base case");
                     }
                 });
+        pool.setScheduler(TestExecutionScheduler.getInstance(config));
 
         // run each task in a separate thread
         pool.run();
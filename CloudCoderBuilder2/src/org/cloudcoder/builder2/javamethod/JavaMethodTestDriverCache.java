@@ -0,0 +1,161 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.javamethod;
+
+import java.io.UnsupportedEncodingException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.cloudcoder.app.shared.model.ConvertBytesToHex;
+import org.cloudcoder.app.shared.model.ProblemType;
+import org.cloudcoder.app.shared.model.SHA1;
+import org.cloudcoder.builder2.model.Bytecode;
+import org.cloudcoder.builder2.util.SingletonHolder;
+
+/**
+ * Cache of compiled {@link ProblemType#JAVA_METHOD} test drivers.
+ * A test driver depends only on the problem's test cases and
+ * equality predicate, and on the signature of the tested method,
+ * so it only needs to be compiled once for all of the submissions
+ * that agree on those.  Entries are keyed by a SHA-1 hash of the
+ * test driver source code together with the source of the stub
+ * describing the tested method's signature (see {@link #computeKey(String, String)}).
+ * 
+ * The maximum number of cached test drivers is set by the
+ * <code>cloudcoder.builder2.javamethod.testDriverCacheSize</code>
+ * configuration property.  If it is 0, test drivers are
+ * compiled along with each submission.
+ * 
+ * @author David Hovemeyer
+ */
+public class JavaMethodTestDriverCache {
+	/** Default maximum number of cached test drivers. */
+	public static final int DEFAULT_MAX_SIZE = 500;
+	
+	private static final SingletonHolder<JavaMethodTestDriverCache, Properties> holder = new SingletonHolder<JavaMethodTestDriverCache, Properties>() {
+		@Override
+		protected JavaMethodTestDriverCache onCreate(Properties arg) {
+			return new JavaMethodTestDriverCache(arg);
+		}
+	};
+	
+	/**
+	 * Get the singleton instance.
+	 * 
+	 * @param config the Builder configuration properties
+	 * @return the singleton instance
+	 */
+	public static JavaMethodTestDriverCache getInstance(Properties config) {
+		return holder.get(config);
+	}
+	
+	/**
+	 * Compute the cache key for a test driver.  The key is a
+	 * 40-character hex string, so the (possibly large) sources
+	 * aren't retained by the cache.
+	 * 
+	 * @param testerCode the test driver source code
+	 * @param stubCode   the source of the stub describing the tested method
+	 * @return the cache key
+	 */
+	public static String computeKey(String testerCode, String stubCode) {
+		SHA1 sha1 = new SHA1();
+		// Prefix each source with its length so that different
+		// pairs of sources can't produce the same digested bytes
+		updateString(sha1, testerCode);
+		updateString(sha1, stubCode);
+		return new ConvertBytesToHex(sha1.digest()).convert();
+	}
+
+	private static void updateString(SHA1 sha1, String s) {
+		try {
+			byte[] bytes = s.getBytes("UTF-8");
+			sha1.update((bytes.length + ":").getBytes("UTF-8"));
+			sha1.update(bytes);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("Can't convert string to UTF-8 bytes?");
+		}
+	}
+	
+	private final int maxSize;
+	private final Map<String, Bytecode[]> cache;
+	private int numHits;
+	private int numMisses;
+	
+	private JavaMethodTestDriverCache(Properties config) {
+		this.maxSize = Integer.parseInt(config.getProperty(
+				"cloudcoder.builder2.javamethod.testDriverCacheSize", String.valueOf(DEFAULT_MAX_SIZE)));
+		this.cache = new LinkedHashMap<String, Bytecode[]>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Bytecode[]> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+	
+	/**
+	 * @return true if test drivers should be compiled separately and cached,
+	 *         false if they should be compiled along with each submission
+	 */
+	public boolean isEnabled() {
+		return maxSize > 0;
+	}
+	
+	/**
+	 * Look up a compiled test driver.
+	 * 
+	 * @param key the key computed by {@link #computeKey(String, String)}
+	 * @return the test driver's classes, or null if they aren't cached
+	 */
+	public synchronized Bytecode[] get(String key) {
+		Bytecode[] result = cache.get(key);
+		if (result != null) {
+			numHits++;
+		} else {
+			numMisses++;
+		}
+		return result;
+	}
+	
+	/**
+	 * Add a compiled test driver.
+	 * 
+	 * @param key      the key computed by {@link #computeKey(String, String)}
+	 * @param classes  the test driver's classes
+	 */
+	public synchronized void put(String key, Bytecode[] classes) {
+		cache.put(key, classes);
+	}
+	
+	/**
+	 * @return number of lookups that found a cached test driver
+	 */
+	public synchronized int getNumHits() {
+		return numHits;
+	}
+	
+	/**
+	 * @return number of lookups that did not find a cached test driver
+	 */
+	public synchronized int getNumMisses() {
+		return numMisses;
+	}
+}
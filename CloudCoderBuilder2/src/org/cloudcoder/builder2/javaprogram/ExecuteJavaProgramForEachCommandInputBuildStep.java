@@ -0,0 +1,162 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.javaprogram;
+
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudcoder.builder2.commandrunner.CommandExecutor;
+import org.cloudcoder.builder2.commandrunner.ExecuteCommandForEachCommandInputBuildStep;
+import org.cloudcoder.builder2.model.BuilderSubmission;
+import org.cloudcoder.builder2.model.Bytecode;
+import org.cloudcoder.builder2.model.BytecodeExecutable;
+import org.cloudcoder.builder2.model.Command;
+import org.cloudcoder.builder2.model.CommandExecutionPreferences;
+import org.cloudcoder.builder2.model.CommandInput;
+import org.cloudcoder.builder2.model.CommandResult;
+import org.cloudcoder.builder2.model.ExternalLibrary;
+import org.cloudcoder.builder2.model.IBuildStep;
+import org.cloudcoder.builder2.model.ProcessStatus;
+import org.cloudcoder.builder2.process.TestExecutionScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Run a Java program ({@link BytecodeExecutable}) for each {@link CommandInput}
+ * using the warm JVMs in the {@link JavaProgramWorkerPool}, and save
+ * the result of each execution as a {@link CommandResult}.
+ * The test cases are divided among (at most) as many workers as the pool keeps.
+ * If the pool is disabled, each program is run in a new JVM using
+ * {@link JavaProgramToCommandForEachCommandInputBuildStep} and
+ * {@link ExecuteCommandForEachCommandInputBuildStep}.  A test case is
+ * also run in a new JVM if a worker can't be started.
+ * 
+ * @author David Hovemeyer
+ */
+public class ExecuteJavaProgramForEachCommandInputBuildStep implements IBuildStep {
+	private static final Logger logger = LoggerFactory.getLogger(ExecuteJavaProgramForEachCommandInputBuildStep.class);
+	
+	/**
+	 * Default maximum number of bytes of stdout (and of stderr) a program may produce.
+	 */
+	public static final int DEFAULT_MAX_OUTPUT_BYTES = 1024*1024;
+	
+	private final IBuildStep toCommandStep = new JavaProgramToCommandForEachCommandInputBuildStep();
+	private final IBuildStep executeCommandStep = new ExecuteCommandForEachCommandInputBuildStep();
+
+	@Override
+	public void execute(final BuilderSubmission submission, final Properties config) {
+		// The Commands are needed if a worker can't be started,
+		// and creating them checks that the external library (if any) is available
+		toCommandStep.execute(submission, config);
+		final Command[] commandList = submission.requireArtifact(this.getClass(), Command[].class);
+		
+		final JavaProgramWorkerPool pool = JavaProgramWorkerPool.getInstance(config);
+		if (!pool.isEnabled()) {
+			executeCommandStep.execute(submission, config);
+			return;
+		}
+		
+		final Bytecode[] bytecodeList = submission.requireArtifact(this.getClass(), Bytecode[].class);
+		final BytecodeExecutable bytecodeExe = submission.requireArtifact(this.getClass(), BytecodeExecutable.class);
+		final CommandInput[] commandInputList = submission.requireArtifact(this.getClass(), CommandInput[].class);
+		ExternalLibrary extLib = submission.getArtifact(ExternalLibrary.class);
+		final String extLibFileName = (extLib != null) ? extLib.getFileName() : null;
+		final int maxOutputBytes = Integer.parseInt(config.getProperty(
+				"cloudcoder.builder2.javaprogram.maxOutputBytes", String.valueOf(DEFAULT_MAX_OUTPUT_BYTES)));
+		
+		final TestExecutionScheduler scheduler = TestExecutionScheduler.getInstance(config);
+		final CommandResult[] commandResultList = new CommandResult[commandInputList.length];
+		final AtomicInteger next = new AtomicInteger(0);
+		
+		// Each thread takes the next test case until there are none left
+		Runnable runner = new Runnable() {
+			@Override
+			public void run() {
+				int i;
+				while ((i = next.getAndIncrement()) < commandInputList.length) {
+					JavaProgramWorkerProcess worker;
+					try {
+						worker = pool.borrow();
+					} catch (IOException e) {
+						logger.warn("Could not get Java program worker ({}), running test case in a new JVM", e.getMessage());
+						runInNewJVM(i);
+						continue;
+					}
+					
+					// The time limit starts when the program starts,
+					// not while it waits for the scheduler
+					scheduler.acquire();
+					try {
+						runTestCase(i, worker);
+					} finally {
+						scheduler.release();
+					}
+				}
+			}
+			
+			private void runInNewJVM(int i) {
+				// The CommandExecutor waits for the scheduler itself
+				CommandExecutor executor = new CommandExecutor(commandList[i], commandInputList[i], config);
+				CommandExecutionPreferences prefs = submission.getArtifact(CommandExecutionPreferences.class);
+				if (prefs != null) {
+					executor.setPrefs(prefs);
+				}
+				executor.run();
+				commandResultList[i] = executor.getCommandResult();
+			}
+			
+			private void runTestCase(int i, JavaProgramWorkerProcess worker) {
+				try {
+					commandResultList[i] = worker.run(
+							bytecodeList,
+							bytecodeExe.getMainClass(),
+							extLibFileName,
+							commandInputList[i].getInput(),
+							CommandExecutor.DEFAULT_MAX_TIME_IN_SECONDS * 1000,
+							maxOutputBytes);
+				} finally {
+					pool.release(worker);
+				}
+			}
+		};
+		
+		int numThreads = Math.max(1, Math.min(pool.getNumWorkers(), commandInputList.length));
+		Thread[] threads = new Thread[numThreads];
+		for (int i = 0; i < numThreads; i++) {
+			threads[i] = new Thread(runner);
+			threads[i].start();
+		}
+		for (Thread t : threads) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				logger.error("Interrupted waiting for Java program runner thread");
+			}
+		}
+		
+		for (int i = 0; i < commandResultList.length; i++) {
+			if (commandResultList[i] == null) {
+				commandResultList[i] = new CommandResult(ProcessStatus.COULD_NOT_START, "Java program was not run");
+			}
+		}
+		submission.addArtifact(commandResultList);
+	}
+
+}
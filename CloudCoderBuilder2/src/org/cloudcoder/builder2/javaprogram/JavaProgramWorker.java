@@ -0,0 +1,388 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.javaprogram;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+import org.cloudcoder.builder2.javacompiler.ByteArrayAndExternalLibraryClassLoader;
+import org.cloudcoder.builder2.javacompiler.ByteArrayClassLoader;
+import org.cloudcoder.builder2.javasandbox.ThreadGroupSecurityManager;
+import org.cloudcoder.builder2.model.ProcessStatus;
+
+/**
+ * Main class of a warm JVM worker process used to run
+ * {@link org.cloudcoder.app.shared.model.ProblemType#JAVA_PROGRAM}
+ * submissions: see {@link JavaProgramWorkerPool}.
+ * The worker reads requests (class files, main class name, and stdin)
+ * from its standard input, runs the program's <code>main</code> method
+ * in a fresh class loader in a sandboxed thread, and writes the
+ * result to its standard output.  Anything else the worker or the
+ * program writes to the real stdout/stderr goes to stderr,
+ * which the builder discards.
+ * 
+ * After a run which violates a limit (timeout, output size, or
+ * memory), the worker exits, since the program's thread might
+ * still be running or the heap might be in a bad state.
+ * 
+ * @author David Hovemeyer
+ */
+public class JavaProgramWorker {
+	/** Written by the worker when it is ready to accept requests. */
+	static final int READY = 0xCC0DE000;
+	
+	/**
+	 * Exception thrown when the program attempts to write more than
+	 * the maximum amount of output.
+	 */
+	private static class OutputLimitExceededException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+	}
+	
+	/**
+	 * Thrown when the program calls <code>System.exit</code>.
+	 * This is an Error, so that a program which catches
+	 * <code>Exception</code> can't keep running after exiting.
+	 */
+	private static class ExitError extends Error {
+		private static final long serialVersionUID = 1L;
+		
+		final int status;
+		
+		ExitError(int status) {
+			super("System.exit(" + status + ")");
+			this.status = status;
+		}
+	}
+	
+	/**
+	 * Output stream which accepts a bounded number of bytes.
+	 */
+	private static class BoundedOutputStream extends OutputStream {
+		private final ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		private final int maxBytes;
+		private boolean exceeded;
+		
+		BoundedOutputStream(int maxBytes) {
+			this.maxBytes = maxBytes;
+		}
+		
+		@Override
+		public void write(int b) {
+			write(new byte[]{ (byte) b }, 0, 1);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+			int room = maxBytes - buf.size();
+			if (len > room) {
+				buf.write(b, off, Math.max(room, 0));
+				exceeded = true;
+				throw new OutputLimitExceededException();
+			}
+			buf.write(b, off, len);
+		}
+	}
+	
+	/**
+	 * Security manager for the worker: programs are restricted in the same way
+	 * as student code tested in the builder process, except that
+	 * <code>System.exit</code> ends the program with the given exit code.
+	 */
+	private static class WorkerSecurityManager extends ThreadGroupSecurityManager {
+		private final ThreadGroup programThreadGroup;
+		
+		WorkerSecurityManager(ThreadGroup programThreadGroup) {
+			super(programThreadGroup);
+			this.programThreadGroup = programThreadGroup;
+		}
+		
+		@Override
+		public void checkExit(int status) {
+			if (Thread.currentThread().getThreadGroup() == programThreadGroup) {
+				throw new ExitError(status);
+			}
+		}
+	}
+	
+	/**
+	 * A request to run a program.
+	 */
+	private static class Request {
+		Map<String, byte[]> classes = new HashMap<String, byte[]>();
+		String mainClass;
+		String externalLibraryFileName;
+		byte[] stdin;
+		int timeoutMillis;
+		int maxOutputBytes;
+	}
+	
+	/**
+	 * The result of running a program.
+	 */
+	private static class Result {
+		ProcessStatus status = ProcessStatus.EXITED;
+		String statusMessage = "";
+		int exitCode;
+		byte[] stdout;
+		byte[] stderr;
+		boolean exitWorker;
+	}
+	
+	private final ThreadGroup programThreadGroup;
+	
+	private JavaProgramWorker(ThreadGroup programThreadGroup) {
+		this.programThreadGroup = programThreadGroup;
+	}
+	
+	public static void main(String[] args) throws IOException {
+		// The real stdout is reserved for results
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+		System.setOut(System.err);
+		
+		warmUp();
+		
+		ThreadGroup programThreadGroup = new ThreadGroup("JavaProgram");
+		installSecurityManager(new WorkerSecurityManager(programThreadGroup));
+		JavaProgramWorker worker = new JavaProgramWorker(programThreadGroup);
+		
+		out.writeInt(READY);
+		out.flush();
+		
+		while (true) {
+			Request request;
+			try {
+				request = readRequest(in);
+			} catch (EOFException e) {
+				// The builder closed the pipe
+				break;
+			}
+			Result result = worker.run(request);
+			writeResult(out, result);
+			if (result.exitWorker) {
+				break;
+			}
+		}
+		
+		out.close();
+		System.exit(0);
+	}
+
+	@SuppressWarnings("removal")
+	private static void installSecurityManager(SecurityManager securityManager) {
+		System.setSecurityManager(securityManager);
+	}
+
+	/**
+	 * Exercise commonly-used library classes, so that the
+	 * initialization they require (some of which needs permissions
+	 * that programs don't have) is done before any program runs.
+	 */
+	private static void warmUp() {
+		Scanner scanner = new Scanner(new ByteArrayInputStream("1 2.5 abc\nline\n".getBytes()));
+		int i = scanner.nextInt();
+		double d = scanner.nextDouble();
+		String s = scanner.next() + scanner.nextLine();
+		List<Integer> list = new ArrayList<Integer>(Arrays.asList(3, 1, 2));
+		java.util.Collections.sort(list);
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format("%d %.2f %s %s%n", i, d, s, list));
+		sb.append(Integer.parseInt("42")).append(Double.parseDouble("1.5")).append(Math.sqrt(2.0));
+		sb.append(new java.util.Random().nextInt(10));
+		PrintStream ps = new PrintStream(new ByteArrayOutputStream());
+		ps.printf("%s%n", sb);
+		ps.println(sb.toString());
+		ps.flush();
+	}
+
+	private Result run(Request request) {
+		final BoundedOutputStream stdout = new BoundedOutputStream(request.maxOutputBytes);
+		final BoundedOutputStream stderr = new BoundedOutputStream(request.maxOutputBytes);
+		final PrintStream programOut = new PrintStream(stdout, true);
+		final PrintStream programErr = new PrintStream(stderr, true);
+		final Result result = new Result();
+		
+		final Method main;
+		try {
+			// The program can see the platform classes, but not the worker's
+			// (as when it was run with -classpath .)
+			ClassLoader platformLoader = ClassLoader.getSystemClassLoader().getParent();
+			ClassLoader loader = (request.externalLibraryFileName != null)
+					? new ByteArrayAndExternalLibraryClassLoader(request.classes, request.externalLibraryFileName, platformLoader)
+					: new ByteArrayClassLoader(request.classes, platformLoader);
+			main = loader.loadClass(request.mainClass).getMethod("main", String[].class);
+			if (!Modifier.isStatic(main.getModifiers())) {
+				throw new NoSuchMethodException("main is not static");
+			}
+		} catch (Throwable e) {
+			// Same message and exit code as the java launcher
+			programErr.println("Error: Main method not found in class " + request.mainClass);
+			result.exitCode = 1;
+			result.stdout = new byte[0];
+			result.stderr = stderr.buf.toByteArray();
+			return result;
+		}
+		
+		InputStream origIn = System.in;
+		PrintStream origOut = System.out;
+		PrintStream origErr = System.err;
+		System.setIn(new ByteArrayInputStream(request.stdin));
+		System.setOut(programOut);
+		System.setErr(programErr);
+		
+		Thread thread = new Thread(programThreadGroup, new Runnable() {
+			@Override
+			public void run() {
+				try {
+					main.invoke(null, (Object) new String[0]);
+				} catch (InvocationTargetException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof ExitError) {
+						result.exitCode = ((ExitError) cause).status;
+						return;
+					}
+					if (cause instanceof OutputLimitExceededException) {
+						return;
+					}
+					if (cause instanceof OutOfMemoryError) {
+						result.exitWorker = true;
+					}
+					// Report the exception the way the java launcher does
+					trimStackTrace(cause, main.getDeclaringClass().getName());
+					try {
+						programErr.print("Exception in thread \"main\" ");
+						cause.printStackTrace(programErr);
+					} catch (OutputLimitExceededException ex) {
+						// ignore
+					}
+					result.exitCode = 1;
+				} catch (Throwable e) {
+					programErr.println("Error: could not invoke main method: " + e);
+					result.exitCode = 1;
+				}
+			}
+		}, "main");
+		thread.start();
+		
+		boolean finished = false;
+		try {
+			thread.join(request.timeoutMillis);
+			finished = !thread.isAlive();
+		} catch (InterruptedException e) {
+			// Shouldn't happen
+		}
+		
+		if (!finished) {
+			stopThread(thread);
+			result.status = ProcessStatus.TIMED_OUT;
+			result.statusMessage = "Process timed out";
+			result.exitWorker = true;
+		} else if (stdout.exceeded || stderr.exceeded) {
+			result.status = ProcessStatus.FILE_SIZE_LIMIT_EXCEEDED;
+			result.statusMessage = "Process exceeded maximum output size";
+			result.exitWorker = true;
+		}
+		
+		System.setIn(origIn);
+		System.setOut(origOut);
+		System.setErr(origErr);
+		
+		result.stdout = stdout.buf.toByteArray();
+		result.stderr = stderr.buf.toByteArray();
+		return result;
+	}
+
+	@SuppressWarnings("deprecation")
+	private static void stopThread(Thread thread) {
+		// The worker will exit anyway, but stopping the thread
+		// keeps it from producing output in the meantime
+		thread.stop();
+	}
+
+	/**
+	 * Remove the stack frames below the program's main method
+	 * (reflection and worker frames).
+	 */
+	private static void trimStackTrace(Throwable t, String mainClass) {
+		StackTraceElement[] trace = t.getStackTrace();
+		for (int i = trace.length - 1; i >= 0; i--) {
+			if (trace[i].getClassName().equals(mainClass) && trace[i].getMethodName().equals("main")) {
+				t.setStackTrace(Arrays.copyOf(trace, i + 1));
+				return;
+			}
+		}
+	}
+	
+	private static Request readRequest(DataInputStream in) throws IOException {
+		Request request = new Request();
+		int numClasses = in.readInt();
+		for (int i = 0; i < numClasses; i++) {
+			String className = in.readUTF();
+			request.classes.put(className, readBytes(in));
+		}
+		request.mainClass = in.readUTF();
+		request.externalLibraryFileName = in.readBoolean() ? in.readUTF() : null;
+		request.stdin = readBytes(in);
+		request.timeoutMillis = in.readInt();
+		request.maxOutputBytes = in.readInt();
+		return request;
+	}
+	
+	private static void writeResult(DataOutputStream out, Result result) throws IOException {
+		out.writeUTF(result.status.name());
+		out.writeUTF(result.statusMessage);
+		out.writeInt(result.exitCode);
+		writeBytes(out, result.stdout);
+		writeBytes(out, result.stderr);
+		out.writeBoolean(result.exitWorker);
+		out.flush();
+	}
+	
+	static byte[] readBytes(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return bytes;
+	}
+	
+	static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+}
@@ -0,0 +1,318 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.javaprogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.Timer;
+
+import org.cloudcoder.builder2.util.SingletonHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of warm {@link JavaProgramWorker} JVMs used to run
+ * {@link org.cloudcoder.app.shared.model.ProblemType#JAVA_PROGRAM}
+ * submissions, so that JVM startup isn't paid for every test case.
+ * Workers are started ahead of time, and are replaced after they have
+ * run a configured number of programs or after a program
+ * violates a limit.
+ * 
+ * Configuration properties:
+ * <ul>
+ * <li><code>cloudcoder.builder2.javaprogram.workers</code>: number of
+ *     idle workers to keep (0 disables the pool, so that each test case
+ *     is run in a new JVM)</li>
+ * <li><code>cloudcoder.builder2.javaprogram.maxRunsPerWorker</code>:
+ *     number of programs a worker runs before it is replaced</li>
+ * <li><code>cloudcoder.builder2.javaprogram.workerHeapMb</code>:
+ *     maximum heap size of a worker</li>
+ * </ul>
+ * 
+ * @author David Hovemeyer
+ */
+public class JavaProgramWorkerPool {
+	private static final Logger logger = LoggerFactory.getLogger(JavaProgramWorkerPool.class);
+	
+	/** Default number of idle workers. */
+	public static final int DEFAULT_NUM_WORKERS = 4;
+	
+	/** Default number of programs run by a worker before it is replaced. */
+	public static final int DEFAULT_MAX_RUNS_PER_WORKER = 100;
+	
+	/** Default maximum heap size of a worker, in megabytes. */
+	public static final int DEFAULT_WORKER_HEAP_MB = 256;
+	
+	/**
+	 * How long after a worker fails to start {@link #borrow()} fails
+	 * immediately (rather than trying to start another worker).
+	 */
+	private static final long START_FAILURE_BACKOFF_MILLIS = 60000L;
+	
+	/**
+	 * Classes whose classpath entries the workers need:
+	 * the worker itself, and the libraries (daemon, slf4j, and log4j)
+	 * used by the worker and the sandbox.
+	 */
+	private static final String[] WORKER_CLASSPATH_CLASSES = {
+		JavaProgramWorker.class.getName(),
+		"org.cloudcoder.daemon.IOUtil",
+		"org.slf4j.LoggerFactory",
+		"org.slf4j.impl.StaticLoggerBinder",
+		"org.apache.log4j.Logger",
+	};
+	
+	/** Classpath resource with the workers' log4j configuration. */
+	private static final String WORKER_LOG4J_CONFIG = "org/cloudcoder/builder2/javaprogram/res/log4j-worker.properties";
+	
+	private static SingletonHolder<JavaProgramWorkerPool, Properties> holder = new SingletonHolder<JavaProgramWorkerPool, Properties>() {
+		protected JavaProgramWorkerPool onCreate(Properties arg) {
+			return new JavaProgramWorkerPool(arg);
+		}
+	};
+	
+	/**
+	 * Get the singleton instance.
+	 * 
+	 * @param config the builder configuration properties
+	 * @return the singleton instance
+	 */
+	public static JavaProgramWorkerPool getInstance(Properties config) {
+		return holder.get(config);
+	}
+	
+	/**
+	 * Check whether or not the singleton instance was created.
+	 * 
+	 * @return true if the singleton instance was created, false if not
+	 */
+	public static boolean isCreated() {
+		return holder.isCreated();
+	}
+	
+	private final int numWorkers;
+	private final int maxRunsPerWorker;
+	private final List<String> workerCmd;
+	private final File workerDir;
+	private final Timer watchdogTimer;
+	private final Object lock;
+	private final LinkedList<JavaProgramWorkerProcess> idle;
+	private int numStarting;
+	private long lastStartFailure;
+	private boolean shutdown;
+	
+	private JavaProgramWorkerPool(Properties config) {
+		this.numWorkers = Integer.parseInt(config.getProperty(
+				"cloudcoder.builder2.javaprogram.workers", String.valueOf(DEFAULT_NUM_WORKERS)));
+		this.maxRunsPerWorker = Integer.parseInt(config.getProperty(
+				"cloudcoder.builder2.javaprogram.maxRunsPerWorker", String.valueOf(DEFAULT_MAX_RUNS_PER_WORKER)));
+		int heapMb = Integer.parseInt(config.getProperty(
+				"cloudcoder.builder2.javaprogram.workerHeapMb", String.valueOf(DEFAULT_WORKER_HEAP_MB)));
+		
+		// Workers run the same JVM as the builder, but with only the
+		// classes they need, and with their own logging configuration
+		// (the builder's would have them write to the builder's log file)
+		workerCmd = new ArrayList<String>();
+		workerCmd.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		workerCmd.add("-Xmx" + heapMb + "m");
+		workerCmd.add("-XX:+UseSerialGC");
+		workerCmd.add("-Dlog4j.configuration=" + WORKER_LOG4J_CONFIG);
+		workerCmd.add("-classpath");
+		workerCmd.add(getWorkerClasspath());
+		workerCmd.add(JavaProgramWorker.class.getName());
+		
+		String tmpDir = config.getProperty("cloudcoder.builder2.tmpdir");
+		this.workerDir = (tmpDir != null) ? new File(tmpDir) : null;
+		
+		this.watchdogTimer = new Timer("JavaProgramWorkerWatchdog", true);
+		this.lock = new Object();
+		this.idle = new LinkedList<JavaProgramWorkerProcess>();
+		
+		if (numWorkers > 0) {
+			logger.info("Starting {} Java program worker(s)", numWorkers);
+			replenish();
+		}
+	}
+
+	/**
+	 * Get the worker's classpath: the (absolute) locations of the
+	 * worker's own classes and of the libraries they use.
+	 * When the builder runs from its single jar file, this is just
+	 * the jar file.
+	 * 
+	 * @return the worker classpath
+	 */
+	private static String getWorkerClasspath() {
+		Set<String> entries = new LinkedHashSet<String>();
+		for (String className : WORKER_CLASSPATH_CLASSES) {
+			try {
+				Class<?> cls = Class.forName(className, false, JavaProgramWorkerPool.class.getClassLoader());
+				CodeSource codeSource = cls.getProtectionDomain().getCodeSource();
+				if (codeSource != null && codeSource.getLocation() != null) {
+					entries.add(new File(codeSource.getLocation().toURI()).getAbsolutePath());
+				}
+			} catch (ClassNotFoundException e) {
+				logger.warn("Class {} needed by Java program workers is not available", className);
+			} catch (URISyntaxException e) {
+				logger.warn("Could not find location of class " + className, e);
+			}
+		}
+		
+		StringBuilder buf = new StringBuilder();
+		for (String entry : entries) {
+			if (buf.length() > 0) {
+				buf.append(File.pathSeparator);
+			}
+			buf.append(entry);
+		}
+		return buf.toString();
+	}
+	
+	/**
+	 * @return true if the pool is enabled, false if each test case
+	 *         should be run in a new JVM
+	 */
+	public boolean isEnabled() {
+		return numWorkers > 0;
+	}
+	
+	/**
+	 * @return the number of idle workers the pool keeps
+	 */
+	public int getNumWorkers() {
+		return numWorkers;
+	}
+	
+	/**
+	 * Get a worker.  An idle worker is used if there is one,
+	 * otherwise a new worker is started.  The worker must be returned
+	 * using {@link #release(JavaProgramWorkerProcess)}.
+	 * 
+	 * @return a worker
+	 * @throws IOException if a new worker could not be started, or if
+	 *                     a worker recently failed to start
+	 */
+	public JavaProgramWorkerProcess borrow() throws IOException {
+		synchronized (lock) {
+			if (!idle.isEmpty()) {
+				return idle.removeFirst();
+			}
+			if (lastStartFailure != 0L && System.currentTimeMillis() - lastStartFailure < START_FAILURE_BACKOFF_MILLIS) {
+				throw new IOException("Java program worker failed to start recently");
+			}
+		}
+		logger.debug("No idle Java program worker, starting one");
+		return startWorker();
+	}
+	
+	private JavaProgramWorkerProcess startWorker() throws IOException {
+		try {
+			return JavaProgramWorkerProcess.start(workerCmd, workerDir, watchdogTimer);
+		} catch (IOException e) {
+			synchronized (lock) {
+				lastStartFailure = System.currentTimeMillis();
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * Return a worker to the pool.  The worker is shut down
+	 * (and a replacement is started) if it can't be reused.
+	 * 
+	 * @param worker the worker
+	 */
+	public void release(JavaProgramWorkerProcess worker) {
+		boolean keep = worker.isUsable() && worker.getNumRuns() < maxRunsPerWorker;
+		synchronized (lock) {
+			if (keep && !shutdown && idle.size() < numWorkers) {
+				idle.add(worker);
+				return;
+			}
+		}
+		worker.destroy();
+		replenish();
+	}
+	
+	/**
+	 * Start workers in the background until there are enough idle workers.
+	 */
+	private void replenish() {
+		int numToStart;
+		synchronized (lock) {
+			if (shutdown) {
+				return;
+			}
+			numToStart = numWorkers - idle.size() - numStarting;
+			if (numToStart <= 0) {
+				return;
+			}
+			numStarting += numToStart;
+		}
+		
+		final int count = numToStart;
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < count; i++) {
+					JavaProgramWorkerProcess worker = null;
+					try {
+						worker = startWorker();
+					} catch (IOException e) {
+						logger.error("Could not start Java program worker", e);
+					}
+					synchronized (lock) {
+						numStarting--;
+						if (worker != null && !shutdown && idle.size() < numWorkers) {
+							idle.add(worker);
+							worker = null;
+						}
+					}
+					if (worker != null) {
+						worker.destroy();
+					}
+				}
+			}
+		}, "JavaProgramWorkerStarter");
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	/**
+	 * Shut down all idle workers.
+	 */
+	public void shutdown() {
+		List<JavaProgramWorkerProcess> workers;
+		synchronized (lock) {
+			shutdown = true;
+			workers = new ArrayList<JavaProgramWorkerProcess>(idle);
+			idle.clear();
+		}
+		for (JavaProgramWorkerProcess worker : workers) {
+			worker.destroy();
+		}
+	}
+}
@@ -0,0 +1,231 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.javaprogram;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import org.cloudcoder.builder2.model.Bytecode;
+import org.cloudcoder.builder2.model.CommandResult;
+import org.cloudcoder.builder2.model.ProcessStatus;
+import org.cloudcoder.daemon.IOUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A running {@link JavaProgramWorker} JVM, as seen from the builder.
+ * A worker runs one program at a time.
+ * 
+ * @author David Hovemeyer
+ */
+public class JavaProgramWorkerProcess {
+	private static final Logger logger = LoggerFactory.getLogger(JavaProgramWorkerProcess.class);
+	
+	/**
+	 * How long the builder waits (in addition to the program's own
+	 * time limit) before giving up on a worker and killing it.
+	 */
+	private static final long WATCHDOG_GRACE_MILLIS = 5000L;
+	
+	/**
+	 * Maximum time to wait for a newly started worker to become ready.
+	 */
+	private static final long STARTUP_TIMEOUT_MILLIS = 30000L;
+	
+	private final Process process;
+	private final DataInputStream in;
+	private final DataOutputStream out;
+	private final Timer watchdogTimer;
+	private int numRuns;
+	private boolean usable;
+	
+	private JavaProgramWorkerProcess(Process process, Timer watchdogTimer) {
+		this.process = process;
+		this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+		this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+		this.watchdogTimer = watchdogTimer;
+		this.usable = true;
+	}
+	
+	/**
+	 * Start a worker and wait until it is ready to run programs.
+	 * 
+	 * @param cmd            the command used to start the worker JVM
+	 * @param dir            the worker's working directory (null to inherit the builder's)
+	 * @param watchdogTimer  the {@link Timer} used to kill unresponsive workers
+	 * @return the worker
+	 * @throws IOException if the worker could not be started
+	 */
+	public static JavaProgramWorkerProcess start(List<String> cmd, File dir, Timer watchdogTimer) throws IOException {
+		ProcessBuilder pb = new ProcessBuilder(cmd);
+		if (dir != null) {
+			pb.directory(dir);
+		}
+		Process process = pb.start();
+		drainStderr(process.getErrorStream());
+		
+		JavaProgramWorkerProcess worker = new JavaProgramWorkerProcess(process, watchdogTimer);
+		TimerTask watchdog = worker.scheduleWatchdog(STARTUP_TIMEOUT_MILLIS);
+		try {
+			if (worker.in.readInt() != JavaProgramWorker.READY) {
+				throw new IOException("Unexpected handshake from Java program worker");
+			}
+		} catch (IOException e) {
+			worker.destroy();
+			throw e;
+		} finally {
+			watchdog.cancel();
+		}
+		return worker;
+	}
+
+	private static void drainStderr(final InputStream err) {
+		Thread t = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(err));
+				try {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						logger.debug("Java program worker: {}", line);
+					}
+				} catch (IOException e) {
+					// Worker exited
+				} finally {
+					IOUtil.closeQuietly(reader);
+				}
+			}
+		}, "JavaProgramWorkerStderr");
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	private TimerTask scheduleWatchdog(long delay) {
+		TimerTask task = new TimerTask() {
+			@Override
+			public void run() {
+				logger.warn("Java program worker is unresponsive, killing it");
+				process.destroy();
+			}
+		};
+		watchdogTimer.schedule(task, delay);
+		return task;
+	}
+	
+	/**
+	 * Run a program.  If the worker can't be used again afterwards,
+	 * {@link #isUsable()} will return false.
+	 * 
+	 * @param bytecodeList            the program's classes
+	 * @param mainClass               the name of the main class
+	 * @param externalLibraryFileName filename of the external library jar, or null if none
+	 * @param stdin                   the program's standard input
+	 * @param timeoutMillis           maximum time the program may run
+	 * @param maxOutputBytes          maximum number of bytes of stdout and of stderr
+	 * @return the {@link CommandResult}
+	 */
+	public CommandResult run(Bytecode[] bytecodeList, String mainClass, String externalLibraryFileName,
+			String stdin, int timeoutMillis, int maxOutputBytes) {
+		numRuns++;
+		TimerTask watchdog = scheduleWatchdog(timeoutMillis + WATCHDOG_GRACE_MILLIS);
+		try {
+			out.writeInt(bytecodeList.length);
+			for (Bytecode bytecode : bytecodeList) {
+				out.writeUTF(bytecode.getClassName());
+				JavaProgramWorker.writeBytes(out, bytecode.getCode());
+			}
+			out.writeUTF(mainClass);
+			out.writeBoolean(externalLibraryFileName != null);
+			if (externalLibraryFileName != null) {
+				out.writeUTF(externalLibraryFileName);
+			}
+			JavaProgramWorker.writeBytes(out, stdin.getBytes());
+			out.writeInt(timeoutMillis);
+			out.writeInt(maxOutputBytes);
+			out.flush();
+			
+			ProcessStatus status = ProcessStatus.valueOf(in.readUTF());
+			String statusMessage = in.readUTF();
+			int exitCode = in.readInt();
+			byte[] stdout = JavaProgramWorker.readBytes(in);
+			byte[] stderr = JavaProgramWorker.readBytes(in);
+			if (in.readBoolean()) {
+				usable = false;
+			}
+			
+			if (status == ProcessStatus.TIMED_OUT) {
+				return new CommandResult(status, statusMessage);
+			}
+			return new CommandResult(status, statusMessage, exitCode, toLines(stdout), toLines(stderr));
+		} catch (IOException e) {
+			// Most likely the worker was killed by the watchdog,
+			// or died because of a resource limit
+			usable = false;
+			logger.warn("Error communicating with Java program worker", e);
+			return new CommandResult(ProcessStatus.TIMED_OUT, "Java program worker did not respond");
+		} finally {
+			watchdog.cancel();
+		}
+	}
+
+	private static List<String> toLines(byte[] bytes) throws IOException {
+		// Same line splitting as the OutputCollector used for program processes
+		List<String> lines = new ArrayList<String>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes)));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			lines.add(line);
+		}
+		return lines;
+	}
+	
+	/**
+	 * @return number of programs this worker has run
+	 */
+	public int getNumRuns() {
+		return numRuns;
+	}
+	
+	/**
+	 * @return true if the worker can run another program
+	 */
+	public boolean isUsable() {
+		return usable;
+	}
+	
+	/**
+	 * Shut down the worker.
+	 */
+	public void destroy() {
+		usable = false;
+		IOUtil.closeQuietly(out);
+		process.destroy();
+	}
+}
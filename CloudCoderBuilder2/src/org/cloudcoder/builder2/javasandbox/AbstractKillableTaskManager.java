@@ -23,6 +23,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
+import org.cloudcoder.builder2.process.TestExecutionScheduler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,10 +53,11 @@ public abstract class AbstractKillableTaskManager<T>
     /** List of Outcomes; essentially placeholders objects where tasks will put their results */
     private List<Outcome<T>> results;
     private long maxRunTime;
-    private int numPauses = 5;
 
-    protected ThreadedPrintStreamMonitor stdOutMonitor;
-    protected ThreadedPrintStreamMonitor stdErrMonitor;
+    /** Maximum number of bytes of stdout and stderr buffered for each task */
+    private int maxOutputBytes = TaskOutput.DEFAULT_MAX_BYTES;
+    /** Admits tasks for execution (null if tasks start immediately) */
+    private TestExecutionScheduler scheduler;
     private Map<Integer,String> stdOutMap = new HashMap<Integer,String>();
     private Map<Integer,String> stdErrMap = new HashMap<Integer,String>();
     
@@ -63,6 +65,10 @@ public abstract class AbstractKillableTaskManager<T>
     private TimeoutHandler<T> timeoutHandler;
     /** All threads will be in a thread group of worker threads */
     public static final ThreadGroup WORKER_THREAD_GROUP = new ThreadGroup("WorkerThreads");
+    /** Maximum number of idle worker threads kept for reuse */
+    private static final int MAX_IDLE_WORKERS = 32;
+    /** Idle worker threads */
+    private static final LinkedList<WorkerThread> idleWorkers = new LinkedList<WorkerThread>();
     public int numThreads = 1;
     protected String threadNamePrefix;
 
@@ -107,6 +113,28 @@ public abstract class AbstractKillableTaskManager<T>
         this.threadNamePrefix = threadNamePrefix;
     }
 
+    /**
+     * Set the maximum number of bytes of standard output and of
+     * standard error buffered for each task.  Output beyond this limit
+     * is discarded.
+     * 
+     * @param maxOutputBytes maximum number of bytes of output per task
+     */
+    public void setMaxOutputBytes(int maxOutputBytes) {
+        this.maxOutputBytes = maxOutputBytes;
+    }
+
+    /**
+     * Set the {@link TestExecutionScheduler} which admits tasks
+     * for execution.  If no scheduler is set, all tasks start
+     * immediately.
+     * 
+     * @param scheduler the {@link TestExecutionScheduler}
+     */
+    public void setScheduler(TestExecutionScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
     public boolean isFinished(int x) {
         return results.get(x).finished;
     }
@@ -124,56 +152,80 @@ public abstract class AbstractKillableTaskManager<T>
     }
 
     public void run() {
-        // re-direct stdout/stderr to print stream monitors
-        // that will buffer the outputs for each thread
+        // re-direct stdout/stderr to the TaskOutputCapture streams,
+        // which will buffer the output of each task
         redirectStandardOutputStreams();
 
-        Thread[] pool=new Thread[tasks.size()];
+        // Hand each task to its own worker thread, along with
+        // the TaskOutput in which to buffer its output.
+        Run run=new Run(tasks.size(), scheduler);
+        WorkerThread[] pool=new WorkerThread[tasks.size()];
+        TaskOutput[] outputs=new TaskOutput[tasks.size()];
         for (int i=0; i<tasks.size(); i++) {
-            IsolatedTask<T> task=tasks.get(i);
-            pool[i]=new WorkerThread<T>(task, results.get(i));
-            pool[i].setDaemon(true);
-            pool[i].start();
+            outputs[i]=new TaskOutput(maxOutputBytes);
+            pool[i]=getIdleWorker();
+            pool[i].setName(threadNamePrefix+(numThreads++));
+            pool[i].assign(tasks.get(i), results.get(i), outputs[i], run, i);
         }
 
-        // now pause a couple of times
-        for (int i=1; i<=numPauses; i++) {
-            if (!pauseAndPoll(maxRunTime/numPauses, pool)) {
-                // we can stop pausing
-                break;
-            }
-        }
+        // Wait until every task has finished, killing any task that
+        // is still running when its time limit is reached.  Each task's
+        // time limit starts when the scheduler admits it.
+        boolean[] timedOut=run.awaitCompletion(pool, maxRunTime);
 
-        // Go through and kill any threads that haven't finished yet
-        // Also put the buffered output from stdout/stderr into the map
+        // Put the buffered output from stdout/stderr into the map
         for (int i=0; i<pool.length; i++) {
-            Thread t=pool[i];
-            if (t.isAlive()) {
-                //XXX Yes, I know that stop() is deprecated.  
-                //But this is a necessary use of stop!
-                t.stop();
-
-                //TODO Log that a thread is being stopped
-
-                // stop the monitors
-                stdOutMonitor.flush(t);
-                stdOutMonitor.close(t);
-
-                stdErrMonitor.flush(t);
-                stdErrMonitor.close(t);
-
+            WorkerThread t=pool[i];
+            if (timedOut[i]) {
                 // handle a timeout
                 results.get(i).result=timeoutHandler.handleTimeout();
             }
-            stdOutMap.put(i, stdOutMonitor.getBufferedOutput(t));
-            stdErrMap.put(i, stdErrMonitor.getBufferedOutput(t));
+            stdOutMap.put(i, outputs[i].getStdout());
+            stdErrMap.put(i, outputs[i].getStderr());
+            if (!t.isKilled()) {
+                releaseWorker(t);
+            }
         }
         // return the original stdout/stderr
         // how to do this varies between Java, Python/Jython
         // and Ruby/JRuby
         unredirectStandardOutputStreams();
     }
-    
+
+    /**
+     * Get an idle worker thread, starting a new one if necessary.
+     * 
+     * @return an idle worker thread
+     */
+    private static WorkerThread getIdleWorker() {
+        synchronized (idleWorkers) {
+            if (!idleWorkers.isEmpty()) {
+                return idleWorkers.removeFirst();
+            }
+        }
+        WorkerThread t=new WorkerThread();
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    /**
+     * Return a worker thread whose task finished normally
+     * to the set of idle workers.  If there are already
+     * enough idle workers, the thread is retired instead.
+     * 
+     * @param t the worker thread
+     */
+    private static void releaseWorker(WorkerThread t) {
+        synchronized (idleWorkers) {
+            if (idleWorkers.size() < MAX_IDLE_WORKERS) {
+                idleWorkers.addFirst(t);
+                return;
+            }
+        }
+        t.retire();
+    }
+
     /**
      * Redirect standard output and standard error.
      * 
@@ -191,31 +243,6 @@ public abstract class AbstractKillableTaskManager<T>
      */
     public abstract void redirectStandardOutputStreams();
 
-    /**
-     * Pause for a certain amount of time.  Return true if any
-     * of the threads in the given threadpool are still alive,
-     * and false if they are all finished.
-     * @param time
-     * @param pool
-     * @return
-     */
-    private boolean pauseAndPoll(long time, Thread[] pool) {
-        try {
-            Thread.sleep(time);
-            for (Thread t : pool) {
-                if (t.isAlive()) {
-                    return true;
-                }
-            }
-        } catch (InterruptedException e) {
-            // should never happen; to be safe, assume a thread may
-            // still be running.
-            return true;
-        }
-        // no threads are alive, so we can stop waiting
-        return false;
-    }
-
     /**
      * Install the security manager needed by {@link AbstractKillableTaskManager}.
      */
@@ -256,63 +283,259 @@ public abstract class AbstractKillableTaskManager<T>
         boolean finished;
         T result;
     }
+
+    /**
+     * Tracks when the tasks of one call to {@link AbstractKillableTaskManager#run()}
+     * start and finish.  Worker threads report task starts and completions,
+     * and the thread calling run() waits for them.
+     */
+    private static class Run {
+        private final TestExecutionScheduler scheduler;
+        private final long[] startTimes;
+        private final boolean[] done;
+        private int numDone;
+
+        Run(int numTasks, TestExecutionScheduler scheduler) {
+            this.scheduler=scheduler;
+            this.startTimes=new long[numTasks];
+            this.done=new boolean[numTasks];
+        }
+
+        /**
+         * Called by a worker thread to wait until its task may start.
+         * 
+         * @param index index of the task
+         */
+        void admit(int index) {
+            if (scheduler!=null) {
+                scheduler.acquire();
+            }
+            synchronized (this) {
+                startTimes[index]=System.currentTimeMillis();
+                notifyAll();
+            }
+        }
+
+        /**
+         * Called by a worker thread when its task finishes.
+         * 
+         * @param index index of the task
+         */
+        void finished(int index) {
+            if (scheduler!=null) {
+                scheduler.release();
+            }
+            synchronized (this) {
+                done[index]=true;
+                numDone++;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Wait for all tasks to finish, killing the worker thread of any task
+         * which runs for longer than the maximum run time.
+         * 
+         * @param pool       the worker threads executing the tasks
+         * @param maxRunTime maximum time to let any task run
+         * @return array indicating which tasks were killed
+         */
+        synchronized boolean[] awaitCompletion(WorkerThread[] pool, long maxRunTime) {
+            boolean[] timedOut=new boolean[pool.length];
+            while (numDone<pool.length) {
+                long now=System.currentTimeMillis();
+                long waitTime=0;
+                for (int i=0; i<pool.length; i++) {
+                    if (startTimes[i]==0 || done[i]) {
+                        continue;
+                    }
+                    long remaining=startTimes[i]+maxRunTime-now;
+                    if (remaining>0) {
+                        waitTime=(waitTime==0) ? remaining : Math.min(waitTime, remaining);
+                    } else if (pool[i].killIfNotFinished()) {
+                        timedOut[i]=true;
+                        done[i]=true;
+                        numDone++;
+                        if (scheduler!=null) {
+                            scheduler.release();
+                        }
+                    }
+                    // Otherwise, the task finished just now, and its
+                    // worker thread will report it
+                }
+                if (numDone<pool.length) {
+                    try {
+                        // Wait for a task to start or finish, or
+                        // for the next time limit to be reached
+                        wait(waitTime);
+                    } catch (InterruptedException e) {
+                        // should never happen; keep waiting
+                    }
+                }
+            }
+            return timedOut;
+        }
+    }
     /**
      * Worker thread takes a given Task, calls its execute() method
-     * to produce a result of type E, and puts the result into the 
-     * given outcome container.
+     * to produce a result, and puts the result into the 
+     * given outcome container.  When the task is finished,
+     * the thread waits to be assigned another task.
      * 
      * This thread is set up so that, assuming that the Task doesn't
      * access any shared resources, it is safe to use the stop() method
-     * in thread to halt this thread.
+     * in thread to halt this thread.  A thread that has been stopped
+     * is never reused.
      * 
      * @author jspacco
-     *
-     * @param <E>
      */
-    class WorkerThread<E> extends Thread
+    private static class WorkerThread extends Thread
     {
-        private IsolatedTask<E> task;
-        private Outcome<E> out;
+        private IsolatedTask<?> task;
+        private Outcome<?> out;
+        private TaskOutput output;
+        private Run run;
+        private int index;
+        private boolean finished;
+        private volatile boolean killed;
+        private boolean retired;
+
+        /**
+         * Create a worker thread.
+         */
+        public WorkerThread()
+        {
+            super(WORKER_THREAD_GROUP, "Worker");
+        }
 
         /**
-         * Create a thread that executes the given task and puts
-         * the result of the task into the given container.
+         * Assign a task to this thread.
          * 
          * @param task The task to execute
          * @param out The container in which to put the result of the task
+         * @param output The buffers for the task's stdout and stderr
+         * @param run The run to notify when the task starts and finishes
+         * @param index The index of the task in the run
          */
-        public WorkerThread(IsolatedTask<E> task, Outcome<E> out)
-        {
-            super(WORKER_THREAD_GROUP, threadNamePrefix+(numThreads++));
+        public synchronized void assign(IsolatedTask<?> task, Outcome<?> out, TaskOutput output, Run run, int index) {
             this.task=task;
             this.out=out;
+            this.output=output;
+            this.run=run;
+            this.index=index;
+            this.finished=false;
+            notifyAll();
         }
 
         /**
-         * Given a task and a container, execute the task and put
-         * its result in the container.  The entire run method catches
+         * Stop the thread if its current task has not finished.
+         * 
+         * @return true if the thread was stopped, false if the task finished
+         */
+        @SuppressWarnings("deprecation")
+        public synchronized boolean killIfNotFinished() {
+            if (finished) {
+                return false;
+            }
+            killed=true;
+            //XXX Yes, I know that stop() is deprecated.  
+            //But this is a necessary use of stop!
+            stop();
+            return true;
+        }
+
+        /**
+         * @return true if the thread was stopped
+         */
+        public boolean isKilled() {
+            return killed;
+        }
+
+        /**
+         * Let the thread exit once it is idle.
+         */
+        public synchronized void retire() {
+            retired=true;
+            notifyAll();
+        }
+
+        /**
+         * Execute assigned tasks, putting the result of each into its
+         * container.  The entire run method catches
          * Throwable, so that if another thread uses stop() to kill this
          * thread, nothing bad should happen.
          * 
-         * 
          * @see java.lang.Thread#run()
          */
         public void run() {
-            E o;
+            while (!killed) {
+                try {
+                    IsolatedTask<?> task;
+                    TaskOutput output;
+                    Run run;
+                    int index;
+                    synchronized (this) {
+                        while (this.task==null && !retired) {
+                            wait();
+                        }
+                        if (this.task==null) {
+                            return;
+                        }
+                        task=this.task;
+                        output=this.output;
+                        run=this.run;
+                        index=this.index;
+                    }
+                    run.admit(index);
+                    TaskOutputCapture.begin(output);
+                    try {
+                        execute(task);
+                    } finally {
+                        TaskOutputCapture.end();
+                    }
+                } catch (Throwable e) {
+                    // Most likely the thread was stopped:
+                    // the loop condition will see that it was killed
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void execute(IsolatedTask<?> task) {
+            Object o=null;
+            boolean succeeded=false;
             try {
                 o=task.execute();
-                out.result=o;
-                out.finished=true;
+                succeeded=true;
             } catch (NoClassDefFoundError e) {
                 logger.error("Killing test case thread due to class loading error", e);
             } catch (Throwable e) {
                 // Make sure that the thread dies very quietly
                 // "Attaching an exception-catching silencer to my thread-killing gun"
+                if (killed) {
+                    return;
+                }
                 logger.error("Killing test case thread for unknown reason", e);
-            } finally {
-                //System.err.println(System.getSecurityManager());
-                //System.out.println(System.getSecurityManager());
             }
+            Run run;
+            int index;
+            synchronized (this) {
+                if (killed) {
+                    return;
+                }
+                if (succeeded) {
+                    ((Outcome<Object>) out).result=o;
+                    out.finished=true;
+                }
+                finished=true;
+                run=this.run;
+                index=this.index;
+                this.task=null;
+                this.out=null;
+                this.output=null;
+                this.run=null;
+            }
+            run.finished(index);
         }
     }
 }
\ No newline at end of file
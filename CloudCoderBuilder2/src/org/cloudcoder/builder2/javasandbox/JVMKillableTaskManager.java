@@ -17,7 +17,6 @@
 
 package org.cloudcoder.builder2.javasandbox;
 
-import java.io.PrintStream;
 import java.util.List;
 
 
@@ -42,9 +41,6 @@ import java.util.List;
  */
 public class JVMKillableTaskManager<T> extends AbstractKillableTaskManager<T>
 {
-    private final PrintStream originalStdOut=System.out;
-    private final PrintStream originalStdErr=System.err;
-    
     public JVMKillableTaskManager(List<IsolatedTask<T>> tasks, 
         long maxRunTime, 
         TimeoutHandler<T> timeoutHandler)
@@ -53,15 +49,13 @@ public class JVMKillableTaskManager<T> extends AbstractKillableTaskManager<T>
     }
     
     public void redirectStandardOutputStreams() {
-        stdOutMonitor=new ThreadedPrintStreamMonitor(System.out);
-        stdErrMonitor=new ThreadedPrintStreamMonitor();
-        System.setOut(stdOutMonitor);
-        System.setErr(stdErrMonitor);
+        TaskOutputCapture.installAsSystemStreams();
     }
     
     @Override
     public void unredirectStandardOutputStreams() {
-        System.setOut(originalStdOut);
-        System.setErr(originalStdErr);
+        // The capture streams stay installed, since other builder threads
+        // may be running tasks: output written by threads that aren't
+        // running a task goes to the original System.out and System.err
     }
 }
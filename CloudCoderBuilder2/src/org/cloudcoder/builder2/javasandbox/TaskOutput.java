@@ -0,0 +1,141 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.javasandbox;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Buffers for the standard output and standard error written by a single
+ * {@link IsolatedTask}.  While the task executes, {@link TaskOutputCapture}
+ * sends output written by the thread executing the task to these buffers.
+ * Each buffer holds at most a fixed number of bytes: further output
+ * is discarded, and a truncation marker is appended.
+ * 
+ * Only the thread executing the task writes to the buffers, so there is
+ * never any contention for the locks used to make the buffered output
+ * visible to the thread that collects it.
+ * 
+ * @author David Hovemeyer
+ */
+public class TaskOutput {
+    /** Default maximum number of bytes buffered for each of stdout and stderr. */
+    public static final int DEFAULT_MAX_BYTES = 64 * 1024;
+    
+    /** Appended to output that exceeded the maximum number of bytes. */
+    public static final String TRUNCATION_MARKER = "\n[output truncated]\n";
+    
+    /**
+     * A bounded buffer.
+     */
+    private static class Buffer extends OutputStream {
+        private final ByteArrayOutputStream buf;
+        private final int maxBytes;
+        private boolean truncated;
+        
+        Buffer(int maxBytes) {
+            this.buf = new ByteArrayOutputStream(Math.min(maxBytes, 256));
+            this.maxBytes = maxBytes;
+        }
+        
+        @Override
+        public synchronized void write(int b) {
+            if (buf.size() < maxBytes) {
+                buf.write(b);
+            } else {
+                truncated = true;
+            }
+        }
+        
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            int n = Math.min(len, maxBytes - buf.size());
+            if (n > 0) {
+                buf.write(b, off, n);
+            }
+            if (n < len) {
+                truncated = true;
+            }
+        }
+        
+        synchronized boolean isTruncated() {
+            return truncated;
+        }
+        
+        @Override
+        public synchronized String toString() {
+            String s = buf.toString();
+            return truncated ? s + TRUNCATION_MARKER : s;
+        }
+    }
+    
+    private final Buffer stdoutBuf;
+    private final Buffer stderrBuf;
+    private final PrintStream stdout;
+    private final PrintStream stderr;
+    
+    /**
+     * Constructor.
+     * 
+     * @param maxBytes maximum number of bytes to buffer for each of stdout and stderr
+     */
+    public TaskOutput(int maxBytes) {
+        this.stdoutBuf = new Buffer(maxBytes);
+        this.stderrBuf = new Buffer(maxBytes);
+        this.stdout = new PrintStream(stdoutBuf);
+        this.stderr = new PrintStream(stderrBuf);
+    }
+    
+    /**
+     * @return the stream to which the task's standard output is written
+     */
+    PrintStream getStdoutStream() {
+        return stdout;
+    }
+    
+    /**
+     * @return the stream to which the task's standard error is written
+     */
+    PrintStream getStderrStream() {
+        return stderr;
+    }
+    
+    /**
+     * @return the buffered standard output
+     */
+    public String getStdout() {
+        stdout.flush();
+        return stdoutBuf.toString();
+    }
+    
+    /**
+     * @return the buffered standard error
+     */
+    public String getStderr() {
+        stderr.flush();
+        return stderrBuf.toString();
+    }
+    
+    /**
+     * @return true if either standard output or standard error was truncated
+     */
+    public boolean isTruncated() {
+        return stdoutBuf.isTruncated() || stderrBuf.isTruncated();
+    }
+}
@@ -17,74 +17,84 @@
 
 package org.cloudcoder.builder2.javasandbox;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
 
 /**
- * PrintStream that captures and buffers all output for however many
- * different threads may be printing to the given stream.
+ * PrintStream that sends output written by a thread executing an
+ * {@link IsolatedTask} to that task's {@link TaskOutput}.
+ * Output written by any other thread is sent to the original stream.
  * 
- * Common case is to pass an instance of this stream to System.setOut
- * right before starting a bunch of threads that print to System.out.
+ * There is one instance for standard output and one for standard error:
+ * each is installed once (as <code>System.out</code> or <code>System.err</code>,
+ * or as the output stream of a Jython interpreter or JRuby container)
+ * and is shared by all test threads, including those working on different
+ * submissions.  Because the {@link TaskOutput} is found using a
+ * thread-local variable, no shared data structure is accessed
+ * (and no shared lock is acquired) when output is written.
  * 
  * @author jspacco
  *
  */
-public class ThreadedPrintStreamMonitor extends PrintStream
+public class TaskOutputCapture extends PrintStream
 {
-    /** Maps stdout and stderr for each thread */
-    private Map<String, PrintStream> printStreamMap=new HashMap<String, PrintStream>();
-    private Map<String, ByteArrayOutputStream> baosMap=
-        new HashMap<String, ByteArrayOutputStream>();
-
-    public ThreadedPrintStreamMonitor(PrintStream stream) {
-        // XXX Is this a reasonable constructor?
-        // I've intercepted just about every method call,
-        // so nothing should actually be sent to super.
-        // The other option was to have no params and do a
-        // superconstructor call with null, but in that case calls
-        // that leak up to super will crash.  This way we'll just
-        // get random method calls on whatever stream (probably stdout and stderr)
-        // the constructor is called on.
-        super(stream);
-    }
+    /** Thread-local {@link TaskOutput} of the task executing in each thread. */
+    private static final ThreadLocal<TaskOutput> currentTaskOutput = new ThreadLocal<TaskOutput>();
+    
+    /** Captures standard output. */
+    public static final TaskOutputCapture STDOUT = new TaskOutputCapture(System.out, false);
+    
+    /** Captures standard error. */
+    public static final TaskOutputCapture STDERR = new TaskOutputCapture(System.err, true);
     
-    public ThreadedPrintStreamMonitor() {
-        super(new ByteArrayOutputStream());
+    /**
+     * Start capturing output written by the current thread.
+     * 
+     * @param taskOutput the {@link TaskOutput} in which to buffer the output
+     */
+    public static void begin(TaskOutput taskOutput) {
+        currentTaskOutput.set(taskOutput);
     }
     
-    private PrintStream getPrintStream() {
-        return getPrintStream(Thread.currentThread());
+    /**
+     * Stop capturing output written by the current thread.
+     */
+    public static void end() {
+        currentTaskOutput.remove();
     }
     
-    private PrintStream getPrintStream(Thread t) {
-        String name=t.getName();
-        if (!baosMap.containsKey(name)) {
-            baosMap.put(name, new ByteArrayOutputStream());
+    /**
+     * Make {@link #STDOUT} and {@link #STDERR} the JVM's
+     * <code>System.out</code> and <code>System.err</code> streams,
+     * if they aren't already.
+     */
+    public static synchronized void installAsSystemStreams() {
+        if (System.out != STDOUT) {
+            System.setOut(STDOUT);
         }
-        if (!printStreamMap.containsKey(name)) {
-            printStreamMap.put(name, new PrintStream(baosMap.get(name)));
+        if (System.err != STDERR) {
+            System.setErr(STDERR);
         }
-        return printStreamMap.get(name);
     }
     
-    /**
-     * Given a thread, look up the backing ByteArrayOutputStream
-     * that was used to buffer that thread's output, and return
-     * it as a String.
-     * 
-     * @param t Thread
-     * @return String containing that thread's buffered printing output.
-     */
-    public String getBufferedOutput(Thread t) {
-        PrintStream ps=getPrintStream(t);
-        ps.flush();
-        ps.close();
-        return baosMap.get(t.getName()).toString();
+    private final PrintStream original;
+    private final boolean stderr;
+
+    private TaskOutputCapture(PrintStream original, boolean stderr) {
+        // All methods are intercepted, so nothing
+        // should actually be sent to super
+        super(original);
+        this.original = original;
+        this.stderr = stderr;
+    }
+    
+    private PrintStream getPrintStream() {
+        TaskOutput taskOutput = currentTaskOutput.get();
+        if (taskOutput == null) {
+            return original;
+        }
+        return stderr ? taskOutput.getStderrStream() : taskOutput.getStdoutStream();
     }
     
     /* (non-Javadoc)
@@ -284,28 +294,13 @@ public class ThreadedPrintStreamMonitor extends PrintStream
     public void flush() {
         getPrintStream().flush();
     }
-    public void flush(Thread t) {
-        getPrintStream(t).flush();
-    }
-    public void flushAll() {
-        for (PrintStream ps : printStreamMap.values()) {
-            ps.flush();
-        }
-    }
-    public void closeAll() {
-        for (PrintStream ps : printStreamMap.values()) {
-            ps.close();
-        }
-    }
     /* (non-Javadoc)
      * @see java.io.PrintStream#close()
      */
     @Override
     public void close() {
-        getPrintStream().close();
-    }
-    public void close(Thread t) {
-        getPrintStream(t).close();
+        // The underlying streams are never closed
+        getPrintStream().flush();
     }
     /* (non-Javadoc)
      * @see java.io.PrintStream#format(java.lang.String, java.lang.Object[])
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.charset.Charset;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.IOUtils;
 
@@ -32,7 +33,7 @@ import org.apache.commons.io.IOUtils;
 public class InputSender {
 	private OutputStream outputStream;
 	private String stdin;
-	private Thread writerThread;
+	private Future<?> writerTask;
 	private OutputStreamWriter writer;
 
 	/**
@@ -47,13 +48,13 @@ public class InputSender {
 	}
 
 	/**
-	 * Start a thread to send text to the stdin of the process.
+	 * Use a pooled thread to send text to the stdin of the process.
 	 */
 	public void start() {
 		Charset utf8 = Charset.forName("UTF-8");
 		this.writer = new OutputStreamWriter(outputStream, utf8);
 		
-		this.writerThread = new Thread(new Runnable() {
+		this.writerTask = ProcessSupervisor.getInstance().execute(new Runnable() {
 			/* (non-Javadoc)
 			 * @see java.lang.Runnable#run()
 			 */
@@ -72,17 +73,15 @@ public class InputSender {
 				}
 			}
 		});
-		
-		this.writerThread.start();
 	}
 
 	/**
-	 * Wait for the InputSender's thread to complete.
+	 * Wait for the InputSender's task to complete.
 	 * 
 	 * @throws InterruptedException 
 	 */
 	public void join() throws InterruptedException {
-		writerThread.join();
+		ProcessSupervisor.await(writerTask);
 	}
 
 	/**
@@ -90,11 +89,11 @@ public class InputSender {
 	 */
 	public void interrupt() {
 		// Try to force writer to close (if it hasn't closed already).
-		// This should ensure that the writer thread will exit.
+		// This should ensure that the writer task will finish.
 		IOUtils.closeQuietly(writer);
 		
-		// And, just in case the thread is blocked on some interruptable
+		// And, just in case the task is blocked on some interruptable
 		// action (sleep, wait, etc.), interrupt it.
-		writerThread.interrupt();
+		writerTask.cancel(true);
 	}
 }
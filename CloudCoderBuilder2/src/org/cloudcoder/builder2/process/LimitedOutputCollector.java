@@ -24,6 +24,7 @@ import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.IOUtils;
 
@@ -51,7 +52,7 @@ public class LimitedOutputCollector implements IOutputCollector {
 	
 	private InputStream in;
 	private Reader reader;
-	private Thread thread;
+	private Future<?> task;
 	private List<String> collectedLines;
 	
 	/**
@@ -143,8 +144,7 @@ public class LimitedOutputCollector implements IOutputCollector {
 				}
 			}
 		};
-		thread = new Thread(runnable);
-		thread.start();
+		task = ProcessSupervisor.getInstance().execute(runnable);
 	}
 
 	/* (non-Javadoc)
@@ -152,7 +152,7 @@ public class LimitedOutputCollector implements IOutputCollector {
 	 */
 	@Override
 	public void interrupt() {
-		thread.interrupt();
+		task.cancel(true);
 	}
 
 	/* (non-Javadoc)
@@ -160,7 +160,7 @@ public class LimitedOutputCollector implements IOutputCollector {
 	 */
 	@Override
 	public void join() throws InterruptedException {
-		thread.join();
+		ProcessSupervisor.await(task);
 	}
 
 	/* (non-Javadoc)
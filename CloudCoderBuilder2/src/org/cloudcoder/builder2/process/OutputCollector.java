@@ -24,17 +24,18 @@ import java.io.InputStreamReader;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.IOUtils;
 
 /**
- * Start a thread to collect all of the data from a given
+ * Use a pooled thread to collect all of the data from a given
  * input stream (which could be the output of a process.)
  * The data is stored as a List of Strings, one per line of output.
  */
 public class OutputCollector implements IOutputCollector {
 	private InputStream inputStream;
-	private Thread readerThread;
+	private Future<?> reader;
 	private List<String> collectedOutput;
 	
 	/* (non-Javadoc)
@@ -42,7 +43,7 @@ public class OutputCollector implements IOutputCollector {
 	 */
 	@Override
 	public void interrupt() {
-	    readerThread.interrupt();
+	    reader.cancel(true);
 	}
 
 	public OutputCollector(InputStream inputStream) {
@@ -55,7 +56,7 @@ public class OutputCollector implements IOutputCollector {
 	 */
 	@Override
 	public void start() {
-		readerThread = new Thread(new Runnable() {
+		reader = ProcessSupervisor.getInstance().execute(new Runnable() {
 			@Override
 			public void run() {
 				BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
@@ -74,8 +75,6 @@ public class OutputCollector implements IOutputCollector {
 				}
 			}
 		});
-
-		readerThread.start();
 	}
 
 	/* (non-Javadoc)
@@ -91,7 +90,7 @@ public class OutputCollector implements IOutputCollector {
 	 */
 	@Override
 	public void join() throws InterruptedException {
-		readerThread.join();
+		ProcessSupervisor.await(reader);
 	}
 
 }
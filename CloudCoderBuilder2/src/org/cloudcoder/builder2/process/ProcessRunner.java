@@ -30,6 +30,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ScheduledFuture;
 
 import org.apache.commons.io.IOUtils;
 import org.cloudcoder.builder2.model.ProcessStatus;
@@ -59,7 +60,8 @@ public class ProcessRunner {
 	private ProcessStatus status;
 	
 	private volatile Process process;
-	private Thread exitValueMonitor;
+	private long timeLimitMillis;
+	private volatile boolean timedOut;
 	private String stdin;
 	private IOutputCollector stdoutCollector;
 	private IOutputCollector stderrCollector;
@@ -135,6 +137,17 @@ public class ProcessRunner {
 	    return envp;
 	}
 	
+	/**
+	 * Set a limit on the wall clock time the process may run.
+	 * If the limit is reached, the process is destroyed,
+	 * and its status will be {@link ProcessStatus#TIMED_OUT}.
+	 * 
+	 * @param timeLimitMillis the time limit in milliseconds (0 for no limit)
+	 */
+	public void setTimeLimit(long timeLimitMillis) {
+		this.timeLimitMillis = timeLimitMillis;
+	}
+	
 	public String getStatusMessage() {
 		return statusMessage;
 	}
@@ -160,6 +173,19 @@ public class ProcessRunner {
 					getEnvp("CC_PROC_STAT_FILE=" + exitStatusFile.getPath()),
 					workingDir);
 
+			// Enforce the time limit (if any)
+			ScheduledFuture<?> deadline = null;
+			if (timeLimitMillis > 0) {
+				deadline = ProcessSupervisor.getInstance().scheduleDeadline(new Runnable() {
+					@Override
+					public void run() {
+						logger.info("Killing process");
+						timedOut = true;
+						process.destroy();
+					}
+				}, timeLimitMillis);
+			}
+
 			// Collect process output
 			stdoutCollector = createOutputCollector(process.getInputStream());
 			stderrCollector = createOutputCollector(process.getErrorStream());
@@ -173,8 +199,28 @@ public class ProcessRunner {
 				stdinSender.start();
 			}
 
-			// wait for process and output collector threads to finish
+			// wait for process to exit
 			exitCode = process.waitFor();
+			if (deadline != null) {
+				deadline.cancel(false);
+			}
+			
+			if (timedOut) {
+				// Don't wait for the output collectors: if the process
+				// started children of its own, they may still have the
+				// output pipes open.
+				stdoutCollector.interrupt();
+				stderrCollector.interrupt();
+				if (stdinSender != null) {
+					stdinSender.interrupt();
+				}
+				exitStatusFile.delete();
+				statusMessage = "Process timed out";
+				status = ProcessStatus.TIMED_OUT;
+				return true;
+			}
+			
+			// wait for output collectors to finish
 			stdoutCollector.join();
 			stderrCollector.join();
 			if (stdinSender != null) {
@@ -290,15 +336,6 @@ public class ProcessRunner {
 		}
 	}
 
-	public void runAsynchronous(final File workingDir, final String... command) {
-	    exitValueMonitor=new Thread() {
-	        public void run() {
-	            runSynchronous(workingDir, command);
-	        }
-	    };
-	    exitValueMonitor.start();
-	}
-	
 	/**
 	 * Find out whether or not the exit status of this process is known.
 	 * Because in Java it's not directly possible to find out things about
@@ -394,55 +431,4 @@ public class ProcessRunner {
 			return stderrCollector.getCollectedOutput();
 		}
 	}
-
-	/**
-	 * Check whether or not the process is still running.
-	 * 
-	 * @return true if the process is still running, false if it has completed
-	 */
-    public boolean isRunning() {
-    	Process p = process;
-    	
-    	if (p == null) {
-    		// Process hasn't started yet.
-    		// Count that as "running".
-    		return true;
-    	}
-    	
-        try {
-            p.exitValue();
-            return false;
-        } catch (IllegalThreadStateException e){
-            return true;
-        }
-    }
-
-	/**
-	 * Forcibly kill the process.
-	 */
-	public void killProcess() {
-		logger.info("Killing process");
-		process.destroy();
-		
-		// Important: wait for the process, otherwise we will probably create
-		// a zombie process.
-		boolean exited = false;
-		do {
-			try {
-				process.waitFor();
-				process.exitValue();
-				exited = true;
-			} catch (InterruptedException e) {
-				logger.warn("Interrupted waiting for destroyed process to exit");
-			} catch (IllegalThreadStateException e) {
-				logger.warn("Trouble getting exit status of destroyed process", e);
-			}
-		} while (!exited);
-		
-		stdoutCollector.interrupt();
-		stderrCollector.interrupt();
-		if (stdinSender != null) {
-			stdinSender.interrupt();
-		}
-	}
 }
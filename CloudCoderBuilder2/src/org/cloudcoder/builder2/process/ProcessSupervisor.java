@@ -0,0 +1,129 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.process;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared supervision for all child processes started by the Builder.
+ * A single reaper thread enforces the deadlines of running processes,
+ * and a pool of reusable threads does the blocking work of pumping
+ * process stdin/stdout/stderr and waiting for processes to exit.
+ * (Java offers no way to do non-blocking I/O on process pipes,
+ * so pumping output still takes one blocking read per stream.)
+ * 
+ * @author David Hovemeyer
+ */
+public class ProcessSupervisor {
+	private static final ProcessSupervisor instance = new ProcessSupervisor();
+	
+	/**
+	 * Get the singleton instance.
+	 * 
+	 * @return the singleton instance
+	 */
+	public static ProcessSupervisor getInstance() {
+		return instance;
+	}
+	
+	private final ExecutorService workerPool;
+	private final ScheduledExecutorService reaper;
+	
+	private ProcessSupervisor() {
+		this.workerPool = Executors.newCachedThreadPool(new DaemonThreadFactory("ProcessWorker-"));
+		this.reaper = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("ProcessReaper-"));
+	}
+	
+	/**
+	 * Execute a task using a pooled thread.
+	 * 
+	 * @param task the task
+	 * @return a Future which can be used to wait for or cancel the task
+	 */
+	public Future<?> execute(Runnable task) {
+		return workerPool.submit(task);
+	}
+	
+	/**
+	 * Execute a task using a pooled thread.
+	 * 
+	 * @param task the task
+	 * @return a Future which can be used to get the task's result
+	 */
+	public<E> Future<E> execute(Callable<E> task) {
+		return workerPool.submit(task);
+	}
+	
+	/**
+	 * Schedule an action to be taken when a process's deadline
+	 * is reached.  The action is executed by the reaper thread,
+	 * so it should be quick (e.g., destroying the process),
+	 * not wait for the process to exit.
+	 * 
+	 * @param onDeadline   the action to take when the deadline is reached
+	 * @param delayMillis  number of milliseconds until the deadline
+	 * @return a ScheduledFuture which should be cancelled if the
+	 *         process exits before its deadline
+	 */
+	public ScheduledFuture<?> scheduleDeadline(Runnable onDeadline, long delayMillis) {
+		return reaper.schedule(onDeadline, delayMillis, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * Wait for a task started with {@link #execute(Runnable)} to finish.
+	 * A task that was cancelled or that failed is considered finished.
+	 * 
+	 * @param task the task's Future
+	 * @throws InterruptedException
+	 */
+	public static void await(Future<?> task) throws InterruptedException {
+		try {
+			task.get();
+		} catch (ExecutionException e) {
+			// the task is finished
+		} catch (CancellationException e) {
+			// the task is finished
+		}
+	}
+	
+	private static class DaemonThreadFactory implements ThreadFactory {
+		private final String namePrefix;
+		private final AtomicInteger count = new AtomicInteger();
+		
+		public DaemonThreadFactory(String namePrefix) {
+			this.namePrefix = namePrefix;
+		}
+		
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, namePrefix + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
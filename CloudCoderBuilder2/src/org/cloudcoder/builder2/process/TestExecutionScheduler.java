@@ -0,0 +1,258 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.process;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.cloudcoder.builder2.util.SingletonHolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Builder-wide limit on the number of test executions (test processes,
+ * Java program runs, and sandboxed test case threads) that run at the
+ * same time.  Test executions beyond the limit wait, in first-come
+ * first-served order, until a running execution finishes.  Because
+ * test executions are CPU-bound, running many more of them than there
+ * are CPUs only makes each one slower, which can cause time limits
+ * to be exceeded by correct programs.
+ * 
+ * Callers must start the time limit of a test execution only once
+ * it has been admitted by {@link #acquire()}.
+ * 
+ * The limit is set by the <code>cloudcoder.builder2.maxConcurrentTests</code>
+ * configuration property: if it is not set, the number of available CPUs
+ * (taking any cgroup CPU quota into account) is used.
+ * A value of 0 disables the limit.
+ * 
+ * @author David Hovemeyer
+ */
+public class TestExecutionScheduler {
+	private static final Logger logger = LoggerFactory.getLogger(TestExecutionScheduler.class);
+	
+	/** Waits longer than this (in milliseconds) are logged. */
+	private static final long LONG_WAIT_MILLIS = 1000L;
+	
+	private static final SingletonHolder<TestExecutionScheduler, Properties> holder = new SingletonHolder<TestExecutionScheduler, Properties>() {
+		@Override
+		protected TestExecutionScheduler onCreate(Properties arg) {
+			return new TestExecutionScheduler(arg);
+		}
+	};
+	
+	/**
+	 * Get the singleton instance.
+	 * 
+	 * @param config the Builder configuration properties
+	 * @return the singleton instance
+	 */
+	public static TestExecutionScheduler getInstance(Properties config) {
+		return holder.get(config);
+	}
+	
+	private final int maxConcurrent;
+	private final Semaphore permits;
+	private final AtomicInteger queueDepth;
+	private final AtomicInteger numRunning;
+	private final AtomicLong numAdmitted;
+	private final AtomicLong totalWaitMillis;
+	private final AtomicLong maxWaitMillis;
+	
+	/**
+	 * Constructor.  Normally, the singleton instance
+	 * (see {@link #getInstance(Properties)}) should be used.
+	 * 
+	 * @param config the Builder configuration properties
+	 */
+	public TestExecutionScheduler(Properties config) {
+		String prop = config.getProperty("cloudcoder.builder2.maxConcurrentTests");
+		this.maxConcurrent = (prop != null) ? Integer.parseInt(prop) : getNumAvailableCpus();
+		this.permits = maxConcurrent > 0 ? new Semaphore(maxConcurrent, true) : null;
+		this.queueDepth = new AtomicInteger();
+		this.numRunning = new AtomicInteger();
+		this.numAdmitted = new AtomicLong();
+		this.totalWaitMillis = new AtomicLong();
+		this.maxWaitMillis = new AtomicLong();
+		
+		if (permits != null) {
+			logger.info("Running at most {} test executions concurrently", maxConcurrent);
+		} else {
+			logger.info("Number of concurrent test executions is not limited");
+		}
+	}
+	
+	/**
+	 * Wait until a test execution may start.
+	 * Each call must be matched by a call to {@link #release()}
+	 * when the test execution finishes.
+	 */
+	public void acquire() {
+		long start = System.currentTimeMillis();
+		if (permits != null) {
+			queueDepth.incrementAndGet();
+			try {
+				permits.acquireUninterruptibly();
+			} finally {
+				queueDepth.decrementAndGet();
+			}
+		}
+		numRunning.incrementAndGet();
+		numAdmitted.incrementAndGet();
+		
+		long waitMillis = System.currentTimeMillis() - start;
+		totalWaitMillis.addAndGet(waitMillis);
+		long max;
+		while (waitMillis > (max = maxWaitMillis.get())) {
+			if (maxWaitMillis.compareAndSet(max, waitMillis)) {
+				break;
+			}
+		}
+		if (waitMillis >= LONG_WAIT_MILLIS) {
+			logger.info("Test execution waited {} ms to start ({} waiting)", waitMillis, queueDepth.get());
+		}
+	}
+	
+	/**
+	 * Record that a test execution started by {@link #acquire()}
+	 * has finished.
+	 */
+	public void release() {
+		numRunning.decrementAndGet();
+		if (permits != null) {
+			permits.release();
+		}
+	}
+	
+	/**
+	 * @return maximum number of concurrent test executions (0 if unlimited)
+	 */
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+	
+	/**
+	 * @return number of test executions waiting to start
+	 */
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+	
+	/**
+	 * @return number of test executions currently running
+	 */
+	public int getNumRunning() {
+		return numRunning.get();
+	}
+	
+	/**
+	 * @return total number of test executions that have been started
+	 */
+	public long getNumAdmitted() {
+		return numAdmitted.get();
+	}
+	
+	/**
+	 * @return total time (in milliseconds) test executions have waited to start
+	 */
+	public long getTotalWaitMillis() {
+		return totalWaitMillis.get();
+	}
+	
+	/**
+	 * @return longest time (in milliseconds) a test execution has waited to start
+	 */
+	public long getMaxWaitMillis() {
+		return maxWaitMillis.get();
+	}
+	
+	/**
+	 * Get the number of CPUs available to the Builder: the number of
+	 * processors, limited by the cgroup CPU quota if there is one.
+	 * 
+	 * @return the number of available CPUs
+	 */
+	public static int getNumAvailableCpus() {
+		int numCpus = Runtime.getRuntime().availableProcessors();
+		
+		// cgroup v2: "<quota> <period>", or "max <period>" if there is no quota
+		String[] cpuMax = readLine("/sys/fs/cgroup/cpu.max");
+		if (cpuMax != null && cpuMax.length == 2) {
+			return limitByQuota(numCpus, cpuMax[0], cpuMax[1]);
+		}
+		
+		// cgroup v1: quota is -1 if there is none
+		String[] quota = readLine("/sys/fs/cgroup/cpu/cpu.cfs_quota_us");
+		String[] period = readLine("/sys/fs/cgroup/cpu/cpu.cfs_period_us");
+		if (quota != null && period != null && quota.length == 1 && period.length == 1) {
+			return limitByQuota(numCpus, quota[0], period[0]);
+		}
+		
+		return numCpus;
+	}
+	
+	/**
+	 * Limit a number of CPUs by a cgroup CPU quota.
+	 * 
+	 * @param numCpus  the number of CPUs
+	 * @param quota    the quota: "max" (cgroup v2) or a negative number
+	 *                 (cgroup v1) if there is none
+	 * @param period   the period
+	 * @return the number of CPUs the quota allows (rounded up), if less than numCpus
+	 */
+	static int limitByQuota(int numCpus, String quota, String period) {
+		if (quota.equals("max")) {
+			return numCpus;
+		}
+		try {
+			long q = Long.parseLong(quota);
+			long p = Long.parseLong(period);
+			if (q > 0 && p > 0) {
+				int quotaCpus = (int) Math.max(1L, (q + p - 1) / p);
+				return Math.min(numCpus, quotaCpus);
+			}
+		} catch (NumberFormatException e) {
+			logger.warn("Could not parse cgroup CPU quota {}/{}", quota, period);
+		}
+		return numCpus;
+	}
+	
+	private static String[] readLine(String fileName) {
+		File file = new File(fileName);
+		if (!file.exists()) {
+			return null;
+		}
+		try {
+			BufferedReader reader = new BufferedReader(new FileReader(file));
+			try {
+				String line = reader.readLine();
+				return line != null ? line.trim().split("\\s+") : null;
+			} finally {
+				reader.close();
+			}
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,339 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.pythonfunction;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.cloudcoder.app.shared.model.ProblemType;
+import org.cloudcoder.builder2.util.SingletonHolder;
+import org.python.core.PyObject;
+import org.python.util.PythonInterpreter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of pre-warmed Jython interpreters used to test
+ * {@link ProblemType#PYTHON_FUNCTION} submissions.
+ * Creating an interpreter and executing code in it for the first
+ * time is expensive, so interpreters are reused.  When an interpreter
+ * is returned to the pool, its global namespace is reset to
+ * the state it was in when the interpreter was created.  An interpreter
+ * whose namespace can't be reset, or which has been used the maximum
+ * number of times, is discarded and replaced.
+ * 
+ * Configuration properties:
+ * <ul>
+ * <li><code>cloudcoder.builder2.python.interpreters</code>: number of
+ *     idle interpreters to keep (0 to create a new interpreter
+ *     for each submission)</li>
+ * <li><code>cloudcoder.builder2.python.maxUsesPerInterpreter</code>:
+ *     number of submissions an interpreter is used for before
+ *     it is replaced</li>
+ * </ul>
+ * 
+ * Note that all interpreters share the default Jython
+ * system state (<code>sys</code>), which is how output written by
+ * test case threads is captured.  Because of this, modules imported
+ * since the pool was created are removed from <code>sys.modules</code>
+ * only when no interpreter is in use.
+ * 
+ * @author David Hovemeyer
+ */
+public class PythonInterpreterPool {
+	private static final Logger logger = LoggerFactory.getLogger(PythonInterpreterPool.class);
+	
+	/** Default number of idle interpreters. */
+	public static final int DEFAULT_NUM_INTERPRETERS = 4;
+	
+	/** Default number of uses before an interpreter is replaced. */
+	public static final int DEFAULT_MAX_USES = 50;
+	
+	private static final String WARMUP_CODE =
+			"def __cc_warmup(n):\n" +
+			"    total = 0\n" +
+			"    for i in range(n):\n" +
+			"        total = total + i\n" +
+			"    return str(total) == '45' and True\n" +
+			"__cc_warmup(10)\n" +
+			"del __cc_warmup\n";
+	
+	private static final SingletonHolder<PythonInterpreterPool, Properties> holder = new SingletonHolder<PythonInterpreterPool, Properties>() {
+		@Override
+		protected PythonInterpreterPool onCreate(Properties arg) {
+			return new PythonInterpreterPool(arg);
+		}
+	};
+	
+	/**
+	 * Get the singleton instance.
+	 * 
+	 * @param config the Builder configuration properties
+	 * @return the singleton instance
+	 */
+	public static PythonInterpreterPool getInstance(Properties config) {
+		return holder.get(config);
+	}
+	
+	/**
+	 * Information about a pooled interpreter.
+	 */
+	private static class Entry {
+		final Map<String, PyObject> baselineGlobals;
+		int numUses;
+		
+		Entry(Map<String, PyObject> baselineGlobals) {
+			this.baselineGlobals = baselineGlobals;
+		}
+	}
+	
+	private final int numInterpreters;
+	private final int maxUses;
+	private final Object lock;
+	private final LinkedList<PythonInterpreter> idle;
+	private final Map<PythonInterpreter, Entry> entries;
+	private Set<String> baselineModules;
+	private int numInUse;
+	private int numCreating;
+	private int numDiscarded;
+	
+	private PythonInterpreterPool(Properties config) {
+		this.numInterpreters = Integer.parseInt(config.getProperty(
+				"cloudcoder.builder2.python.interpreters", String.valueOf(DEFAULT_NUM_INTERPRETERS)));
+		this.maxUses = Integer.parseInt(config.getProperty(
+				"cloudcoder.builder2.python.maxUsesPerInterpreter", String.valueOf(DEFAULT_MAX_USES)));
+		this.lock = new Object();
+		this.idle = new LinkedList<PythonInterpreter>();
+		this.entries = new IdentityHashMap<PythonInterpreter, Entry>();
+		
+		if (numInterpreters > 0) {
+			replenish();
+		}
+	}
+	
+	/**
+	 * Get an interpreter.  An idle interpreter is used if there is one,
+	 * otherwise a new interpreter is created.  The interpreter must
+	 * be returned using {@link #release(PythonInterpreter, boolean)} when the
+	 * submission has been tested.
+	 * 
+	 * @return the interpreter
+	 */
+	public PythonInterpreter borrow() {
+		synchronized (lock) {
+			numInUse++;
+			if (!idle.isEmpty()) {
+				return idle.removeFirst();
+			}
+		}
+		try {
+			return createInterpreter();
+		} catch (RuntimeException e) {
+			synchronized (lock) {
+				numInUse--;
+			}
+			throw e;
+		}
+	}
+	
+	/**
+	 * Return an interpreter to the pool.
+	 * 
+	 * @param terp      the interpreter (returned by {@link #borrow()})
+	 * @param reusable  false if the interpreter must not be reused (because
+	 *                  a thread executing code in it was killed)
+	 */
+	public void release(PythonInterpreter terp, boolean reusable) {
+		Entry entry;
+		synchronized (lock) {
+			entry = entries.get(terp);
+		}
+		
+		boolean reuse = false;
+		entry.numUses++;
+		if (reusable) {
+			try {
+				reuse = reset(terp, entry) && entry.numUses < maxUses;
+			} catch (RuntimeException e) {
+				logger.warn("Exception resetting Python interpreter", e);
+			}
+		}
+		
+		synchronized (lock) {
+			numInUse--;
+			if (numInUse == 0) {
+				// Holding the lock prevents another interpreter from being
+				// borrowed while the shared sys.modules is changed
+				try {
+					removeImportedModules(terp);
+				} catch (RuntimeException e) {
+					logger.warn("Exception removing imported Python modules", e);
+				}
+			}
+			if (reuse && idle.size() < numInterpreters) {
+				idle.addFirst(terp);
+				return;
+			}
+			entries.remove(terp);
+			numDiscarded++;
+		}
+		terp.cleanup();
+		if (numInterpreters > 0) {
+			replenish();
+		}
+	}
+	
+	/**
+	 * @return number of interpreters that have been discarded
+	 */
+	public int getNumDiscarded() {
+		synchronized (lock) {
+			return numDiscarded;
+		}
+	}
+	
+	/**
+	 * Reset an interpreter's global namespace to its baseline state.
+	 * 
+	 * @return true if the reset was complete, false if not
+	 */
+	private boolean reset(PythonInterpreter terp, Entry entry) {
+		PyObject globals = terp.getLocals();
+		
+		// Remove names defined by the submission
+		for (String name : getKeys(globals)) {
+			if (!entry.baselineGlobals.containsKey(name)) {
+				globals.__delitem__(name);
+			}
+		}
+		
+		// Restore rebound baseline names
+		for (Map.Entry<String, PyObject> e : entry.baselineGlobals.entrySet()) {
+			if (globals.__finditem__(e.getKey()) != e.getValue()) {
+				globals.__setitem__(e.getKey(), e.getValue());
+			}
+		}
+		
+		// Validate the reset
+		Set<String> names = getKeys(globals);
+		if (!names.equals(entry.baselineGlobals.keySet())) {
+			logger.warn("Python interpreter globals not reset: {}", names);
+			return false;
+		}
+		for (Map.Entry<String, PyObject> e : entry.baselineGlobals.entrySet()) {
+			if (globals.__finditem__(e.getKey()) != e.getValue()) {
+				logger.warn("Python interpreter global {} not reset", e.getKey());
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Remove modules imported since the pool was created from
+	 * the shared <code>sys.modules</code>.  Must be called with the lock
+	 * held, when no interpreter is in use.
+	 */
+	private void removeImportedModules(PythonInterpreter terp) {
+		PyObject modules = terp.getSystemState().modules;
+		for (String name : getKeys(modules)) {
+			if (!baselineModules.contains(name)) {
+				modules.__delitem__(name);
+			}
+		}
+	}
+	
+	private PythonInterpreter createInterpreter() {
+		long start = System.currentTimeMillis();
+		PythonInterpreter terp = new PythonInterpreter();
+		terp.exec(WARMUP_CODE);
+		
+		Map<String, PyObject> baselineGlobals = new HashMap<String, PyObject>();
+		PyObject globals = terp.getLocals();
+		for (String name : getKeys(globals)) {
+			baselineGlobals.put(name, globals.__finditem__(name));
+		}
+		
+		synchronized (lock) {
+			if (baselineModules == null) {
+				baselineModules = getKeys(terp.getSystemState().modules);
+			}
+			entries.put(terp, new Entry(baselineGlobals));
+		}
+		logger.debug("Created Python interpreter in {} ms", System.currentTimeMillis() - start);
+		return terp;
+	}
+	
+	/**
+	 * Start a thread to create idle interpreters until there are
+	 * enough of them.
+	 */
+	private void replenish() {
+		int numToCreate;
+		synchronized (lock) {
+			numToCreate = numInterpreters - idle.size() - numCreating;
+			if (numToCreate <= 0) {
+				return;
+			}
+			numCreating += numToCreate;
+		}
+		
+		final int count = numToCreate;
+		Thread t = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < count; i++) {
+					PythonInterpreter terp = null;
+					try {
+						terp = createInterpreter();
+					} catch (RuntimeException e) {
+						logger.error("Could not create Python interpreter", e);
+					}
+					synchronized (lock) {
+						numCreating--;
+						if (terp != null && idle.size() < numInterpreters) {
+							idle.addLast(terp);
+							terp = null;
+						} else if (terp != null) {
+							entries.remove(terp);
+						}
+					}
+					if (terp != null) {
+						terp.cleanup();
+					}
+				}
+			}
+		};
+		t.setName("PythonInterpreterPool");
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	private static Set<String> getKeys(PyObject dict) {
+		Set<String> result = new HashSet<String>();
+		for (PyObject key : dict.invoke("keys").asIterable()) {
+			result.add(key.toString());
+		}
+		return result;
+	}
+}
@@ -21,8 +21,9 @@ import java.util.List;
 
 import org.cloudcoder.builder2.javasandbox.AbstractKillableTaskManager;
 import org.cloudcoder.builder2.javasandbox.IsolatedTask;
-import org.cloudcoder.builder2.javasandbox.ThreadedPrintStreamMonitor;
+import org.cloudcoder.builder2.javasandbox.TaskOutputCapture;
 import org.cloudcoder.builder2.javasandbox.TimeoutHandler;
+import org.python.core.PyFile;
 import org.python.util.PythonInterpreter;
 /**
  * @author jaimespacco
@@ -51,9 +52,10 @@ public class PythonKillableTaskManager<T> extends AbstractKillableTaskManager<T>
 
     @Override
     public void redirectStandardOutputStreams() {
-        stdOutMonitor=new ThreadedPrintStreamMonitor();
-        stdErrMonitor=new ThreadedPrintStreamMonitor();
-        pythonInterpreter.setOut(stdOutMonitor);
-        pythonInterpreter.setErr(stdErrMonitor);
+        // Use unbuffered files: a buffer shared by all test threads
+        // could be left corrupted when a thread is killed in the middle
+        // of writing to it
+        pythonInterpreter.setOut(new PyFile(TaskOutputCapture.STDOUT, 0));
+        pythonInterpreter.setErr(new PyFile(TaskOutputCapture.STDERR, 0));
     }
 }
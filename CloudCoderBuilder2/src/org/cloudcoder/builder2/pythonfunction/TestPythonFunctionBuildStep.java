@@ -31,6 +31,7 @@ import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.ProblemType;
 import org.cloudcoder.app.shared.model.SubmissionResult;
 import org.cloudcoder.app.shared.model.TestCase;
+import org.cloudcoder.app.shared.model.TestOutcome;
 import org.cloudcoder.app.shared.model.TestResult;
 import org.cloudcoder.builder2.javasandbox.SandboxUtil;
 import org.cloudcoder.builder2.javasandbox.TimeoutHandler;
@@ -38,6 +39,7 @@ import org.cloudcoder.builder2.model.BuilderSubmission;
 import org.cloudcoder.builder2.model.IBuildStep;
 import org.cloudcoder.builder2.model.InternalBuilderException;
 import org.cloudcoder.builder2.model.ProgramSource;
+import org.cloudcoder.builder2.process.TestExecutionScheduler;
 import org.cloudcoder.builder2.util.TestResultUtil;
 import org.python.core.PyException;
 import org.python.core.PyFunction;
@@ -65,7 +67,7 @@ public class TestPythonFunctionBuildStep implements IBuildStep {
 
 	@Override
 	public void execute(BuilderSubmission submission, Properties config) {
-		SubmissionResult result = testSubmission(submission);
+		SubmissionResult result = testSubmission(submission, config);
 		submission.addArtifact(result);
 	}
 
@@ -73,44 +75,65 @@ public class TestPythonFunctionBuildStep implements IBuildStep {
 	 * Test a {@link ProblemType#PYTHON_FUNCTION} submission.
 	 * 
 	 * @param submission the submission
+	 * @param config     the Builder configuration properties
 	 * @return the {@link SubmissionResult}
 	 */
-	private SubmissionResult testSubmission(BuilderSubmission submission) {
+	private SubmissionResult testSubmission(BuilderSubmission submission, Properties config) {
 		final Problem problem = submission.requireArtifact(this.getClass(), Problem.class);
 		
 		ProgramSource[] programSourceList = submission.requireArtifact(TestPythonFunctionBuildStep.class, ProgramSource[].class);
 		if (programSourceList.length > 1) {
 			throw new InternalBuilderException(TestPythonFunctionBuildStep.class, "Multiple source files not supported");
 		}
-		ProgramSource programSource = programSourceList[0];
-		
 		// Because AddPythonFunctionScaffoldingBuildStep has executed previously,
 		// the ProgramSource is the scaffolded source code (ready to execute test cases)
-		final String programText = programSource.getProgramText();
+		ProgramSource programSource = programSourceList[0];
 		
 		TestCase[] testCaseList_ = submission.requireArtifact(TestPythonFunctionBuildStep.class, TestCase[].class);
 		List<TestCase> testCaseList= Arrays.asList(testCaseList_);
 
-		final byte[] sBytes = programText.getBytes();
+		// The same pooled interpreter is used both to check the
+		// script and to run the tests: it is reset when it is released,
+		// unless a test thread was killed, in which case it is discarded
+		PythonInterpreterPool terpPool = PythonInterpreterPool.getInstance(config);
+		final PythonInterpreter terp = terpPool.borrow();
+		SubmissionResult result = null;
+		try {
+			result = testSubmission(problem, programSource, testCaseList, terp, config);
+			return result;
+		} finally {
+			terpPool.release(terp, result == null || !hasTimeout(result.getTestResults()));
+		}
+	}
+	
+	private static boolean hasTimeout(TestResult[] testResults) {
+		if (testResults != null) {
+			for (TestResult testResult : testResults) {
+				if (testResult.getOutcome() == TestOutcome.FAILED_FROM_TIMEOUT) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
 
+	private SubmissionResult testSubmission(Problem problem, ProgramSource programSource,
+			List<TestCase> testCaseList, PythonInterpreter terp, Properties config) {
 		// Check if the Python code is syntactically correct.
 		// Because Python is a dynamic language, this will only find invalid syntax,
 		// unknown imports, and similar issues.
-		CompilationResult compres = compilePythonScript(problem, programSource);
+		// If it is, the script's functions are now defined in the
+		// interpreter's namespace.
+		// Note that our script will have all statements outside of a function
+		// stripped out (except for import statements) so no global variables
+		CompilationResult compres = compilePythonScript(problem, programSource, terp);
 		if (compres.getOutcome() != CompilationOutcome.SUCCESS) {
 			compres.adjustDiagnosticLineNumbers(programSource.getPrologueLength(), programSource.getEpilogueLength());
 			return new SubmissionResult(compres);
 		}
 		
-		// Create a Python interpreter, load True from the interpreter
-		// then execute our script.
-		// Note that our script will have all statements outside of a function
-		// stripped out (except for import statements) so no global variables
-		final PythonInterpreter terp=new PythonInterpreter();
+		// Load True from the interpreter
 		final PyObject True=terp.eval("True");
-		// won't throw an exception because we checked it at the top of
-		// the method to make sure the code will compile
-		terp.execfile(new ByteArrayInputStream(sBytes));
 
 		// Create PythonTestCaseTasks, one to execute each test case function
 		List<PythonTestCaseTask> tasks=new ArrayList<PythonTestCaseTask>();
@@ -131,6 +154,7 @@ public class TestPythonFunctionBuildStep implements IBuildStep {
 					}
 				},
 				terp);
+		pool.setScheduler(TestExecutionScheduler.getInstance(config));
 
 		// run each task in a separate thread
 		pool.run();
@@ -162,14 +186,14 @@ public class TestPythonFunctionBuildStep implements IBuildStep {
 	 * 
 	 * @param problem       the {@link Problem}
 	 * @param programSource the scaffolded code
+	 * @param terp          the interpreter in which to execute the code
 	 * @return the {@link CompilationResult}
 	 */
-	private CompilationResult compilePythonScript(Problem problem, ProgramSource programSource) {
+	private CompilationResult compilePythonScript(Problem problem, ProgramSource programSource, PythonInterpreter terp) {
 		String programText = programSource.getProgramText();
 		
 		try {
 		    logger.info("\n"+programText);
-			PythonInterpreter terp=new PythonInterpreter();
 			terp.execfile(new ByteArrayInputStream(programText.getBytes()));
 			
 			// Check to see if the test code actually defines the required
@@ -0,0 +1,367 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.rubymethod;
+
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.cloudcoder.app.shared.model.ProblemType;
+import org.cloudcoder.builder2.util.SingletonHolder;
+import org.jruby.embed.AttributeName;
+import org.jruby.embed.LocalContextScope;
+import org.jruby.embed.ScriptingContainer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of JRuby {@link ScriptingContainer}s used to test
+ * {@link ProblemType#RUBY_METHOD} submissions.
+ * Each container has its own Ruby runtime, and is leased to one submission
+ * at a time, so submissions tested concurrently neither contend for nor
+ * pollute a shared runtime.  (Containers are created with
+ * {@link LocalContextScope#SINGLETHREAD} scope, since containers created with
+ * {@link LocalContextScope#CONCURRENT} scope all share the global runtime.)
+ * A SINGLETHREAD container is not thread-safe in general, because it
+ * injects shared variables into the runtime (and retrieves them
+ * afterwards) around every call without synchronization, yet a
+ * submission's test threads call methods on the container concurrently.
+ * Variable sharing is therefore disabled ({@link AttributeName#SHARING_VARIABLES}):
+ * the tests don't use it, and without it, a call just invokes
+ * a method in the runtime, which supports multiple threads.
+ * 
+ * When a container is returned to the pool, the top-level methods and
+ * constants defined by the submission are removed.  The reset is then
+ * checked against the state of the runtime when the container was created:
+ * a container which can't be reset (for example, because the submission
+ * defined a global variable), or which has been used the maximum
+ * number of times, is discarded and replaced.  So is a container
+ * in which a test thread had to be killed, since the runtime may have
+ * been left in an inconsistent state.
+ * 
+ * Configuration properties:
+ * <ul>
+ * <li><code>cloudcoder.builder2.ruby.containers</code>: number of
+ *     idle containers to keep (0 to create a new container
+ *     for each submission)</li>
+ * <li><code>cloudcoder.builder2.ruby.maxUsesPerContainer</code>:
+ *     number of submissions a container is used for before
+ *     it is replaced</li>
+ * </ul>
+ * 
+ * @author David Hovemeyer
+ */
+public class RubyContainerPool {
+	private static final Logger logger = LoggerFactory.getLogger(RubyContainerPool.class);
+	
+	/** Default number of idle containers. */
+	public static final int DEFAULT_NUM_CONTAINERS = 4;
+	
+	/** Default number of uses before a container is replaced. */
+	public static final int DEFAULT_MAX_USES = 50;
+	
+	private static final String WARMUP_SCRIPT =
+			"def _cc_warmup(n)\n" +
+			"  total = 0\n" +
+			"  (0...n).each { |i| total += i }\n" +
+			"  return Array.[](total == 45, total.to_s)\n" +
+			"end\n" +
+			"_cc_warmup(10)\n";
+	
+	/**
+	 * Scriptlet returning the names of the top-level methods, constants,
+	 * and global variables: methods are prefixed with "m:", constants with
+	 * "c:", and global variables with "g:".
+	 */
+	private static final String SNAPSHOT_SCRIPT =
+			"(Object.public_instance_methods(false) + Object.protected_instance_methods(false) +\n" +
+			"  Object.private_instance_methods(false)).map { |m| 'm:' + m.to_s } +\n" +
+			"  Object.constants.map { |c| 'c:' + c.to_s } +\n" +
+			"  global_variables.map { |g| 'g:' + g.to_s }\n";
+	
+	private static final SingletonHolder<RubyContainerPool, Properties> holder = new SingletonHolder<RubyContainerPool, Properties>() {
+		@Override
+		protected RubyContainerPool onCreate(Properties arg) {
+			return new RubyContainerPool(arg);
+		}
+	};
+	
+	/**
+	 * Get the singleton instance.
+	 * 
+	 * @param config the Builder configuration properties
+	 * @return the singleton instance
+	 */
+	public static RubyContainerPool getInstance(Properties config) {
+		return holder.get(config);
+	}
+	
+	/**
+	 * Check whether or not the singleton instance was created.
+	 * 
+	 * @return true if the singleton instance was created, false if not
+	 */
+	public static boolean isCreated() {
+		return holder.isCreated();
+	}
+	
+	/**
+	 * Information about a pooled container.
+	 */
+	private static class Entry {
+		final Set<String> baseline;
+		final Object objectClass;
+		int numUses;
+		
+		Entry(Set<String> baseline, Object objectClass) {
+			this.baseline = baseline;
+			this.objectClass = objectClass;
+		}
+	}
+	
+	private final int numContainers;
+	private final int maxUses;
+	private final Object lock;
+	private final LinkedList<ScriptingContainer> idle;
+	private final Map<ScriptingContainer, Entry> entries;
+	private int numCreating;
+	private int numCreated;
+	private int numLeases;
+	private int numLeasesWaitingForCreate;
+	private int numResetFailures;
+	private int numRetired;
+	
+	private RubyContainerPool(Properties config) {
+		this.numContainers = Integer.parseInt(config.getProperty(
+				"cloudcoder.builder2.ruby.containers", String.valueOf(DEFAULT_NUM_CONTAINERS)));
+		this.maxUses = Integer.parseInt(config.getProperty(
+				"cloudcoder.builder2.ruby.maxUsesPerContainer", String.valueOf(DEFAULT_MAX_USES)));
+		this.lock = new Object();
+		this.idle = new LinkedList<ScriptingContainer>();
+		this.entries = new IdentityHashMap<ScriptingContainer, Entry>();
+		
+		if (numContainers > 0) {
+			replenish();
+		}
+	}
+	
+	/**
+	 * Lease a container.  An idle container is used if there is one,
+	 * otherwise a new container is created.  The container must
+	 * be returned using {@link #release(ScriptingContainer, boolean)} when the
+	 * submission has been tested.
+	 * 
+	 * @return the container
+	 */
+	public ScriptingContainer lease() {
+		synchronized (lock) {
+			numLeases++;
+			if (!idle.isEmpty()) {
+				return idle.removeFirst();
+			}
+			numLeasesWaitingForCreate++;
+		}
+		return createContainer();
+	}
+	
+	/**
+	 * Return a container to the pool.
+	 * 
+	 * @param container the container (returned by {@link #lease()})
+	 * @param reusable  false if the container must not be reused (because
+	 *                  a thread executing code in it was killed)
+	 */
+	public void release(ScriptingContainer container, boolean reusable) {
+		Entry entry;
+		synchronized (lock) {
+			entry = entries.get(container);
+		}
+		
+		entry.numUses++;
+		boolean wasReset = false;
+		if (reusable) {
+			try {
+				wasReset = reset(container, entry);
+			} catch (RuntimeException e) {
+				logger.warn("Exception resetting Ruby container", e);
+			}
+		}
+		
+		synchronized (lock) {
+			if (reusable && !wasReset) {
+				numResetFailures++;
+			} else if (wasReset && entry.numUses < maxUses && idle.size() < numContainers) {
+				idle.addFirst(container);
+				return;
+			}
+			entries.remove(container);
+			numRetired++;
+		}
+		container.terminate();
+		if (numContainers > 0) {
+			replenish();
+		}
+	}
+	
+	/**
+	 * @return number of containers created
+	 */
+	public int getNumCreated() {
+		synchronized (lock) {
+			return numCreated;
+		}
+	}
+	
+	/**
+	 * @return number of times a container has been leased
+	 */
+	public int getNumLeases() {
+		synchronized (lock) {
+			return numLeases;
+		}
+	}
+	
+	/**
+	 * @return number of leases for which no idle container was available
+	 */
+	public int getNumLeasesWaitingForCreate() {
+		synchronized (lock) {
+			return numLeasesWaitingForCreate;
+		}
+	}
+	
+	/**
+	 * @return number of containers which could not be reset
+	 */
+	public int getNumResetFailures() {
+		synchronized (lock) {
+			return numResetFailures;
+		}
+	}
+	
+	/**
+	 * @return number of containers that have been discarded
+	 */
+	public int getNumRetired() {
+		synchronized (lock) {
+			return numRetired;
+		}
+	}
+	
+	/**
+	 * Remove top-level methods and constants defined since
+	 * the container was created.
+	 * 
+	 * @return true if the container's state matches the baseline, false if not
+	 */
+	private boolean reset(ScriptingContainer container, Entry entry) {
+		for (String name : snapshot(container)) {
+			if (entry.baseline.contains(name)) {
+				continue;
+			}
+			if (name.startsWith("m:")) {
+				container.callMethod(entry.objectClass, "send", "remove_method", name.substring(2));
+			} else if (name.startsWith("c:")) {
+				container.callMethod(entry.objectClass, "send", "remove_const", name.substring(2));
+			}
+		}
+		
+		Set<String> names = snapshot(container);
+		if (!names.equals(entry.baseline)) {
+			names.removeAll(entry.baseline);
+			logger.warn("Ruby container not reset: {}", names);
+			return false;
+		}
+		return true;
+	}
+	
+	private ScriptingContainer createContainer() {
+		long start = System.currentTimeMillis();
+		ScriptingContainer container = new ScriptingContainer(LocalContextScope.SINGLETHREAD);
+		container.setAttribute(AttributeName.SHARING_VARIABLES, false);
+		container.runScriptlet(WARMUP_SCRIPT);
+		Object objectClass = container.runScriptlet("Object");
+		container.callMethod(objectClass, "send", "remove_method", "_cc_warmup");
+		
+		Entry entry = new Entry(snapshot(container), objectClass);
+		synchronized (lock) {
+			entries.put(container, entry);
+			numCreated++;
+		}
+		logger.debug("Created Ruby container in {} ms", System.currentTimeMillis() - start);
+		return container;
+	}
+	
+	/**
+	 * Start a thread to create idle containers until there are
+	 * enough of them.  Containers already being created are counted,
+	 * so that concurrent calls don't create more containers than needed.
+	 */
+	private void replenish() {
+		int numToCreate;
+		synchronized (lock) {
+			numToCreate = numContainers - idle.size() - numCreating;
+			if (numToCreate <= 0) {
+				return;
+			}
+			numCreating += numToCreate;
+		}
+		
+		final int count = numToCreate;
+		Thread t = new Thread() {
+			@Override
+			public void run() {
+				for (int i = 0; i < count; i++) {
+					ScriptingContainer container = null;
+					try {
+						container = createContainer();
+					} catch (RuntimeException e) {
+						logger.error("Could not create Ruby container", e);
+					}
+					synchronized (lock) {
+						numCreating--;
+						if (container != null && idle.size() < numContainers) {
+							idle.addLast(container);
+							container = null;
+						} else if (container != null) {
+							entries.remove(container);
+						}
+					}
+					if (container != null) {
+						container.terminate();
+					}
+				}
+			}
+		};
+		t.setName("RubyContainerPool");
+		t.setDaemon(true);
+		t.start();
+	}
+	
+	private static Set<String> snapshot(ScriptingContainer container) {
+		Set<String> result = new HashSet<String>();
+		for (Object name : (List<?>) container.runScriptlet(SNAPSHOT_SCRIPT)) {
+			result.add(name.toString());
+		}
+		return result;
+	}
+}
@@ -5,7 +5,7 @@ import java.util.List;
 
 import org.cloudcoder.builder2.javasandbox.AbstractKillableTaskManager;
 import org.cloudcoder.builder2.javasandbox.IsolatedTask;
-import org.cloudcoder.builder2.javasandbox.ThreadedPrintStreamMonitor;
+import org.cloudcoder.builder2.javasandbox.TaskOutputCapture;
 import org.cloudcoder.builder2.javasandbox.TimeoutHandler;
 import org.jruby.embed.ScriptingContainer;
 
@@ -28,10 +28,8 @@ public class RubyKillableTaskManager<T> extends AbstractKillableTaskManager<T>
     
     @Override
     public void redirectStandardOutputStreams() {
-        stdOutMonitor=new ThreadedPrintStreamMonitor(stdout);
-        stdErrMonitor=new ThreadedPrintStreamMonitor(stderr);
-        container.setOutput(stdOutMonitor);
-        container.setError(stdErrMonitor);
+        container.setOutput(TaskOutputCapture.STDOUT);
+        container.setError(TaskOutputCapture.STDERR);
     }
     @Override
     public void unredirectStandardOutputStreams() {
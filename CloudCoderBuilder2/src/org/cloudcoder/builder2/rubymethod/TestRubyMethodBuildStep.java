@@ -27,6 +27,7 @@ import org.cloudcoder.app.shared.model.CompilerDiagnostic;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.ProblemType;
 import org.cloudcoder.app.shared.model.TestCase;
+import org.cloudcoder.app.shared.model.TestOutcome;
 import org.cloudcoder.app.shared.model.TestResult;
 import org.cloudcoder.builder2.javasandbox.SandboxUtil;
 import org.cloudcoder.builder2.javasandbox.TimeoutHandler;
@@ -34,10 +35,10 @@ import org.cloudcoder.builder2.model.BuilderSubmission;
 import org.cloudcoder.builder2.model.IBuildStep;
 import org.cloudcoder.builder2.model.InternalBuilderException;
 import org.cloudcoder.builder2.model.ProgramSource;
+import org.cloudcoder.builder2.process.TestExecutionScheduler;
 import org.cloudcoder.builder2.util.ArrayUtil;
 import org.cloudcoder.builder2.util.TestResultUtil;
 import org.jruby.embed.EvalFailedException;
-import org.jruby.embed.LocalContextScope;
 import org.jruby.embed.ParseFailedException;
 import org.jruby.embed.ScriptingContainer;
 import org.jruby.exceptions.RaiseException;
@@ -58,20 +59,27 @@ public class TestRubyMethodBuildStep implements IBuildStep {
 	
 	public static final long TIMEOUT_LIMIT = 5000;
 	
-	private static ScriptingContainer container;
-	
 	// Preload classes that will be needed to test the Ruby submission in the
-	// IsolatedTask, and create the ScriptingContainer.
+	// IsolatedTask.
 	static {
 		TestResultUtil.createResultForTimeout();
-		//TODO cannot execute any code with ruby before redirecting
-		container = new ScriptingContainer(LocalContextScope.CONCURRENT);
-		container.runScriptlet("true");
-		new RubyTester(container, new Object(), new Problem(), new TestCase());
+		new RubyTester(null, new Object(), new Problem(), new TestCase());
 	}
 
 	@Override
 	public void execute(BuilderSubmission submission, Properties config) {
+		// Lease a ScriptingContainer: it is used only by this submission
+		// until it is released
+		RubyContainerPool containerPool = RubyContainerPool.getInstance(config);
+		ScriptingContainer container = containerPool.lease();
+		try {
+			testSubmission(submission, container, config);
+		} finally {
+			containerPool.release(container, !hasTimeout(submission.getArtifact(TestResult[].class)));
+		}
+	}
+
+	private void testSubmission(BuilderSubmission submission, ScriptingContainer container, Properties config) {
 		ProgramSource[] programSourceList = submission.requireArtifact(this.getClass(), ProgramSource[].class);
 		if (programSourceList.length != 1) {
 			throw new InternalBuilderException(this.getClass(), "Only one source file is expected");
@@ -129,6 +137,7 @@ public class TestRubyMethodBuildStep implements IBuildStep {
 				container);
 
 		pool.setThreadNamePrefix("RubyTest_"); // enable Ruby-specific security manager rules
+		pool.setScheduler(TestExecutionScheduler.getInstance(config));
 		pool.run();
 		
 		// Collect "dynamic" compiler diagnostics.
@@ -145,6 +154,17 @@ public class TestRubyMethodBuildStep implements IBuildStep {
 		submission.addArtifact(ArrayUtil.toArray(testResults, TestResult.class));
 	}
 
+	private static boolean hasTimeout(TestResult[] testResults) {
+		if (testResults != null) {
+			for (TestResult testResult : testResults) {
+				if (testResult.getOutcome() == TestOutcome.FAILED_FROM_TIMEOUT) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	private void failedCompilation(BuilderSubmission submission,
 			CompilerDiagnostic diag) {
 		CompilationResult compres = new CompilationResult(CompilationOutcome.FAILURE);
@@ -20,10 +20,11 @@ package org.cloudcoder.builder2.server;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Properties;
 
+import org.cloudcoder.builder2.ccompiler.CompiledExecutableCache;
+import org.cloudcoder.builder2.process.TestExecutionScheduler;
+import org.cloudcoder.builder2.rubymethod.RubyContainerPool;
 import org.cloudcoder.builder2.util.DeleteDirectoryRecursively;
 import org.cloudcoder.daemon.IDaemon;
 import org.cloudcoder.daemon.Util;
@@ -39,18 +40,10 @@ import org.slf4j.LoggerFactory;
 public class Builder2Daemon implements IDaemon {
 	private Logger logger = LoggerFactory.getLogger(this.getClass());
 	
-	private List<BuilderAndThread> builderAndThreadList;
+	private Builder2Server builder;
+	private Thread builderThread;
 	private Properties config;
 	private File instanceTempDir;
-
-	private static class BuilderAndThread {
-		final Builder2Server builder;
-		final Thread thread;
-		public BuilderAndThread(Builder2Server builder, Thread thread) {
-			this.builder = builder;
-			this.thread = thread;
-		}
-	}
 	
 	/**
 	 * Options describing how to connect to the webapp.
@@ -154,17 +147,11 @@ public class Builder2Daemon implements IDaemon {
 		logger.info("appPort={}", options.getAppPort());
 		logger.info("numThreads={}", options.getNumThreads());
 		
-		// Start Builder threads
-		this.builderAndThreadList = new ArrayList<BuilderAndThread>();
-		for (int i = 0; i < options.getNumThreads(); i++) {
-			Builder2Server builder_ = new Builder2Server(webappSocketFactory, config);
-			Thread thread_ = new Thread(builder_);
-		
-			BuilderAndThread builderAndThread = new BuilderAndThread(builder_, thread_);
-			builderAndThreadList.add(builderAndThread);
-			
-			builderAndThread.thread.start();
-		}
+		// Start the Builder server loop: it uses a single connection to the
+		// webapp, and tests up to numThreads submissions concurrently.
+		this.builder = new Builder2Server(webappSocketFactory, config, options.getNumThreads());
+		this.builderThread = new Thread(builder);
+		builderThread.start();
 	}
 
 	/* (non-Javadoc)
@@ -172,8 +159,38 @@ public class Builder2Daemon implements IDaemon {
 	 */
 	@Override
 	public void handleCommand(String command) {
-		// Right now the Builder has no runtime configuration commands
-		logger.warn("Builder received unknown command " + command);
+		if (command.equals("status")) {
+			logStatus();
+		} else {
+			logger.warn("Builder received unknown command " + command);
+		}
+	}
+	
+	/**
+	 * Log statistics about test execution and the Builder's pools and caches
+	 * (the "status" command).
+	 */
+	private void logStatus() {
+		TestExecutionScheduler scheduler = TestExecutionScheduler.getInstance(config);
+		long numAdmitted = scheduler.getNumAdmitted();
+		logger.info("Test executions: {} running, {} waiting, limit {}",
+				new Object[]{scheduler.getNumRunning(), scheduler.getQueueDepth(), scheduler.getMaxConcurrent()});
+		logger.info("Test executions: {} started, average wait {} ms, longest wait {} ms",
+				new Object[]{numAdmitted, numAdmitted > 0 ? scheduler.getTotalWaitMillis() / numAdmitted : 0L, scheduler.getMaxWaitMillis()});
+		
+		// Don't create the Ruby container pool just to report on it
+		if (RubyContainerPool.isCreated()) {
+			RubyContainerPool rubyPool = RubyContainerPool.getInstance(config);
+			logger.info("Ruby containers: {} leases ({} waited for a new container), {} created, {} retired ({} reset failures)",
+					new Object[]{rubyPool.getNumLeases(), rubyPool.getNumLeasesWaitingForCreate(),
+							rubyPool.getNumCreated(), rubyPool.getNumRetired(), rubyPool.getNumResetFailures()});
+		}
+		
+		if (CompiledExecutableCache.isCreated()) {
+			CompiledExecutableCache exeCache = CompiledExecutableCache.getInstance(config);
+			logger.info("Compiled executable cache: {} hits, {} misses, {} bytes",
+					new Object[]{exeCache.getNumHits(), exeCache.getNumMisses(), exeCache.getTotalSize()});
+		}
 	}
 
 	/* (non-Javadoc)
@@ -181,15 +198,13 @@ public class Builder2Daemon implements IDaemon {
 	 */
 	@Override
 	public void shutdown() {
-		// Shut down all Builder threads
-		for (BuilderAndThread builderAndThread : builderAndThreadList) {
-			try {
-				builderAndThread.builder.shutdown();
-				builderAndThread.thread.join();
-				logger.info("Finished");
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
+		// Shut down the Builder server loop and its worker threads
+		try {
+			builder.shutdown();
+			builderThread.join();
+			logger.info("Finished");
+		} catch (InterruptedException e) {
+			e.printStackTrace();
 		}
 
 		// Perform global cleanup.
@@ -20,15 +20,25 @@ package org.cloudcoder.builder2.server;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.security.GeneralSecurityException;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
-
-import org.cloudcoder.app.shared.model.Problem;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.cloudcoder.app.server.submitsvc.oop.BuilderProtocol;
+import org.cloudcoder.app.server.submitsvc.oop.Message;
+import org.cloudcoder.app.server.submitsvc.oop.MessageChannel;
+import org.cloudcoder.app.server.submitsvc.oop.MessageType;
+import org.cloudcoder.app.server.submitsvc.oop.PayloadCodec;
+import org.cloudcoder.app.server.submitsvc.oop.SubmissionRequest;
+import org.cloudcoder.app.shared.model.ProblemAndTestCaseList;
+import org.cloudcoder.app.shared.model.Submission;
 import org.cloudcoder.app.shared.model.SubmissionResult;
-import org.cloudcoder.app.shared.model.TestCase;
 import org.cloudcoder.daemon.IOUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,17 +49,27 @@ import org.slf4j.LoggerFactory;
  * For each submission received, it compiles it, tests it,
  * and reports back a SubmissionResult.
  * 
+ * <p>A single connection to the webapp is used for all of the builder's
+ * threads: the webapp may send up to <code>numThreads</code> submissions
+ * before receiving any results, each tagged with a correlation id.
+ * Submissions are tested by a bounded pool of worker threads,
+ * and results are sent back (tagged with the same correlation id)
+ * as soon as they are ready, in whatever order testing completes.
+ * Problems and test cases are kept in a {@link ProblemCache}, so
+ * the webapp only needs to send them when they are not cached.
+ * See {@link BuilderProtocol} for a description of the protocol.
+ * 
  * @author David Hovemeyer
  * @author Jaime Spacco
  */
 public class Builder2Server implements Runnable {
 	/**
 	 * The maximum amount of time that the watchdog thread will
-	 * allow a wait for a problem id or keepalive signal from 
-	 * the webapp.  If the wait becomes longer then we will
-	 * assume that the connection between the builder and
-	 * the webapp has been broken and the watchdog will force
-	 * the server loop to reconnect.
+	 * allow to pass without receiving any message from the webapp.
+	 * Since the webapp sends a keepalive signal when it has not sent
+	 * anything for a few seconds, a longer wait means that the
+	 * connection between the builder and the webapp has been broken,
+	 * and the watchdog will force the server loop to reconnect.
 	 */
 	private static final long MAX_WAIT_MS = 60000L; // after 1 minute of waiting, assume connection is bad
 
@@ -63,21 +83,18 @@ public class Builder2Server implements Runnable {
 				while (!shutdownRequested) {
 					Thread.sleep(10000L);
 					
-					// Check the current state.
-					// If the server loop is not waiting for a keepalive signal,
-					// then DON'T MESS WITH IT.
-					StateData stateData = stateManager.getStateData();
-					if (stateData.getState() != State.WAITING_FOR_KEEPALIVE) {
+					Connection conn = connectionManager.getConnection();
+					if (conn == null) {
 						continue;
 					}
 					
 					// See how long the server loop has been waiting.
-					long waitTime = System.currentTimeMillis() - stateData.getTs();
+					long waitTime = System.currentTimeMillis() - conn.getLastReceiveTs();
 					if (waitTime > MAX_WAIT_MS) {
-						// The server loop has waited too long to receive the
-						// problem id / keepalive signal.  Force a reconnect.
+						// The server loop has waited too long to receive
+						// anything from the webapp.  Force a reconnect.
 						logger.warn("Watchdog: {} ms without keepalive, forcing reconnect", waitTime);
-						connectionManager.forceClose();
+						connectionManager.forceClose(conn);
 					}
 				}
 			} catch (InterruptedException e) {
@@ -88,102 +105,41 @@ public class Builder2Server implements Runnable {
 
 	private static final Logger logger=LoggerFactory.getLogger(Builder2Server.class);
 
-	/**
-	 * Server loop states.
-	 */
-	private enum State {
-		/** Created but not running yet. */
-		INITIAL,
-		/** Server loop started, but not connected to the webapp. */
-		NOT_CONNECTED,
-		/** Attempting to connect to the webapp. */
-		ATTEMPTING_TO_CONNECT,
-		/** Connected to the webapp. */
-		CONNECTED,
-		/** Server loop is waiting for a keepalive signal from the webapp. */
-		WAITING_FOR_KEEPALIVE,
-		/** Actively working on building/testing a submission. */
-		WORKING;
-
-		/**
-		 * @return true if it is safe to shutdown, false if not
-		 */
-		public boolean allowShutdown() {
-			return this != WORKING;
-		}
-	}
-	
-	/**
-	 * Current state data: the state and timestamp when state
-	 * was entered.
-	 */
-	private static class StateData {
-		private long ts; // timestamp of when this state was entered
-		private State state;
-		
-		public StateData(long ts, State state) {
-			this.ts = ts;
-			this.state = state;
-		}
-		
-		public long getTs() {
-			return ts;
-		}
-		
-		public State getState() {
-			return state;
-		}
-	}
-	
-	/**
-	 * Singleton object to manage state data.
-	 */
-	private static class StateManager {
-		private Object lock;
-		private StateData stateData;
-		
-		public StateManager() {
-			lock = new Object();
-			stateData = new StateData(0L, State.INITIAL);
-		}
-		
-		public void setState(State state) {
-			synchronized (lock) {
-				stateData = new StateData(System.currentTimeMillis(), state);
-			}
-		}
-		
-		public StateData getStateData() {
-			synchronized (lock) {
-				return new StateData(stateData.getTs(), stateData.getState());
-			}
-		}
-	}
-	
 	/**
 	 * Connection to the webapp.
 	 */
 	private static class Connection {
 		private ISocket socket;
-		private ObjectInputStream in;
-		private ObjectOutputStream out;
+		private MessageChannel channel;
+		private volatile long lastReceiveTs;
+		// Submissions waiting for problem data: only accessed by the server loop
+		private Map<Integer, SubmissionRequest> waitingForProblemData;
 		
-		public Connection(ISocket socket, ObjectInputStream in, ObjectOutputStream out) {
+		public Connection(ISocket socket, MessageChannel channel) {
 			this.socket = socket;
-			this.in = in;
-			this.out = out;
+			this.channel = channel;
+			this.lastReceiveTs = System.currentTimeMillis();
+			this.waitingForProblemData = new HashMap<Integer, SubmissionRequest>();
 		}
 
 		public ISocket getSocket() {
 			return socket;
 		}
 		
-		public ObjectInputStream getIn() {
-			return in;
+		public MessageChannel getChannel() {
+			return channel;
+		}
+		
+		public long getLastReceiveTs() {
+			return lastReceiveTs;
+		}
+		
+		public void setLastReceiveTs(long lastReceiveTs) {
+			this.lastReceiveTs = lastReceiveTs;
 		}
 		
-		public ObjectOutputStream getOut() {
-			return out;
+		public Map<Integer, SubmissionRequest> getWaitingForProblemData() {
+			return waitingForProblemData;
 		}
 	}
 	
@@ -229,22 +185,68 @@ public class Builder2Server implements Runnable {
 		public void forceClose() {
 			synchronized (lock) {
 				if (conn != null) {
-					Connection c = conn;
+					forceClose(conn);
+				}
+			}
+		}
+
+		/**
+		 * Forcibly close given connection if it is still the current connection.
+		 * 
+		 * @param c the {@link Connection} to close
+		 */
+		public void forceClose(Connection c) {
+			synchronized (lock) {
+				if (conn == c) {
 					conn = null;
 					IOUtil.closeQuietly(c.getSocket());
-					IOUtil.closeQuietly(c.getIn());
-					IOUtil.closeQuietly(c.getOut());
+					c.getChannel().close();
 				}
 			}
 		}
 	}
+	
+	/**
+	 * Task to test a single submission and send the result back to the webapp.
+	 */
+	private class TestSubmissionTask implements Runnable {
+		private final Connection conn;
+		private final int correlationId;
+		private final Submission submission;
+		
+		public TestSubmissionTask(Connection conn, int correlationId, Submission submission) {
+			this.conn = conn;
+			this.correlationId = correlationId;
+			this.submission = submission;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				// Test the submission!
+				SubmissionResult result = builder2.testSubmission(
+						submission.getProblem(), submission.getTestCaseList(), submission.getProgramText());
+				
+				// Send the SubmissionResult back to the webapp
+				conn.getChannel().send(new Message(MessageType.RESULT, correlationId, codec.encodeSubmissionResult(result)));
+			} catch (IOException e) {
+				// The webapp will re-queue the submission when it notices
+				// that the connection is gone.
+				logger.error("Error communicating with server", e);
+				connectionManager.forceClose(conn);
+			}
+		}
+	}
 
 	private volatile boolean shutdownRequested;
-	private StateManager stateManager;
 	private NoConnectTimer noConnectTimer;
 	private WebappSocketFactory webappSocketFactory;
 	private Builder2 builder2;
 	private ConnectionManager connectionManager;
+	private int numThreads;
+	private ExecutorService executor;
+	private PayloadCodec codec;
+	private ProblemCache problemCache;
 	
 	private Thread watchdogThread;
 
@@ -254,14 +256,23 @@ public class Builder2Server implements Runnable {
 	 * @param webappSocketFactory the {@link WebappSocketFactory} that will create socket
 	 *                            connections to the webapp
 	 * @param config              configuration properties: i.e., properties from cloudcoder.properties file
+	 * @param numThreads          number of submissions to build/test concurrently
 	 */
-	public Builder2Server(WebappSocketFactory webappSocketFactory, Properties config) {
+	public Builder2Server(WebappSocketFactory webappSocketFactory, Properties config, int numThreads) {
 		this.shutdownRequested = false;
-		this.stateManager = new StateManager();
 		this.noConnectTimer = new NoConnectTimer();
 		this.webappSocketFactory = webappSocketFactory;
 		this.builder2 = new Builder2(config);
+		this.codec = new PayloadCodec(Integer.parseInt(config.getProperty(
+				PayloadCodec.COMPRESSION_THRESHOLD_PROPERTY, String.valueOf(PayloadCodec.DEFAULT_COMPRESSION_THRESHOLD))));
+		this.problemCache = new ProblemCache(Integer.parseInt(config.getProperty(
+				"cloudcoder.builder2.problemCacheSize", String.valueOf(ProblemCache.DEFAULT_MAX_SIZE))));
 		this.connectionManager = new ConnectionManager();
+		this.numThreads = Math.min(numThreads, BuilderProtocol.MAX_IN_FLIGHT);
+		// The webapp never sends more than numThreads submissions
+		// without receiving results, so the queue is effectively bounded.
+		this.executor = new ThreadPoolExecutor(this.numThreads, this.numThreads,
+				0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
 	}
 
 	/**
@@ -269,7 +280,6 @@ public class Builder2Server implements Runnable {
 	 */
 	public void run() {
 		try {
-			stateManager.setState(State.NOT_CONNECTED);
 			watchdogThread = new Thread(new Watchdog());
 			watchdogThread.start();
 			while (!shutdownRequested) {
@@ -281,75 +291,95 @@ public class Builder2Server implements Runnable {
 	}
 
 	/**
-	 * Attempt to read one submission, compile and test it, and send the
-	 * result back to the webapp.
+	 * Connect to the webapp if necessary, then receive
+	 * messages until the connection is closed.
 	 */
 	protected void runOnce() {
+		if (!connectionManager.isConnected()) {
+			attemptToConnectToServer();
+			return;
+		}
+		Connection conn = connectionManager.getConnection();
+		if (conn == null) {
+			return;
+		}
+
 		try {
-			if (!connectionManager.isConnected()) {
-				attemptToConnectToServer();
-				return;
-			}
-			Connection conn = connectionManager.getConnection();
-
-			// This is a critical point: the server loop will block waiting
-			// for a problem id / keepalive signal.  If there are connection
-			// issues, this might block indefinitely.  Entering the
-			// WAITING_FOR_KEEPALIVE state lets the watchdog thread know
-			// that the connection should be forcibly closed if the server
-			// loop gets hung up here.
-			stateManager.setState(State.WAITING_FOR_KEEPALIVE);
-			Integer problemId = safeReadObject(conn.getIn());
-			stateManager.setState(State.WORKING);
-
-			// The CloudCoder app will send us a negative problem id as
-			// a keepalive signal when there are no submissions that need building/testing.
-			// We can just ignore these.
-			if (problemId < 0) {
-				stateManager.setState(State.CONNECTED);
-				return;
-			}
+			while (true) {
+				// This is a critical point: the server loop will block waiting
+				// for a message from the webapp.  If there are connection
+				// issues, this might block indefinitely.  The watchdog thread
+				// will forcibly close the connection if nothing is received
+				// for too long.
+				Message msg = conn.getChannel().receive();
+				conn.setLastReceiveTs(System.currentTimeMillis());
+
+				switch (msg.getType()) {
+				case KEEPALIVE:
+					// The CloudCoder app will send us keepalive signals when it has
+					// not sent anything for a while.  We can just ignore these.
+					break;
+
+				case SUBMISSION:
+					{
+						SubmissionRequest request = codec.decodeSubmissionRequest(msg.getPayload());
+						ProblemAndTestCaseList problemData = problemCache.get(request.getProblemId(), request.getProblemHash());
+						if (problemData != null) {
+							startTest(conn, msg.getCorrelationId(), request, problemData);
+						} else {
+							// Ask the webapp to send the problem data
+							conn.getWaitingForProblemData().put(msg.getCorrelationId(), request);
+							conn.getChannel().send(new Message(MessageType.NEED_PROBLEM, msg.getCorrelationId(), null));
+						}
+					}
+					break;
+
+				case PROBLEM_DATA:
+					{
+						SubmissionRequest request = conn.getWaitingForProblemData().remove(msg.getCorrelationId());
+						if (request == null) {
+							throw new IOException("Received problem data for unknown correlation id " + msg.getCorrelationId());
+						}
+						if (!PayloadCodec.computeHash(msg.getPayload()).equals(request.getProblemHash())) {
+							throw new IOException("Problem data for problem " + request.getProblemId() + " does not match its hash");
+						}
+						ProblemAndTestCaseList problemData = codec.decodeProblemData(msg.getPayload());
+						problemCache.put(request.getProblemId(), request.getProblemHash(), problemData);
+						logger.info("Cached data for problem {} ({} hits, {} misses)",
+								new Object[]{ request.getProblemId(), problemCache.getNumHits(), problemCache.getNumMisses() });
+						startTest(conn, msg.getCorrelationId(), request, problemData);
+					}
+					break;
 
-			// The protocol allows the builder to cache Problems and TestCases by their problem id,
-			// but this is a very bad idea, since the Problem and TestCases could change on the
-			// webapp side (for example, if an instructor is editing an exercise).
-			// For this reason, we ALWAYS claim not to have the Problem/TestCases, forcing
-			// the webapp to send the most up to date versions.  It's a small amount
-			// of data, and it's important for correct behavior.
-
-			// Tell the webapp we don't have this Problem/TestCases
-			conn.getOut().writeObject(Boolean.FALSE);
-			conn.getOut().flush();
-
-			// Receive the Problem and TestCases
-			Problem problem = safeReadObject(conn.getIn());
-			List<TestCase> testCaseList = safeReadObject(conn.getIn());
-
-			// read program text
-			String programText = safeReadObject(conn.getIn());
-
-			// Test the submission!
-			SubmissionResult result = builder2.testSubmission(problem, testCaseList, programText);
-
-			// Send the SubmissionResult back to the webapp
-			conn.getOut().writeObject(result);
-			conn.getOut().flush();
-			
-			// Everything went well: return to the CONNECTED state
-			stateManager.setState(State.CONNECTED);
+				default:
+					throw new IOException("Unexpected message type " + msg.getType() + " from webapp");
+				}
+			}
 		} catch (IOException e) {
 			// Quite possibly, this is a routine shutdown of the CloudCoder server.
 			// We'll try connecting again soon.
-			logger.error("Error communicating with server", e);
-			connectionManager.forceClose();
-			stateManager.setState(State.NOT_CONNECTED);
-		} catch (ClassNotFoundException e) {
-			// This should not happen!
-			logger.error("Unexpected ClassNotFoundException, shutting down builder thread", e);
-			connectionManager.forceClose();
-			stateManager.setState(State.NOT_CONNECTED);
-			shutdown();
-			throw new IllegalStateException("Class not found reading message", e);
+			if (!shutdownRequested) {
+				logger.error("Error communicating with server", e);
+			}
+			connectionManager.forceClose(conn);
+		}
+	}
+
+	/**
+	 * Start testing a submission whose problem data is available.
+	 */
+	private void startTest(Connection conn, int correlationId, SubmissionRequest request, ProblemAndTestCaseList problemData) {
+		if (shutdownRequested) {
+			// Don't start new work while shutting down: the webapp
+			// will re-queue the submission when the connection closes.
+			logger.info("Ignoring submission received during shutdown");
+			return;
+		}
+		Submission submission = new Submission(problemData.getProblem(), problemData.getTestCaseData(), request.getProgramText());
+		try {
+			executor.execute(new TestSubmissionTask(conn, correlationId, submission));
+		} catch (RejectedExecutionException e) {
+			logger.info("Ignoring submission received during shutdown");
 		}
 	}
 
@@ -359,30 +389,26 @@ public class Builder2Server implements Runnable {
 
 	public void attemptToConnectToServer() {
 		ISocket socket = null;
-		ObjectInputStream in = null;
-		ObjectOutputStream out = null;
+		MessageChannel channel = null;
 		
 		try {
 			try {
-				stateManager.setState(State.ATTEMPTING_TO_CONNECT);
 				socket = createSecureSocket();
 			} catch (GeneralSecurityException e) {
 				logger.error("Unexpected GeneralSecurityException connecting to webapp", e);
-				stateManager.setState(State.NOT_CONNECTED);
 				throw new RuntimeException(e);
 			}
-			in = new ObjectInputStream(socket.getInputStream());
-			out = new ObjectOutputStream(socket.getOutputStream());
+			channel = new MessageChannel(socket.getInputStream(), socket.getOutputStream());
+			channel.sendHandshake(numThreads);
 			logger.info("Connected!");
-			stateManager.setState(State.CONNECTED);
 			noConnectTimer.connected();
-			connectionManager.setConnection(new Connection(socket, in, out));
+			connectionManager.setConnection(new Connection(socket, channel));
 		} catch (IOException e) {
 			IOUtil.closeQuietly(socket);
-			IOUtil.closeQuietly(in);
-			IOUtil.closeQuietly(out);
+			if (channel != null) {
+				channel.close();
+			}
 			logger.info("Failed attempt to connect to server at {}", System.currentTimeMillis());
-			stateManager.setState(State.NOT_CONNECTED);
 			noConnectTimer.notConnected(e);
 			try {
 				// Cool off for a bit
@@ -393,15 +419,6 @@ public class Builder2Server implements Runnable {
 		}
 	}
 
-	@SuppressWarnings("unchecked")
-	private<E> E safeReadObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
-		Object o = in.readObject();
-		if (o == null) {
-			throw new IOException("Could not read!");
-		}
-		return (E) o;
-	}
-
 	public void shutdown() {
 		shutdownRequested = true;
 
@@ -413,15 +430,15 @@ public class Builder2Server implements Runnable {
 			logger.error("Interrupted waiting for watchdog thread to finish", e);
 		}
 
-		// Shut down the server loop.
+		// Shut down the worker threads.
 		// If building/testing is in progress, wait for it to finish.
-		while (!stateManager.getStateData().getState().allowShutdown()) {
-			logger.info("shutdown(): waiting for building/testing of current submission to complete");
-			try {
-				Thread.sleep(2000L);
-			} catch (InterruptedException e) {
-				logger.error("Interrupted waiting for server loop to finish current submission");
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(2000L, TimeUnit.MILLISECONDS)) {
+				logger.info("shutdown(): waiting for building/testing of current submissions to complete");
 			}
+		} catch (InterruptedException e) {
+			logger.error("Interrupted waiting for server loop to finish current submissions");
 		}
 		
 		// Close the socket that the server loop is using
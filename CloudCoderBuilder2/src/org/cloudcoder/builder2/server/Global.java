@@ -22,8 +22,10 @@ import java.util.Properties;
 
 import org.cloudcoder.builder2.csandbox.EasySandboxSharedLibrary;
 import org.cloudcoder.builder2.extlib.ExternalLibraryCache;
+import org.cloudcoder.builder2.javaprogram.JavaProgramWorkerPool;
 import org.cloudcoder.builder2.javasandbox.JVMKillableTaskManager;
 import org.cloudcoder.builder2.process.RunProcessNativeExe;
+import org.cloudcoder.builder2.process.TestExecutionScheduler;
 import org.cloudcoder.builder2.pythonfunction.PythonKillableTaskManager;
 
 /**
@@ -43,6 +45,10 @@ public class Global {
 		// Install KillableTaskManager's security manager
 		JVMKillableTaskManager.installSecurityManager();
 		PythonKillableTaskManager.installSecurityManager();
+		
+		// Create the scheduler which limits the number of
+		// concurrent test executions
+		TestExecutionScheduler.getInstance(config);
 	}
 	
 	/**
@@ -62,5 +68,10 @@ public class Global {
 		
 		// Delete directories/files used by the RunProcessNativeExe
 		RunProcessNativeExe.getInstance(config).cleanup();
+		
+		// Shut down warm JVMs used to run Java programs
+		if (JavaProgramWorkerPool.isCreated()) {
+			JavaProgramWorkerPool.getInstance(config).shutdown();
+		}
 	}
 }
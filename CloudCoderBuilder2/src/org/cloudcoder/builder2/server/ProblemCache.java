@@ -0,0 +1,117 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.builder2.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.cloudcoder.app.shared.model.ProblemAndTestCaseList;
+
+/**
+ * Cache of problems and test cases received from the webapp.
+ * Each problem id maps to the most recently received version of the
+ * problem data, identified by its content hash: a lookup only succeeds
+ * if the hash matches, so an edited problem (which has a different hash)
+ * is never tested against stale data, and receiving the new version
+ * replaces the old one.  The least recently used problems are evicted
+ * when the cache is full.
+ * 
+ * <p>Cached objects are shared by all worker threads, so they must
+ * not be modified.
+ * 
+ * @author David Hovemeyer
+ */
+public class ProblemCache {
+	/**
+	 * Default maximum number of problems to cache.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 100;
+	
+	private static class Entry {
+		final String hash;
+		final ProblemAndTestCaseList data;
+		
+		Entry(String hash, ProblemAndTestCaseList data) {
+			this.hash = hash;
+			this.data = data;
+		}
+	}
+	
+	private Map<Integer, Entry> map;
+	private int hits, misses;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxSize maximum number of problems to cache
+	 */
+	public ProblemCache(final int maxSize) {
+		this.map = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, ProblemCache.Entry> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+	
+	/**
+	 * Look up cached problem data.
+	 * 
+	 * @param problemId the problem id
+	 * @param hash      the hash of the problem data
+	 * @return the cached {@link ProblemAndTestCaseList}, or null if the cache
+	 *         does not contain data with the given hash
+	 */
+	public synchronized ProblemAndTestCaseList get(int problemId, String hash) {
+		Entry entry = map.get(problemId);
+		if (entry == null || !entry.hash.equals(hash)) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return entry.data;
+	}
+	
+	/**
+	 * Add problem data to the cache, replacing any other version
+	 * of the same problem.
+	 * 
+	 * @param problemId the problem id
+	 * @param hash      the hash of the problem data
+	 * @param data      the {@link ProblemAndTestCaseList}
+	 */
+	public synchronized void put(int problemId, String hash, ProblemAndTestCaseList data) {
+		map.put(problemId, new Entry(hash, data));
+	}
+	
+	/**
+	 * @return number of successful lookups
+	 */
+	public synchronized int getNumHits() {
+		return hits;
+	}
+	
+	/**
+	 * @return number of unsuccessful lookups
+	 */
+	public synchronized int getNumMisses() {
+		return misses;
+	}
+}
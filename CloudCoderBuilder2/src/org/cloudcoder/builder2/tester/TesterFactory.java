@@ -41,8 +41,9 @@ import org.cloudcoder.builder2.javacompiler.JavaCompilerBuildStep;
 import org.cloudcoder.builder2.javacompiler.LoadClassesBuildStep;
 import org.cloudcoder.builder2.javamethod.AddJavaMethodScaffoldingBuildStep;
 import org.cloudcoder.builder2.javamethod.AddJavaMethodTestDriverBuildStep;
+import org.cloudcoder.builder2.javamethod.CompileJavaMethodTestDriverBuildStep;
 import org.cloudcoder.builder2.javamethod.ExecuteJavaMethodTestsBuildStep;
-import org.cloudcoder.builder2.javaprogram.JavaProgramToCommandForEachCommandInputBuildStep;
+import org.cloudcoder.builder2.javaprogram.ExecuteJavaProgramForEachCommandInputBuildStep;
 import org.cloudcoder.builder2.model.IBuildStep;
 import org.cloudcoder.builder2.model.Tester;
 import org.cloudcoder.builder2.pythonfunction.AddPythonFunctionScaffoldingBuildStep;
@@ -113,8 +114,7 @@ public abstract class TesterFactory {
 		new JavaCompilerBuildStep(),
 		new BytecodeToBytecodeExecutableBuildStep(),
 		new CreateCommandInputsForEachTestCaseBuildStep(),
-		new JavaProgramToCommandForEachCommandInputBuildStep(),
-		new ExecuteCommandForEachCommandInputBuildStep(),
+		new ExecuteJavaProgramForEachCommandInputBuildStep(),
 		new CheckCommandResultsUsingRegexBuildStep(),
 		new CreateSubmissionResultBuildStep(),
 	};
@@ -128,6 +128,7 @@ public abstract class TesterFactory {
 		new AddJavaMethodScaffoldingBuildStep(),
 		new AddJavaMethodTestDriverBuildStep(),
 		new JavaCompilerBuildStep(),
+		new CompileJavaMethodTestDriverBuildStep(),
 		new LoadClassesBuildStep(),
 		new ExecuteJavaMethodTestsBuildStep(),
 	};
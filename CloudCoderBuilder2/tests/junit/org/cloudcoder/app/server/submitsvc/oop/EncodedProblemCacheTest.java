@@ -0,0 +1,114 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.ProblemType;
+import org.cloudcoder.app.shared.model.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EncodedProblemCacheTest {
+	private PayloadCodec codec;
+	private EncodedProblemCache cache;
+	
+	@Before
+	public void setUp() {
+		codec = new PayloadCodec(PayloadCodec.DEFAULT_COMPRESSION_THRESHOLD);
+		cache = new EncodedProblemCache(codec, 2);
+	}
+	
+	// Each call returns new objects, as when a problem is loaded from the database
+	private static Problem createProblem(int problemId) {
+		Problem problem = new Problem();
+		problem.setProblemId(problemId);
+		problem.setProblemType(ProblemType.JAVA_METHOD);
+		problem.setTestname("sumArray");
+		problem.setDescription(new StringBuilder("Return the sum of the elements of the array").toString());
+		return problem;
+	}
+	
+	private static List<TestCase> createTestCaseList(int problemId) {
+		List<TestCase> testCaseList = new ArrayList<TestCase>();
+		for (int i = 0; i < 3; i++) {
+			TestCase testCase = new TestCase();
+			testCase.setTestCaseId(100 + i);
+			testCase.setProblemId(problemId);
+			testCase.setTestCaseName("test" + i);
+			testCase.setInput("new int[]{" + i + "}");
+			testCase.setOutput(String.valueOf(i));
+			testCaseList.add(testCase);
+		}
+		return testCaseList;
+	}
+	
+	@Test
+	public void testSameVersion() throws Exception {
+		EncodedProblem first = cache.get(createProblem(1), createTestCaseList(1));
+		EncodedProblem second = cache.get(createProblem(1), createTestCaseList(1));
+		assertSame(first, second);
+		
+		EncodedProblem expected = EncodedProblem.encode(codec, createProblem(1), createTestCaseList(1));
+		assertEquals(expected.getHash(), first.getHash());
+		assertArrayEquals(expected.getData(), first.getData());
+	}
+	
+	@Test
+	public void testChangedTestCase() throws Exception {
+		EncodedProblem first = cache.get(createProblem(1), createTestCaseList(1));
+		
+		List<TestCase> edited = createTestCaseList(1);
+		edited.get(2).setOutput("3");
+		EncodedProblem second = cache.get(createProblem(1), edited);
+		assertFalse(first.getHash().equals(second.getHash()));
+		
+		// The edited version replaces the original
+		List<TestCase> editedAgain = createTestCaseList(1);
+		editedAgain.get(2).setOutput("3");
+		assertSame(second, cache.get(createProblem(1), editedAgain));
+		assertNotSame(first, cache.get(createProblem(1), createTestCaseList(1)));
+	}
+	
+	@Test
+	public void testChangedProblem() throws Exception {
+		EncodedProblem first = cache.get(createProblem(1), createTestCaseList(1));
+		Problem edited = createProblem(1);
+		edited.setSkeleton("public static int sumArray(int[] a) {\n}\n");
+		EncodedProblem second = cache.get(edited, createTestCaseList(1));
+		assertFalse(first.getHash().equals(second.getHash()));
+	}
+	
+	@Test
+	public void testEviction() throws Exception {
+		EncodedProblem first = cache.get(createProblem(1), createTestCaseList(1));
+		cache.get(createProblem(2), createTestCaseList(2));
+		cache.get(createProblem(3), createTestCaseList(3));
+		
+		EncodedProblem again = cache.get(createProblem(1), createTestCaseList(1));
+		assertNotSame(first, again);
+		assertEquals(first.getHash(), again.getHash());
+	}
+}
@@ -0,0 +1,123 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+
+import org.cloudcoder.app.server.submitsvc.SubmissionOrigin;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.Submission;
+import org.cloudcoder.app.shared.model.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FairShareSubmissionSchedulerTest {
+	private FairShareSubmissionScheduler scheduler;
+	
+	@Before
+	public void setUp() {
+		scheduler = new FairShareSubmissionScheduler(0);
+	}
+	
+	private static OOPBuildServiceSubmission create(SubmissionPriority priority, int userId, int courseId) {
+		return new OOPBuildServiceSubmission(
+				new Submission(new Problem(), new ArrayList<TestCase>(), ""),
+				new SubmissionOrigin(priority, userId, courseId));
+	}
+	
+	@Test
+	public void testPriority() {
+		OOPBuildServiceSubmission batch = create(SubmissionPriority.BATCH, 1, 1);
+		OOPBuildServiceSubmission run = create(SubmissionPriority.RUN, 1, 1);
+		OOPBuildServiceSubmission submit = create(SubmissionPriority.SUBMIT, 1, 1);
+		OOPBuildServiceSubmission quiz = create(SubmissionPriority.QUIZ, 1, 1);
+		scheduler.add(batch);
+		scheduler.add(run);
+		scheduler.add(submit);
+		scheduler.add(quiz);
+		assertEquals(4, scheduler.size());
+		
+		assertSame(quiz, scheduler.poll());
+		assertSame(submit, scheduler.poll());
+		assertSame(run, scheduler.poll());
+		assertSame(batch, scheduler.poll());
+		assertNull(scheduler.poll());
+		assertEquals(0, scheduler.size());
+	}
+	
+	@Test
+	public void testUsersTakeTurns() {
+		OOPBuildServiceSubmission a1 = create(SubmissionPriority.SUBMIT, 1, 1);
+		OOPBuildServiceSubmission a2 = create(SubmissionPriority.SUBMIT, 1, 1);
+		OOPBuildServiceSubmission a3 = create(SubmissionPriority.SUBMIT, 1, 1);
+		OOPBuildServiceSubmission b1 = create(SubmissionPriority.SUBMIT, 2, 1);
+		OOPBuildServiceSubmission c1 = create(SubmissionPriority.SUBMIT, 3, 1);
+		scheduler.add(a1);
+		scheduler.add(a2);
+		scheduler.add(a3);
+		scheduler.add(b1);
+		scheduler.add(c1);
+		
+		assertSame(a1, scheduler.poll());
+		assertSame(b1, scheduler.poll());
+		assertSame(c1, scheduler.poll());
+		assertSame(a2, scheduler.poll());
+		assertSame(a3, scheduler.poll());
+	}
+	
+	@Test
+	public void testRequeue() {
+		OOPBuildServiceSubmission a1 = create(SubmissionPriority.SUBMIT, 1, 1);
+		OOPBuildServiceSubmission b1 = create(SubmissionPriority.SUBMIT, 2, 1);
+		OOPBuildServiceSubmission c1 = create(SubmissionPriority.SUBMIT, 3, 1);
+		scheduler.add(a1);
+		scheduler.add(b1);
+		scheduler.requeue(c1);
+		
+		assertSame(c1, scheduler.poll());
+		assertSame(a1, scheduler.poll());
+		assertSame(b1, scheduler.poll());
+	}
+	
+	@Test
+	public void testCourseQuota() {
+		scheduler = new FairShareSubmissionScheduler(1);
+		OOPBuildServiceSubmission x1 = create(SubmissionPriority.SUBMIT, 1, 10);
+		OOPBuildServiceSubmission x2 = create(SubmissionPriority.SUBMIT, 2, 10);
+		OOPBuildServiceSubmission y1 = create(SubmissionPriority.SUBMIT, 3, 20);
+		scheduler.add(x1);
+		scheduler.add(x2);
+		scheduler.add(y1);
+		
+		// Course 10 reaches its quota, so course 20 goes next
+		OOPBuildServiceSubmission first = scheduler.poll();
+		assertSame(x1, first);
+		scheduler.onDispatched(first);
+		OOPBuildServiceSubmission second = scheduler.poll();
+		assertSame(y1, second);
+		scheduler.onDispatched(second);
+		
+		// No other course is waiting, so the quota does not apply
+		assertSame(x2, scheduler.poll());
+	}
+}
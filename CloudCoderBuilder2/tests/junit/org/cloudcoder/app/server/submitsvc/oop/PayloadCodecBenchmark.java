@@ -0,0 +1,143 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudcoder.app.shared.model.CompilationOutcome;
+import org.cloudcoder.app.shared.model.CompilationResult;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.ProblemType;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.app.shared.model.TestCase;
+import org.cloudcoder.app.shared.model.TestOutcome;
+import org.cloudcoder.app.shared.model.TestResult;
+
+/**
+ * Compare the CPU time and payload size of {@link PayloadCodec} with
+ * Java serialization (as used by version 2 of the builder protocol)
+ * for a typical submission and result.  Run it as a Java application:
+ * the first argument, if present, is the number of iterations.
+ * 
+ * @author David Hovemeyer
+ */
+public class PayloadCodecBenchmark {
+	private static final int WARMUP_ITERATIONS = 20000;
+	
+	private interface Encoder {
+		byte[] encode() throws IOException;
+	}
+	
+	public static void main(String[] args) throws IOException {
+		int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		
+		final Problem problem = new Problem();
+		problem.setProblemId(1);
+		problem.setCourseId(1);
+		problem.setProblemType(ProblemType.JAVA_METHOD);
+		problem.setTestname("isPalindrome");
+		problem.setBriefDescription("Determine whether a string is a palindrome");
+		problem.setDescription(repeat("Return true if the parameter is a palindrome. ", 10));
+		problem.setSkeleton("public static boolean isPalindrome(String s) {\n\t\n}\n");
+		final List<TestCase> testCaseList = new ArrayList<TestCase>();
+		for (int i = 0; i < 8; i++) {
+			TestCase testCase = new TestCase();
+			testCase.setTestCaseId(i + 1);
+			testCase.setProblemId(1);
+			testCase.setTestCaseName("test" + i);
+			testCase.setInput("\"abc" + i + "cba\"");
+			testCase.setOutput("false");
+			testCaseList.add(testCase);
+		}
+		final String programText = repeat("\t// check characters from both ends\n", 20);
+		
+		final SubmissionResult result = new SubmissionResult(new CompilationResult(CompilationOutcome.SUCCESS));
+		TestResult[] testResults = new TestResult[testCaseList.size()];
+		for (int i = 0; i < testResults.length; i++) {
+			testResults[i] = new TestResult(TestOutcome.PASSED, "Passed!", repeat("output\n", 50), "");
+		}
+		result.setTestResults(testResults);
+		
+		final PayloadCodec codec = new PayloadCodec(PayloadCodec.DEFAULT_COMPRESSION_THRESHOLD);
+		
+		run("submission, serialization", iterations, new Encoder() {
+			public byte[] encode() throws IOException {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				ObjectOutputStream out = new ObjectOutputStream(bytes);
+				out.writeObject(problem);
+				out.writeObject(testCaseList);
+				out.writeObject(programText);
+				out.close();
+				return bytes.toByteArray();
+			}
+		});
+		run("submission, PayloadCodec", iterations, new Encoder() {
+			public byte[] encode() throws IOException {
+				// The problem data is always encoded and hashed, but it is
+				// only sent if the Builder doesn't have it cached
+				byte[] problemData = codec.encodeProblemData(problem, testCaseList);
+				SubmissionRequest request = new SubmissionRequest(1, PayloadCodec.computeHash(problemData), programText);
+				return codec.encodeSubmissionRequest(request);
+			}
+		});
+		run("problem data, PayloadCodec", iterations, new Encoder() {
+			public byte[] encode() throws IOException {
+				return codec.encodeProblemData(problem, testCaseList);
+			}
+		});
+		run("result, serialization", iterations, new Encoder() {
+			public byte[] encode() throws IOException {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				ObjectOutputStream out = new ObjectOutputStream(bytes);
+				out.writeObject(result);
+				out.close();
+				return bytes.toByteArray();
+			}
+		});
+		run("result, PayloadCodec", iterations, new Encoder() {
+			public byte[] encode() throws IOException {
+				return codec.encodeSubmissionResult(result);
+			}
+		});
+	}
+	
+	private static void run(String name, int iterations, Encoder encoder) throws IOException {
+		int size = 0;
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			size = encoder.encode().length;
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			encoder.encode();
+		}
+		long elapsed = System.nanoTime() - start;
+		System.out.printf("%-28s %6d bytes %8.2f us/op%n", name, size, elapsed / 1000.0 / iterations);
+	}
+	
+	private static String repeat(String s, int n) {
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			buf.append(s);
+		}
+		return buf.toString();
+	}
+}
@@ -0,0 +1,214 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudcoder.app.shared.model.CompilationOutcome;
+import org.cloudcoder.app.shared.model.CompilationResult;
+import org.cloudcoder.app.shared.model.CompilerDiagnostic;
+import org.cloudcoder.app.shared.model.ModelObjectField;
+import org.cloudcoder.app.shared.model.ModelObjectSchema;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.ProblemAndTestCaseList;
+import org.cloudcoder.app.shared.model.ProblemAuthorship;
+import org.cloudcoder.app.shared.model.ProblemLicense;
+import org.cloudcoder.app.shared.model.ProblemType;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.app.shared.model.SubmissionResultAnnotation;
+import org.cloudcoder.app.shared.model.TestCase;
+import org.cloudcoder.app.shared.model.TestOutcome;
+import org.cloudcoder.app.shared.model.TestResult;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PayloadCodecTest {
+	private Problem problem;
+	private List<TestCase> testCaseList;
+	private String programText;
+	private SubmissionResult result;
+	
+	@Before
+	public void setUp() {
+		problem = new Problem();
+		problem.setProblemId(42);
+		problem.setCourseId(3);
+		problem.setWhenAssigned(1400000000000L);
+		problem.setWhenDue(1400086400000L);
+		problem.setVisible(true);
+		problem.setProblemAuthorship(ProblemAuthorship.IMPORTED);
+		problem.setModuleId(-1);
+		problem.setProblemType(ProblemType.JAVA_METHOD);
+		problem.setTestname("sumArray");
+		problem.setBriefDescription("Sum an array");
+		problem.setDescription("Return the sum of the elements of the array \u00e9\u4e2d");
+		problem.setSkeleton("public static int sumArray(int[] a) {\n}\n");
+		problem.setSchemaVersion(Problem.SCHEMA.getVersion());
+		problem.setAuthorName("A. Author");
+		problem.setTimestampUtc(1399999999999L);
+		problem.setLicense(ProblemLicense.CC_ATTRIB_SHAREALIKE_3_0);
+		
+		testCaseList = new ArrayList<TestCase>();
+		for (int i = 0; i < 3; i++) {
+			TestCase testCase = new TestCase();
+			testCase.setTestCaseId(100 + i);
+			testCase.setProblemId(42);
+			testCase.setTestCaseName("test" + i);
+			testCase.setInput("new int[]{" + i + "}");
+			testCase.setOutput(String.valueOf(i));
+			testCase.setSecret(i == 2);
+			testCaseList.add(testCase);
+		}
+		
+		programText = "public static int sumArray(int[] a) {\n\tint sum = 0;\n\tfor (int x : a) sum += x;\n\treturn sum;\n}\n";
+		
+		CompilationResult compilationResult = new CompilationResult(CompilationOutcome.SUCCESS);
+		compilationResult.setCompilerDiagnosticList(new CompilerDiagnostic[]{
+				new CompilerDiagnostic(3, 3, 7, 12, "warning: unused variable")
+		});
+		result = new SubmissionResult(compilationResult);
+		TestResult passed = new TestResult(TestOutcome.PASSED, "Passed!", "out", "");
+		TestResult failed = new TestResult(TestOutcome.FAILED_ASSERTION, "Failed", null, "err");
+		failed.setInput("new int[]{1}");
+		failed.setExpectedOutput("1");
+		failed.setActualOutput("0");
+		result.setTestResults(new TestResult[]{ passed, failed });
+		result.addAnnotation(new SubmissionResultAnnotation("builder", "test"));
+	}
+	
+	@Test
+	public void testProblemDataRoundTrip() throws IOException {
+		PayloadCodec codec = new PayloadCodec(PayloadCodec.DEFAULT_COMPRESSION_THRESHOLD);
+		ProblemAndTestCaseList decoded = codec.decodeProblemData(codec.encodeProblemData(problem, testCaseList));
+		
+		assertFieldsEqual(Problem.SCHEMA, problem, decoded.getProblem());
+		assertEquals(testCaseList.size(), decoded.getTestCaseData().size());
+		for (int i = 0; i < testCaseList.size(); i++) {
+			assertFieldsEqual(TestCase.SCHEMA, testCaseList.get(i), decoded.getTestCaseData().get(i));
+		}
+	}
+	
+	@Test
+	public void testSubmissionRequestRoundTrip() throws IOException {
+		PayloadCodec codec = new PayloadCodec(PayloadCodec.DEFAULT_COMPRESSION_THRESHOLD);
+		String hash = PayloadCodec.computeHash(codec.encodeProblemData(problem, testCaseList));
+		SubmissionRequest decoded = codec.decodeSubmissionRequest(
+				codec.encodeSubmissionRequest(new SubmissionRequest(42, hash, programText)));
+		assertEquals(42, decoded.getProblemId());
+		assertEquals(hash, decoded.getProblemHash());
+		assertEquals(programText, decoded.getProgramText());
+	}
+	
+	@Test
+	public void testHashChangesWithProblemData() throws IOException {
+		PayloadCodec codec = new PayloadCodec(PayloadCodec.DEFAULT_COMPRESSION_THRESHOLD);
+		String hash = PayloadCodec.computeHash(codec.encodeProblemData(problem, testCaseList));
+		assertEquals(40, hash.length());
+		assertEquals(hash, PayloadCodec.computeHash(codec.encodeProblemData(problem, testCaseList)));
+		
+		// Trailing whitespace in an expected output is significant
+		testCaseList.get(1).setOutput(testCaseList.get(1).getOutput() + " ");
+		assertFalse(hash.equals(PayloadCodec.computeHash(codec.encodeProblemData(problem, testCaseList))));
+	}
+	
+	@Test
+	public void testSubmissionResultRoundTrip() throws IOException {
+		PayloadCodec codec = new PayloadCodec(PayloadCodec.DEFAULT_COMPRESSION_THRESHOLD);
+		SubmissionResult decoded = codec.decodeSubmissionResult(codec.encodeSubmissionResult(result));
+		assertResultsEqual(result, decoded);
+	}
+	
+	@Test
+	public void testCompilationFailedRoundTrip() throws IOException {
+		PayloadCodec codec = new PayloadCodec(PayloadCodec.DEFAULT_COMPRESSION_THRESHOLD);
+		SubmissionResult failed = new SubmissionResult();
+		failed.setCompilationResult(new CompilationResult(CompilationOutcome.FAILURE));
+		SubmissionResult decoded = codec.decodeSubmissionResult(codec.encodeSubmissionResult(failed));
+		assertNull(decoded.getTestResults());
+		assertResultsEqual(failed, decoded);
+	}
+	
+	@Test
+	public void testCompression() throws IOException {
+		StringBuilder buf = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			buf.append("line ").append(i % 10).append('\n');
+		}
+		String stdout = buf.toString();
+		result.getTestResults()[0].setStdout(stdout);
+		
+		PayloadCodec uncompressed = new PayloadCodec(0);
+		PayloadCodec compressed = new PayloadCodec(1024);
+		byte[] uncompressedPayload = uncompressed.encodeSubmissionResult(result);
+		byte[] compressedPayload = compressed.encodeSubmissionResult(result);
+		assertTrue(compressedPayload.length < uncompressedPayload.length / 4);
+		
+		// The decoder does not depend on the threshold
+		assertResultsEqual(result, uncompressed.decodeSubmissionResult(compressedPayload));
+		assertResultsEqual(result, compressed.decodeSubmissionResult(uncompressedPayload));
+	}
+	
+	@Test(expected=IOException.class)
+	public void testTruncatedPayload() throws IOException {
+		PayloadCodec codec = new PayloadCodec(PayloadCodec.DEFAULT_COMPRESSION_THRESHOLD);
+		byte[] payload = codec.encodeProblemData(problem, testCaseList);
+		byte[] truncated = new byte[payload.length - 1];
+		System.arraycopy(payload, 0, truncated, 0, truncated.length);
+		codec.decodeProblemData(truncated);
+	}
+	
+	private void assertResultsEqual(SubmissionResult expected, SubmissionResult actual) {
+		CompilationResult expectedCompilationResult = expected.getCompilationResult();
+		CompilationResult actualCompilationResult = actual.getCompilationResult();
+		assertEquals(expectedCompilationResult.getOutcome(), actualCompilationResult.getOutcome());
+		CompilerDiagnostic[] expectedDiagnostics = expectedCompilationResult.getCompilerDiagnosticList();
+		CompilerDiagnostic[] actualDiagnostics = actualCompilationResult.getCompilerDiagnosticList();
+		assertEquals(expectedDiagnostics.length, actualDiagnostics.length);
+		for (int i = 0; i < expectedDiagnostics.length; i++) {
+			assertEquals(expectedDiagnostics[i], actualDiagnostics[i]);
+		}
+		
+		if (expected.getTestResults() != null) {
+			assertEquals(expected.getTestResults().length, actual.getTestResults().length);
+			for (int i = 0; i < expected.getTestResults().length; i++) {
+				assertFieldsEqual(TestResult.SCHEMA, expected.getTestResults()[i], actual.getTestResults()[i]);
+			}
+		}
+		
+		assertEquals(expected.getAnnotationList().size(), actual.getAnnotationList().size());
+		for (int i = 0; i < expected.getAnnotationList().size(); i++) {
+			assertEquals(expected.getAnnotationList().get(i).getKey(), actual.getAnnotationList().get(i).getKey());
+			assertEquals(expected.getAnnotationList().get(i).getValue(), actual.getAnnotationList().get(i).getValue());
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static<E> void assertFieldsEqual(ModelObjectSchema<? super E> schema, E expected, E actual) {
+		for (ModelObjectField<?, ?> field : schema.getFieldList()) {
+			ModelObjectField<Object, Object> f = (ModelObjectField<Object, Object>) field;
+			assertEquals(field.getName(), f.get(expected), f.get(actual));
+		}
+	}
+}
@@ -0,0 +1,187 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
+import org.cloudcoder.app.server.submitsvc.ISubmissionCompletionListener;
+import org.cloudcoder.app.server.submitsvc.SubmissionOrigin;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
+import org.cloudcoder.app.shared.model.CompilationOutcome;
+import org.cloudcoder.app.shared.model.CompilationResult;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.Submission;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.app.shared.model.TestCase;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SubmissionCoalescerTest {
+	private PayloadCodec codec;
+	private SubmissionCoalescer coalescer;
+	
+	@Before
+	public void setUp() {
+		codec = new PayloadCodec(PayloadCodec.DEFAULT_COMPRESSION_THRESHOLD);
+		coalescer = new SubmissionCoalescer(2, 60000L);
+	}
+	
+	private static OOPBuildServiceSubmission create(String programText) {
+		return create(programText, SubmissionPriority.SUBMIT);
+	}
+	
+	private static OOPBuildServiceSubmission create(String programText, SubmissionPriority priority) {
+		return new OOPBuildServiceSubmission(
+				new Submission(new Problem(), new ArrayList<TestCase>(), programText),
+				new SubmissionOrigin(priority, 1, 1));
+	}
+	
+	private String key(OOPBuildServiceSubmission submission) throws Exception {
+		EncodedProblem encodedProblem = EncodedProblem.encode(codec, submission.getProblem(), submission.getTestCaseList());
+		return SubmissionCoalescer.computeKey(encodedProblem, submission.getProgramText());
+	}
+	
+	private static void complete(OOPBuildServiceSubmission submission) {
+		submission.setSubmissionResult(new SubmissionResult(new CompilationResult(CompilationOutcome.SUCCESS)));
+		submission.setReady();
+	}
+	
+	@Test
+	public void testInFlight() throws Exception {
+		OOPBuildServiceSubmission first = create("x = 1");
+		OOPBuildServiceSubmission second = create("x = 1");
+		OOPBuildServiceSubmission other = create("x = 2");
+		assertSame(first, coalescer.getOrAdd(key(first), first));
+		assertSame(first, coalescer.getOrAdd(key(second), second));
+		assertSame(other, coalescer.getOrAdd(key(other), other));
+		assertEquals(1L, coalescer.getNumInFlightHits());
+		assertEquals(0L, coalescer.getNumResultHits());
+		assertEquals(2L, coalescer.getNumMisses());
+	}
+	
+	@Test
+	public void testDoesNotAttachToLowerPriority() throws Exception {
+		OOPBuildServiceSubmission run = create("x = 1", SubmissionPriority.RUN);
+		OOPBuildServiceSubmission quiz = create("x = 1", SubmissionPriority.QUIZ);
+		OOPBuildServiceSubmission submit = create("x = 1", SubmissionPriority.SUBMIT);
+		coalescer.getOrAdd(key(run), run);
+		
+		// The quiz submission must not wait at Run priority
+		assertSame(quiz, coalescer.getOrAdd(key(quiz), quiz));
+		
+		// ...but a lower priority submission can attach to it
+		assertSame(quiz, coalescer.getOrAdd(key(submit), submit));
+		assertEquals(1L, coalescer.getNumInFlightHits());
+		assertEquals(2L, coalescer.getNumMisses());
+		
+		// A completed result is reused regardless of priority
+		complete(run);
+		complete(quiz);
+		OOPBuildServiceSubmission quiz2 = create("x = 1", SubmissionPriority.QUIZ);
+		assertSame(quiz, coalescer.getOrAdd(key(quiz2), quiz2));
+		assertEquals(1L, coalescer.getNumResultHits());
+	}
+	
+	@Test
+	public void testRecentResult() throws Exception {
+		OOPBuildServiceSubmission first = create("x = 1");
+		coalescer.getOrAdd(key(first), first);
+		complete(first);
+		
+		OOPBuildServiceSubmission second = create("x = 1");
+		assertSame(first, coalescer.getOrAdd(key(second), second));
+		assertEquals(1L, coalescer.getNumResultHits());
+		
+		// Each caller gets its own copy of the result
+		SubmissionResult a = new CoalescedSubmissionResult(first, codec).waitFor(0L);
+		SubmissionResult b = new CoalescedSubmissionResult(first, codec).waitFor(0L);
+		assertNotSame(a, b);
+		assertEquals(CompilationOutcome.SUCCESS, b.getCompilationResult().getOutcome());
+	}
+	
+	@Test
+	public void testErrorIsNotReused() throws Exception {
+		OOPBuildServiceSubmission first = create("x = 1");
+		coalescer.getOrAdd(key(first), first);
+		first.setError(new Exception("builder failed"));
+		first.setReady();
+		
+		OOPBuildServiceSubmission second = create("x = 1");
+		assertSame(second, coalescer.getOrAdd(key(second), second));
+		assertEquals(2L, coalescer.getNumMisses());
+	}
+	
+	@Test
+	public void testExpiredResultIsNotReused() throws Exception {
+		coalescer = new SubmissionCoalescer(2, -1L);
+		OOPBuildServiceSubmission first = create("x = 1");
+		coalescer.getOrAdd(key(first), first);
+		complete(first);
+		
+		OOPBuildServiceSubmission second = create("x = 1");
+		assertSame(second, coalescer.getOrAdd(key(second), second));
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() throws Exception {
+		OOPBuildServiceSubmission a = create("a");
+		OOPBuildServiceSubmission b = create("b");
+		OOPBuildServiceSubmission c = create("c");
+		coalescer.getOrAdd(key(a), a);
+		coalescer.getOrAdd(key(b), b);
+		coalescer.getOrAdd(key(a), create("a"));
+		coalescer.getOrAdd(key(c), c);
+		
+		// b was least recently used, so it was evicted to make room for c
+		OOPBuildServiceSubmission a2 = create("a");
+		assertSame(a, coalescer.getOrAdd(key(a2), a2));
+		OOPBuildServiceSubmission b2 = create("b");
+		assertSame(b2, coalescer.getOrAdd(key(b2), b2));
+	}
+	
+	@Test
+	public void testCompletionListener() throws Exception {
+		final List<IFutureSubmissionResult> completed = new ArrayList<IFutureSubmissionResult>();
+		ISubmissionCompletionListener listener = new ISubmissionCompletionListener() {
+			@Override
+			public void onSubmissionComplete(IFutureSubmissionResult future) {
+				completed.add(future);
+			}
+		};
+		
+		OOPBuildServiceSubmission shared = create("x = 1");
+		CoalescedSubmissionResult a = new CoalescedSubmissionResult(shared, codec);
+		a.addCompletionListener(listener);
+		assertEquals(0, completed.size());
+		complete(shared);
+		assertEquals(1, completed.size());
+		assertSame(a, completed.get(0));
+		
+		// Listeners added after completion are notified immediately
+		CoalescedSubmissionResult b = new CoalescedSubmissionResult(shared, codec);
+		b.addCompletionListener(listener);
+		assertEquals(2, completed.size());
+		assertSame(b, completed.get(1));
+	}
+}
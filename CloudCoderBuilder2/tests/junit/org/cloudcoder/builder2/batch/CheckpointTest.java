@@ -0,0 +1,88 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.builder2.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CheckpointTest {
+	private File file;
+	private String hash;
+	
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("checkpoint", ".txt");
+		file.delete();
+		hash = Checkpoint.computeExerciseHash("{\"problem\":1}".getBytes("UTF-8"));
+	}
+	
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+	
+	@Test
+	public void testResume() throws IOException {
+		Checkpoint checkpoint = new Checkpoint(file, hash);
+		assertEquals(0, checkpoint.getNumCompleted());
+		checkpoint.markCompleted("a.c");
+		checkpoint.markCompleted("b.c");
+		checkpoint.close();
+		
+		Checkpoint resumed = new Checkpoint(file, hash);
+		assertEquals(2, resumed.getNumCompleted());
+		assertTrue(resumed.isCompleted("a.c"));
+		assertTrue(resumed.isCompleted("b.c"));
+		assertFalse(resumed.isCompleted("c.c"));
+		resumed.markCompleted("c.c");
+		resumed.close();
+		
+		// Source files completed by the resumed run are appended
+		Checkpoint resumed2 = new Checkpoint(file, hash);
+		assertEquals(3, resumed2.getNumCompleted());
+		resumed2.close();
+	}
+	
+	@Test
+	public void testDifferentExerciseIsRejected() throws IOException {
+		Checkpoint checkpoint = new Checkpoint(file, hash);
+		checkpoint.markCompleted("a.c");
+		checkpoint.close();
+		
+		String otherHash = Checkpoint.computeExerciseHash("{\"problem\":2}".getBytes("UTF-8"));
+		try {
+			new Checkpoint(file, otherHash);
+			fail("checkpoint for a different exercise should not be resumed");
+		} catch (IOException e) {
+			// expected
+		}
+		
+		// The checkpoint file is left intact
+		Checkpoint resumed = new Checkpoint(file, hash);
+		assertTrue(resumed.isCompleted("a.c"));
+		resumed.close();
+	}
+}
@@ -0,0 +1,94 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.builder2.batch;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import org.cloudcoder.app.shared.model.CompilationOutcome;
+import org.cloudcoder.app.shared.model.CompilationResult;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.app.shared.model.TestCase;
+import org.cloudcoder.app.shared.model.TestOutcome;
+import org.cloudcoder.app.shared.model.TestResult;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class OutputFormatTest {
+	private TestCase[] testCaseList;
+	private SubmissionResult result;
+	
+	@Before
+	public void setUp() {
+		testCaseList = new TestCase[]{ testCase("plain"), testCase("has,comma"), testCase("has \"quotes\"") };
+		result = new SubmissionResult(new CompilationResult(CompilationOutcome.SUCCESS));
+		result.setTestResults(new TestResult[]{
+				new TestResult(TestOutcome.PASSED, "ok"),
+				new TestResult(TestOutcome.FAILED_ASSERTION, "wrong"),
+				new TestResult(TestOutcome.PASSED, "ok"),
+		});
+	}
+	
+	private static TestCase testCase(String name) {
+		TestCase testCase = new TestCase();
+		testCase.setTestCaseName(name);
+		return testCase;
+	}
+	
+	private String write(OutputFormat format, String sourceFile) {
+		StringWriter sw = new StringWriter();
+		PrintWriter out = new PrintWriter(sw);
+		format.writeHeader(out, testCaseList);
+		format.writeResult(out, sourceFile, result, testCaseList);
+		out.flush();
+		return sw.toString().replace("\r\n", "\n");
+	}
+	
+	@Test
+	public void testCsvEscaping() {
+		assertEquals(
+				"sourceFile,compilationOutcome,plain,\"has,comma\",\"has \"\"quotes\"\"\",allPassed\n" +
+				"\"dir,1/\"\"a\"\".c\",SUCCESS,true,false,true,false\n",
+				write(OutputFormat.CSV, "dir,1/\"a\".c"));
+	}
+	
+	@Test
+	public void testJson() throws Exception {
+		String output = write(OutputFormat.JSON, "dir/\"a\".c");
+		assertEquals(1, output.split("\n").length);
+		
+		JsonNode node = new ObjectMapper().readTree(output);
+		assertEquals("dir/\"a\".c", node.get("sourceFile").asText());
+		assertEquals("SUCCESS", node.get("compilationOutcome").asText());
+		assertEquals(true, node.get("testResults").get("plain").asBoolean());
+		assertEquals(false, node.get("testResults").get("has,comma").asBoolean());
+		assertEquals(true, node.get("testResults").get("has \"quotes\"").asBoolean());
+		assertEquals(false, node.get("allPassed").asBoolean());
+	}
+	
+	@Test
+	public void testMissingTestResultsAreFailures() {
+		result.setTestResults(new TestResult[0]);
+		assertEquals("a.c:SUCCESS,plain=false,has,comma=false,has \"quotes\"=false\n",
+				write(OutputFormat.TEXT, "a.c"));
+	}
+}
@@ -0,0 +1,128 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.builder2.ccompiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.cloudcoder.builder2.util.DeleteDirectoryRecursively;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompiledExecutableCacheTest {
+	private static final int EXE_SIZE = 1000;
+	
+	private File tmpDir;
+	private File cacheDir;
+	private File exe;
+	
+	@Before
+	public void setUp() throws IOException {
+		tmpDir = File.createTempFile("ccache", "");
+		tmpDir.delete();
+		tmpDir.mkdir();
+		cacheDir = new File(tmpDir, "cache");
+		exe = new File(tmpDir, "a.out");
+		FileUtils.writeByteArrayToFile(exe, new byte[EXE_SIZE]);
+	}
+	
+	@After
+	public void tearDown() {
+		new DeleteDirectoryRecursively(tmpDir).delete();
+	}
+	
+	// Room for two entries, but not three
+	private CompiledExecutableCache create() {
+		Properties config = new Properties();
+		config.setProperty("cloudcoder.builder2.ccompiler.cacheDir", cacheDir.getPath());
+		config.setProperty("cloudcoder.builder2.ccompiler.cacheSize", String.valueOf(EXE_SIZE * 5 / 2));
+		return new CompiledExecutableCache(config);
+	}
+	
+	private void put(CompiledExecutableCache cache, String key) {
+		cache.put(key, true, "", Arrays.asList("ok"), exe);
+	}
+	
+	@Test
+	public void testGet() {
+		CompiledExecutableCache cache = create();
+		assertTrue(cache.isEnabled());
+		assertNull(cache.get("a"));
+		put(cache, "a");
+		
+		CompiledExecutableCache.Entry entry = cache.get("a");
+		assertNotNull(entry);
+		assertTrue(entry.isSuccess());
+		assertEquals(Arrays.asList("ok"), entry.getCompilerOutput());
+		assertEquals(EXE_SIZE, entry.getExe().length());
+		assertEquals(1, cache.getNumHits());
+		assertEquals(1, cache.getNumMisses());
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedIsEvicted() {
+		CompiledExecutableCache cache = create();
+		put(cache, "a");
+		put(cache, "b");
+		long twoEntries = cache.getTotalSize();
+		
+		// a is used more recently than b, so b is evicted to make room for c
+		assertNotNull(cache.get("a"));
+		put(cache, "c");
+		assertNotNull(cache.get("a"));
+		assertNull(cache.get("b"));
+		assertNotNull(cache.get("c"));
+		assertFalse(new File(cacheDir, "b").exists());
+		assertEquals(twoEntries, cache.getTotalSize());
+	}
+	
+	@Test
+	public void testEntriesAreReloadedAfterRestart() {
+		CompiledExecutableCache cache = create();
+		put(cache, "a");
+		put(cache, "b");
+		long totalSize = cache.getTotalSize();
+		
+		// Simulate a Builder killed while adding an entry
+		assertTrue(new File(cacheDir, "c.tmp-1234").mkdir());
+		
+		// Entries are ordered by last use, which is recorded
+		// as the modification time of the entry directory
+		new File(cacheDir, "a").setLastModified(System.currentTimeMillis());
+		new File(cacheDir, "b").setLastModified(System.currentTimeMillis() - 60000L);
+		
+		CompiledExecutableCache restarted = create();
+		assertEquals(totalSize, restarted.getTotalSize());
+		assertFalse(new File(cacheDir, "c.tmp-1234").exists());
+		
+		// b is the least recently used
+		put(restarted, "c");
+		assertNull(restarted.get("b"));
+		assertNotNull(restarted.get("a"));
+		assertNotNull(restarted.get("c"));
+	}
+}
@@ -0,0 +1,87 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.builder2.process;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.cloudcoder.builder2.javasandbox.AbstractKillableTaskManager;
+import org.cloudcoder.builder2.javasandbox.IsolatedTask;
+import org.cloudcoder.builder2.javasandbox.JVMKillableTaskManager;
+import org.cloudcoder.builder2.javasandbox.TimeoutHandler;
+import org.junit.Test;
+
+public class TestExecutionSchedulerTest {
+	@Test
+	public void testLimitByQuota() {
+		// cgroup v2, no quota
+		assertEquals(8, TestExecutionScheduler.limitByQuota(8, "max", "100000"));
+		
+		// 1.5 CPUs is rounded up
+		assertEquals(2, TestExecutionScheduler.limitByQuota(8, "150000", "100000"));
+		assertEquals(1, TestExecutionScheduler.limitByQuota(8, "50000", "100000"));
+		
+		// The quota doesn't increase the number of CPUs
+		assertEquals(1, TestExecutionScheduler.limitByQuota(1, "150000", "100000"));
+		
+		// cgroup v1, no quota
+		assertEquals(8, TestExecutionScheduler.limitByQuota(8, "-1", "100000"));
+		
+		// Garbage is ignored
+		assertEquals(8, TestExecutionScheduler.limitByQuota(8, "lots", "100000"));
+	}
+	
+	@Test
+	public void testQueuedTaskIsNotTimedOutWhileWaiting() {
+		AbstractKillableTaskManager.installSecurityManager();
+		
+		Properties config = new Properties();
+		config.setProperty("cloudcoder.builder2.maxConcurrentTests", "1");
+		TestExecutionScheduler scheduler = new TestExecutionScheduler(config);
+		
+		// With only one test execution at a time, the tasks take longer
+		// in total than the time limit, but neither exceeds it once started
+		List<IsolatedTask<String>> tasks = new ArrayList<IsolatedTask<String>>();
+		for (int i = 0; i < 3; i++) {
+			tasks.add(new IsolatedTask<String>() {
+				@Override
+				public String execute() throws Throwable {
+					Thread.sleep(400L);
+					return "done";
+				}
+			});
+		}
+		JVMKillableTaskManager<String> pool = new JVMKillableTaskManager<String>(tasks, 1000L, new TimeoutHandler<String>() {
+			@Override
+			public String handleTimeout() {
+				return "timeout";
+			}
+		});
+		pool.setScheduler(scheduler);
+		pool.run();
+		
+		for (int i = 0; i < tasks.size(); i++) {
+			assertEquals("done", pool.getResult(i));
+		}
+		assertEquals(3L, scheduler.getNumAdmitted());
+		assertEquals(0, scheduler.getNumRunning());
+		assertEquals(0, scheduler.getQueueDepth());
+	}
+}
@@ -29,6 +29,10 @@ public class BuilderTestContext {
 		builder = new Builder2(config);
 	}
 	
+	public Properties getConfig() {
+		return config;
+	}
+	
 	public ProblemAndTestCaseList getExercise(String name) {
 		return invokeOnResource(name + ".json", new IFunction<Reader, ProblemAndTestCaseList>() {
 			@Override
@@ -52,9 +56,15 @@ public class BuilderTestContext {
 		return invokeOnResource(resourceName, new IFunction<Reader, String>() {
 			@Override
 			public String invoke(Reader arg) {
+				// Note: IOUtil.copy(Reader, Writer) doesn't copy anything
+				// in the daemon library version we use, so copy explicitly
 				StringWriter sw = new StringWriter();
 				try {
-					IOUtil.copy(arg, sw);
+					char[] buf = new char[4096];
+					int n;
+					while ((n = arg.read(buf)) >= 0) {
+						sw.write(buf, 0, n);
+					}
 				} catch (IOException e) {
 					throw new IllegalStateException("Error reading source " + resourceName);
 				}
@@ -1,7 +1,11 @@
 package org.cloudcoder.builder2.tests.c;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
 import org.cloudcoder.app.shared.model.ProblemAndTestCaseList;
 import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.builder2.ccompiler.CompiledExecutableCache;
 import org.cloudcoder.builder2.tests.BuilderTest;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -31,6 +35,24 @@ public class CProgramTest extends BuilderTest {
 		super.assertAllTestsTimedOut(result, skip3);
 	}
 	
+	@Test
+	public void testSkip3ResubmittedSubmission() {
+		// The second submission should be able to use the
+		// cached executable from the first one
+		String source = getContext().getSourceText("skip3_pass.c");
+		SubmissionResult result = getContext().testSubmission(source, skip3);
+		super.assertAllTestsPassed(result, skip3);
+		CompiledExecutableCache cache = CompiledExecutableCache.getInstance(getContext().getConfig());
+		int numHits = cache.getNumHits();
+		int numMisses = cache.getNumMisses();
+		result = getContext().testSubmission(source, skip3);
+		super.assertAllTestsPassed(result, skip3);
+		
+		// The executable was found in the cache, so nothing was compiled
+		assertTrue(cache.getNumHits() > numHits);
+		assertEquals(numMisses, cache.getNumMisses());
+	}
+	
 	@AfterClass
 	public static void whenDone() {
 		BuilderTest.getInstance().destroyContext();
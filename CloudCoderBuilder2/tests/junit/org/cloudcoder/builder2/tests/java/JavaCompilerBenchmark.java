@@ -0,0 +1,78 @@
+package org.cloudcoder.builder2.tests.java;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Properties;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.ToolProvider;
+
+import org.cloudcoder.builder2.javacompiler.InMemoryJavaCompiler;
+import org.cloudcoder.builder2.javacompiler.MemoryFileManager;
+
+/**
+ * Compare the time needed to compile a typical submission using
+ * a fresh compiler and file manager with the Builder's full classpath
+ * (the way submissions used to be compiled) against the time needed
+ * using {@link InMemoryJavaCompiler}, which reuses a file manager and
+ * compiles against a minimal classpath.
+ * 
+ * Run as a Java application with the Builder's classpath.
+ * Optional argument: number of compilations to time (default 100).
+ */
+public class JavaCompilerBenchmark {
+	private static final String SOURCE =
+			"public class Test {\n" +
+			"    public int sumOfDigits(int n) {\n" +
+			"        int sum = 0;\n" +
+			"        while (n > 0) { sum += n % 10; n /= 10; }\n" +
+			"        return sum;\n" +
+			"    }\n" +
+			"}\n";
+	
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		
+		Properties config = new Properties();
+		
+		// Warm up both code paths
+		for (int i = 0; i < 20; i++) {
+			compileFresh();
+			compileWithService(config);
+		}
+		
+		long freshNanos = 0L, serviceNanos = 0L;
+		for (int i = 0; i < n; i++) {
+			long start = System.nanoTime();
+			compileFresh();
+			freshNanos += System.nanoTime() - start;
+			
+			start = System.nanoTime();
+			compileWithService(config);
+			serviceNanos += System.nanoTime() - start;
+		}
+		
+		System.out.printf("Fresh compiler, full classpath:   %.2f ms per compilation%n", freshNanos / (n * 1000000.0));
+		System.out.printf("Reused file manager, minimal cp:  %.2f ms per compilation%n", serviceNanos / (n * 1000000.0));
+	}
+
+	private static void compileFresh() {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		MemoryFileManager fm = new MemoryFileManager(compiler.getStandardFileManager(null, null, null));
+		JavaFileObject source = MemoryFileManager.makeSource("Test", SOURCE);
+		if (!compiler.getTask(null, fm, null,
+				Arrays.asList("-classpath", System.getProperty("java.class.path")),
+				null, Collections.singletonList(source)).call()) {
+			throw new IllegalStateException("Compilation failed");
+		}
+	}
+
+	private static void compileWithService(Properties config) {
+		InMemoryJavaCompiler compiler = new InMemoryJavaCompiler(config);
+		compiler.addSourceFile("Test", SOURCE);
+		if (!compiler.compile()) {
+			throw new IllegalStateException("Compilation failed");
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package org.cloudcoder.builder2.tests.java;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Properties;
+
+import org.cloudcoder.app.shared.model.ProblemAndTestCaseList;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.builder2.javamethod.JavaMethodTestDriverCache;
+import org.cloudcoder.builder2.tests.BuilderTest;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JavaMethodTest extends BuilderTest {
+	private ProblemAndTestCaseList computeSum;
+	
+	@Before
+	public void start() {
+		if (createContext()) {
+			computeSum = getContext().getExercise("compute_sum_java");
+		}
+	}
+	
+	@Test
+	public void testComputeSum() {
+		String source = getContext().getSourceText("compute_sum_pass.java.txt");
+		SubmissionResult result = getContext().testSubmission(source, computeSum);
+		super.assertAllTestsPassed(result, computeSum);
+		
+		// The test driver compiled for the first submission is reused
+		JavaMethodTestDriverCache cache = JavaMethodTestDriverCache.getInstance(new Properties());
+		int numHits = cache.getNumHits();
+		result = getContext().testSubmission(source, computeSum);
+		super.assertAllTestsPassed(result, computeSum);
+		assertEquals(numHits + 1, cache.getNumHits());
+	}
+	
+	@Test
+	public void testComputeSumWrongMethodName() {
+		String source = getContext().getSourceText("compute_sum_wrong_method_name.java.txt");
+		SubmissionResult result = getContext().testSubmission(source, computeSum);
+		super.assertCompilationError(result);
+	}
+	
+	@Test
+	public void testComputeSumUnreportedCheckedException() {
+		String source = getContext().getSourceText("compute_sum_checked_exception.java.txt");
+		SubmissionResult result = getContext().testSubmission(source, computeSum);
+		super.assertCompilationError(result);
+	}
+	
+	@AfterClass
+	public static void whenDone() {
+		BuilderTest.getInstance().destroyContext();
+	}
+}
@@ -0,0 +1,64 @@
+package org.cloudcoder.builder2.tests.java;
+
+import org.cloudcoder.app.shared.model.ProblemAndTestCaseList;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.builder2.tests.BuilderTest;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JavaProgramTest extends BuilderTest {
+	private ProblemAndTestCaseList skip3java;
+	
+	@Before
+	public void start() {
+		if (createContext()) {
+			skip3java = getContext().getExercise("skip3java");
+		}
+	}
+	
+	@Test
+	public void testSkip3Pass() {
+		String source = getContext().getSourceText("skip3_pass.java.txt");
+		SubmissionResult result = getContext().testSubmission(source, skip3java);
+		super.assertAllTestsPassed(result, skip3java);
+	}
+	
+	@Test
+	public void testSkip3PassWithSystemExit() {
+		String source = getContext().getSourceText("skip3_pass_with_exit.java.txt");
+		SubmissionResult result = getContext().testSubmission(source, skip3java);
+		super.assertAllTestsPassed(result, skip3java);
+	}
+	
+	@Test
+	public void testSkip3PassWithSystemExitInTry() {
+		String source = getContext().getSourceText("skip3_pass_with_exit_in_try.java.txt");
+		SubmissionResult result = getContext().testSubmission(source, skip3java);
+		super.assertAllTestsPassed(result, skip3java);
+	}
+	
+	@Test
+	public void testBuilderClassesNotVisible() {
+		String source = getContext().getSourceText("skip3_pass_if_builder_hidden.java.txt");
+		SubmissionResult result = getContext().testSubmission(source, skip3java);
+		super.assertAllTestsPassed(result, skip3java);
+	}
+	
+	@Test
+	public void testSkip3TimeoutThenPass() {
+		String source = getContext().getSourceText("skip3_timeout_infinite_loop.java.txt");
+		SubmissionResult result = getContext().testSubmission(source, skip3java);
+		super.assertAllTestsTimedOut(result, skip3java);
+		
+		// The workers which timed out are replaced
+		source = getContext().getSourceText("skip3_pass.java.txt");
+		result = getContext().testSubmission(source, skip3java);
+		super.assertAllTestsPassed(result, skip3java);
+	}
+	
+	@AfterClass
+	public static void whenDone() {
+		BuilderTest.getInstance().destroyContext();
+	}
+}
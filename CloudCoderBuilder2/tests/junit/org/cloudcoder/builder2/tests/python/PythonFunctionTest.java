@@ -1,7 +1,16 @@
 package org.cloudcoder.builder2.tests.python;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 import org.cloudcoder.app.shared.model.ProblemAndTestCaseList;
 import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.app.shared.model.TestCase;
+import org.cloudcoder.app.shared.model.TestOutcome;
+import org.cloudcoder.app.shared.model.TestResult;
+import org.cloudcoder.builder2.javasandbox.TaskOutput;
+import org.cloudcoder.builder2.pythonfunction.PythonInterpreterPool;
 import org.cloudcoder.builder2.tests.BuilderTest;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -49,6 +58,54 @@ public class PythonFunctionTest extends BuilderTest {
 		super.assertCompilerDiagnosticAtLine(result, 8);
 	}
 	
+	@Test
+	public void testDefinitionsDoNotLeakBetweenSubmissions() {
+		String source = getContext().getSourceText("compute_sum_with_helper.py");
+		SubmissionResult result = getContext().testSubmission(source, computeSum);
+		super.assertAllTestsPassed(result, computeSum);
+		
+		// The helper function and global variable defined by the
+		// previous submission (in the same pooled interpreter)
+		// must not be visible
+		source = getContext().getSourceText("compute_sum_calls_undefined_helper.py");
+		result = getContext().testSubmission(source, computeSum);
+		super.assertAllTestCasesHaveTestResults(result, computeSum);
+		for (TestResult tr : result.getTestResults()) {
+			assertFalse(tr.getOutcome() == TestOutcome.PASSED);
+		}
+	}
+	
+	@Test
+	public void testOutputCapturedPerTestCase() {
+		String source = getContext().getSourceText("compute_sum_pass_with_output.py");
+		SubmissionResult result = getContext().testSubmission(source, computeSum);
+		super.assertAllTestsPassed(result, computeSum);
+		
+		// Each test result has the output of its own test case only
+		TestResult[] testResults = result.getTestResults();
+		for (int i = 0; i < testResults.length; i++) {
+			TestCase testCase = computeSum.getTestCaseData().get(i);
+			assertEquals("adding " + testCase.getInput().replace(",", "") + "\n", testResults[i].getStdout());
+		}
+	}
+	
+	@Test
+	public void testUnboundedOutputIsTruncated() {
+		PythonInterpreterPool pool = PythonInterpreterPool.getInstance(getContext().getConfig());
+		int numDiscarded = pool.getNumDiscarded();
+		String source = getContext().getSourceText("compute_sum_infinite_output.py");
+		SubmissionResult result = getContext().testSubmission(source, computeSum);
+		super.assertAllTestsTimedOut(result, computeSum);
+		
+		// The test threads were killed, so the interpreter is not reused
+		assertEquals(numDiscarded + 1, pool.getNumDiscarded());
+		for (TestResult tr : result.getTestResults()) {
+			String stdout = tr.getStdout();
+			assertTrue(stdout.endsWith(TaskOutput.TRUNCATION_MARKER));
+			assertTrue(stdout.length() <= TaskOutput.DEFAULT_MAX_BYTES + TaskOutput.TRUNCATION_MARKER.length());
+		}
+	}
+	
 	@AfterClass
 	public static void whenDone() {
 		BuilderTest.getInstance().destroyContext();
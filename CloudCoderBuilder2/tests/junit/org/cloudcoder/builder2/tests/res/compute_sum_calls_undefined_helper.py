@@ -0,0 +1,2 @@
+def compute_sum(a, b):
+	return add_them(a, b) + offset
\ No newline at end of file
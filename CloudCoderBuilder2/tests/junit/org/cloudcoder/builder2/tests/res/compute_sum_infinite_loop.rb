@@ -0,0 +1,4 @@
+def compute_sum(a, b)
+  while true
+  end
+end
@@ -0,0 +1,3 @@
+def compute_sum(a, b):
+	while True:
+		print "spam"
@@ -0,0 +1,3 @@
+def compute_sum(a, b)
+  return a + b
+end
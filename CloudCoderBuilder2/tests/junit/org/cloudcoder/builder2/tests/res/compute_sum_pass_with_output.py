@@ -0,0 +1,3 @@
+def compute_sum(a, b):
+	print "adding", a, b
+	return a + b
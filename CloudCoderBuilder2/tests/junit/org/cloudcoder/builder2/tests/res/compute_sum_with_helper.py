@@ -0,0 +1,7 @@
+offset = 0
+
+def add_them(a, b):
+	return a + b + offset
+
+def compute_sum(a, b):
+	return add_them(a, b)
\ No newline at end of file
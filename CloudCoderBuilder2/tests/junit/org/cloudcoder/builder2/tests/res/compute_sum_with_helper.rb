@@ -0,0 +1,7 @@
+def add_them(a, b)
+  return a + b
+end
+
+def compute_sum(a, b)
+  return add_them(a, b)
+end
@@ -0,0 +1,63 @@
+package org.cloudcoder.builder2.tests.ruby;
+
+import static org.junit.Assert.assertFalse;
+
+import org.cloudcoder.app.shared.model.ProblemAndTestCaseList;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.app.shared.model.TestOutcome;
+import org.cloudcoder.app.shared.model.TestResult;
+import org.cloudcoder.builder2.tests.BuilderTest;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RubyMethodTest extends BuilderTest {
+	private ProblemAndTestCaseList computeSum;
+	
+	@Before
+	public void start() {
+		if (createContext()) {
+			computeSum = getContext().getExercise("compute_sum_ruby");
+		}
+	}
+	
+	@Test
+	public void testComputeSum() {
+		String source = getContext().getSourceText("compute_sum_pass.rb");
+		SubmissionResult result = getContext().testSubmission(source, computeSum);
+		super.assertAllTestsPassed(result, computeSum);
+	}
+	
+	@Test
+	public void testMethodsDoNotLeakBetweenSubmissions() {
+		String source = getContext().getSourceText("compute_sum_with_helper.rb");
+		SubmissionResult result = getContext().testSubmission(source, computeSum);
+		super.assertAllTestsPassed(result, computeSum);
+		
+		// The helper method defined by the previous submission
+		// must not be visible
+		source = getContext().getSourceText("compute_sum_calls_undefined_helper.rb");
+		result = getContext().testSubmission(source, computeSum);
+		super.assertAllTestCasesHaveTestResults(result, computeSum);
+		for (TestResult tr : result.getTestResults()) {
+			assertFalse(tr.getOutcome() == TestOutcome.PASSED);
+		}
+	}
+	
+	@Test
+	public void testComputeSumTimeoutThenPass() {
+		String source = getContext().getSourceText("compute_sum_infinite_loop.rb");
+		SubmissionResult result = getContext().testSubmission(source, computeSum);
+		super.assertAllTestsTimedOut(result, computeSum);
+		
+		// The container in which the tests were killed is replaced
+		source = getContext().getSourceText("compute_sum_pass.rb");
+		result = getContext().testSubmission(source, computeSum);
+		super.assertAllTestsPassed(result, computeSum);
+	}
+	
+	@AfterClass
+	public static void whenDone() {
+		BuilderTest.getInstance().destroyContext();
+	}
+}
@@ -29,7 +29,6 @@ import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.commons.io.IOUtils;
-import org.cloudcoder.app.server.persist.Database;
 import org.cloudcoder.app.server.persist.SnapshotCallback;
 import org.cloudcoder.app.shared.model.SnapshotSelectionCriteria;
 import org.cloudcoder.app.shared.model.SubmissionReceipt;
@@ -43,6 +42,7 @@ import org.cloudcoder.app.shared.model.SubmissionStatus;
  */
 public class Attempts implements IAnalyzeSnapshots {
 	private SnapshotSelectionCriteria criteria;
+	private IEventSource eventSource;
 	private Set<Integer> problems;
 	// Map of user ids to maps of problem ids to "best" submission status
 	private Map<Integer, Map<Integer, SubmissionStatus>> resultMap;
@@ -59,6 +59,11 @@ public class Attempts implements IAnalyzeSnapshots {
 		this.criteria = criteria;
 	}
 	
+	@Override
+	public void setEventSource(IEventSource eventSource) {
+		this.eventSource = eventSource;
+	}
+	
 	@Override
 	public void setConfig(Properties config) {
 		// do nothing
@@ -116,7 +121,7 @@ public class Attempts implements IAnalyzeSnapshots {
 				}
 			}
 		};
-		Database.getInstance().retrieveSnapshots(criteria, callback);
+		eventSource.retrieveSnapshots(criteria, callback);
 	}
 	
 	private static int goodness(SubmissionStatus status) {
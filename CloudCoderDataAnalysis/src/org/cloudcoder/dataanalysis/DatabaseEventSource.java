@@ -0,0 +1,63 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.dataanalysis;
+
+import java.util.List;
+
+import org.cloudcoder.app.server.persist.Database;
+import org.cloudcoder.app.server.persist.ResultVisitor;
+import org.cloudcoder.app.server.persist.SnapshotCallback;
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.Pair;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.SnapshotSelectionCriteria;
+import org.cloudcoder.app.shared.model.SubmissionReceipt;
+import org.cloudcoder.app.shared.model.User;
+import org.cloudcoder.app.shared.model.WorkSession;
+
+/**
+ * {@link IEventSource} which queries the database.
+ * 
+ * @author David Hovemeyer
+ */
+public class DatabaseEventSource implements IEventSource {
+	@Override
+	public List<WorkSession> findWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds) {
+		return Database.getInstance().findWorkSessions(criteria, separationSeconds);
+	}
+	
+	@Override
+	public void findWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds, ResultVisitor<WorkSession> visitor) {
+		Database.getInstance().findWorkSessions(criteria, separationSeconds, visitor);
+	}
+	
+	@Override
+	public void retrieveSnapshots(SnapshotSelectionCriteria criteria, SnapshotCallback callback) {
+		Database.getInstance().retrieveSnapshots(criteria, callback);
+	}
+	
+	@Override
+	public SubmissionReceipt[] getAllSubmissionReceiptsForUser(Problem problem, User user) {
+		return Database.getInstance().getAllSubmissionReceiptsForUser(problem, user);
+	}
+	
+	@Override
+	public List<Pair<Event, Change>> getEventsWithChanges(int userId, int problemId, int startEventId, int endEventId) {
+		return Database.getInstance().getEventsWithChanges(userId, problemId, startEventId, endEventId);
+	}
+}
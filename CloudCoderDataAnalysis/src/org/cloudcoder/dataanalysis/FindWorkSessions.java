@@ -20,16 +20,14 @@ package org.cloudcoder.dataanalysis;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.List;
 import java.util.Properties;
 import java.util.Scanner;
 
-import org.cloudcoder.app.server.persist.Database;
+import org.cloudcoder.app.server.persist.ResultVisitor;
 import org.cloudcoder.app.shared.model.SnapshotSelectionCriteria;
 import org.cloudcoder.app.shared.model.WorkSession;
 
 import au.com.bytecode.opencsv.CSV;
-import au.com.bytecode.opencsv.CSVWriteProc;
 import au.com.bytecode.opencsv.CSVWriter;
 
 /**
@@ -43,43 +41,58 @@ import au.com.bytecode.opencsv.CSVWriter;
  */
 public class FindWorkSessions {
 	public static void main(String[] args) throws IOException {
-		Util.configureLogging();
+		String eventLogDir = null;
+		for (String arg : args) {
+			if (arg.startsWith("--eventLog=")) {
+				// Read events from a local event log rather than the database
+				eventLogDir = arg.substring("--eventLog=".length());
+			} else {
+				throw new IllegalArgumentException("Unknown option: " + arg);
+			}
+		}
 		
-		Properties config = new Properties();
+		Util.configureLogging();
 		
 		Scanner keyboard = new Scanner(System.in);
-		Util.readDatabaseProperties(keyboard, config);
-		Util.connectToDatabase(config);
+		IEventSource eventSource;
+		if (eventLogDir != null) {
+			eventSource = Util.openEventLog(eventLogDir);
+		} else {
+			Properties config = new Properties();
+			Util.readDatabaseProperties(keyboard, config);
+			Util.connectToDatabase(config);
+			eventSource = new DatabaseEventSource();
+		}
 		
 		//int courseId = Integer.parseInt(Util.ask(keyboard, "Course id: "));
 		SnapshotSelectionCriteria criteria = Util.getSnapshotSelectionCriteria(keyboard);
 		int separationSeconds = Integer.parseInt(Util.ask(keyboard, "Separation in seconds: "));
 		String resultFileName = Util.ask(keyboard, "Result filename: ");
 		
-		final List<WorkSession> workSessions = Database.getInstance().findWorkSessions(criteria, separationSeconds);
-		
 		PrintWriter pw = new PrintWriter(new FileWriter(resultFileName));
 		CSV csv = CSV
 				.separator('|')  // delimiter of fields
 				.quote('"')      // quote character
 				.create();       // new instance is immutable
-		csv.write(pw, new CSVWriteProc() {
+		final CSVWriter w = csv.writer(pw);
+		w.writeNext("courseId", "problemId", "userId", "startEventId", "endEventId", "startTime", "endTime");
+		
+		// Write each work session as it is found, so that the work sessions
+		// never need to be held in memory all at once
+		eventSource.findWorkSessions(criteria, separationSeconds, new ResultVisitor<WorkSession>() {
 			@Override
-			public void process(CSVWriter w) {
-				w.writeNext("courseId", "problemId", "userId", "startEventId", "endEventId", "startTime", "endTime");
-				for (WorkSession ws : workSessions) {
-					w.writeNext(
-							String.valueOf(ws.getCourseId()),
-							String.valueOf(ws.getProblemId()),
-							String.valueOf(ws.getUserId()),
-							String.valueOf(ws.getStartEventId()),
-							String.valueOf(ws.getEndEventId()),
-							String.valueOf(ws.getStartTime()),
-							String.valueOf(ws.getEndTime())
-					);
-				}
+			public void visit(WorkSession ws) {
+				w.writeNext(
+						String.valueOf(ws.getCourseId()),
+						String.valueOf(ws.getProblemId()),
+						String.valueOf(ws.getUserId()),
+						String.valueOf(ws.getStartEventId()),
+						String.valueOf(ws.getEndEventId()),
+						String.valueOf(ws.getStartTime()),
+						String.valueOf(ws.getEndTime())
+				);
 			}
 		});
-		pw.close();
+		w.close();
 	}
 }
@@ -39,4 +39,11 @@ public interface IAnalyzeSnapshots {
 	 * @param criteria the {@link SnapshotSelectionCriteria} to set
 	 */
 	public void setCriteria(SnapshotSelectionCriteria criteria);
+	
+	/**
+	 * Set the {@link IEventSource} from which event data should be read.
+	 * 
+	 * @param eventSource the {@link IEventSource} to set
+	 */
+	public void setEventSource(IEventSource eventSource);
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.dataanalysis;
+
+import java.util.List;
+
+import org.cloudcoder.app.server.persist.ResultVisitor;
+import org.cloudcoder.app.server.persist.SnapshotCallback;
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.Pair;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.SnapshotSelectionCriteria;
+import org.cloudcoder.app.shared.model.SubmissionReceipt;
+import org.cloudcoder.app.shared.model.User;
+import org.cloudcoder.app.shared.model.WorkSession;
+
+/**
+ * Source of event data for analyses.  The methods have the same
+ * meaning as the corresponding methods of
+ * {@link org.cloudcoder.app.server.persist.IDatabase}, so an analysis
+ * can run either against the database ({@link DatabaseEventSource})
+ * or against a local event log file
+ * ({@link org.cloudcoder.eventlog.LocalEventSource}).
+ * 
+ * @author David Hovemeyer
+ */
+public interface IEventSource {
+	/**
+	 * Find {@link WorkSession}s.
+	 * 
+	 * @param criteria          the {@link SnapshotSelectionCriteria}
+	 * @param separationSeconds maximum separation between events in the same session
+	 * @return list of {@link WorkSession}s, ordered by user id and then start time
+	 */
+	public List<WorkSession> findWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds);
+	
+	/**
+	 * Find {@link WorkSession}s, passing each one to a {@link ResultVisitor}
+	 * as soon as it is found.
+	 * 
+	 * @param criteria          the {@link SnapshotSelectionCriteria}
+	 * @param separationSeconds maximum separation between events in the same session
+	 * @param visitor           the {@link ResultVisitor} to receive the {@link WorkSession}s
+	 */
+	public void findWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds, ResultVisitor<WorkSession> visitor);
+	
+	/**
+	 * Retrieve snapshots (submissions) matching given criteria.
+	 * 
+	 * @param criteria the {@link SnapshotSelectionCriteria}
+	 * @param callback the {@link SnapshotCallback} to receive the snapshots
+	 */
+	public void retrieveSnapshots(SnapshotSelectionCriteria criteria, SnapshotCallback callback);
+	
+	/**
+	 * Get all submission receipts for given user on given problem.
+	 * 
+	 * @param problem the {@link Problem}
+	 * @param user    the {@link User}
+	 * @return the user's submission receipts for the problem
+	 */
+	public SubmissionReceipt[] getAllSubmissionReceiptsForUser(Problem problem, User user);
+	
+	/**
+	 * Get all {@link Event}s in a range of event ids for given user and problem,
+	 * with the {@link Change} for each change event.
+	 * 
+	 * @param userId       the user id
+	 * @param problemId    the problem id
+	 * @param startEventId the start event id
+	 * @param endEventId   the end event id
+	 * @return list of {@link Pair}s of Event and Change (Change is null if the event is
+	 *         not a change event)
+	 */
+	public List<Pair<Event, Change>> getEventsWithChanges(int userId, int problemId, int startEventId, int endEventId);
+}
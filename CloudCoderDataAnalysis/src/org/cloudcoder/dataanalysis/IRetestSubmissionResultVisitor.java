@@ -30,8 +30,11 @@ public interface IRetestSubmissionResultVisitor {
 	 * Called to initialize the {@link IRetestSubmissionResultVisitor}.
 	 * 
 	 * @param outputDirectory the directory where output should be written
+	 * @param resume          true if an interrupted retest is being resumed,
+	 *                        in which case output written by the previous
+	 *                        retest should be kept (and added to)
 	 */
-	public void init(File outputDirectory);
+	public void init(File outputDirectory, boolean resume);
 	
 	/**
 	 * Called when a {@link SubmissionResult} is produced.
@@ -41,6 +44,13 @@ public interface IRetestSubmissionResultVisitor {
 	 */
 	public void onSubmissionResult(SubmissionResult result, RetestSnapshot snapshot);
 	
+	/**
+	 * Called to ensure that output for all {@link SubmissionResult}s
+	 * delivered so far has been written.  Results are not recorded
+	 * in the retest checkpoint until they have been flushed.
+	 */
+	public void flush();
+	
 	/**
 	 * Called after all {@link SubmissionResult}s have been delivered.
 	 */
@@ -29,15 +29,22 @@ public class LineCoverageRetestSubmissionResultVisitor implements IRetestSubmiss
 	private CSVWriter csvWriter;
 	
 	@Override
-	public void init(File outputDirectory) {
+	public void init(File outputDirectory, boolean resume) {
 		try {
-			writer = new BufferedWriter(new FileWriter(new File(outputDirectory, "coverage.csv")));
+			File file = new File(outputDirectory, "coverage.csv");
+			boolean append = resume && file.exists();
+			writer = new BufferedWriter(new FileWriter(file, append));
 			//csvWriter = 
 			CSV csv = CSV
 					.separator('|')  // delimiter of fields
 					.quote('"')      // quote character
 					.create();       // new instance is immutable
 			csvWriter = csv.writer(writer);
+			
+			if (append) {
+				// The header was written by the retest being resumed
+				return;
+			}
 
 			// We put a heck of a lot of information in each CSV record
 			csvWriter.writeNext(
@@ -144,6 +151,18 @@ public class LineCoverageRetestSubmissionResultVisitor implements IRetestSubmiss
 		return coverageList != null ? Arrays.asList(coverageList) : null;
 	}
 
+	@Override
+	public void flush() {
+		if (writer == null) {
+			return;
+		}
+		try {
+			csvWriter.flush();
+		} catch (IOException e) {
+			logger.error("Error flushing coverage results data file", e);
+		}
+	}
+
 	@Override
 	public void cleanup() {
 		try {
@@ -17,6 +17,7 @@
 
 package org.cloudcoder.dataanalysis;
 
+import org.cloudcoder.eventlog.ExportEventLog;
 import org.cloudcoder.progsnap2.Export;
 import org.cloudcoder.progsnap2.GatherCompileErrors;
 import org.cloudcoder.progsnap2.MergeCompileErrors;
@@ -52,6 +53,8 @@ public class Main {
 			GatherCompileErrors.main(rest);
 		} else if (app.equals("mergeCompileEvents")) {
 			MergeCompileErrors.main(rest);
+		} else if (app.equals("exportEventLog")) {
+			ExportEventLog.main(rest);
 		} else {
 			System.out.println("Unknown app name: " + app);
 			System.exit(1);
@@ -8,7 +8,6 @@ import java.util.Properties;
 import java.util.Scanner;
 
 import org.apache.commons.io.IOUtils;
-import org.cloudcoder.app.server.persist.Database;
 import org.cloudcoder.app.shared.model.Change;
 import org.cloudcoder.app.shared.model.ChangeType;
 import org.cloudcoder.app.shared.model.Event;
@@ -19,6 +18,7 @@ import org.cloudcoder.app.shared.model.WorkSession;
 
 public class PauseTimes implements IAnalyzeSnapshots {
 	private SnapshotSelectionCriteria criteria;
+	private IEventSource eventSource;
 	private int separation;
 	private String outputFile;
 
@@ -31,6 +31,11 @@ public class PauseTimes implements IAnalyzeSnapshots {
 		this.criteria = criteria;
 	}
 	
+	@Override
+	public void setEventSource(IEventSource eventSource) {
+		this.eventSource = eventSource;
+	}
+	
 	public void setSeparation(int separation) {
 		this.separation = separation;
 	}
@@ -48,14 +53,14 @@ public class PauseTimes implements IAnalyzeSnapshots {
 			
 			w.write("userId,pauseTime\n");
 			
-			List<WorkSession> sessions = Database.getInstance().findWorkSessions(criteria, separation);
+			List<WorkSession> sessions = eventSource.findWorkSessions(criteria, separation);
 			System.out.println("Found " + sessions.size() + " work sessions");
 			
 			int count = 0;
 			
 			for (WorkSession ws : sessions) {
 				List<Pair<Event, Change>> events =
-						Database.getInstance().getEventsWithChanges(ws.getUserId(), ws.getProblemId(), ws.getStartEventId(), ws.getEndEventId());
+						eventSource.getEventsWithChanges(ws.getUserId(), ws.getProblemId(), ws.getStartEventId(), ws.getEndEventId());
 				
 				long last = -1;
 				for (Pair<Event, Change> pair : events) {
@@ -21,18 +21,24 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.IdentityHashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
 import org.cloudcoder.app.server.model.HealthDataSingleton;
 import org.cloudcoder.app.server.persist.Database;
 import org.cloudcoder.app.server.persist.SnapshotCallback;
 import org.cloudcoder.app.server.submitsvc.DefaultSubmitService;
 import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
+import org.cloudcoder.app.server.submitsvc.ISubmissionCompletionListener;
+import org.cloudcoder.app.server.submitsvc.SubmissionOrigin;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
 import org.cloudcoder.app.server.submitsvc.oop.OutOfProcessSubmitService;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.ProblemAndTestCaseList;
@@ -54,17 +60,53 @@ import org.slf4j.LoggerFactory;
 public class Retest {
 	private static final Logger logger = LoggerFactory.getLogger(Retest.class);
 	
+	/** Default maximum number of snapshots being tested at once. */
+	public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+	
+	/** Number of delivered results between checkpoints. */
+	private static final int CHECKPOINT_INTERVAL = 100;
+	
+	/** Name of the checkpoint file (in the output directory). */
+	public static final String CHECKPOINT_FILE = "retest.checkpoint";
+	
+	/** Marks the end of the retrieved snapshots. */
+	private static final RetestSnapshot END_OF_SNAPSHOTS = new RetestSnapshot(-1, -1, -1, -1, -1, null);
+	
+	/**
+	 * A snapshot whose retest has completed.
+	 */
+	private static class CompletedRetest {
+		final IFutureSubmissionResult future;
+		final RetestSnapshot snapshot;
+		
+		CompletedRetest(IFutureSubmissionResult future, RetestSnapshot snapshot) {
+			this.future = future;
+			this.snapshot = snapshot;
+		}
+	}
+	
 	private SnapshotSelectionCriteria criteria;
 	private Properties config;
 	private Map<Integer, ProblemAndTestCaseList> exerciseMap;
-	private IdentityHashMap<IFutureSubmissionResult, RetestSnapshot> snapshotMap;
 	private File outputDirectory;
 	private List<IRetestSubmissionResultVisitor> visitorList;
+	private int maxInFlight;
+	private boolean resume;
+	
+	// State of the retest in progress
+	private ArrayBlockingQueue<RetestSnapshot> snapshotQueue;
+	private volatile Throwable retrieveError;
+	private LinkedBlockingQueue<CompletedRetest> completedQueue;
+	private Set<Integer> submitted;
+	private int numInFlight;
+	private int numDelivered;
+	private RetestCheckpoint checkpoint;
+	private List<Integer> pendingCheckpoint;
 	
 	public Retest() {
 		exerciseMap = new HashMap<Integer, ProblemAndTestCaseList>();
-		snapshotMap = new IdentityHashMap<IFutureSubmissionResult, RetestSnapshot>();
 		visitorList = new LinkedList<IRetestSubmissionResultVisitor>();
+		maxInFlight = DEFAULT_MAX_IN_FLIGHT;
 	}
 	
 	public void setCriteria(SnapshotSelectionCriteria criteria) {
@@ -83,6 +125,28 @@ public class Retest {
 		visitorList.add(visitor);
 	}
 	
+	/**
+	 * Set the maximum number of snapshots that may be in the submission
+	 * queue or being tested at once.  This bounds the memory needed
+	 * for the retest, regardless of how many snapshots are retested.
+	 * 
+	 * @param maxInFlight maximum number of snapshots in flight
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = maxInFlight;
+	}
+	
+	/**
+	 * Set whether to resume an interrupted retest, skipping
+	 * the snapshots recorded in the checkpoint file in the
+	 * output directory.
+	 * 
+	 * @param resume true if an interrupted retest should be resumed
+	 */
+	public void setResume(boolean resume) {
+		this.resume = resume;
+	}
+	
 	public void execute() throws IOException {
 		// Initialize OutOfProcessSubmitService
 		OutOfProcessSubmitService svc = new OutOfProcessSubmitService();
@@ -108,59 +172,69 @@ public class Retest {
 			}
 		}
 		
-		// Retrieve snapshots from database
-		final List<RetestSnapshot> snapshotList = new ArrayList<RetestSnapshot>();
-		Database.getInstance().retrieveSnapshots(criteria, new SnapshotCallback() {
-			@Override
-			public void onSnapshotFound(int submitEventId,
-					int fullTextChangeId, int courseId, int problemId,
-					int userId, String programText, SubmissionReceipt receipt) {
-				snapshotList.add(new RetestSnapshot(courseId, problemId, userId, submitEventId, fullTextChangeId, programText));
-			}
-		});
-		System.out.println(snapshotList.size() + " snapshots");
-		
-		// Add snapshots to submission queue, resolving problem/test cases as necessary.
-		// Add IFutureSubmissionResults to a list.
-		List<IFutureSubmissionResult> futureList = new ArrayList<IFutureSubmissionResult>();
-		for (RetestSnapshot snapshot : snapshotList) {
-			ProblemAndTestCaseList exercise = findExercise(snapshot.problemId);
-			IFutureSubmissionResult future;
-			try {
-				future = DefaultSubmitService.getInstance().submitAsync(exercise.getProblem(), exercise.getTestCaseData(), snapshot.programText);
-				futureList.add(future);
-				
-				// Map the future to its snapshot
-				// FIXME: this could consume a lot of main memory
-				snapshotMap.put(future, snapshot);
-			} catch (SubmissionException e) {
-				logger.error("Error submitting snapshot for retest", e);
-			}
-		}
-		
-		// The snapshot list can be cleared now to release memory
-		snapshotList.clear();
-		
-		// Initialize visitors
+		// Initialize visitors and checkpoint
 		outputDirectory.mkdirs();
+		checkpoint = new RetestCheckpoint(new File(outputDirectory, CHECKPOINT_FILE), resume);
+		if (resume) {
+			System.out.println("Resuming retest: " + checkpoint.getNumCompleted() + " snapshots already tested");
+		}
 		for (IRetestSubmissionResultVisitor visitor : visitorList) {
-			visitor.init(outputDirectory);
+			visitor.init(outputDirectory, resume);
 		}
 		
-		// Wait for all submission results.
-		for (IFutureSubmissionResult future : futureList) {
-			try {
-				SubmissionResult result = waitForSubmissionResult(future);
-				RetestSnapshot snapshot = snapshotMap.get(future);
-				onSubmissionResult(result, snapshot);
-			} catch (SubmissionException e) {
-				logger.error("Error testing snapshot (should not happen)", e);
-			} catch (InterruptedException e) {
-				logger.error("Interrupted waiting for submission result (should not happen)", e);
+		completedQueue = new LinkedBlockingQueue<CompletedRetest>();
+		submitted = new HashSet<Integer>();
+		pendingCheckpoint = new ArrayList<Integer>();
+		
+		// Snapshots are streamed from the database by a separate thread,
+		// since no other queries (e.g., to find problems and test cases)
+		// can be made on its connection while the snapshots are being read.
+		// The snapshot queue is bounded, so the database is read only
+		// as quickly as snapshots are tested.
+		snapshotQueue = new ArrayBlockingQueue<RetestSnapshot>(maxInFlight);
+		Thread retrieveThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				retrieveSnapshots();
+			}
+		}, "RetrieveSnapshots");
+		retrieveThread.setDaemon(true);
+		retrieveThread.start();
+		
+		try {
+			// Add each snapshot to the submission queue as it is retrieved.
+			// Once the maximum number of snapshots are in flight, results
+			// are delivered (in order of completion) before more snapshots
+			// are submitted.
+			while (true) {
+				RetestSnapshot snapshot = snapshotQueue.take();
+				if (snapshot == END_OF_SNAPSHOTS) {
+					break;
+				}
+				while (numInFlight >= maxInFlight) {
+					deliverNextResult();
+				}
+				submit(snapshot);
+				while (!completedQueue.isEmpty()) {
+					deliverNextResult();
+				}
 			}
+			if (retrieveError != null) {
+				logger.error("Error retrieving snapshots: not all snapshots were tested", retrieveError);
+			}
+			
+			// Wait for the remaining submission results
+			while (numInFlight > 0) {
+				deliverNextResult();
+			}
+			writeCheckpoint();
+		} catch (InterruptedException e) {
+			logger.error("Interrupted waiting for submission result (should not happen)", e);
+		} finally {
+			checkpoint.close();
 		}
 		
-		System.out.print("All snapshots tested...");
+		System.out.print(numDelivered + " snapshots tested...");
 		System.out.flush();
 		
 		// Allow retest submission result visitors to shut down.
@@ -176,18 +250,93 @@ public class Retest {
 		}
 		System.out.println("exiting");
 	}
+	
+	private void retrieveSnapshots() {
+		try {
+			Database.getInstance().retrieveSnapshots(criteria, new SnapshotCallback() {
+				@Override
+				public void onSnapshotFound(int submitEventId,
+						int fullTextChangeId, int courseId, int problemId,
+						int userId, String programText, SubmissionReceipt receipt) {
+					if (checkpoint.isCompleted(submitEventId) || !submitted.add(submitEventId)) {
+						// Already tested (or, if the transaction was retried, already retrieved)
+						return;
+					}
+					try {
+						snapshotQueue.put(new RetestSnapshot(courseId, problemId, userId, submitEventId, fullTextChangeId, programText));
+					} catch (InterruptedException e) {
+						throw new IllegalStateException("Interrupted queueing snapshot", e);
+					}
+				}
+			});
+		} catch (Throwable e) {
+			retrieveError = e;
+		} finally {
+			try {
+				snapshotQueue.put(END_OF_SNAPSHOTS);
+			} catch (InterruptedException e) {
+				logger.error("Interrupted queueing end of snapshots", e);
+			}
+		}
+	}
+	
+	private void submit(final RetestSnapshot snapshot) {
+		ProblemAndTestCaseList exercise = findExercise(snapshot.problemId);
+		IFutureSubmissionResult future;
+		try {
+			future = DefaultSubmitService.getInstance().submitAsync(exercise.getProblem(), exercise.getTestCaseData(), snapshot.programText,
+					new SubmissionOrigin(SubmissionPriority.BATCH, snapshot.userId, snapshot.courseId));
+		} catch (SubmissionException e) {
+			logger.error("Error submitting snapshot for retest", e);
+			return;
+		}
+		
+		numInFlight++;
+		
+		// The listener keeps the snapshot until its result is delivered,
+		// so only the snapshots in flight are kept in memory
+		future.addCompletionListener(new ISubmissionCompletionListener() {
+			@Override
+			public void onSubmissionComplete(IFutureSubmissionResult future) {
+				completedQueue.add(new CompletedRetest(future, snapshot));
+			}
+		});
+	}
+	
+	private void deliverNextResult() throws InterruptedException {
+		CompletedRetest completed = completedQueue.take();
+		numInFlight--;
+		try {
+			SubmissionResult result = waitForSubmissionResult(completed.future);
+			onSubmissionResult(result, completed.snapshot);
+		} catch (SubmissionException e) {
+			logger.error("Error testing snapshot " + completed.snapshot.submitEventId, e);
+			return;
+		}
+		
+		numDelivered++;
+		pendingCheckpoint.add(completed.snapshot.submitEventId);
+		if (pendingCheckpoint.size() >= CHECKPOINT_INTERVAL) {
+			writeCheckpoint();
+		}
+	}
+	
+	private void writeCheckpoint() {
+		// Make sure the visitors' output is written before the
+		// snapshots are recorded as completed
+		for (IRetestSubmissionResultVisitor visitor : visitorList) {
+			visitor.flush();
+		}
+		checkpoint.markCompleted(pendingCheckpoint);
+		pendingCheckpoint.clear();
+		System.out.println(numDelivered + " snapshots tested, " + numInFlight + " in flight");
+	}
 
 	private SubmissionResult waitForSubmissionResult(IFutureSubmissionResult future) throws SubmissionException, InterruptedException {
-		System.out.print("Waiting for submission result...");
 		SubmissionResult submissionResult = null;
 		while (submissionResult == null) {
 			submissionResult = future.waitFor(IFutureSubmissionResult.STANDARD_POLL_WAIT_MS);
-			if (submissionResult == null) {
-				System.out.print(".");
-				System.out.flush();
-			}
 		}
-		System.out.println("done");
 		return submissionResult;
 	}
 
@@ -216,10 +365,18 @@ public class Retest {
 	public static void main(String[] args) throws IOException {
 		boolean interactiveConfig = false;
 		
+		boolean resume = false;
+		int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+		
 		for (String arg : args) {
 			if (arg.equals("--interactiveConfig")) {
 				// Configure interactively rather than using embedded cloudcoder.properties
 				interactiveConfig = true;
+			} else if (arg.equals("--resume")) {
+				// Resume an interrupted retest using the checkpoint file in the output directory
+				resume = true;
+			} else if (arg.startsWith("--maxInFlight=")) {
+				maxInFlight = Integer.parseInt(arg.substring("--maxInFlight=".length()));
 			} else {
 				throw new IllegalArgumentException("Unknown option: " + arg);
 			}
@@ -245,6 +402,8 @@ public class Retest {
 		SnapshotSelectionCriteria criteria = Util.getSnapshotSelectionCriteria(keyboard);
 		retest.setCriteria(criteria);
 		retest.setConfig(config);
+		retest.setResume(resume);
+		retest.setMaxInFlight(maxInFlight);
 		
 		File outputDirectory = new File(Util.ask(keyboard, "Data output directory: "));
 		retest.setOutputDirectory(outputDirectory);
@@ -0,0 +1,110 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.dataanalysis;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Checkpoint file recording the submit event ids of the snapshots
+ * whose retest results have been delivered (and flushed) by
+ * {@link Retest}, so that an interrupted retest can be resumed.
+ * The file contains one submit event id per line, and is appended to
+ * as results are delivered.
+ * 
+ * @author David Hovemeyer
+ */
+public class RetestCheckpoint {
+	private final Set<Integer> completed;
+	private final PrintWriter out;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param file   the checkpoint file
+	 * @param resume true if the submit event ids recorded by a previous
+	 *               retest should be read, false if the checkpoint file
+	 *               should be truncated
+	 * @throws IOException
+	 */
+	public RetestCheckpoint(File file, boolean resume) throws IOException {
+		this.completed = new HashSet<Integer>();
+		if (resume && file.exists()) {
+			BufferedReader r = new BufferedReader(new FileReader(file));
+			try {
+				while (true) {
+					String line = r.readLine();
+					if (line == null) {
+						break;
+					}
+					try {
+						completed.add(Integer.valueOf(line.trim()));
+					} catch (NumberFormatException e) {
+						// Incomplete last line written by an interrupted retest:
+						// that snapshot will simply be retested
+					}
+				}
+			} finally {
+				IOUtils.closeQuietly(r);
+			}
+		}
+		this.out = new PrintWriter(new FileWriter(file, resume));
+	}
+	
+	/**
+	 * @return number of snapshots completed by a previous retest
+	 */
+	public int getNumCompleted() {
+		return completed.size();
+	}
+	
+	/**
+	 * @param submitEventId a snapshot's submit event id
+	 * @return true if the snapshot was completed by a previous retest
+	 */
+	public boolean isCompleted(int submitEventId) {
+		return completed.contains(submitEventId);
+	}
+	
+	/**
+	 * Record that snapshots have been completed.
+	 * 
+	 * @param submitEventIds submit event ids of the completed snapshots
+	 */
+	public void markCompleted(Iterable<Integer> submitEventIds) {
+		for (Integer id : submitEventIds) {
+			out.println(id);
+		}
+		out.flush();
+	}
+	
+	/**
+	 * Close the checkpoint file.
+	 */
+	public void close() {
+		out.close();
+	}
+}
@@ -33,7 +33,6 @@ import java.util.Scanner;
 import java.util.Set;
 
 import org.apache.commons.io.IOUtils;
-import org.cloudcoder.app.server.persist.Database;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.SnapshotSelectionCriteria;
 import org.cloudcoder.app.shared.model.SubmissionReceipt;
@@ -62,6 +61,7 @@ public class TimeToSolve implements IAnalyzeSnapshots {
 	private Properties config;
 	private int separation;
 	private SnapshotSelectionCriteria criteria;
+	private IEventSource eventSource;
 	private String outputFile;
 	private int count;
 	
@@ -76,6 +76,11 @@ public class TimeToSolve implements IAnalyzeSnapshots {
 		this.criteria = criteria;
 	}
 	
+	@Override
+	public void setEventSource(IEventSource eventSource) {
+		this.eventSource = eventSource;
+	}
+	
 	public void setSeparation(int separation) {
 		this.separation = separation;
 	}
@@ -92,7 +97,7 @@ public class TimeToSolve implements IAnalyzeSnapshots {
 	private void execute() throws IOException {
 		System.out.print("Getting work sessions...");
 		System.out.flush();
-		List<WorkSession> sessions = Database.getInstance().findWorkSessions(criteria, separation);
+		List<WorkSession> sessions = eventSource.findWorkSessions(criteria, separation);
 		System.out.println("done");
 		
 		System.out.print("Analyzing work sessions...");
@@ -169,7 +174,7 @@ public class TimeToSolve implements IAnalyzeSnapshots {
 			problem.setProblemId(problemId);
 			User user = new User();
 			user.setId(userId);
-			receipts = Arrays.asList(Database.getInstance().getAllSubmissionReceiptsForUser(problem, user));
+			receipts = Arrays.asList(eventSource.getAllSubmissionReceiptsForUser(problem, user));
 			// sort by event id
 			Collections.sort(receipts, new Comparator<SubmissionReceipt>() {
 				@Override
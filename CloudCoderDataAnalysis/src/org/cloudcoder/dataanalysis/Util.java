@@ -30,6 +30,9 @@ import org.apache.log4j.Logger;
 import org.apache.log4j.PatternLayout;
 import org.cloudcoder.app.server.persist.JDBCDatabaseConfig;
 import org.cloudcoder.app.shared.model.SnapshotSelectionCriteria;
+import org.cloudcoder.eventlog.EventLog;
+import org.cloudcoder.eventlog.ExportEventLog;
+import org.cloudcoder.eventlog.LocalEventSource;
 
 /**
  * Data analysis utility methods.
@@ -92,11 +95,28 @@ public class Util {
 		return criteria;
 	}
 
-	public static void configureCriteriaAndDatabase(Scanner keyboard, IAnalyzeSnapshots t, String[] args) {
+	/**
+	 * Open a local {@link EventLog} (written by {@link ExportEventLog})
+	 * as an {@link IEventSource}.
+	 * 
+	 * @param eventLogDir the event log directory
+	 * @return the {@link IEventSource}
+	 * @throws IOException
+	 */
+	public static IEventSource openEventLog(String eventLogDir) throws IOException {
+		System.out.println("Reading events from event log " + eventLogDir);
+		return new LocalEventSource(EventLog.open(new File(eventLogDir)));
+	}
+
+	public static void configureCriteriaAndDatabase(Scanner keyboard, IAnalyzeSnapshots t, String[] args) throws IOException {
 		boolean interactive = false;
+		String eventLogDir = null;
 		for (String arg : args) {
 			if (arg.equals("--interactiveConfig")) {
 				interactive = true;
+			} else if (arg.startsWith("--eventLog=")) {
+				// Read events from a local event log rather than the database
+				eventLogDir = arg.substring("--eventLog=".length());
 			} else {
 				throw new IllegalArgumentException("Unknown option: " + arg);
 			}
@@ -109,12 +129,17 @@ public class Util {
 		t.setCriteria(criteria);
 	
 		Properties config = new Properties();
-		if (interactive) {
-			readDatabaseProperties(keyboard, config);
+		if (eventLogDir != null) {
+			t.setEventSource(openEventLog(eventLogDir));
 		} else {
-			loadEmbeddedConfig(config, TimeToSolve.class.getClassLoader());
+			if (interactive) {
+				readDatabaseProperties(keyboard, config);
+			} else {
+				loadEmbeddedConfig(config, TimeToSolve.class.getClassLoader());
+			}
+			Util.connectToDatabase(config);
+			t.setEventSource(new DatabaseEventSource());
 		}
-		Util.connectToDatabase(config);
 		
 		t.setConfig(config);
 	}
@@ -0,0 +1,121 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2016, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2016, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.eventlog;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the values of a single column of a {@link Table} from a
+ * compressed column file written by {@link ColumnWriter}.
+ */
+class ColumnReader implements Closeable {
+	private final ColumnType type;
+	private final Class<?> valueType;
+	private final boolean allowNull;
+	private final DataInputStream in;
+	private long prev;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param file      the column file to read
+	 * @param type      the {@link ColumnType}
+	 * @param valueType the Java type of the column's values
+	 * @param allowNull true if the column may contain null values
+	 * @throws IOException
+	 */
+	public ColumnReader(File file, ColumnType type, Class<?> valueType, boolean allowNull) throws IOException {
+		this.type = type;
+		this.valueType = valueType;
+		this.allowNull = allowNull;
+		this.in = new DataInputStream(new BufferedInputStream(
+				new GZIPInputStream(new FileInputStream(file), Table.BUFFER_SIZE), Table.BUFFER_SIZE));
+	}
+
+	/**
+	 * Read the next value.
+	 * 
+	 * @return the next value
+	 * @throws IOException
+	 */
+	public Object read() throws IOException {
+		if (type == ColumnType.STRING) {
+			long len = readVarLong();
+			if (len == 0L) {
+				return null;
+			}
+			byte[] data = new byte[(int) (len - 1)];
+			in.readFully(data);
+			return new String(data, StandardCharsets.UTF_8);
+		}
+		if (allowNull && !in.readBoolean()) {
+			return null;
+		}
+		switch (type) {
+		case INTEGER:
+			prev += unZigZag(readVarLong());
+			return toIntegerType(prev);
+		case BOOLEAN:
+			return in.readBoolean();
+		case ENUM:
+			return valueType.getEnumConstants()[(int) readVarLong()];
+		default:
+			throw new IllegalStateException("Unknown column type " + type);
+		}
+	}
+
+	private Object toIntegerType(long v) {
+		if (valueType == Long.class) {
+			return v;
+		} else if (valueType == Integer.class) {
+			return (int) v;
+		} else if (valueType == Short.class) {
+			return (short) v;
+		} else {
+			return (byte) v;
+		}
+	}
+
+	private static long unZigZag(long v) {
+		return (v >>> 1) ^ -(v & 1L);
+	}
+
+	private long readVarLong() throws IOException {
+		long v = 0L;
+		int shift = 0;
+		for (;;) {
+			int b = in.readUnsignedByte();
+			v |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return v;
+			}
+			shift += 7;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
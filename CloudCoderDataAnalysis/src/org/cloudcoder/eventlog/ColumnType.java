@@ -0,0 +1,52 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2016, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2016, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.eventlog;
+
+/**
+ * Encodings used for column values.
+ */
+enum ColumnType {
+	/** Integer values (Byte, Short, Integer, Long): zig-zag varint deltas. */
+	INTEGER,
+	/** Boolean values: one byte. */
+	BOOLEAN,
+	/** Enum values: varint ordinal. */
+	ENUM,
+	/** String values: varint length, then UTF-8 bytes. */
+	STRING;
+
+	/**
+	 * Get the {@link ColumnType} to use for values of given type.
+	 * 
+	 * @param type the Java type of the values
+	 * @return the {@link ColumnType}
+	 * @throws IllegalArgumentException if values of the type can't be stored in a column
+	 */
+	public static ColumnType forType(Class<?> type) {
+		if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class) {
+			return INTEGER;
+		} else if (type == Boolean.class) {
+			return BOOLEAN;
+		} else if (type.isEnum()) {
+			return ENUM;
+		} else if (type == String.class) {
+			return STRING;
+		} else {
+			throw new IllegalArgumentException("Unsupported column type " + type.getName());
+		}
+	}
+}
@@ -0,0 +1,119 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2016, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2016, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.eventlog;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the values of a single column of a {@link Table} to a
+ * compressed column file.  Values are encoded compactly according
+ * to the column type (see {@link ColumnType}), and the encoded stream
+ * is gzip-compressed.  Because all of the values in a column file
+ * have the same type, and (for the event log tables) are in an order
+ * where consecutive values tend to be similar, the column files
+ * compress much better than row-oriented data would.
+ */
+class ColumnWriter implements Closeable {
+	private final ColumnType type;
+	private final boolean allowNull;
+	private final DataOutputStream out;
+	private long prev;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param file      the column file to write
+	 * @param type      the {@link ColumnType}
+	 * @param allowNull true if the column may contain null values
+	 * @throws IOException
+	 */
+	public ColumnWriter(File file, ColumnType type, boolean allowNull) throws IOException {
+		this.type = type;
+		this.allowNull = allowNull;
+		this.out = new DataOutputStream(new BufferedOutputStream(
+				new GZIPOutputStream(new FileOutputStream(file), Table.BUFFER_SIZE), Table.BUFFER_SIZE));
+	}
+
+	/**
+	 * Write a value.
+	 * 
+	 * @param value the value to write
+	 * @throws IOException
+	 */
+	public void write(Object value) throws IOException {
+		if (type == ColumnType.STRING) {
+			// The length encoding reserves 0 for null
+			if (value == null) {
+				writeVarLong(0L);
+			} else {
+				byte[] data = ((String) value).getBytes(StandardCharsets.UTF_8);
+				writeVarLong(data.length + 1L);
+				out.write(data);
+			}
+			return;
+		}
+		if (allowNull) {
+			out.writeBoolean(value != null);
+			if (value == null) {
+				return;
+			}
+		} else if (value == null) {
+			throw new IllegalArgumentException("Null value in non-null column");
+		}
+		switch (type) {
+		case INTEGER:
+			// Delta encoding: consecutive values in a column
+			// (ids, timestamps) are usually close together
+			long v = ((Number) value).longValue();
+			writeVarLong(zigZag(v - prev));
+			prev = v;
+			break;
+		case BOOLEAN:
+			out.writeBoolean((Boolean) value);
+			break;
+		case ENUM:
+			writeVarLong(((Enum<?>) value).ordinal());
+			break;
+		default:
+			throw new IllegalStateException("Unknown column type " + type);
+		}
+	}
+
+	private static long zigZag(long v) {
+		return (v << 1) ^ (v >> 63);
+	}
+
+	private void writeVarLong(long v) throws IOException {
+		while ((v & ~0x7FL) != 0L) {
+			out.writeByte((int) ((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.writeByte((int) v);
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
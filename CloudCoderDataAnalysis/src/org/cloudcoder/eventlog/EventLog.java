@@ -0,0 +1,204 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2016, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2016, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.eventlog;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.IFactory;
+import org.cloudcoder.app.shared.model.IProblem;
+import org.cloudcoder.app.shared.model.ModelObjectField;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.SubmissionReceipt;
+import org.cloudcoder.app.shared.model.TestResult;
+
+/**
+ * A columnar, compressed copy of the CloudCoder event data
+ * (cc_events, cc_changes, cc_submission_receipts, and cc_test_results,
+ * plus the course id of each problem) which can be analyzed locally
+ * without querying the database.  An event log is a directory
+ * containing an <code>eventlog.properties</code> metadata file,
+ * and a subdirectory for each {@link Table} with one compressed
+ * file per column.
+ * 
+ * <p>The events, changes, and submission receipts tables are all
+ * stored in the same order: by user id, then timestamp, then event id.
+ * This is the order needed to find work sessions, and it means that
+ * changes and submission receipts can be matched with their events
+ * by scanning the tables in parallel (see {@link EventScanner}).
+ * Test results are stored in order of test result id.
+ * 
+ * <p>Event logs are written using {@link EventLogWriter}.
+ */
+public class EventLog {
+	/** Version of the event log format. */
+	public static final int VERSION = 1;
+
+	/** Name of the metadata file in the event log directory. */
+	public static final String METADATA_FILE = "eventlog.properties";
+
+	/** The events table. */
+	public static final Table<Event> EVENTS = new Table<Event>("events", new IFactory<Event>() {
+		@Override
+		public Event create() {
+			return new Event();
+		}
+	}, Event.SCHEMA.getFieldList());
+
+	/**
+	 * The changes table.  Change text is stored in a single column
+	 * (rather than being split between text_short and text, as in
+	 * the database.)
+	 */
+	public static final Table<Change> CHANGES = new Table<Change>("changes", new IFactory<Change>() {
+		@Override
+		public Change create() {
+			return new Change();
+		}
+	}, getChangeFields());
+
+	/** The submission receipts table. */
+	public static final Table<SubmissionReceipt> SUBMISSION_RECEIPTS = new Table<SubmissionReceipt>("submission_receipts", new IFactory<SubmissionReceipt>() {
+		@Override
+		public SubmissionReceipt create() {
+			return new SubmissionReceipt();
+		}
+	}, SubmissionReceipt.SCHEMA.getFieldList());
+
+	/** The test results table. */
+	public static final Table<TestResult> TEST_RESULTS = new Table<TestResult>("test_results", new IFactory<TestResult>() {
+		@Override
+		public TestResult create() {
+			return new TestResult();
+		}
+	}, TestResult.SCHEMA.getFieldList());
+
+	/**
+	 * The problems table: only the problem id and course id are stored,
+	 * since they are needed to select events by course.
+	 */
+	public static final Table<IProblem> PROBLEMS = new Table<IProblem>("problems", new IFactory<IProblem>() {
+		@Override
+		public IProblem create() {
+			return new Problem();
+		}
+	}, Arrays.asList(Problem.PROBLEM_ID, Problem.COURSE_ID));
+
+	/** All of the tables in an event log. */
+	public static final List<Table<?>> TABLES = Arrays.<Table<?>>asList(
+			EVENTS, CHANGES, SUBMISSION_RECEIPTS, TEST_RESULTS, PROBLEMS);
+
+	private static List<ModelObjectField<? super Change, ?>> getChangeFields() {
+		List<ModelObjectField<? super Change, ?>> result = new ArrayList<ModelObjectField<? super Change, ?>>();
+		for (ModelObjectField<? super Change, ?> field : Change.SCHEMA.getFieldList()) {
+			if (field != Change.TEXT_SHORT) {
+				result.add(field);
+			}
+		}
+		return result;
+	}
+
+	private final File dir;
+	private final Properties metadata;
+
+	private EventLog(File dir, Properties metadata) {
+		this.dir = dir;
+		this.metadata = metadata;
+	}
+
+	/**
+	 * Open an event log.
+	 * 
+	 * @param dir the event log directory
+	 * @return the {@link EventLog}
+	 * @throws IOException if the event log can't be read, or has an unsupported version
+	 */
+	public static EventLog open(File dir) throws IOException {
+		File metadataFile = new File(dir, METADATA_FILE);
+		if (!metadataFile.exists()) {
+			throw new FileNotFoundException(dir + " is not an event log (no " + METADATA_FILE + ")");
+		}
+		Properties metadata = new Properties();
+		try (InputStream in = new FileInputStream(metadataFile)) {
+			metadata.load(in);
+		}
+		int version = Integer.parseInt(metadata.getProperty("version", "-1"));
+		if (version != VERSION) {
+			throw new IOException("Unsupported event log version " + version + " in " + dir);
+		}
+		return new EventLog(dir, metadata);
+	}
+
+	/**
+	 * @return the event log directory
+	 */
+	public File getDir() {
+		return dir;
+	}
+
+	/**
+	 * Get the number of rows in a table.
+	 * 
+	 * @param table the {@link Table}
+	 * @return the number of rows
+	 */
+	public long getNumRows(Table<?> table) {
+		String value = metadata.getProperty(getNumRowsProperty(table));
+		if (value == null) {
+			throw new IllegalArgumentException("Event log has no table " + table.getName());
+		}
+		return Long.parseLong(value);
+	}
+
+	/**
+	 * Open a {@link TableReader} to scan a table.
+	 * 
+	 * @param table      the {@link Table}
+	 * @param fieldNames names of the fields to read: if none are specified,
+	 *                   all fields are read
+	 * @return the {@link TableReader}
+	 * @throws IOException
+	 */
+	public <E> TableReader<E> openReader(Table<E> table, String... fieldNames) throws IOException {
+		return new TableReader<E>(dir, table, getNumRows(table), fieldNames);
+	}
+
+	/**
+	 * Open an {@link EventScanner} to scan all events together with their
+	 * changes and submission receipts.
+	 * 
+	 * @param includeChangeText true if the text of changes should be read
+	 * @return the {@link EventScanner}
+	 * @throws IOException
+	 */
+	public EventScanner scanEvents(boolean includeChangeText) throws IOException {
+		return new EventScanner(this, includeChangeText);
+	}
+
+	static String getNumRowsProperty(Table<?> table) {
+		return table.getName() + ".rows";
+	}
+}
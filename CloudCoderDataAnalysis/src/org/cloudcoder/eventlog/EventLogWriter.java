@@ -0,0 +1,176 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2016, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2016, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.eventlog;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.IProblem;
+import org.cloudcoder.app.shared.model.SubmissionReceipt;
+import org.cloudcoder.app.shared.model.TestResult;
+import org.cloudcoder.app.shared.model.Triple;
+
+/**
+ * Writes an {@link EventLog}.  Events (with their changes and
+ * submission receipts) must be written in order of user id, then
+ * timestamp, then event id, which is the order in which
+ * {@link org.cloudcoder.app.server.persist.IDatabase#visitAllEvents(org.cloudcoder.app.server.persist.ResultVisitor)}
+ * returns them.  The metadata file is written when the
+ * writer is closed, so an event log which was not completely written
+ * can't be opened.
+ */
+public class EventLogWriter implements Closeable {
+	private final File dir;
+	private final TableWriter<Event> events;
+	private final TableWriter<Change> changes;
+	private final TableWriter<SubmissionReceipt> receipts;
+	private final TableWriter<TestResult> testResults;
+	private final TableWriter<IProblem> problems;
+	private final List<TableWriter<?>> writers;
+	private boolean complete;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param dir the event log directory
+	 * @throws IOException
+	 */
+	public EventLogWriter(File dir) throws IOException {
+		this.dir = dir;
+		if (!dir.mkdirs() && !dir.isDirectory()) {
+			throw new IOException("Could not create event log directory " + dir);
+		}
+		// Remove the metadata file from any previous export into this directory
+		new File(dir, EventLog.METADATA_FILE).delete();
+		
+		this.writers = new ArrayList<TableWriter<?>>();
+		try {
+			this.events = add(new TableWriter<Event>(dir, EventLog.EVENTS));
+			this.changes = add(new TableWriter<Change>(dir, EventLog.CHANGES));
+			this.receipts = add(new TableWriter<SubmissionReceipt>(dir, EventLog.SUBMISSION_RECEIPTS));
+			this.testResults = add(new TableWriter<TestResult>(dir, EventLog.TEST_RESULTS));
+			this.problems = add(new TableWriter<IProblem>(dir, EventLog.PROBLEMS));
+		} catch (IOException e) {
+			closeWriters();
+			throw e;
+		}
+	}
+
+	private <E> TableWriter<E> add(TableWriter<E> writer) {
+		writers.add(writer);
+		return writer;
+	}
+
+	/**
+	 * Write an event, and its {@link Change} or {@link SubmissionReceipt}
+	 * (if it has one.)
+	 * 
+	 * @param triple {@link Triple} with the {@link Event}, and when appropriate,
+	 *               the {@link Change} or {@link SubmissionReceipt}
+	 * @throws IOException
+	 */
+	public void writeEvent(Triple<Event, Change, SubmissionReceipt> triple) throws IOException {
+		events.write(triple.getFirst());
+		if (triple.getSecond() != null) {
+			changes.write(triple.getSecond());
+		}
+		if (triple.getThird() != null) {
+			receipts.write(triple.getThird());
+		}
+	}
+
+	/**
+	 * Write a {@link TestResult}.
+	 * 
+	 * @param testResult the {@link TestResult}
+	 * @throws IOException
+	 */
+	public void writeTestResult(TestResult testResult) throws IOException {
+		testResults.write(testResult);
+	}
+
+	/**
+	 * Write a problem.
+	 * 
+	 * @param problem the problem
+	 * @throws IOException
+	 */
+	public void writeProblem(IProblem problem) throws IOException {
+		problems.write(problem);
+	}
+
+	/**
+	 * Mark the event log as completely written: the metadata file
+	 * will be written when the writer is closed.
+	 */
+	public void setComplete() {
+		this.complete = true;
+	}
+
+	/**
+	 * @return number of rows written to each table, as a string
+	 */
+	public String getSummary() {
+		StringBuilder buf = new StringBuilder();
+		for (TableWriter<?> w : writers) {
+			if (buf.length() > 0) {
+				buf.append(", ");
+			}
+			buf.append(w.getNumRows());
+			buf.append(" ");
+			buf.append(w.getTable().getName());
+		}
+		return buf.toString();
+	}
+
+	@Override
+	public void close() throws IOException {
+		closeWriters();
+		if (complete) {
+			Properties metadata = new Properties();
+			metadata.setProperty("version", String.valueOf(EventLog.VERSION));
+			for (TableWriter<?> w : writers) {
+				metadata.setProperty(EventLog.getNumRowsProperty(w.getTable()), String.valueOf(w.getNumRows()));
+			}
+			try (OutputStream out = new FileOutputStream(new File(dir, EventLog.METADATA_FILE))) {
+				metadata.store(out, "CloudCoder event log");
+			}
+		}
+	}
+
+	private void closeWriters() throws IOException {
+		IOException ex = null;
+		for (TableWriter<?> w : writers) {
+			try {
+				w.close();
+			} catch (IOException e) {
+				ex = e;
+			}
+		}
+		if (ex != null) {
+			throw ex;
+		}
+	}
+}
@@ -0,0 +1,105 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2016, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2016, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.eventlog;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.commons.io.IOUtils;
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.SubmissionReceipt;
+import org.cloudcoder.app.shared.model.Triple;
+
+/**
+ * Sequential scan of all of the events in an {@link EventLog}, in order
+ * of user id, then timestamp, then event id.  Each event is returned
+ * together with its {@link Change} or {@link SubmissionReceipt}
+ * (if it has one), in the same form as
+ * {@link org.cloudcoder.app.server.persist.IDatabase#retrieveEvents(org.cloudcoder.app.shared.model.Problem, org.cloudcoder.app.shared.model.User)}.
+ * Because the changes and submission receipts tables are stored in the
+ * same order as the events table, they are matched with their events
+ * by reading all three tables in parallel.
+ */
+public class EventScanner implements Closeable {
+	private static final String[] CHANGE_FIELDS_WITHOUT_TEXT = {
+		"event_id", "type", "start_row", "end_row", "start_col", "end_col"
+	};
+
+	private final TableReader<Event> events;
+	private final TableReader<Change> changes;
+	private final TableReader<SubmissionReceipt> receipts;
+	private Change nextChange;
+	private SubmissionReceipt nextReceipt;
+
+	EventScanner(EventLog eventLog, boolean includeChangeText) throws IOException {
+		TableReader<Event> events = null;
+		TableReader<Change> changes = null;
+		TableReader<SubmissionReceipt> receipts = null;
+		try {
+			events = eventLog.openReader(EventLog.EVENTS);
+			changes = includeChangeText
+					? eventLog.openReader(EventLog.CHANGES)
+					: eventLog.openReader(EventLog.CHANGES, CHANGE_FIELDS_WITHOUT_TEXT);
+			receipts = eventLog.openReader(EventLog.SUBMISSION_RECEIPTS);
+		} catch (IOException e) {
+			IOUtils.closeQuietly(events);
+			IOUtils.closeQuietly(changes);
+			throw e;
+		}
+		this.events = events;
+		this.changes = changes;
+		this.receipts = receipts;
+		this.nextChange = changes.next();
+		this.nextReceipt = receipts.next();
+	}
+
+	/**
+	 * Get the next event.
+	 * 
+	 * @return {@link Triple} with the {@link Event}, and when appropriate,
+	 *         the {@link Change} or {@link SubmissionReceipt}; null if all
+	 *         events have been read
+	 * @throws IOException
+	 */
+	public Triple<Event, Change, SubmissionReceipt> next() throws IOException {
+		Event event = events.next();
+		if (event == null) {
+			return null;
+		}
+		Triple<Event, Change, SubmissionReceipt> triple = new Triple<Event, Change, SubmissionReceipt>();
+		triple.setFirst(event);
+		if (nextChange != null && nextChange.getEventId() == event.getId()) {
+			nextChange.setEvent(event);
+			triple.setSecond(nextChange);
+			nextChange = changes.next();
+		}
+		if (nextReceipt != null && nextReceipt.getEventId() == event.getId()) {
+			nextReceipt.setEvent(event);
+			triple.setThird(nextReceipt);
+			nextReceipt = receipts.next();
+		}
+		return triple;
+	}
+
+	@Override
+	public void close() {
+		events.close();
+		changes.close();
+		receipts.close();
+	}
+}
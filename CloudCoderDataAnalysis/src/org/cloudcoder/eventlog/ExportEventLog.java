@@ -0,0 +1,145 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2016, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2016, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.eventlog;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.Scanner;
+
+import org.cloudcoder.app.server.persist.Database;
+import org.cloudcoder.app.server.persist.IDatabase;
+import org.cloudcoder.app.server.persist.ResultVisitor;
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.IProblem;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.SubmissionReceipt;
+import org.cloudcoder.app.shared.model.TestResult;
+import org.cloudcoder.app.shared.model.Triple;
+import org.cloudcoder.dataanalysis.RuntimeIOException;
+import org.cloudcoder.dataanalysis.Util;
+
+/**
+ * Export the CloudCoder event data from the database to an {@link EventLog}.
+ * Each table is streamed from the database and written as it is read,
+ * so the export does not need to hold the data in memory.
+ * The analyses can then be run against the event log using the
+ * <code>--eventLog=<i>dir</i></code> option.
+ */
+public class ExportEventLog {
+	public static void main(String[] args) throws IOException {
+		boolean interactive = false;
+		String dest = null;
+		for (String arg : args) {
+			if (arg.equals("--interactiveConfig")) {
+				interactive = true;
+			} else if (arg.startsWith("--dest=")) {
+				dest = arg.substring("--dest=".length());
+			} else {
+				throw new IllegalArgumentException("Unknown option: " + arg);
+			}
+		}
+		
+		Util.configureLogging();
+		
+		Scanner keyboard = new Scanner(System.in);
+		Properties config = new Properties();
+		if (interactive) {
+			Util.readDatabaseProperties(keyboard, config);
+		} else {
+			Util.loadEmbeddedConfig(config, ExportEventLog.class.getClassLoader());
+		}
+		Util.connectToDatabase(config);
+		
+		if (dest == null) {
+			dest = Util.ask(keyboard, "Event log directory: ");
+		}
+		
+		export(new File(dest));
+	}
+
+	/**
+	 * Export the event data to an {@link EventLog}.
+	 * 
+	 * @param dir the event log directory
+	 * @throws IOException
+	 */
+	public static void export(File dir) throws IOException {
+		IDatabase db = Database.getInstance();
+		
+		final EventLogWriter writer = new EventLogWriter(dir);
+		try {
+			System.out.print("Exporting problems...");
+			System.out.flush();
+			db.visitAllModelObjects(Problem.SCHEMA, EventLog.PROBLEMS.getFactory(), new ResultVisitor<IProblem>() {
+				@Override
+				public void visit(IProblem value) {
+					try {
+						writer.writeProblem(value);
+					} catch (IOException e) {
+						throw new RuntimeIOException(e);
+					}
+				}
+			});
+			System.out.println("done");
+			
+			System.out.print("Exporting events...");
+			System.out.flush();
+			db.visitAllEvents(new ResultVisitor<Triple<Event, Change, SubmissionReceipt>>() {
+				private int count;
+				
+				@Override
+				public void visit(Triple<Event, Change, SubmissionReceipt> value) {
+					try {
+						writer.writeEvent(value);
+					} catch (IOException e) {
+						throw new RuntimeIOException(e);
+					}
+					count++;
+					if (count % 100000 == 0) {
+						System.out.print(".");
+						System.out.flush();
+					}
+				}
+			});
+			System.out.println("done");
+			
+			System.out.print("Exporting test results...");
+			System.out.flush();
+			db.visitAllModelObjects(TestResult.SCHEMA, EventLog.TEST_RESULTS.getFactory(), new ResultVisitor<TestResult>() {
+				@Override
+				public void visit(TestResult value) {
+					try {
+						writer.writeTestResult(value);
+					} catch (IOException e) {
+						throw new RuntimeIOException(e);
+					}
+				}
+			});
+			System.out.println("done");
+			
+			writer.setComplete();
+		} catch (RuntimeIOException e) {
+			throw (IOException) e.getCause();
+		} finally {
+			writer.close();
+		}
+		
+		System.out.println("Wrote " + writer.getSummary() + " to " + dir);
+	}
+}
@@ -0,0 +1,268 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2016, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2016, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.eventlog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudcoder.app.server.persist.ResultVisitor;
+import org.cloudcoder.app.server.persist.SnapshotCallback;
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.ChangeType;
+import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.IProblem;
+import org.cloudcoder.app.shared.model.Pair;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.SnapshotSelectionCriteria;
+import org.cloudcoder.app.shared.model.SubmissionReceipt;
+import org.cloudcoder.app.shared.model.Triple;
+import org.cloudcoder.app.shared.model.User;
+import org.cloudcoder.app.shared.model.WorkSession;
+import org.cloudcoder.dataanalysis.IEventSource;
+import org.cloudcoder.dataanalysis.RuntimeIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link IEventSource} which reads a local {@link EventLog} rather than
+ * querying the database.  All operations are implemented as sequential
+ * scans.
+ * 
+ * <p>{@link #getAllSubmissionReceiptsForUser(Problem, User)} and
+ * {@link #getEventsWithChanges(int, int, int, int)} are answered from
+ * the events of a single user, which are read into memory when that
+ * user is first requested.  Because users are stored in order of user id,
+ * a series of requests in increasing order of user id (for example, one
+ * for each work session found by {@link #findWorkSessions(SnapshotSelectionCriteria, int)})
+ * requires only a single scan of the event log.  Requesting
+ * a user with a lower user id than the previous request restarts the scan.
+ */
+public class LocalEventSource implements IEventSource {
+	private static final Logger logger = LoggerFactory.getLogger(LocalEventSource.class);
+
+	private final EventLog eventLog;
+	// map of problem ids to course ids
+	private final Map<Integer, Integer> courseIdMap;
+
+	// scan used to find the events of a requested user
+	private EventScanner userScanner;
+	private Triple<Event, Change, SubmissionReceipt> userScannerNext;
+	private int userEventsUserId;
+	private List<Triple<Event, Change, SubmissionReceipt>> userEvents;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param eventLog the {@link EventLog} to read
+	 * @throws IOException
+	 */
+	public LocalEventSource(EventLog eventLog) throws IOException {
+		this.eventLog = eventLog;
+		this.courseIdMap = new HashMap<Integer, Integer>();
+		try (TableReader<IProblem> r = eventLog.openReader(EventLog.PROBLEMS)) {
+			IProblem problem;
+			while ((problem = r.next()) != null) {
+				courseIdMap.put(problem.getProblemId(), problem.getCourseId());
+			}
+		}
+		this.userEventsUserId = -1;
+		this.userEvents = new ArrayList<Triple<Event, Change, SubmissionReceipt>>();
+	}
+
+	@Override
+	public List<WorkSession> findWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds) {
+		final List<WorkSession> result = new ArrayList<WorkSession>();
+		findWorkSessions(criteria, separationSeconds, new ResultVisitor<WorkSession>() {
+			@Override
+			public void visit(WorkSession value) {
+				result.add(value);
+			}
+		});
+		return result;
+	}
+
+	@Override
+	public void findWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds, ResultVisitor<WorkSession> visitor) {
+		// The events table is in order of user id, then timestamp, so the
+		// work sessions can be found in a single scan, in the same way as the
+		// FindWorkSessions database transaction.
+		try (TableReader<Event> r = eventLog.openReader(EventLog.EVENTS, "id", "user_id", "problem_id", "timestamp")) {
+			Event start = null;
+			Event end = null;
+			
+			Event e;
+			while ((e = r.next()) != null) {
+				if (!matches(criteria, e)) {
+					continue;
+				}
+				if (start == null) {
+					start = end = e;
+				} else if (start.getUserId() != e.getUserId()
+						|| start.getProblemId() != e.getProblemId()
+						|| e.getTimestamp() - start.getTimestamp() > separationSeconds * 1000L) {
+					visitor.visit(createSession(start, end));
+					start = end = e;
+				} else {
+					end = e;
+				}
+			}
+			if (start != null) {
+				visitor.visit(createSession(start, end));
+			}
+		} catch (IOException ex) {
+			throw new RuntimeIOException(ex);
+		}
+	}
+
+	private WorkSession createSession(Event start, Event end) {
+		WorkSession session = new WorkSession();
+		session.setCourseId(courseIdMap.get(start.getProblemId()));
+		session.setProblemId(start.getProblemId());
+		session.setUserId(start.getUserId());
+		session.setStartEventId(start.getId());
+		session.setEndEventId(end.getId());
+		session.setStartTime(start.getTimestamp());
+		session.setEndTime(end.getTimestamp());
+		return session;
+	}
+
+	@Override
+	public void retrieveSnapshots(SnapshotSelectionCriteria criteria, SnapshotCallback callback) {
+		try {
+			// Find the submission receipts, indexed by the event id of the
+			// full-text change for the submitted code (which always precedes
+			// the submission.)
+			Map<Integer, List<SubmissionReceipt>> receiptMap = new HashMap<Integer, List<SubmissionReceipt>>();
+			try (TableReader<SubmissionReceipt> r = eventLog.openReader(EventLog.SUBMISSION_RECEIPTS)) {
+				SubmissionReceipt receipt;
+				while ((receipt = r.next()) != null) {
+					List<SubmissionReceipt> list = receiptMap.get(receipt.getLastEditEventId());
+					if (list == null) {
+						list = new ArrayList<SubmissionReceipt>();
+						receiptMap.put(receipt.getLastEditEventId(), list);
+					}
+					list.add(receipt);
+				}
+			}
+			
+			// Scan the changes to find the submitted code
+			try (EventScanner scanner = eventLog.scanEvents(true)) {
+				Triple<Event, Change, SubmissionReceipt> triple;
+				while ((triple = scanner.next()) != null) {
+					Event e = triple.getFirst();
+					Change change = triple.getSecond();
+					if (change == null || !matches(criteria, e)) {
+						continue;
+					}
+					List<SubmissionReceipt> receipts = receiptMap.get(e.getId());
+					if (receipts == null) {
+						continue;
+					}
+					if (change.getType() != ChangeType.FULL_TEXT) {
+						logger.error("Change event {} doesn't have a full text Change", e.getId());
+						continue;
+					}
+					int courseId = courseIdMap.get(e.getProblemId());
+					for (SubmissionReceipt receipt : receipts) {
+						receipt.setEvent(e);
+						callback.onSnapshotFound(receipt.getEventId(), e.getId(), courseId, e.getProblemId(), e.getUserId(), change.getText(), receipt);
+					}
+				}
+			}
+		} catch (IOException ex) {
+			throw new RuntimeIOException(ex);
+		}
+	}
+
+	@Override
+	public SubmissionReceipt[] getAllSubmissionReceiptsForUser(Problem problem, User user) {
+		List<SubmissionReceipt> result = new ArrayList<SubmissionReceipt>();
+		for (Triple<Event, Change, SubmissionReceipt> triple : getUserEvents(user.getId())) {
+			if (triple.getThird() != null && triple.getFirst().getProblemId() == problem.getProblemId()) {
+				result.add(triple.getThird());
+			}
+		}
+		return result.toArray(new SubmissionReceipt[result.size()]);
+	}
+
+	@Override
+	public List<Pair<Event, Change>> getEventsWithChanges(int userId, int problemId, int startEventId, int endEventId) {
+		List<Pair<Event, Change>> result = new ArrayList<Pair<Event, Change>>();
+		for (Triple<Event, Change, SubmissionReceipt> triple : getUserEvents(userId)) {
+			Event e = triple.getFirst();
+			if (e.getProblemId() == problemId && e.getId() >= startEventId && e.getId() <= endEventId) {
+				result.add(new Pair<Event, Change>(e, triple.getSecond()));
+			}
+		}
+		return result;
+	}
+
+	private boolean matches(SnapshotSelectionCriteria criteria, Event e) {
+		Integer courseId = courseIdMap.get(e.getProblemId());
+		if (courseId == null) {
+			// As in the database queries, events for problems which
+			// don't exist are ignored
+			return false;
+		}
+		return (criteria.getCourseId() == SnapshotSelectionCriteria.ANY || criteria.getCourseId() == courseId)
+				&& (criteria.getUserId() == SnapshotSelectionCriteria.ANY || criteria.getUserId() == e.getUserId())
+				&& (criteria.getProblemId() == SnapshotSelectionCriteria.ANY || criteria.getProblemId() == e.getProblemId());
+	}
+
+	private List<Triple<Event, Change, SubmissionReceipt>> getUserEvents(int userId) {
+		if (userId == userEventsUserId) {
+			return userEvents;
+		}
+		try {
+			if (userScanner == null || userId < userEventsUserId) {
+				// Start a new scan
+				closeUserScanner();
+				userScanner = eventLog.scanEvents(true);
+				userScannerNext = userScanner.next();
+			}
+			
+			userEvents = new ArrayList<Triple<Event, Change, SubmissionReceipt>>();
+			userEventsUserId = userId;
+			
+			// Skip events of users with lower user ids, then read the
+			// events of the requested user
+			while (userScannerNext != null && userScannerNext.getFirst().getUserId() <= userId) {
+				if (userScannerNext.getFirst().getUserId() == userId) {
+					userEvents.add(userScannerNext);
+				}
+				userScannerNext = userScanner.next();
+			}
+			if (userScannerNext == null) {
+				closeUserScanner();
+			}
+			return userEvents;
+		} catch (IOException ex) {
+			throw new RuntimeIOException(ex);
+		}
+	}
+
+	private void closeUserScanner() {
+		if (userScanner != null) {
+			userScanner.close();
+			userScanner = null;
+			userScannerNext = null;
+		}
+	}
+}
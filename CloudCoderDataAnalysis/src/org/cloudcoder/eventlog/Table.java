@@ -0,0 +1,106 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2016, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2016, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.eventlog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.cloudcoder.app.shared.model.IFactory;
+import org.cloudcoder.app.shared.model.ModelObjectField;
+
+/**
+ * Description of a table in an {@link EventLog}: a name, a factory for
+ * model objects, and the {@link ModelObjectField}s which are stored as
+ * columns.  Each column is stored in a separate file, so a reader only
+ * needs to decompress the columns it actually uses.
+ *
+ * @param <E> the model object type
+ */
+public class Table<E> {
+	/** Buffer size used for reading and writing column files. */
+	static final int BUFFER_SIZE = 65536;
+
+	private final String name;
+	private final IFactory<E> factory;
+	private final List<ModelObjectField<? super E, ?>> fieldList;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param name      the table name (also the name of the table's directory)
+	 * @param factory   factory to create model objects when reading the table
+	 * @param fieldList the fields to store as columns
+	 */
+	public Table(String name, IFactory<E> factory, List<? extends ModelObjectField<? super E, ?>> fieldList) {
+		this.name = name;
+		this.factory = factory;
+		this.fieldList = Collections.unmodifiableList(new ArrayList<ModelObjectField<? super E, ?>>(fieldList));
+		
+		// Fail early if any field has a type we can't store
+		for (ModelObjectField<? super E, ?> field : fieldList) {
+			ColumnType.forType(field.getType());
+		}
+	}
+
+	/**
+	 * @return the table name
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return factory to create model objects
+	 */
+	public IFactory<E> getFactory() {
+		return factory;
+	}
+
+	/**
+	 * @return the fields stored as columns
+	 */
+	public List<ModelObjectField<? super E, ?>> getFieldList() {
+		return fieldList;
+	}
+
+	/**
+	 * Get a field.
+	 * 
+	 * @param fieldName the field name
+	 * @return the field
+	 * @throws IllegalArgumentException if the table has no such field
+	 */
+	public ModelObjectField<? super E, ?> getField(String fieldName) {
+		for (ModelObjectField<? super E, ?> field : fieldList) {
+			if (field.getName().equals(fieldName)) {
+				return field;
+			}
+		}
+		throw new IllegalArgumentException("Table " + name + " has no field " + fieldName);
+	}
+
+	/**
+	 * Get the name of the column file storing the values of a field.
+	 * 
+	 * @param field the field
+	 * @return the column file name
+	 */
+	static String getColumnFileName(ModelObjectField<?, ?> field) {
+		return field.getName() + ".gz";
+	}
+}
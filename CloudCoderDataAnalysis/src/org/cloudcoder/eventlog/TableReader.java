@@ -0,0 +1,109 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2016, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2016, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.eventlog;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.cloudcoder.app.shared.model.ModelObjectField;
+
+/**
+ * Reads model objects from a {@link Table} in an {@link EventLog}
+ * with a sequential scan.  Only the requested columns are read:
+ * fields which are not requested are left with the values set by
+ * the model object's constructor.
+ *
+ * @param <E> the model object type
+ */
+public class TableReader<E> implements Closeable {
+	private final Table<E> table;
+	private final List<ModelObjectField<? super E, ?>> fieldList;
+	private final List<ColumnReader> columnReaders;
+	private final long numRows;
+	private long rowsRead;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param dir        the {@link EventLog} directory
+	 * @param table      the {@link Table} to read
+	 * @param numRows    the number of rows in the table
+	 * @param fieldNames names of the fields to read: if empty, all fields are read
+	 * @throws IOException
+	 */
+	TableReader(File dir, Table<E> table, long numRows, String... fieldNames) throws IOException {
+		this.table = table;
+		this.numRows = numRows;
+		this.fieldList = new ArrayList<ModelObjectField<? super E, ?>>();
+		if (fieldNames.length == 0) {
+			fieldList.addAll(table.getFieldList());
+		} else {
+			for (String fieldName : fieldNames) {
+				fieldList.add(table.getField(fieldName));
+			}
+		}
+		
+		this.columnReaders = new ArrayList<ColumnReader>();
+		File tableDir = new File(dir, table.getName());
+		try {
+			for (ModelObjectField<? super E, ?> field : fieldList) {
+				columnReaders.add(new ColumnReader(new File(tableDir, Table.getColumnFileName(field)),
+						ColumnType.forType(field.getType()), field.getType(), field.isAllowNull()));
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the {@link Table}
+	 */
+	public Table<E> getTable() {
+		return table;
+	}
+
+	/**
+	 * Read the next row.
+	 * 
+	 * @return the model object containing the row's values, or null if
+	 *         all rows have been read
+	 * @throws IOException
+	 */
+	public E next() throws IOException {
+		if (rowsRead >= numRows) {
+			return null;
+		}
+		E obj = table.getFactory().create();
+		for (int i = 0; i < fieldList.size(); i++) {
+			fieldList.get(i).setUntyped(obj, columnReaders.get(i).read());
+		}
+		rowsRead++;
+		return obj;
+	}
+
+	@Override
+	public void close() {
+		for (ColumnReader r : columnReaders) {
+			IOUtils.closeQuietly(r);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2016, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2016, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+package org.cloudcoder.eventlog;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.cloudcoder.app.shared.model.ModelObjectField;
+
+/**
+ * Writes model objects to a {@link Table} in an {@link EventLog}, one
+ * row at a time.  Each field value is appended to the column file for
+ * that field, so rows can be written as they are streamed from the
+ * database without being held in memory.
+ *
+ * @param <E> the model object type
+ */
+public class TableWriter<E> implements Closeable {
+	private final Table<E> table;
+	private final List<ColumnWriter> columnWriters;
+	private long numRows;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param dir   the {@link EventLog} directory
+	 * @param table the {@link Table} to write
+	 * @throws IOException
+	 */
+	public TableWriter(File dir, Table<E> table) throws IOException {
+		this.table = table;
+		this.columnWriters = new ArrayList<ColumnWriter>();
+		
+		File tableDir = new File(dir, table.getName());
+		if (!tableDir.mkdirs() && !tableDir.isDirectory()) {
+			throw new IOException("Could not create table directory " + tableDir);
+		}
+		try {
+			for (ModelObjectField<? super E, ?> field : table.getFieldList()) {
+				columnWriters.add(new ColumnWriter(new File(tableDir, Table.getColumnFileName(field)),
+						ColumnType.forType(field.getType()), field.isAllowNull()));
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the {@link Table}
+	 */
+	public Table<E> getTable() {
+		return table;
+	}
+
+	/**
+	 * Write a row.
+	 * 
+	 * @param obj the model object containing the row's values
+	 * @throws IOException
+	 */
+	public void write(E obj) throws IOException {
+		List<ModelObjectField<? super E, ?>> fieldList = table.getFieldList();
+		for (int i = 0; i < fieldList.size(); i++) {
+			columnWriters.get(i).write(fieldList.get(i).get(obj));
+		}
+		numRows++;
+	}
+
+	/**
+	 * @return number of rows written
+	 */
+	public long getNumRows() {
+		return numRows;
+	}
+
+	@Override
+	public void close() throws IOException {
+		IOException ex = null;
+		for (ColumnWriter w : columnWriters) {
+			try {
+				w.close();
+			} catch (IOException e) {
+				ex = e;
+			}
+		}
+		if (ex != null) {
+			throw ex;
+		}
+	}
+}
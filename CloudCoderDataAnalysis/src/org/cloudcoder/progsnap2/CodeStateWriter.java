@@ -0,0 +1,226 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2016, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2016, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.progsnap2;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.cloudcoder.app.shared.model.ConvertBytesToHex;
+
+/**
+ * Writes code states for a ProgSnap2 export.  Code states are
+ * content-addressed: the CodeStateID is derived from a hash of the
+ * source file name and text, so identical texts (for example, an edit
+ * which is undone, or a submission which is identical to the previous
+ * edit) share a single code state, which is written only once.
+ * CodeStateIDs have the form <code>xx/hash</code>, where
+ * <code>xx</code> is the first two digits of the hash, to avoid having
+ * a huge number of entries in a single directory.
+ * This class is thread-safe.
+ */
+public abstract class CodeStateWriter implements Closeable {
+	/** Code states are written as files in the CodeStates directory. */
+	public static final String DIRECTORY = "Directory";
+	
+	/** Code states are written as entries in a single CodeStates.zip archive. */
+	public static final String ZIP = "Zip";
+	
+	private final Set<String> written;
+	private final Set<String> pending;
+	private final AtomicInteger numDuplicates;
+	
+	protected CodeStateWriter() {
+		this.written = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		this.pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		this.numDuplicates = new AtomicInteger();
+	}
+	
+	/**
+	 * Create a {@link CodeStateWriter}.
+	 * 
+	 * @param baseDir        the base directory of the export
+	 * @param representation the code state representation: {@link #DIRECTORY} or {@link #ZIP}
+	 * @return the {@link CodeStateWriter}
+	 * @throws IOException
+	 */
+	public static CodeStateWriter create(File baseDir, String representation) throws IOException {
+		if (representation.equals(DIRECTORY)) {
+			return new DirectoryCodeStateWriter(new File(baseDir, "CodeStates"));
+		} else if (representation.equals(ZIP)) {
+			return new ZipCodeStateWriter(new File(baseDir, "CodeStates.zip"));
+		} else {
+			throw new IllegalArgumentException("Unknown code state representation: " + representation);
+		}
+	}
+	
+	/**
+	 * @return the code state representation (the value of the CodeStateRepresentation
+	 *         property in the dataset metadata)
+	 */
+	public abstract String getRepresentation();
+	
+	/**
+	 * Write a code state, unless an identical code state has already been written.
+	 * 
+	 * @param sourceFileName the source file name
+	 * @param text           the text of the source file
+	 * @return the CodeStateID
+	 * @throws IOException
+	 */
+	public String writeCodeState(String sourceFileName, String text) throws IOException {
+		String hash = computeHash(sourceFileName, text);
+		String codeStateId = hash.substring(0, 2) + "/" + hash;
+		boolean duplicate = true;
+		if (!written.contains(codeStateId) && pending.add(codeStateId)) {
+			// A code state is only recorded as written once the write succeeds,
+			// so if the write fails, a later call can try again
+			try {
+				if (!written.contains(codeStateId)) {
+					duplicate = false;
+					write(codeStateId, sourceFileName, text.getBytes(StandardCharsets.UTF_8));
+					written.add(codeStateId);
+				}
+			} finally {
+				pending.remove(codeStateId);
+			}
+		}
+		if (duplicate) {
+			// Already written, or being written by another thread
+			numDuplicates.incrementAndGet();
+		}
+		return codeStateId;
+	}
+	
+	/**
+	 * @return number of distinct code states written
+	 */
+	public int getNumCodeStates() {
+		return written.size();
+	}
+	
+	/**
+	 * @return number of code states which were identical to one already written
+	 */
+	public int getNumDuplicates() {
+		return numDuplicates.get();
+	}
+	
+	/**
+	 * Write a code state.
+	 * 
+	 * @param codeStateId    the CodeStateID
+	 * @param sourceFileName the source file name
+	 * @param data           the UTF-8 encoded text of the source file
+	 * @throws IOException
+	 */
+	protected abstract void write(String codeStateId, String sourceFileName, byte[] data) throws IOException;
+	
+	private static String computeHash(String sourceFileName, String text) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-1");
+			md.update(sourceFileName.getBytes("UTF-8"));
+			md.update((byte) 0);
+			md.update(text.getBytes("UTF-8"));
+			return new ConvertBytesToHex(md.digest()).convert();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 not supported", e);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 not supported", e);
+		}
+	}
+	
+	/**
+	 * Write each code state as a file in its own subdirectory
+	 * of the CodeStates directory.
+	 */
+	private static class DirectoryCodeStateWriter extends CodeStateWriter {
+		private final File codeStatesDir;
+		
+		DirectoryCodeStateWriter(File codeStatesDir) {
+			this.codeStatesDir = codeStatesDir;
+		}
+		
+		@Override
+		public String getRepresentation() {
+			return DIRECTORY;
+		}
+		
+		@Override
+		protected void write(String codeStateId, String sourceFileName, byte[] data) throws IOException {
+			File codeStateDir = new File(codeStatesDir, codeStateId);
+			if (!codeStateDir.mkdirs() && !codeStateDir.isDirectory()) {
+				throw new IOException("Could not create code state directory " + codeStateDir);
+			}
+			try (OutputStream out = new FileOutputStream(new File(codeStateDir, sourceFileName))) {
+				out.write(data);
+			}
+		}
+		
+		@Override
+		public void close() {
+			// Nothing to do
+		}
+	}
+	
+	/**
+	 * Write each code state as an entry in a single zip archive.
+	 * Entries are streamed to the archive as they are written, so the
+	 * code states never need to be held in memory all at once.
+	 * Entry names are the same as the paths of the files that would be
+	 * written in the CodeStates directory, so CodeStateSection values are
+	 * entry names.
+	 */
+	private static class ZipCodeStateWriter extends CodeStateWriter {
+		private final ZipOutputStream zipOut;
+		
+		ZipCodeStateWriter(File zipFile) throws IOException {
+			this.zipOut = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile)));
+		}
+		
+		@Override
+		public String getRepresentation() {
+			return ZIP;
+		}
+		
+		@Override
+		protected synchronized void write(String codeStateId, String sourceFileName, byte[] data) throws IOException {
+			zipOut.putNextEntry(new ZipEntry(codeStateId + "/" + sourceFileName));
+			zipOut.write(data);
+			zipOut.closeEntry();
+		}
+		
+		@Override
+		public synchronized void close() throws IOException {
+			zipOut.close();
+		}
+	}
+}
@@ -22,9 +22,12 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -33,6 +36,11 @@ import java.util.Scanner;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -63,9 +71,10 @@ public class Export {
 	public static final long EVENT_SPACING = 200L;
 	
 	private Properties config;
-	private EventFactory eventFactory;
 	private long nextEventOrderValue;
+	private long lastSessionId;
 	private MainTableWriter mainTableWriter;
+	private CodeStateWriter codeStateWriter;
 	
 	private static Export theInstance;
 	
@@ -80,35 +89,80 @@ public class Export {
 		this.config = config;
 	}
 	
-	public void createEventFactory() {
+	/**
+	 * Export of the events for one student working on one problem.
+	 * Each ProblemExport is executed as a separate task, so several
+	 * can be in progress at once.  The generated events are buffered
+	 * rather than being written directly to the main table: their
+	 * Order and SessionID values are local to the ProblemExport, and are
+	 * rebased when the events are written (see {@link #writeProblemExport(ProblemExport)}).
+	 * Because the events are written in the same order that the tasks
+	 * were created, the main table is exactly the same as it would be
+	 * if the export were done sequentially.
+	 * Code states are written as they are generated, since they
+	 * are content-addressed and don't depend on ordering.
+	 */
+	private class ProblemExport implements Callable<ProblemExport>, EventFactory {
+		private final Course course;
+		private final String termId;
+		private final Problem problem;
+		private final User student;
+		private final List<ProgSnap2Event> events;
+		private long numEventsCreated;
+		private long numSessions;
+		
+		ProblemExport(Course course, String termId, Problem problem, User student) {
+			this.course = course;
+			this.termId = termId;
+			this.problem = problem;
+			this.student = student;
+			this.events = new ArrayList<ProgSnap2Event>();
+		}
+		
+		@Override
+		public ProblemExport call() throws Exception {
+			IDatabase db = Database.getInstance();
+			List<Triple<Event, Change, SubmissionReceipt>> triples =
+					db.retrieveEvents(problem, student);
+			System.out.printf("Retrieved %d events for student %d, problem %d\n",
+					triples.size(), student.getId(), problem.getProblemId());
+			writeEvents(this, course, termId, problem, student, triples);
+			return this;
+		}
+		
 		//
 		// The EventFactory relies on the exporter creating ProgSnap2Event object
 		// in the "correct" order, i.e., our best-guess chronological order.
 		//
-		eventFactory = new EventFactory() {
-			private long sessionId = 1L;
+		@Override
+		public ProgSnap2Event createEvent(EventType eventType, long eventId, int subjectId, String termId, long sessionId, String[] toolInstances) {
+			ProgSnap2Event evt = ProgSnap2Event.create(eventType, eventId, subjectId, sessionId, toolInstances);
 			
-			@Override
-			public ProgSnap2Event createEvent(EventType eventType, long eventId, int subjectId, String termId, long sessionId, String[] toolInstances) {
-				ProgSnap2Event evt = ProgSnap2Event.create(eventType, eventId, subjectId, sessionId, toolInstances);
-
-				// Order values are spaced out for the same reason as event ids:
-				// it allows us to generate new events in the created space.
-				// This is important, for example, for incorporating compiler
-				// diagnostics (which have to be reconstructed, since CloudCoder
-				// doesn't record them.)
-				evt.setOrder(nextEventOrderValue * EVENT_SPACING);
-				
-				nextEventOrderValue++;
-				evt.setTermId(termId);
-				return evt;
-			}
-
-			@Override
-			public long nextSessionId() {
-				return sessionId++;
+			// The local order value is rebased (and spaced out) when
+			// the event is written to the main table
+			evt.setOrder(numEventsCreated);
+			
+			numEventsCreated++;
+			evt.setTermId(termId);
+			return evt;
+		}
+		
+		@Override
+		public long nextSessionId() {
+			return ++numSessions;
+		}
+		
+		void writeEvent(ProgSnap2Event evt, String currentCodeStateId) {
+			evt.setCodeStateId(currentCodeStateId);
+			events.add(evt);
+		}
+		
+		void writeEvent(ProgSnap2Event evt) {
+			if (evt.getCodeStateId() == null) {
+				throw new IllegalStateException("Writing event id " + evt.getEventId() + " without a CodeStateID");
 			}
-		};
+			events.add(evt);
+		}
 	}
 
 	public void setMainTableWriter(MainTableWriter mainTableWriter) {
@@ -129,18 +183,41 @@ public class Export {
 		
 		ProblemList problems = findProblems(instructor, course);
 		
-		IDatabase db = Database.getInstance();
+		Term term = new Term();
+		term.setId(course.getTermId());
+		Database.getInstance().reloadModelObject(term);
+		String termId = term.getName() + " " + course.getYear();
 		
-		// Write main event table
-		for (User student : students) {
-			for (Problem problem : problems.getProblemList()) {
-				System.out.printf("Retrieving events for student %d, problem %d\n", student.getId(), problem.getProblemId());
-				List<Triple<Event, Change, SubmissionReceipt>> events =
-						db.retrieveEvents(problem, student);
-				System.out.printf("  Retrieved %d events\n", events.size());
-				writeEvents(instructor, course, problem, student, events);
+		// Write main event table.
+		// Each (student, problem) pair is exported as a separate task.
+		// Results are consumed in the order the tasks were submitted,
+		// and the number of outstanding tasks is bounded so that
+		// buffered events don't accumulate without limit.
+		int numThreads = getNumThreads();
+		int maxOutstanding = numThreads * 4;
+		System.out.printf("Exporting using %d thread(s)\n", numThreads);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+		codeStateWriter = CodeStateWriter.create(mainTableWriter.getBaseDir(), getCodeStateRepresentation());
+		try {
+			Deque<Future<ProblemExport>> outstanding = new ArrayDeque<Future<ProblemExport>>();
+			for (User student : students) {
+				for (Problem problem : problems.getProblemList()) {
+					if (outstanding.size() >= maxOutstanding) {
+						writeProblemExport(getResult(outstanding.removeFirst()));
+					}
+					outstanding.addLast(executor.submit(new ProblemExport(course, termId, problem, student)));
+				}
+			}
+			while (!outstanding.isEmpty()) {
+				writeProblemExport(getResult(outstanding.removeFirst()));
 			}
+		} finally {
+			executor.shutdownNow();
+			codeStateWriter.close();
 		}
+		System.out.printf("Wrote %d code states (%d duplicates skipped)\n",
+				codeStateWriter.getNumCodeStates(), codeStateWriter.getNumDuplicates());
 		
 		// Write README.txt
 		FileUtils.copyFile(new File(this.getReadmePath()), new File(mainTableWriter.getBaseDir(), "README.txt"));
@@ -153,26 +230,55 @@ public class Export {
 			dm.writeNext("IsEventOrderingConsistent", "true");
 			dm.writeNext("EventOrderScope", "Restricted");
 			dm.writeNext("EventOrderScopeColumns", "CourseID;ProblemID;SubjectID");
-			dm.writeNext("CodeStateRepresentation", "Directory");
+			dm.writeNext("CodeStateRepresentation", codeStateWriter.getRepresentation());
 		}
 	}
 
-	private void writeEvents(User instructor, Course course, Problem problem, User student,
-			List<Triple<Event, Change, SubmissionReceipt>> events) {
-		long sessionSep = getSeparationSeconds() * 1000L;
+	private ProblemExport getResult(Future<ProblemExport> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Interrupted waiting for export task");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new RuntimeException("Error exporting events", cause);
+		}
+	}
+
+	/**
+	 * Write the events generated by a {@link ProblemExport} to the main table,
+	 * assigning their final Order and SessionID values.
+	 * Must only be called from the thread executing {@link #execute()}.
+	 */
+	private void writeProblemExport(ProblemExport result) {
+		for (ProgSnap2Event evt : result.events) {
+			// Order values are spaced out for the same reason as event ids:
+			// it allows us to generate new events in the created space.
+			// This is important, for example, for incorporating compiler
+			// diagnostics (which have to be reconstructed, since CloudCoder
+			// doesn't record them.)
+			long localOrder = evt.getFieldValue("Order", Long.class);
+			evt.setOrder((nextEventOrderValue + localOrder) * EVENT_SPACING);
+			long localSessionId = evt.getFieldValue("SessionID", Long.class);
+			evt.setFieldValue("SessionID", lastSessionId + localSessionId);
+			mainTableWriter.writeEvent(evt);
+		}
+		nextEventOrderValue += result.numEventsCreated;
+		lastSessionId += result.numSessions;
+	}
 
-		File codeStates = mainTableWriter.makeSubdir("CodeStates");
+	private void writeEvents(ProblemExport eventFactory, Course course, String termId, Problem problem, User student,
+			List<Triple<Event, Change, SubmissionReceipt>> events) throws IOException {
+		long sessionSep = getSeparationSeconds() * 1000L;
 
 		TextDocument doc = new TextDocument();
 		ApplyChangeToTextDocument applicator = new ApplyChangeToTextDocument();
 		
 		String currentCodeStateId = "";
 		
-		Term term = new Term();
-		term.setId(course.getTermId());
-		Database.getInstance().reloadModelObject(term);
-		String termId = term.getName() + " " + course.getYear();
-		
 		long lastEventTs = -1L;
 		long curSessionID = -1L;
 		long lastEventId = -1L;
@@ -194,7 +300,7 @@ public class Export {
 					ProgSnap2Event endEvt = eventFactory.createEvent(
 							EventType.SessionEnd, sessionEndEventId, student.getId(), termId, curSessionID, TOOL_INSTANCES);
 					populateBasicEventInfo(endEvt, problem.getCourseId(), problem.getProblemId(), lastEventTs + 1L); 
-					mainTableWriter.writeEvent(endEvt, currentCodeStateId);
+					eventFactory.writeEvent(endEvt, currentCodeStateId);
 				}
 				// Generate Session.Start
 				curSessionID = eventFactory.nextSessionId();
@@ -202,7 +308,7 @@ public class Export {
 				ProgSnap2Event startEvt = eventFactory.createEvent(
 						EventType.SessionStart, sessionStartEventId, student.getId(), termId, curSessionID, TOOL_INSTANCES);
 				populateBasicEventInfo(startEvt, problem.getCourseId(), problem.getProblemId(), curEventTs);
-				mainTableWriter.writeEvent(startEvt, currentCodeStateId);
+				eventFactory.writeEvent(startEvt, currentCodeStateId);
 			}
 			
 			if (triple.getSecond() != null) {
@@ -231,30 +337,20 @@ public class Export {
 //						
 //						//evt.setCodeStateId("c" + c.getEventId());
 						
-						// To avoid having a huge number of immediate subdirectories in the CodeStates
-						// directory, generate CodeStateID values as a hierarchy, user id then
-						// edit event id.
-						currentCodeStateId = "u" + student.getId() + "/p" + problem.getProblemId() + "/c" + c.getEventId();
+						// CodeStateID values are content-addressed, so an edit which
+						// results in the same text as an earlier code state
+						// (of any student) reuses it rather than writing a copy.
+						String sourceFileName = getSourceFileName(problem);
+						currentCodeStateId = codeStateWriter.writeCodeState(sourceFileName, doc.getText());
 						evt.setCodeStateId(currentCodeStateId);
 						populateBasicEventInfo(evt, problem.getCourseId(), problem.getProblemId(), c.getEvent().getTimestamp());
 						
 						String codeStateSection;
-						String sourceFileName = getSourceFileName(problem);
 						codeStateSection = getCodeStateSection(currentCodeStateId, sourceFileName);
 						evt.setCodeStateSection(codeStateSection);
 
 						// Write the event to the main table
-						mainTableWriter.writeEvent(evt);
-
-						File codeStateDir = new File(codeStates, evt.getCodeStateId());
-						if (!codeStateDir.mkdirs()) {
-							throw new RuntimeException("Could not create code state directory " + codeStateDir);
-						}
-
-						File codeFile = new File(codeStateDir, sourceFileName);
-						try (FileWriter fw = new FileWriter(codeFile)) {
-							fw.write(doc.getText());
-						}
+						eventFactory.writeEvent(evt);
 					} catch (Exception e) {
 						// delta failed to apply, blargh
 						lastEditTextGood = false;
@@ -263,7 +359,7 @@ public class Export {
 			}
 			if (triple.getThird() != null) {
 				// Submission event
-				writeSubmission(eventId, student, problem, termId, triple.getThird(), currentCodeStateId, curSessionID);
+				writeSubmission(eventFactory, eventId, student, problem, termId, triple.getThird(), currentCodeStateId, curSessionID);
 			}
 			
 			lastEventId = eventId;
@@ -277,7 +373,7 @@ public class Export {
 			ProgSnap2Event endEvt = eventFactory.createEvent(
 					EventType.SessionEnd, sessionStartEventId, student.getId(), termId, curSessionID, TOOL_INSTANCES);
 			populateBasicEventInfo(endEvt, problem.getCourseId(), problem.getProblemId(), lastEventTs + 1L);
-			mainTableWriter.writeEvent(endEvt, currentCodeStateId);
+			eventFactory.writeEvent(endEvt, currentCodeStateId);
 		}
 	}
 
@@ -343,13 +439,11 @@ public class Export {
 //		}
 //	}
 
-	private void writeSubmission(long submitEventId, User student, Problem problem, String termId, SubmissionReceipt receipt, String currentCodeStateId, long curSessionId) {
+	private void writeSubmission(ProblemExport eventFactory, long submitEventId, User student, Problem problem, String termId, SubmissionReceipt receipt, String currentCodeStateId, long curSessionId) {
 		IDatabase db = Database.getInstance();
 
 		SubmissionStatus status = receipt.getStatus();
 
-		mainTableWriter.makeSubdir("CodeStates");
-
 		// Not a real submission
 		if (status == SubmissionStatus.NOT_STARTED) {
 			//continue;
@@ -513,10 +607,10 @@ public class Export {
 			
 			// Now that scores have been computed (if appropriate),
 			// we can write all of the events related to this submission
-			mainTableWriter.writeEvent(submit, currentCodeStateId);
-			mainTableWriter.writeEvent(compile, currentCodeStateId);
+			eventFactory.writeEvent(submit, currentCodeStateId);
+			eventFactory.writeEvent(compile, currentCodeStateId);
 			for (ProgSnap2Event runTest : runTests) {
-				mainTableWriter.writeEvent(runTest, currentCodeStateId);
+				eventFactory.writeEvent(runTest, currentCodeStateId);
 			}
 		}
 	}
@@ -550,6 +644,26 @@ public class Export {
 		return result;
 	}
 
+	/**
+	 * @return number of threads to use to export events: set with the
+	 *         ps2.threads property (defaults to the number of available processors)
+	 */
+	public int getNumThreads() {
+		if (!config.containsKey("ps2.threads")) {
+			return Runtime.getRuntime().availableProcessors();
+		}
+		return Math.max(1, Integer.parseInt(config.getProperty("ps2.threads")));
+	}
+
+	/**
+	 * @return how code states should be represented: set with the
+	 *         ps2.codeStateRepresentation property, which may be "Directory"
+	 *         (the default) or "Zip"
+	 */
+	public String getCodeStateRepresentation() {
+		return config.getProperty("ps2.codeStateRepresentation", CodeStateWriter.DIRECTORY);
+	}
+
 	private int getSeparationSeconds() {
 		return Integer.valueOf(config.getProperty("ps2.separationSeconds"));
 	}
@@ -624,8 +738,6 @@ public class Export {
 		File destDir = new File(config.getProperty("ps2.dest"));
 		MainTableWriter mainTableWriter = new MainTableWriter(destDir);
 		exporter.setMainTableWriter(mainTableWriter);
-		
-		exporter.createEventFactory();
 
 		// Do the export
 		try {
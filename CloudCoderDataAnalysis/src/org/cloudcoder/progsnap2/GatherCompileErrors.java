@@ -17,10 +17,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Scanner;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.apache.commons.io.IOUtils;
 import org.cloudcoder.app.server.persist.Database;
 import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
+import org.cloudcoder.app.server.submitsvc.SubmissionOrigin;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
 import org.cloudcoder.app.server.submitsvc.oop.OutOfProcessSubmitService;
 import org.cloudcoder.app.shared.model.CompilationOutcome;
 import org.cloudcoder.app.shared.model.CompilationResult;
@@ -51,6 +55,10 @@ public class GatherCompileErrors {
 
 	private File diagDir;
 	
+	private String baseDir;
+	
+	private ZipFile codeStatesZip;
+	
 	public GatherCompileErrors() {
 		problemMap = new HashMap<Integer, ProblemAndTestCaseList>();
 	}
@@ -91,7 +99,14 @@ public class GatherCompileErrors {
 
 		Util.connectToDatabase(config);
 		
-		String baseDir = config.getProperty("ps2.dest");
+		this.baseDir = config.getProperty("ps2.dest");
+		
+		// If the export used the Zip code state representation,
+		// code states are read from CodeStates.zip
+		File zipFile = new File(baseDir, "CodeStates.zip");
+		if (zipFile.exists()) {
+			this.codeStatesZip = new ZipFile(zipFile);
+		}
 		
 		// Create a directory where compiler diagnostics can be written
 		this.diagDir = new File(baseDir, "diag");
@@ -150,17 +165,13 @@ public class GatherCompileErrors {
 							System.out.printf("  ==> Event %s is a failed C compilation\n", rowView.get("EventID"));
 							
 							// Get the code
-							String code;
-							String codeFileName = baseDir + "/CodeStates/" + rowView.get("CodeStateSection");
-							System.out.printf("  Code file name is %s\n", codeFileName);
-							try (InputStream in = new FileInputStream(codeFileName)) {
-								code = IOUtils.toString(in);
-							}
+							String code = readCodeState(rowView.get("CodeStateSection"));
 							
 							// Submit the crud
 							try {
 								System.out.printf("  Recompiling event %s\n", rowView.get("EventID"));
-								IFutureSubmissionResult future = svc.submitAsync(p.getProblem(), p.getTestCaseData(), code);
+								IFutureSubmissionResult future = svc.submitAsync(p.getProblem(), p.getTestCaseData(), code,
+										SubmissionOrigin.forProblem(SubmissionPriority.BATCH, SubmissionOrigin.UNKNOWN_ID, p.getProblem()));
 								SubmissionResult result = null;
 								do {
 									result = future.waitFor(100L);
@@ -231,6 +242,28 @@ public class GatherCompileErrors {
 		}
 		
 		svc.shutdown();
+		if (codeStatesZip != null) {
+			codeStatesZip.close();
+		}
+	}
+	
+	private String readCodeState(String codeStateSection) throws IOException {
+		if (codeStatesZip != null) {
+			System.out.printf("  Code entry name is %s\n", codeStateSection);
+			ZipEntry entry = codeStatesZip.getEntry(codeStateSection);
+			if (entry == null) {
+				throw new FileNotFoundException("No code state " + codeStateSection + " in CodeStates.zip");
+			}
+			try (InputStream in = codeStatesZip.getInputStream(entry)) {
+				return IOUtils.toString(in, "UTF-8");
+			}
+		}
+		
+		String codeFileName = baseDir + "/CodeStates/" + codeStateSection;
+		System.out.printf("  Code file name is %s\n", codeFileName);
+		try (InputStream in = new FileInputStream(codeFileName)) {
+			return IOUtils.toString(in, "UTF-8");
+		}
 	}
 	
 	public static void main(String[] args) throws FileNotFoundException, IOException, InterruptedException {
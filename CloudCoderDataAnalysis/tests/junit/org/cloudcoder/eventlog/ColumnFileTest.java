@@ -0,0 +1,124 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2016, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2016, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.eventlog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.cloudcoder.app.shared.model.EventType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ColumnFileTest {
+	private File file;
+	
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("column", ".gz");
+	}
+	
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+	
+	private void checkRoundTrip(Class<?> valueType, boolean allowNull, List<?> values) throws IOException {
+		ColumnType type = ColumnType.forType(valueType);
+		ColumnWriter writer = new ColumnWriter(file, type, allowNull);
+		try {
+			for (Object value : values) {
+				writer.write(value);
+			}
+		} finally {
+			writer.close();
+		}
+		
+		ColumnReader reader = new ColumnReader(file, type, valueType, allowNull);
+		try {
+			for (Object value : values) {
+				assertEquals(value, reader.read());
+			}
+			try {
+				reader.read();
+				fail("Read past the last value");
+			} catch (EOFException e) {
+				// expected
+			}
+		} finally {
+			reader.close();
+		}
+	}
+	
+	@Test
+	public void testLongs() throws IOException {
+		// Negative deltas, and deltas which overflow a long
+		checkRoundTrip(Long.class, false, Arrays.asList(
+				1000L, 1001L, 999L, -5L, 0L, Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, -1L, 1L << 40));
+	}
+	
+	@Test
+	public void testNullableIntegers() throws IOException {
+		checkRoundTrip(Integer.class, true, Arrays.asList(
+				null, 7, null, null, -7, Integer.MIN_VALUE, Integer.MAX_VALUE, null, 0));
+	}
+	
+	@Test
+	public void testShortsAndBytes() throws IOException {
+		checkRoundTrip(Short.class, false, Arrays.asList(Short.MIN_VALUE, (short) 3, Short.MAX_VALUE));
+		checkRoundTrip(Byte.class, true, Arrays.asList(Byte.MIN_VALUE, null, (byte) -1, Byte.MAX_VALUE));
+	}
+	
+	@Test
+	public void testBooleans() throws IOException {
+		checkRoundTrip(Boolean.class, true, Arrays.asList(true, null, false, false, null, true));
+	}
+	
+	@Test
+	public void testEnums() throws IOException {
+		EventType[] all = EventType.values();
+		checkRoundTrip(EventType.class, true, Arrays.asList(
+				all[all.length - 1], null, all[0], all[all.length - 1], null));
+		checkRoundTrip(EventType.class, false, Arrays.asList(all));
+	}
+	
+	@Test
+	public void testStrings() throws IOException {
+		checkRoundTrip(String.class, true, Arrays.asList(
+				"hello", null, "", "caf\u00e9 \u4e2d\u6587", null, new String(new char[1000]).replace('\0', 'x')));
+	}
+	
+	@Test
+	public void testNullInNonNullColumn() throws IOException {
+		ColumnWriter writer = new ColumnWriter(file, ColumnType.INTEGER, false);
+		try {
+			writer.write(null);
+			fail("Wrote null value to non-null column");
+		} catch (IllegalArgumentException e) {
+			// expected
+		} finally {
+			writer.close();
+		}
+	}
+}
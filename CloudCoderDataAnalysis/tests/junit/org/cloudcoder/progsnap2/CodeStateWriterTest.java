@@ -0,0 +1,87 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2016, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2016, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.progsnap2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class CodeStateWriterTest {
+	/**
+	 * Records the code states written, and fails the first write.
+	 */
+	private static class FailOnceCodeStateWriter extends CodeStateWriter {
+		final List<String> writes = new ArrayList<String>();
+		boolean failed;
+		
+		@Override
+		public String getRepresentation() {
+			return "Test";
+		}
+		
+		@Override
+		protected void write(String codeStateId, String sourceFileName, byte[] data) throws IOException {
+			if (!failed) {
+				failed = true;
+				throw new IOException("Simulated write failure");
+			}
+			writes.add(codeStateId);
+		}
+		
+		@Override
+		public void close() {
+		}
+	}
+	
+	@Test
+	public void testRetryAfterFailedWrite() throws IOException {
+		FailOnceCodeStateWriter writer = new FailOnceCodeStateWriter();
+		try {
+			writer.writeCodeState("Hello.java", "class Hello { }");
+			fail("first write should fail");
+		} catch (IOException e) {
+			// expected
+		}
+		assertEquals(0, writer.getNumCodeStates());
+		
+		String id = writer.writeCodeState("Hello.java", "class Hello { }");
+		assertEquals(1, writer.writes.size());
+		assertEquals(id, writer.writes.get(0));
+		assertEquals(1, writer.getNumCodeStates());
+		assertEquals(0, writer.getNumDuplicates());
+	}
+	
+	@Test
+	public void testDuplicateWrittenOnce() throws IOException {
+		FailOnceCodeStateWriter writer = new FailOnceCodeStateWriter();
+		writer.failed = true;
+		String id1 = writer.writeCodeState("Hello.java", "class Hello { }");
+		String id2 = writer.writeCodeState("Hello.java", "class Hello { }");
+		String id3 = writer.writeCodeState("Hello.java", "class Hello { int x; }");
+		assertEquals(id1, id2);
+		assertEquals(2, writer.writes.size());
+		assertEquals(id3, writer.writes.get(1));
+		assertEquals(2, writer.getNumCodeStates());
+		assertEquals(1, writer.getNumDuplicates());
+	}
+}
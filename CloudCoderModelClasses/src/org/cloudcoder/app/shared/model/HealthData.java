@@ -28,6 +28,28 @@ public class HealthData implements IModelObject<HealthData> {
 	private int submissionQueueSizeCurrent;
 	private int submissionQueueSizeMaxLastFiveMinutes;
 	private int numConnectedBuilderThreads;
+	private int queueWaitAvgQuiz;
+	private int queueWaitP99Quiz;
+	private int queueWaitAvgSubmit;
+	private int queueWaitP99Submit;
+	private int queueWaitAvgRun;
+	private int queueWaitP99Run;
+	private int queueWaitAvgBatch;
+	private int queueWaitP99Batch;
+	private long submissionsCoalesced;
+	private long submissionResultCacheHits;
+	private long submissionResultCacheMisses;
+	private int dbPoolConnections;
+	private int dbPoolBusyConnections;
+	private int dbPoolIdleConnections;
+	private int dbPoolThreadsAwaiting;
+	private int dbPoolCachedStatements;
+	private int dbPoolLeaksDetected;
+	private int changeWriterQueuedChanges;
+	private long changeWriterTransactions;
+	private long changeWriterWriteErrors;
+	private int changeWriterLatencyAvg;
+	private int changeWriterLatencyP99;
 	
 	public static final ModelObjectField<HealthData, Integer> SUBMISSION_QUEUE_SIZE_CURRENT = new ModelObjectField<HealthData, Integer>("submissionQueueSizeCurrent", Integer.class, 0) {
 		public void set(HealthData obj, Integer value) { obj.setSubmissionQueueSizeCurrent(value); }
@@ -44,6 +66,116 @@ public class HealthData implements IModelObject<HealthData> {
 		public Integer get(HealthData obj) { return obj.getNumConnectedBuilderThreads(); }
 	};
 	
+	public static final ModelObjectField<HealthData, Integer> QUEUE_WAIT_AVG_QUIZ = new ModelObjectField<HealthData, Integer>("queueWaitAvgQuiz", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setQueueWaitAvgQuiz(value); }
+		public Integer get(HealthData obj) { return obj.getQueueWaitAvgQuiz(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> QUEUE_WAIT_P99_QUIZ = new ModelObjectField<HealthData, Integer>("queueWaitP99Quiz", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setQueueWaitP99Quiz(value); }
+		public Integer get(HealthData obj) { return obj.getQueueWaitP99Quiz(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> QUEUE_WAIT_AVG_SUBMIT = new ModelObjectField<HealthData, Integer>("queueWaitAvgSubmit", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setQueueWaitAvgSubmit(value); }
+		public Integer get(HealthData obj) { return obj.getQueueWaitAvgSubmit(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> QUEUE_WAIT_P99_SUBMIT = new ModelObjectField<HealthData, Integer>("queueWaitP99Submit", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setQueueWaitP99Submit(value); }
+		public Integer get(HealthData obj) { return obj.getQueueWaitP99Submit(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> QUEUE_WAIT_AVG_RUN = new ModelObjectField<HealthData, Integer>("queueWaitAvgRun", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setQueueWaitAvgRun(value); }
+		public Integer get(HealthData obj) { return obj.getQueueWaitAvgRun(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> QUEUE_WAIT_P99_RUN = new ModelObjectField<HealthData, Integer>("queueWaitP99Run", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setQueueWaitP99Run(value); }
+		public Integer get(HealthData obj) { return obj.getQueueWaitP99Run(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> QUEUE_WAIT_AVG_BATCH = new ModelObjectField<HealthData, Integer>("queueWaitAvgBatch", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setQueueWaitAvgBatch(value); }
+		public Integer get(HealthData obj) { return obj.getQueueWaitAvgBatch(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> QUEUE_WAIT_P99_BATCH = new ModelObjectField<HealthData, Integer>("queueWaitP99Batch", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setQueueWaitP99Batch(value); }
+		public Integer get(HealthData obj) { return obj.getQueueWaitP99Batch(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Long> SUBMISSIONS_COALESCED = new ModelObjectField<HealthData, Long>("submissionsCoalesced", Long.class, 0) {
+		public void set(HealthData obj, Long value) { obj.setSubmissionsCoalesced(value); }
+		public Long get(HealthData obj) { return obj.getSubmissionsCoalesced(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Long> SUBMISSION_RESULT_CACHE_HITS = new ModelObjectField<HealthData, Long>("submissionResultCacheHits", Long.class, 0) {
+		public void set(HealthData obj, Long value) { obj.setSubmissionResultCacheHits(value); }
+		public Long get(HealthData obj) { return obj.getSubmissionResultCacheHits(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Long> SUBMISSION_RESULT_CACHE_MISSES = new ModelObjectField<HealthData, Long>("submissionResultCacheMisses", Long.class, 0) {
+		public void set(HealthData obj, Long value) { obj.setSubmissionResultCacheMisses(value); }
+		public Long get(HealthData obj) { return obj.getSubmissionResultCacheMisses(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> DB_POOL_CONNECTIONS = new ModelObjectField<HealthData, Integer>("dbPoolConnections", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbPoolConnections(value); }
+		public Integer get(HealthData obj) { return obj.getDbPoolConnections(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> DB_POOL_BUSY_CONNECTIONS = new ModelObjectField<HealthData, Integer>("dbPoolBusyConnections", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbPoolBusyConnections(value); }
+		public Integer get(HealthData obj) { return obj.getDbPoolBusyConnections(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> DB_POOL_IDLE_CONNECTIONS = new ModelObjectField<HealthData, Integer>("dbPoolIdleConnections", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbPoolIdleConnections(value); }
+		public Integer get(HealthData obj) { return obj.getDbPoolIdleConnections(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> DB_POOL_THREADS_AWAITING = new ModelObjectField<HealthData, Integer>("dbPoolThreadsAwaiting", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbPoolThreadsAwaiting(value); }
+		public Integer get(HealthData obj) { return obj.getDbPoolThreadsAwaiting(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> DB_POOL_CACHED_STATEMENTS = new ModelObjectField<HealthData, Integer>("dbPoolCachedStatements", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbPoolCachedStatements(value); }
+		public Integer get(HealthData obj) { return obj.getDbPoolCachedStatements(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> DB_POOL_LEAKS_DETECTED = new ModelObjectField<HealthData, Integer>("dbPoolLeaksDetected", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setDbPoolLeaksDetected(value); }
+		public Integer get(HealthData obj) { return obj.getDbPoolLeaksDetected(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> CHANGE_WRITER_QUEUED_CHANGES = new ModelObjectField<HealthData, Integer>("changeWriterQueuedChanges", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setChangeWriterQueuedChanges(value); }
+		public Integer get(HealthData obj) { return obj.getChangeWriterQueuedChanges(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Long> CHANGE_WRITER_TRANSACTIONS = new ModelObjectField<HealthData, Long>("changeWriterTransactions", Long.class, 0) {
+		public void set(HealthData obj, Long value) { obj.setChangeWriterTransactions(value); }
+		public Long get(HealthData obj) { return obj.getChangeWriterTransactions(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Long> CHANGE_WRITER_WRITE_ERRORS = new ModelObjectField<HealthData, Long>("changeWriterWriteErrors", Long.class, 0) {
+		public void set(HealthData obj, Long value) { obj.setChangeWriterWriteErrors(value); }
+		public Long get(HealthData obj) { return obj.getChangeWriterWriteErrors(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> CHANGE_WRITER_LATENCY_AVG = new ModelObjectField<HealthData, Integer>("changeWriterLatencyAvg", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setChangeWriterLatencyAvg(value); }
+		public Integer get(HealthData obj) { return obj.getChangeWriterLatencyAvg(); }
+	};
+	
+	public static final ModelObjectField<HealthData, Integer> CHANGE_WRITER_LATENCY_P99 = new ModelObjectField<HealthData, Integer>("changeWriterLatencyP99", Integer.class, 0) {
+		public void set(HealthData obj, Integer value) { obj.setChangeWriterLatencyP99(value); }
+		public Integer get(HealthData obj) { return obj.getChangeWriterLatencyP99(); }
+	};
+	
 	/**
 	 * Model object fields (schema version 0).
 	 */
@@ -52,10 +184,64 @@ public class HealthData implements IModelObject<HealthData> {
 			.add(SUBMISSION_QUEUE_SIZE_MAX_LAST_FIVE_MINUTES)
 			.add(NUM_CONNECTED_BUILDER_THREADS);
 	
+	/**
+	 * Model object fields (schema version 1): adds the average and
+	 * 99th percentile queue wait times (in milliseconds, over the last
+	 * five minutes) of each submission priority class.
+	 */
+	public static final ModelObjectSchema<HealthData> SCHEMA_V1 = ModelObjectSchema.basedOn(SCHEMA_V0, HealthData.class)
+			.addAfter(NUM_CONNECTED_BUILDER_THREADS, QUEUE_WAIT_AVG_QUIZ)
+			.addAfter(QUEUE_WAIT_AVG_QUIZ, QUEUE_WAIT_P99_QUIZ)
+			.addAfter(QUEUE_WAIT_P99_QUIZ, QUEUE_WAIT_AVG_SUBMIT)
+			.addAfter(QUEUE_WAIT_AVG_SUBMIT, QUEUE_WAIT_P99_SUBMIT)
+			.addAfter(QUEUE_WAIT_P99_SUBMIT, QUEUE_WAIT_AVG_RUN)
+			.addAfter(QUEUE_WAIT_AVG_RUN, QUEUE_WAIT_P99_RUN)
+			.addAfter(QUEUE_WAIT_P99_RUN, QUEUE_WAIT_AVG_BATCH)
+			.addAfter(QUEUE_WAIT_AVG_BATCH, QUEUE_WAIT_P99_BATCH)
+			.finishDelta();
+	
+	/**
+	 * Model object fields (schema version 2): adds the number of
+	 * submissions which attached to an identical in-flight submission,
+	 * and the number of submissions which were and weren't answered
+	 * from recent results, since the webapp started.
+	 */
+	public static final ModelObjectSchema<HealthData> SCHEMA_V2 = ModelObjectSchema.basedOn(SCHEMA_V1, HealthData.class)
+			.addAfter(QUEUE_WAIT_P99_BATCH, SUBMISSIONS_COALESCED)
+			.addAfter(SUBMISSIONS_COALESCED, SUBMISSION_RESULT_CACHE_HITS)
+			.addAfter(SUBMISSION_RESULT_CACHE_HITS, SUBMISSION_RESULT_CACHE_MISSES)
+			.finishDelta();
+	
+	/**
+	 * Model object fields (schema version 3): adds database connection
+	 * pool statistics.
+	 */
+	public static final ModelObjectSchema<HealthData> SCHEMA_V3 = ModelObjectSchema.basedOn(SCHEMA_V2, HealthData.class)
+			.addAfter(SUBMISSION_RESULT_CACHE_MISSES, DB_POOL_CONNECTIONS)
+			.addAfter(DB_POOL_CONNECTIONS, DB_POOL_BUSY_CONNECTIONS)
+			.addAfter(DB_POOL_BUSY_CONNECTIONS, DB_POOL_IDLE_CONNECTIONS)
+			.addAfter(DB_POOL_IDLE_CONNECTIONS, DB_POOL_THREADS_AWAITING)
+			.addAfter(DB_POOL_THREADS_AWAITING, DB_POOL_CACHED_STATEMENTS)
+			.addAfter(DB_POOL_CACHED_STATEMENTS, DB_POOL_LEAKS_DETECTED)
+			.finishDelta();
+	
+	/**
+	 * Model object fields (schema version 4): adds statistics about
+	 * write-behind storage of changes (the latencies are in milliseconds,
+	 * over the last five minutes).
+	 */
+	public static final ModelObjectSchema<HealthData> SCHEMA_V4 = ModelObjectSchema.basedOn(SCHEMA_V3, HealthData.class)
+			.addAfter(DB_POOL_LEAKS_DETECTED, CHANGE_WRITER_QUEUED_CHANGES)
+			.addAfter(CHANGE_WRITER_QUEUED_CHANGES, CHANGE_WRITER_TRANSACTIONS)
+			.addAfter(CHANGE_WRITER_TRANSACTIONS, CHANGE_WRITER_WRITE_ERRORS)
+			.addAfter(CHANGE_WRITER_WRITE_ERRORS, CHANGE_WRITER_LATENCY_AVG)
+			.addAfter(CHANGE_WRITER_LATENCY_AVG, CHANGE_WRITER_LATENCY_P99)
+			.finishDelta();
+	
 	/**
 	 * Model object fields (current schema version).
 	 */
-	public static final ModelObjectSchema<HealthData> SCHEMA = SCHEMA_V0;
+	public static final ModelObjectSchema<HealthData> SCHEMA = SCHEMA_V4;
 	
 	/**
 	 * Constructor.
@@ -122,4 +308,422 @@ public class HealthData implements IModelObject<HealthData> {
 	public void setNumConnectedBuilderThreads(int numConnectedBuilderThreads) {
 		this.numConnectedBuilderThreads = numConnectedBuilderThreads;
 	}
+	
+	/**
+	 * Set the average queue wait time (in milliseconds) of quiz submissions
+	 * in the last five minutes.
+	 * 
+	 * @param queueWaitAvgQuiz the average queue wait time to set
+	 */
+	public void setQueueWaitAvgQuiz(int queueWaitAvgQuiz) {
+		this.queueWaitAvgQuiz = queueWaitAvgQuiz;
+	}
+	
+	/**
+	 * Get the average queue wait time (in milliseconds) of quiz submissions
+	 * in the last five minutes.
+	 * 
+	 * @return the average queue wait time
+	 */
+	public int getQueueWaitAvgQuiz() {
+		return queueWaitAvgQuiz;
+	}
+	
+	/**
+	 * Set the 99th percentile queue wait time (in milliseconds) of quiz submissions
+	 * in the last five minutes.
+	 * 
+	 * @param queueWaitP99Quiz the 99th percentile queue wait time to set
+	 */
+	public void setQueueWaitP99Quiz(int queueWaitP99Quiz) {
+		this.queueWaitP99Quiz = queueWaitP99Quiz;
+	}
+	
+	/**
+	 * Get the 99th percentile queue wait time (in milliseconds) of quiz submissions
+	 * in the last five minutes.
+	 * 
+	 * @return the 99th percentile queue wait time
+	 */
+	public int getQueueWaitP99Quiz() {
+		return queueWaitP99Quiz;
+	}
+	
+	/**
+	 * Set the average queue wait time (in milliseconds) of submit submissions
+	 * in the last five minutes.
+	 * 
+	 * @param queueWaitAvgSubmit the average queue wait time to set
+	 */
+	public void setQueueWaitAvgSubmit(int queueWaitAvgSubmit) {
+		this.queueWaitAvgSubmit = queueWaitAvgSubmit;
+	}
+	
+	/**
+	 * Get the average queue wait time (in milliseconds) of submit submissions
+	 * in the last five minutes.
+	 * 
+	 * @return the average queue wait time
+	 */
+	public int getQueueWaitAvgSubmit() {
+		return queueWaitAvgSubmit;
+	}
+	
+	/**
+	 * Set the 99th percentile queue wait time (in milliseconds) of submit submissions
+	 * in the last five minutes.
+	 * 
+	 * @param queueWaitP99Submit the 99th percentile queue wait time to set
+	 */
+	public void setQueueWaitP99Submit(int queueWaitP99Submit) {
+		this.queueWaitP99Submit = queueWaitP99Submit;
+	}
+	
+	/**
+	 * Get the 99th percentile queue wait time (in milliseconds) of submit submissions
+	 * in the last five minutes.
+	 * 
+	 * @return the 99th percentile queue wait time
+	 */
+	public int getQueueWaitP99Submit() {
+		return queueWaitP99Submit;
+	}
+	
+	/**
+	 * Set the average queue wait time (in milliseconds) of run submissions
+	 * in the last five minutes.
+	 * 
+	 * @param queueWaitAvgRun the average queue wait time to set
+	 */
+	public void setQueueWaitAvgRun(int queueWaitAvgRun) {
+		this.queueWaitAvgRun = queueWaitAvgRun;
+	}
+	
+	/**
+	 * Get the average queue wait time (in milliseconds) of run submissions
+	 * in the last five minutes.
+	 * 
+	 * @return the average queue wait time
+	 */
+	public int getQueueWaitAvgRun() {
+		return queueWaitAvgRun;
+	}
+	
+	/**
+	 * Set the 99th percentile queue wait time (in milliseconds) of run submissions
+	 * in the last five minutes.
+	 * 
+	 * @param queueWaitP99Run the 99th percentile queue wait time to set
+	 */
+	public void setQueueWaitP99Run(int queueWaitP99Run) {
+		this.queueWaitP99Run = queueWaitP99Run;
+	}
+	
+	/**
+	 * Get the 99th percentile queue wait time (in milliseconds) of run submissions
+	 * in the last five minutes.
+	 * 
+	 * @return the 99th percentile queue wait time
+	 */
+	public int getQueueWaitP99Run() {
+		return queueWaitP99Run;
+	}
+	
+	/**
+	 * Set the average queue wait time (in milliseconds) of batch submissions
+	 * in the last five minutes.
+	 * 
+	 * @param queueWaitAvgBatch the average queue wait time to set
+	 */
+	public void setQueueWaitAvgBatch(int queueWaitAvgBatch) {
+		this.queueWaitAvgBatch = queueWaitAvgBatch;
+	}
+	
+	/**
+	 * Get the average queue wait time (in milliseconds) of batch submissions
+	 * in the last five minutes.
+	 * 
+	 * @return the average queue wait time
+	 */
+	public int getQueueWaitAvgBatch() {
+		return queueWaitAvgBatch;
+	}
+	
+	/**
+	 * Set the 99th percentile queue wait time (in milliseconds) of batch submissions
+	 * in the last five minutes.
+	 * 
+	 * @param queueWaitP99Batch the 99th percentile queue wait time to set
+	 */
+	public void setQueueWaitP99Batch(int queueWaitP99Batch) {
+		this.queueWaitP99Batch = queueWaitP99Batch;
+	}
+	
+	/**
+	 * Get the 99th percentile queue wait time (in milliseconds) of batch submissions
+	 * in the last five minutes.
+	 * 
+	 * @return the 99th percentile queue wait time
+	 */
+	public int getQueueWaitP99Batch() {
+		return queueWaitP99Batch;
+	}
+	
+	/**
+	 * Set the number of submissions which attached to an identical
+	 * in-flight submission.
+	 * 
+	 * @param submissionsCoalesced the number of coalesced submissions to set
+	 */
+	public void setSubmissionsCoalesced(long submissionsCoalesced) {
+		this.submissionsCoalesced = submissionsCoalesced;
+	}
+	
+	/**
+	 * Get the number of submissions which attached to an identical
+	 * in-flight submission.
+	 * 
+	 * @return the number of coalesced submissions
+	 */
+	public long getSubmissionsCoalesced() {
+		return submissionsCoalesced;
+	}
+	
+	/**
+	 * Set the number of submissions answered with the result of
+	 * an identical recent submission.
+	 * 
+	 * @param submissionResultCacheHits the number of result cache hits to set
+	 */
+	public void setSubmissionResultCacheHits(long submissionResultCacheHits) {
+		this.submissionResultCacheHits = submissionResultCacheHits;
+	}
+	
+	/**
+	 * Get the number of submissions answered with the result of
+	 * an identical recent submission.
+	 * 
+	 * @return the number of result cache hits
+	 */
+	public long getSubmissionResultCacheHits() {
+		return submissionResultCacheHits;
+	}
+	
+	/**
+	 * Set the number of submissions which were neither coalesced nor
+	 * answered from a recent result, and so were tested by a Builder.
+	 * 
+	 * @param submissionResultCacheMisses the number of result cache misses to set
+	 */
+	public void setSubmissionResultCacheMisses(long submissionResultCacheMisses) {
+		this.submissionResultCacheMisses = submissionResultCacheMisses;
+	}
+	
+	/**
+	 * Get the number of submissions which were neither coalesced nor
+	 * answered from a recent result, and so were tested by a Builder.
+	 * 
+	 * @return the number of result cache misses
+	 */
+	public long getSubmissionResultCacheMisses() {
+		return submissionResultCacheMisses;
+	}
+	
+	/**
+	 * Set the number of open database connections.
+	 * 
+	 * @param dbPoolConnections the number of open database connections to set
+	 */
+	public void setDbPoolConnections(int dbPoolConnections) {
+		this.dbPoolConnections = dbPoolConnections;
+	}
+	
+	/**
+	 * Get the number of open database connections.
+	 * 
+	 * @return the number of open database connections
+	 */
+	public int getDbPoolConnections() {
+		return dbPoolConnections;
+	}
+	
+	/**
+	 * Set the number of database connections in use.
+	 * 
+	 * @param dbPoolBusyConnections the number of database connections in use to set
+	 */
+	public void setDbPoolBusyConnections(int dbPoolBusyConnections) {
+		this.dbPoolBusyConnections = dbPoolBusyConnections;
+	}
+	
+	/**
+	 * Get the number of database connections in use.
+	 * 
+	 * @return the number of database connections in use
+	 */
+	public int getDbPoolBusyConnections() {
+		return dbPoolBusyConnections;
+	}
+	
+	/**
+	 * Set the number of unused pooled database connections.
+	 * 
+	 * @param dbPoolIdleConnections the number of unused pooled database connections to set
+	 */
+	public void setDbPoolIdleConnections(int dbPoolIdleConnections) {
+		this.dbPoolIdleConnections = dbPoolIdleConnections;
+	}
+	
+	/**
+	 * Get the number of unused pooled database connections.
+	 * 
+	 * @return the number of unused pooled database connections
+	 */
+	public int getDbPoolIdleConnections() {
+		return dbPoolIdleConnections;
+	}
+	
+	/**
+	 * Set the number of threads waiting for a database connection.
+	 * 
+	 * @param dbPoolThreadsAwaiting the number of threads waiting for a database connection to set
+	 */
+	public void setDbPoolThreadsAwaiting(int dbPoolThreadsAwaiting) {
+		this.dbPoolThreadsAwaiting = dbPoolThreadsAwaiting;
+	}
+	
+	/**
+	 * Get the number of threads waiting for a database connection.
+	 * 
+	 * @return the number of threads waiting for a database connection
+	 */
+	public int getDbPoolThreadsAwaiting() {
+		return dbPoolThreadsAwaiting;
+	}
+	
+	/**
+	 * Set the number of cached prepared statements.
+	 * 
+	 * @param dbPoolCachedStatements the number of cached prepared statements to set
+	 */
+	public void setDbPoolCachedStatements(int dbPoolCachedStatements) {
+		this.dbPoolCachedStatements = dbPoolCachedStatements;
+	}
+	
+	/**
+	 * Get the number of cached prepared statements.
+	 * 
+	 * @return the number of cached prepared statements
+	 */
+	public int getDbPoolCachedStatements() {
+		return dbPoolCachedStatements;
+	}
+	
+	/**
+	 * Set the number of database connections reported as possible leaks.
+	 * 
+	 * @param dbPoolLeaksDetected the number of database connections reported as possible leaks to set
+	 */
+	public void setDbPoolLeaksDetected(int dbPoolLeaksDetected) {
+		this.dbPoolLeaksDetected = dbPoolLeaksDetected;
+	}
+	
+	/**
+	 * Get the number of database connections reported as possible leaks.
+	 * 
+	 * @return the number of database connections reported as possible leaks
+	 */
+	public int getDbPoolLeaksDetected() {
+		return dbPoolLeaksDetected;
+	}
+	
+	/**
+	 * Set the number of changes waiting to be written.
+	 * 
+	 * @param changeWriterQueuedChanges the number of changes waiting to be written to set
+	 */
+	public void setChangeWriterQueuedChanges(int changeWriterQueuedChanges) {
+		this.changeWriterQueuedChanges = changeWriterQueuedChanges;
+	}
+	
+	/**
+	 * Get the number of changes waiting to be written.
+	 * 
+	 * @return the number of changes waiting to be written
+	 */
+	public int getChangeWriterQueuedChanges() {
+		return changeWriterQueuedChanges;
+	}
+	
+	/**
+	 * Set the number of transactions used to write changes.
+	 * 
+	 * @param changeWriterTransactions the number of transactions used to write changes to set
+	 */
+	public void setChangeWriterTransactions(long changeWriterTransactions) {
+		this.changeWriterTransactions = changeWriterTransactions;
+	}
+	
+	/**
+	 * Get the number of transactions used to write changes.
+	 * 
+	 * @return the number of transactions used to write changes
+	 */
+	public long getChangeWriterTransactions() {
+		return changeWriterTransactions;
+	}
+	
+	/**
+	 * Set the number of batches of changes which could not be written.
+	 * 
+	 * @param changeWriterWriteErrors the number of batches of changes which could not be written to set
+	 */
+	public void setChangeWriterWriteErrors(long changeWriterWriteErrors) {
+		this.changeWriterWriteErrors = changeWriterWriteErrors;
+	}
+	
+	/**
+	 * Get the number of batches of changes which could not be written.
+	 * 
+	 * @return the number of batches of changes which could not be written
+	 */
+	public long getChangeWriterWriteErrors() {
+		return changeWriterWriteErrors;
+	}
+	
+	/**
+	 * Set the average latency of writing changes.
+	 * 
+	 * @param changeWriterLatencyAvg the average latency of writing changes to set
+	 */
+	public void setChangeWriterLatencyAvg(int changeWriterLatencyAvg) {
+		this.changeWriterLatencyAvg = changeWriterLatencyAvg;
+	}
+	
+	/**
+	 * Get the average latency of writing changes.
+	 * 
+	 * @return the average latency of writing changes
+	 */
+	public int getChangeWriterLatencyAvg() {
+		return changeWriterLatencyAvg;
+	}
+	
+	/**
+	 * Set the 99th percentile latency of writing changes.
+	 * 
+	 * @param changeWriterLatencyP99 the 99th percentile latency of writing changes to set
+	 */
+	public void setChangeWriterLatencyP99(int changeWriterLatencyP99) {
+		this.changeWriterLatencyP99 = changeWriterLatencyP99;
+	}
+	
+	/**
+	 * Get the 99th percentile latency of writing changes.
+	 * 
+	 * @return the 99th percentile latency of writing changes
+	 */
+	public int getChangeWriterLatencyP99() {
+		return changeWriterLatencyP99;
+	}
 }
@@ -103,11 +103,23 @@ public class TextDocument {
 		return buf.toString();
 	}
 
+	/**
+	 * Replace the contents of the document.
+	 * The text is split into lines exactly as {@link #getText()}
+	 * joins them: a final line without a newline, and trailing
+	 * empty lines, are preserved, and no newline is added.
+	 * 
+	 * @param text the new text of the document
+	 */
 	public void setText(String text) {
 		lineList.clear();
-		String[] lines = text.split("\n");
-		for (String line : lines) {
-			lineList.add(line + "\n");
+		String[] lines = text.split("\n", -1);
+		for (int i = 0; i < lines.length - 1; i++) {
+			lineList.add(lines[i] + "\n");
+		}
+		String last = lines[lines.length - 1];
+		if (!last.equals("")) {
+			lineList.add(last);
 		}
 	}
 	public String toString() {
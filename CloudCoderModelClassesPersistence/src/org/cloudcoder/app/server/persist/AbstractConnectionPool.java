@@ -20,6 +20,14 @@ package org.cloudcoder.app.server.persist;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Abstract base class for {@link IConnectionPool} implementations.
@@ -27,22 +35,59 @@ import java.sql.SQLException;
  * {@link #createConnection()} and {@link #closeConnection(Connection)}
  * downcall methods.
  * 
+ * If a leak detection threshold is set, connections held by a thread
+ * for longer than the threshold (which usually means that a call to
+ * {@link #getConnection()} was not matched by a call to
+ * {@link #releaseConnection()}) are reported, along with the stack
+ * trace of the code which acquired the connection.
+ * 
  * @author David Hovemeyer
  */
 public abstract class AbstractConnectionPool implements IConnectionPool {
+	private static final Logger logger = LoggerFactory.getLogger(AbstractConnectionPool.class);
 
 	private static class ThreadLocalConnection {
 		Connection conn;
 		int refCount;
+		Thread thread;
+		long acquireTime;
+		Throwable acquireTrace;
+		volatile boolean reported;
 	}
 
 	private ThreadLocal<ThreadLocalConnection> tlc;
+	private volatile long leakDetectionThresholdMs;
+	private Set<ThreadLocalConnection> outstanding;
+	private AtomicLong lastLeakCheck;
+	private AtomicInteger numLeaksDetected;
 
 	/**
 	 * Constructor.
 	 */
 	public AbstractConnectionPool() {
 		tlc = new ThreadLocal<ThreadLocalConnection>();
+		outstanding = Collections.newSetFromMap(new ConcurrentHashMap<ThreadLocalConnection, Boolean>());
+		lastLeakCheck = new AtomicLong(System.currentTimeMillis());
+		numLeaksDetected = new AtomicInteger();
+	}
+	
+	/**
+	 * Set the leak detection threshold: connections held by a thread for
+	 * longer than this are reported as possible leaks.
+	 * 
+	 * @param leakDetectionThresholdMs the leak detection threshold in milliseconds,
+	 *                                 or 0 to disable leak detection
+	 */
+	public void setLeakDetectionThreshold(long leakDetectionThresholdMs) {
+		this.leakDetectionThresholdMs = leakDetectionThresholdMs;
+	}
+	
+	/**
+	 * @return the number of connections which have been reported as possible leaks
+	 */
+	public int getNumLeaksDetected() {
+		checkForLeaks();
+		return numLeaksDetected.get();
 	}
 
 	@Override
@@ -52,7 +97,14 @@ public abstract class AbstractConnectionPool implements IConnectionPool {
 			c = new ThreadLocalConnection();
 			c.conn = createConnection();
 			c.refCount = 0;
+			if (leakDetectionThresholdMs > 0) {
+				c.thread = Thread.currentThread();
+				c.acquireTime = System.currentTimeMillis();
+				c.acquireTrace = new Throwable("Connection acquired here");
+				outstanding.add(c);
+			}
 			tlc.set(c);
+			checkForLeaks();
 		}
 		c.refCount++;
 		return c.conn;
@@ -67,9 +119,36 @@ public abstract class AbstractConnectionPool implements IConnectionPool {
 		c.refCount--;
 		if (c.refCount == 0) {
 			tlc.set(null);
+			outstanding.remove(c);
 			closeConnection(c.conn);
 		}
 	}
+	
+	/**
+	 * Report connections held for longer than the leak detection threshold.
+	 * To keep the overhead low, this is done at most once per
+	 * half of the threshold.
+	 */
+	private void checkForLeaks() {
+		long threshold = leakDetectionThresholdMs;
+		if (threshold <= 0) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		long last = lastLeakCheck.get();
+		if (now - last < threshold / 2 || !lastLeakCheck.compareAndSet(last, now)) {
+			return;
+		}
+		for (ThreadLocalConnection c : outstanding) {
+			long held = now - c.acquireTime;
+			if (held > threshold && !c.reported) {
+				c.reported = true;
+				numLeaksDetected.incrementAndGet();
+				logger.warn("Connection held by thread " + c.thread.getName() + " for " + held +
+						"ms: possible missing releaseConnection()", c.acquireTrace);
+			}
+		}
+	}
 
 	/**
 	 * Downcall method to create a new {@link Connection} to the database.
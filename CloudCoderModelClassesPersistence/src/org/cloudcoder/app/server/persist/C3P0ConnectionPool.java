@@ -21,15 +21,36 @@ package org.cloudcoder.app.server.persist;
 import java.sql.Connection;
 import java.sql.SQLException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.mchange.v2.c3p0.ComboPooledDataSource;
 
 /**
- * Implementation of {@link IConnectionPool} using the C3P0 library. 
+ * Implementation of {@link IConnectionPool} using the C3P0 library.
+ * Connections (and their prepared statements) are kept open and
+ * reused.  The pool is configured using the following optional
+ * database configuration properties (shown with their defaults):
+ * 
+ * <ul>
+ * <li><code>pool.minSize=5</code>: minimum number of open connections</li>
+ * <li><code>pool.maxSize=50</code>: maximum number of open connections</li>
+ * <li><code>pool.maxIdleTime=300</code>: seconds after which unused connections
+ *     beyond the minimum are closed</li>
+ * <li><code>pool.testOnBorrow=true</code>: whether connections are validated
+ *     before being handed out</li>
+ * <li><code>pool.statementCacheSize=50</code>: number of prepared statements
+ *     cached per connection</li>
+ * <li><code>pool.leakDetectionThreshold=60</code>: seconds after which a connection
+ *     held by a thread is reported as a possible leak (0 to disable)</li>
+ * </ul>
  * 
  * @author David Hovemeyer
  * @see http://www.mchange.com/projects/c3p0/index.html
  */
 public class C3P0ConnectionPool extends AbstractConnectionPool {
+	private static final Logger logger = LoggerFactory.getLogger(C3P0ConnectionPool.class);
+	
 	private ComboPooledDataSource cpds;
 	
 	/**
@@ -52,13 +73,42 @@ public class C3P0ConnectionPool extends AbstractConnectionPool {
 		cpds.setUser(config.getUser());
 		cpds.setPassword(config.getPasswd());
 		
-		// Turn on connection pooling
-		// TODO: these should be tunable based on CloudCoder config properties
-		cpds.setMinPoolSize(10);
-		cpds.setMaxPoolSize(150);
+		// Pool sizing
+		int minSize = getIntProperty(config, "pool.minSize", 5);
+		int maxSize = getIntProperty(config, "pool.maxSize", 50);
+		cpds.setMinPoolSize(minSize);
+		cpds.setInitialPoolSize(minSize);
+		cpds.setMaxPoolSize(maxSize);
+		cpds.setMaxIdleTimeExcessConnections(getIntProperty(config, "pool.maxIdleTime", 300));
+		
+		// Validate connections when they are checked out, so that connections
+		// closed by the server (e.g., because of wait_timeout) are never used
+		if (Boolean.parseBoolean(config.getOptionalProperty("pool.testOnBorrow", "true"))) {
+			cpds.setTestConnectionOnCheckout(true);
+			cpds.setPreferredTestQuery("SELECT 1");
+		}
+		
+		// Prepared statement pooling
+		cpds.setMaxStatementsPerConnection(getIntProperty(config, "pool.statementCacheSize", 50));
 		
-		// Turn on prepared statement pooling
-		cpds.setMaxStatements(180);
+		setLeakDetectionThreshold(1000L * getIntProperty(config, "pool.leakDetectionThreshold", 60));
+		
+		logger.info("Database connection pool: min size {}, max size {}", minSize, maxSize);
+	}
+	
+	private static int getIntProperty(JDBCDatabaseConfig.ConfigProperties config, String name, int defaultValue) {
+		return Integer.parseInt(config.getOptionalProperty(name, String.valueOf(defaultValue)));
+	}
+	
+	@Override
+	public ConnectionPoolStatistics getStatistics() throws SQLException {
+		return new ConnectionPoolStatistics(
+				cpds.getNumConnectionsDefaultUser(),
+				cpds.getNumBusyConnectionsDefaultUser(),
+				cpds.getNumIdleConnectionsDefaultUser(),
+				cpds.getNumThreadsAwaitingCheckoutDefaultUser(),
+				cpds.getStatementCacheNumStatementsDefaultUser(),
+				getNumLeaksDetected());
 	}
 	
 	@Override
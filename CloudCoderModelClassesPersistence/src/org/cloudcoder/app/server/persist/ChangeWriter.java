@@ -0,0 +1,528 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.persist;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.cloudcoder.app.shared.model.Change;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write-behind storage of {@link Change}s.
+ * Request threads enqueue the changes logged by clients, and a dedicated
+ * writer thread stores them.  All of the changes queued while the writer
+ * is busy (up to a maximum batch size) are stored together in a single
+ * transaction, so that under load, many users' edits are written using
+ * a few large inserts rather than many small ones.
+ * 
+ * The queue is bounded: when it is full, {@link #enqueue(Change[])} blocks
+ * until the writer catches up.  Changes are written in the order in which
+ * they were enqueued.  Because a user's text is reconstructed from the
+ * changes newer than the most recent full-text change, code which stores
+ * a full-text change or reads a user's changes should call
+ * {@link #flush(int, int)} first.  {@link #shutdown()} writes all queued
+ * changes before returning.
+ * 
+ * A batch which can't be stored is retried a few times before it is
+ * given up on.  Since the client has already been told that the changes
+ * were saved, the failure is reported by the next call to
+ * {@link #enqueue(Change[])} or {@link #flush(int, int)} for the same
+ * (user, problem) pair, which throws a {@link PersistenceException}.
+ * 
+ * @author David Hovemeyer
+ */
+public class ChangeWriter {
+	private static final Logger logger = LoggerFactory.getLogger(ChangeWriter.class);
+	
+	/**
+	 * Default maximum number of changes in the queue.
+	 */
+	public static final int DEFAULT_MAX_QUEUED_CHANGES = 20000;
+	
+	/**
+	 * Default maximum number of changes stored in a single transaction.
+	 */
+	public static final int DEFAULT_MAX_BATCH_CHANGES = 2000;
+	
+	/**
+	 * Batch latency samples are kept for this many milliseconds.
+	 */
+	private static final long LATENCY_SAMPLE_MAX_AGE_MS = 5L*60*1000;
+	
+	/**
+	 * Number of times storing a client batch is attempted.
+	 */
+	private static final int MAX_WRITE_ATTEMPTS = 3;
+	
+	/**
+	 * Delay (in milliseconds) before a failed batch is retried:
+	 * doubled for each further attempt.
+	 */
+	private static final long RETRY_DELAY_MS = 100L;
+	
+	private static volatile ChangeWriter instance;
+	
+	/**
+	 * Set the singleton instance.
+	 * 
+	 * @param writer the singleton instance (null if write-behind is disabled)
+	 */
+	public static void setInstance(ChangeWriter writer) {
+		instance = writer;
+	}
+	
+	/**
+	 * Get the singleton instance.
+	 * 
+	 * @return the singleton instance, or null if write-behind is disabled
+	 */
+	public static ChangeWriter getInstance() {
+		return instance;
+	}
+	
+	private static class QueuedBatch {
+		final Change[] changeList;
+		final long enqueueTime;
+		final Set<Long> keys;
+		
+		QueuedBatch(Change[] changeList, long enqueueTime, Set<Long> keys) {
+			this.changeList = changeList;
+			this.enqueueTime = enqueueTime;
+			this.keys = keys;
+		}
+	}
+	
+	/**
+	 * Queued batches and write failures of a (user, problem) pair.
+	 * Only pairs with queued batches or unreported failures have one.
+	 */
+	private static class KeyState {
+		long numBatchesEnqueued;
+		long numBatchesDone;
+		int numFailedBatches;
+	}
+	
+	private static class LatencySample {
+		final long latency;
+		final long timestamp;
+		
+		LatencySample(long latency, long timestamp) {
+			this.latency = latency;
+			this.timestamp = timestamp;
+		}
+	}
+	
+	private final IDatabase db;
+	private final int maxQueuedChanges;
+	private final int maxBatchChanges;
+	
+	private final Object lock;
+	private final LinkedList<QueuedBatch> queue;
+	private int numQueuedChanges;
+	private long numBatchesEnqueued;
+	private long numBatchesDone;
+	private final Map<Long, KeyState> keyStateMap;
+	private boolean shutdownRequested;
+	private Thread writerThread;
+	
+	private final Object statsLock;
+	private final LinkedList<LatencySample> latencySampleList;
+	private long numTransactions;
+	private long numChangesWritten;
+	private long numWriteErrors;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param db                the {@link IDatabase} to store changes in
+	 * @param maxQueuedChanges  maximum number of changes in the queue
+	 * @param maxBatchChanges   maximum number of changes stored in a single transaction
+	 */
+	public ChangeWriter(IDatabase db, int maxQueuedChanges, int maxBatchChanges) {
+		this.db = db;
+		this.maxQueuedChanges = maxQueuedChanges;
+		this.maxBatchChanges = maxBatchChanges;
+		this.lock = new Object();
+		this.queue = new LinkedList<QueuedBatch>();
+		this.keyStateMap = new HashMap<Long, KeyState>();
+		this.statsLock = new Object();
+		this.latencySampleList = new LinkedList<LatencySample>();
+	}
+	
+	/**
+	 * Start the writer thread.
+	 */
+	public void start() {
+		writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writerLoop();
+			}
+		}, "ChangeWriter");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+	
+	/**
+	 * Enqueue a sequence of changes to be stored.
+	 * Blocks while the queue is full.  If the writer has been shut down
+	 * (or the calling thread is interrupted while waiting), the changes are
+	 * stored synchronously.
+	 * 
+	 * @param changeList the changes to store
+	 * @throws PersistenceException if earlier changes for the same (user, problem)
+	 *                              pair could not be stored: the changes are not enqueued
+	 */
+	public void enqueue(Change[] changeList) {
+		if (changeList.length == 0) {
+			return;
+		}
+		Set<Long> keys = new HashSet<Long>();
+		for (Change change : changeList) {
+			keys.add(key(change.getEvent().getUserId(), change.getEvent().getProblemId()));
+		}
+		synchronized (lock) {
+			for (Long key : keys) {
+				checkFailures(key);
+			}
+			try {
+				// A batch larger than the whole queue is accepted once the queue is empty
+				while (!shutdownRequested && numQueuedChanges > 0 && numQueuedChanges + changeList.length > maxQueuedChanges) {
+					lock.wait();
+				}
+				if (!shutdownRequested) {
+					queue.add(new QueuedBatch(changeList, System.currentTimeMillis(), keys));
+					numQueuedChanges += changeList.length;
+					numBatchesEnqueued++;
+					for (Long key : keys) {
+						KeyState state = keyStateMap.get(key);
+						if (state == null) {
+							state = new KeyState();
+							keyStateMap.put(key, state);
+						}
+						state.numBatchesEnqueued++;
+					}
+					lock.notifyAll();
+					return;
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		
+		db.storeChanges(changeList);
+	}
+	
+	/**
+	 * Wait until the changes for given (user, problem) pair enqueued
+	 * before this method was called have been written.
+	 * Changes for other pairs are not waited for.
+	 * 
+	 * @param userId     the user id
+	 * @param problemId  the problem id
+	 * @throws PersistenceException if changes for the pair could not be stored
+	 */
+	public void flush(int userId, int problemId) {
+		Long key = key(userId, problemId);
+		synchronized (lock) {
+			KeyState state = keyStateMap.get(key);
+			if (state != null) {
+				long target = state.numBatchesEnqueued;
+				try {
+					while (state.numBatchesDone < target) {
+						lock.wait();
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			checkFailures(key);
+		}
+	}
+	
+	/**
+	 * Wait until all changes enqueued before this method was called
+	 * have been written (or have failed to be written).
+	 */
+	public void flush() {
+		synchronized (lock) {
+			long target = numBatchesEnqueued;
+			try {
+				while (numBatchesDone < target) {
+					lock.wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	/**
+	 * Write all queued changes and stop the writer thread.
+	 * Changes enqueued after shutdown are stored synchronously.
+	 * 
+	 * @throws InterruptedException 
+	 */
+	public void shutdown() throws InterruptedException {
+		synchronized (lock) {
+			shutdownRequested = true;
+			lock.notifyAll();
+		}
+		if (writerThread != null) {
+			writerThread.join();
+		}
+	}
+	
+	private void writerLoop() {
+		List<QueuedBatch> batchList = new ArrayList<QueuedBatch>();
+		while (true) {
+			int numChanges = 0;
+			synchronized (lock) {
+				try {
+					while (queue.isEmpty() && !shutdownRequested) {
+						lock.wait();
+					}
+				} catch (InterruptedException e) {
+					logger.warn("Change writer interrupted, writing queued changes and exiting");
+					shutdownRequested = true;
+				}
+				if (queue.isEmpty()) {
+					logger.info("Change writer exiting");
+					return;
+				}
+				
+				// Take as many whole batches as will fit in one transaction
+				while (!queue.isEmpty()
+						&& (batchList.isEmpty() || numChanges + queue.getFirst().changeList.length <= maxBatchChanges)) {
+					QueuedBatch batch = queue.removeFirst();
+					batchList.add(batch);
+					numChanges += batch.changeList.length;
+				}
+				numQueuedChanges -= numChanges;
+				
+				// There is room in the queue now
+				lock.notifyAll();
+			}
+			
+			List<QueuedBatch> failedList = write(batchList, numChanges);
+			
+			synchronized (lock) {
+				numBatchesDone += batchList.size();
+				for (QueuedBatch batch : batchList) {
+					for (Long key : batch.keys) {
+						KeyState state = keyStateMap.get(key);
+						state.numBatchesDone++;
+						if (failedList.contains(batch)) {
+							state.numFailedBatches++;
+						}
+						removeIfIdle(key, state);
+					}
+				}
+				lock.notifyAll();
+			}
+			batchList.clear();
+		}
+	}
+	
+	private static Long key(int userId, int problemId) {
+		return Long.valueOf(((long) userId << 32) | (problemId & 0xFFFFFFFFL));
+	}
+	
+	// Must be called with lock held.
+	private void checkFailures(Long key) {
+		KeyState state = keyStateMap.get(key);
+		if (state != null && state.numFailedBatches > 0) {
+			// Report the failure once
+			int numFailed = state.numFailedBatches;
+			state.numFailedBatches = 0;
+			removeIfIdle(key, state);
+			throw new PersistenceException("Could not store " + numFailed + " batch(es) of changes for user " +
+					(key.longValue() >>> 32) + ", problem " + key.intValue());
+		}
+	}
+	
+	// Must be called with lock held.
+	private void removeIfIdle(Long key, KeyState state) {
+		if (state.numBatchesDone == state.numBatchesEnqueued && state.numFailedBatches == 0) {
+			keyStateMap.remove(key);
+		}
+	}
+	
+	// Returns the batches which could not be stored.
+	private List<QueuedBatch> write(List<QueuedBatch> batchList, int numChanges) {
+		List<QueuedBatch> failedList = new ArrayList<QueuedBatch>();
+		Change[] combined = new Change[numChanges];
+		int count = 0;
+		for (QueuedBatch batch : batchList) {
+			System.arraycopy(batch.changeList, 0, combined, count, batch.changeList.length);
+			count += batch.changeList.length;
+		}
+		
+		long begin = System.currentTimeMillis();
+		try {
+			db.storeChanges(combined);
+		} catch (RuntimeException e) {
+			// One bad batch shouldn't cost every other user their changes:
+			// retry the batches one at a time
+			logger.warn("Error storing " + numChanges + " changes, retrying individually", e);
+			for (QueuedBatch batch : batchList) {
+				if (!writeWithRetries(batch)) {
+					failedList.add(batch);
+					synchronized (statsLock) {
+						numWriteErrors++;
+					}
+					invalidateCachedText(batch.changeList);
+				}
+			}
+		}
+		long end = System.currentTimeMillis();
+		
+		// Latency is measured from when the oldest batch was enqueued
+		long latency = end - batchList.get(0).enqueueTime;
+		logger.debug("Stored {} changes from {} batches in {} ms (latency {} ms)",
+				new Object[]{numChanges, batchList.size(), end - begin, latency});
+		synchronized (statsLock) {
+			numTransactions++;
+			numChangesWritten += numChanges;
+			latencySampleList.add(new LatencySample(latency, end));
+			purgeLatencySamples(end);
+		}
+		return failedList;
+	}
+	
+	// Later batches for the same user may already be queued, so a failed
+	// batch is retried in place (rather than requeued) to keep the changes in order.
+	private boolean writeWithRetries(QueuedBatch batch) {
+		long delay = RETRY_DELAY_MS;
+		for (int attempt = 1; ; attempt++) {
+			try {
+				db.storeChanges(batch.changeList);
+				return true;
+			} catch (RuntimeException e) {
+				if (attempt >= MAX_WRITE_ATTEMPTS) {
+					logger.error("Could not store " + batch.changeList.length + " changes after " + attempt + " attempts", e);
+					return false;
+				}
+				logger.warn("Error storing " + batch.changeList.length + " changes, retrying", e);
+			}
+			try {
+				Thread.sleep(delay);
+			} catch (InterruptedException e) {
+				// Shutting down: make one last attempt
+				Thread.currentThread().interrupt();
+				attempt = MAX_WRITE_ATTEMPTS - 1;
+			}
+			delay *= 2;
+		}
+	}
+	
+	// The cached text includes changes which weren't stored,
+	// so it no longer matches the database.
+	private static void invalidateCachedText(Change[] changeList) {
+		CurrentTextCache cache = CurrentTextCache.getInstance();
+		if (cache != null) {
+			for (Change change : changeList) {
+				cache.invalidate(change.getEvent().getUserId(), change.getEvent().getProblemId());
+			}
+		}
+	}
+	
+	// Must be called with statsLock held.
+	private void purgeLatencySamples(long now) {
+		// Samples are in chronological order
+		while (!latencySampleList.isEmpty() && now - latencySampleList.getFirst().timestamp > LATENCY_SAMPLE_MAX_AGE_MS) {
+			latencySampleList.removeFirst();
+		}
+	}
+	
+	/**
+	 * @return number of changes waiting to be written
+	 */
+	public int getNumQueuedChanges() {
+		synchronized (lock) {
+			return numQueuedChanges;
+		}
+	}
+	
+	/**
+	 * @return number of transactions used to write changes
+	 */
+	public long getNumTransactions() {
+		synchronized (statsLock) {
+			return numTransactions;
+		}
+	}
+	
+	/**
+	 * @return number of changes written (or attempted)
+	 */
+	public long getNumChangesWritten() {
+		synchronized (statsLock) {
+			return numChangesWritten;
+		}
+	}
+	
+	/**
+	 * @return number of client batches which could not be stored
+	 */
+	public long getNumWriteErrors() {
+		synchronized (statsLock) {
+			return numWriteErrors;
+		}
+	}
+	
+	/**
+	 * Get the average and 99th percentile latency, in milliseconds,
+	 * of the transactions in the last 5 minutes.  The latency of a transaction
+	 * is the time from when its oldest batch was enqueued until it committed.
+	 * 
+	 * @return array containing the average and 99th percentile latencies
+	 *         (both 0 if there were no transactions)
+	 */
+	public int[] getBatchLatencies() {
+		long[] latencies;
+		synchronized (statsLock) {
+			purgeLatencySamples(System.currentTimeMillis());
+			latencies = new long[latencySampleList.size()];
+			int count = 0;
+			for (LatencySample sample : latencySampleList) {
+				latencies[count++] = sample.latency;
+			}
+		}
+		
+		if (latencies.length == 0) {
+			return new int[]{ 0, 0 };
+		}
+		
+		long total = 0;
+		for (long latency : latencies) {
+			total += latency;
+		}
+		Arrays.sort(latencies);
+		int p99Index = (int) Math.ceil(latencies.length * 0.99) - 1;
+		return new int[]{ (int) (total / latencies.length), (int) latencies[p99Index] };
+	}
+}
@@ -0,0 +1,91 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.persist;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Servlet context listener to create and destroy the {@link ChangeWriter}
+ * and {@link CurrentTextCache} singletons.  Write-behind is enabled unless the
+ * <code>cloudcoder.db.changes.writeBehind</code> context parameter is false,
+ * and caching is enabled unless <code>cloudcoder.db.changes.textCacheSize</code>
+ * is 0.
+ * This listener must be registered after the listener which configures
+ * the database, so that the queued changes are written before the
+ * database is shut down.
+ * 
+ * @author David Hovemeyer
+ */
+public class ChangeWriterServletContextListener implements ServletContextListener {
+	private static final Logger logger = LoggerFactory.getLogger(ChangeWriterServletContextListener.class);
+
+	@Override
+	public void contextInitialized(ServletContextEvent e) {
+		ServletContext ctx = e.getServletContext();
+		
+		int textCacheSize = Integer.parseInt(getParam(ctx,
+				"cloudcoder.db.changes.textCacheSize", String.valueOf(CurrentTextCache.DEFAULT_MAX_ENTRIES)));
+		if (textCacheSize > 0) {
+			int checkpointDeltas = Integer.parseInt(getParam(ctx,
+					"cloudcoder.db.changes.checkpointDeltas", String.valueOf(CurrentTextCache.DEFAULT_CHECKPOINT_DELTAS)));
+			long checkpointInterval = Long.parseLong(getParam(ctx,
+					"cloudcoder.db.changes.checkpointInterval", String.valueOf(CurrentTextCache.DEFAULT_CHECKPOINT_INTERVAL_MS / 1000)));
+			CurrentTextCache.setInstance(new CurrentTextCache(textCacheSize, checkpointDeltas, checkpointInterval * 1000));
+			logger.info("Caching current text for up to {} problems, checkpointing every {} changes", textCacheSize, checkpointDeltas);
+		}
+		
+		if (!Boolean.parseBoolean(getParam(ctx, "cloudcoder.db.changes.writeBehind", "true"))) {
+			logger.info("Write-behind of changes is disabled");
+			return;
+		}
+		int maxQueuedChanges = Integer.parseInt(getParam(ctx,
+				"cloudcoder.db.changes.maxQueued", String.valueOf(ChangeWriter.DEFAULT_MAX_QUEUED_CHANGES)));
+		int maxBatchChanges = Integer.parseInt(getParam(ctx,
+				"cloudcoder.db.changes.maxBatch", String.valueOf(ChangeWriter.DEFAULT_MAX_BATCH_CHANGES)));
+		
+		ChangeWriter writer = new ChangeWriter(Database.getInstance(), maxQueuedChanges, maxBatchChanges);
+		writer.start();
+		ChangeWriter.setInstance(writer);
+		logger.info("Write-behind of changes enabled: up to {} queued, {} per transaction", maxQueuedChanges, maxBatchChanges);
+	}
+	
+	private String getParam(ServletContext ctx, String paramName, String defaultValue) {
+		String value = ctx.getInitParameter(paramName);
+		return (value != null) ? value : defaultValue; 
+	}
+
+	@Override
+	public void contextDestroyed(ServletContextEvent e) {
+		CurrentTextCache.setInstance(null);
+		
+		ChangeWriter writer = ChangeWriter.getInstance();
+		if (writer != null) {
+			try {
+				writer.shutdown();
+			} catch (InterruptedException ex) {
+				throw new IllegalStateException("Interrupted while waiting for queued changes to be written", ex);
+			}
+			ChangeWriter.setInstance(null);
+		}
+	}
+}
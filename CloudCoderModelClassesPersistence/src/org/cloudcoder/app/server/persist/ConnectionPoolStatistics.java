@@ -0,0 +1,94 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.persist;
+
+/**
+ * Snapshot of statistics about an {@link IConnectionPool}.
+ * 
+ * @author David Hovemeyer
+ */
+public class ConnectionPoolStatistics {
+	private final int numConnections;
+	private final int numBusyConnections;
+	private final int numIdleConnections;
+	private final int numThreadsAwaiting;
+	private final int numCachedStatements;
+	private final int numLeaksDetected;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param numConnections       number of open connections
+	 * @param numBusyConnections   number of connections in use
+	 * @param numIdleConnections   number of unused connections
+	 * @param numThreadsAwaiting   number of threads waiting for a connection
+	 * @param numCachedStatements  number of cached prepared statements
+	 * @param numLeaksDetected     number of connections reported as possible leaks
+	 */
+	public ConnectionPoolStatistics(int numConnections, int numBusyConnections, int numIdleConnections,
+			int numThreadsAwaiting, int numCachedStatements, int numLeaksDetected) {
+		this.numConnections = numConnections;
+		this.numBusyConnections = numBusyConnections;
+		this.numIdleConnections = numIdleConnections;
+		this.numThreadsAwaiting = numThreadsAwaiting;
+		this.numCachedStatements = numCachedStatements;
+		this.numLeaksDetected = numLeaksDetected;
+	}
+	
+	/**
+	 * @return number of open connections
+	 */
+	public int getNumConnections() {
+		return numConnections;
+	}
+	
+	/**
+	 * @return number of connections in use
+	 */
+	public int getNumBusyConnections() {
+		return numBusyConnections;
+	}
+	
+	/**
+	 * @return number of unused connections
+	 */
+	public int getNumIdleConnections() {
+		return numIdleConnections;
+	}
+	
+	/**
+	 * @return number of threads waiting for a connection
+	 */
+	public int getNumThreadsAwaiting() {
+		return numThreadsAwaiting;
+	}
+	
+	/**
+	 * @return number of cached prepared statements
+	 */
+	public int getNumCachedStatements() {
+		return numCachedStatements;
+	}
+	
+	/**
+	 * @return number of connections reported as possible leaks
+	 */
+	public int getNumLeaksDetected() {
+		return numLeaksDetected;
+	}
+}
@@ -0,0 +1,400 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.persist;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudcoder.app.shared.model.ApplyChangeToTextDocument;
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.ChangeType;
+import org.cloudcoder.app.shared.model.TextDocument;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of the current text of each (user, problem) pair being worked on.
+ * The text is kept up to date by applying each logged {@link Change}
+ * as it arrives, so that reloading a problem doesn't require replaying
+ * the user's changes from the database.
+ * 
+ * The cache also creates checkpoints: when enough deltas (or enough time)
+ * have accumulated since the most recent full-text change, a
+ * {@link ChangeType#FULL_TEXT} change with the current text is added
+ * after the deltas.  Since the text is reconstructed from the most
+ * recent full-text change, this bounds the number of deltas that must
+ * be replayed when the text isn't cached.  A checkpoint has the same
+ * text as the document at that point, so replaying a user's changes
+ * (with or without the checkpoints) yields the same result.
+ * 
+ * Entries are evicted in LRU order.  An entry is created when the text
+ * has been reconstructed from the database (see {@link #put(int, int, String, int, long)}),
+ * or when a full-text change is logged.  Changes for (user, problem)
+ * pairs which aren't cached are passed through unmodified.
+ * 
+ * Because changes for uncached pairs pass through, text read from the
+ * database may already be out of date when it is put in the cache
+ * (a change may have been logged, but not yet queued for writing, when
+ * the database was read).  To prevent this, a load calls
+ * {@link #startLoad(int, int)} before flushing and reading the database,
+ * and passes the returned version to {@link #put(int, int, String, int, long)},
+ * which rejects the text if any change for the pair was logged in the
+ * meantime or was still in flight (see {@link #changesQueued(Change[])}).
+ * 
+ * @author David Hovemeyer
+ */
+public class CurrentTextCache {
+	private static final Logger logger = LoggerFactory.getLogger(CurrentTextCache.class);
+	
+	/** Default maximum number of cached documents. */
+	public static final int DEFAULT_MAX_ENTRIES = 2000;
+	
+	/** Default number of deltas after which a checkpoint is added. */
+	public static final int DEFAULT_CHECKPOINT_DELTAS = 200;
+	
+	/** Default time (in milliseconds) after which a checkpoint is added. */
+	public static final long DEFAULT_CHECKPOINT_INTERVAL_MS = 10L*60*1000;
+	
+	/**
+	 * Number of version stripes: (user, problem) pairs which hash to the same
+	 * stripe share a version, which at worst causes a load not to be cached.
+	 */
+	private static final int NUM_VERSION_STRIPES = 1024;
+	
+	/** Version returned by {@link #startLoad(int, int)} when text can't be cached. */
+	private static final long NO_VERSION = -1L;
+	
+	private static volatile CurrentTextCache instance;
+	
+	/**
+	 * Set the singleton instance.
+	 * 
+	 * @param cache the singleton instance (null if caching is disabled)
+	 */
+	public static void setInstance(CurrentTextCache cache) {
+		instance = cache;
+	}
+	
+	/**
+	 * Get the singleton instance.
+	 * 
+	 * @return the singleton instance, or null if caching is disabled
+	 */
+	public static CurrentTextCache getInstance() {
+		return instance;
+	}
+	
+	private static class Entry {
+		final TextDocument doc;
+		int numDeltas;
+		long lastCheckpointTime;
+		
+		Entry(String text, int numDeltas, long now) {
+			this.doc = new TextDocument();
+			this.doc.setText(text);
+			this.numDeltas = numDeltas;
+			this.lastCheckpointTime = now;
+		}
+	}
+	
+	private final int checkpointDeltas;
+	private final long checkpointIntervalMs;
+	private final Object lock = new Object();
+	private final LinkedHashMap<Long, Entry> entries;
+	private final long[] versions;
+	private final int[] numInFlight;
+	private long numHits;
+	private long numMisses;
+	private long numCheckpoints;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxEntries            maximum number of cached documents
+	 * @param checkpointDeltas      number of deltas after which a checkpoint is added
+	 * @param checkpointIntervalMs  time (in milliseconds) after which a checkpoint is
+	 *                              added (if there has been at least one delta)
+	 */
+	public CurrentTextCache(final int maxEntries, int checkpointDeltas, long checkpointIntervalMs) {
+		this.checkpointDeltas = checkpointDeltas;
+		this.checkpointIntervalMs = checkpointIntervalMs;
+		this.entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, CurrentTextCache.Entry> eldest) {
+				return size() > maxEntries;
+			}
+		};
+		this.versions = new long[NUM_VERSION_STRIPES];
+		this.numInFlight = new int[NUM_VERSION_STRIPES];
+	}
+	
+	private static Long key(int userId, int problemId) {
+		return Long.valueOf(((long) userId << 32) | (problemId & 0xFFFFFFFFL));
+	}
+	
+	private static int stripe(int userId, int problemId) {
+		int h = userId * 31 + problemId;
+		h ^= (h >>> 16);
+		return h & (NUM_VERSION_STRIPES - 1);
+	}
+	
+	/**
+	 * Get the current text of given user's work on given problem.
+	 * 
+	 * @param userId     the user id
+	 * @param problemId  the problem id
+	 * @return the current text, or null if it isn't cached
+	 */
+	public String getText(int userId, int problemId) {
+		Entry entry;
+		synchronized (lock) {
+			entry = entries.get(key(userId, problemId));
+			if (entry == null) {
+				numMisses++;
+				return null;
+			}
+			numHits++;
+		}
+		synchronized (entry) {
+			return entry.doc.getText();
+		}
+	}
+	
+	/**
+	 * Called before the text of given user's work on given problem
+	 * is read from the database (and before the {@link ChangeWriter}
+	 * is flushed).
+	 * 
+	 * @param userId     the user id
+	 * @param problemId  the problem id
+	 * @return the version to pass to {@link #put(int, int, String, int, long)}
+	 */
+	public long startLoad(int userId, int problemId) {
+		int stripe = stripe(userId, problemId);
+		synchronized (lock) {
+			// A change which has been applied, but may not yet be queued,
+			// might not be seen by the load
+			return numInFlight[stripe] > 0 ? NO_VERSION : versions[stripe];
+		}
+	}
+	
+	/**
+	 * Cache text reconstructed from the database.
+	 * The text is not cached if a change for the (user, problem) pair
+	 * has been logged since {@link #startLoad(int, int)} was called,
+	 * since the text might not reflect it.
+	 * 
+	 * @param userId     the user id
+	 * @param problemId  the problem id
+	 * @param text       the current text
+	 * @param numDeltas  the number of deltas following the most recent full-text change
+	 * @param version    the version returned by {@link #startLoad(int, int)}
+	 * @return true if the text was cached, false if it was stale
+	 */
+	public boolean put(int userId, int problemId, String text, int numDeltas, long version) {
+		Entry entry = new Entry(text, numDeltas, System.currentTimeMillis());
+		synchronized (lock) {
+			if (version == NO_VERSION || versions[stripe(userId, problemId)] != version) {
+				return false;
+			}
+			entries.put(key(userId, problemId), entry);
+			return true;
+		}
+	}
+	
+	/**
+	 * Remove the cached text of given user's work on given problem,
+	 * for example because some of the user's changes could not be stored.
+	 * 
+	 * @param userId     the user id
+	 * @param problemId  the problem id
+	 */
+	public void invalidate(int userId, int problemId) {
+		synchronized (lock) {
+			versions[stripe(userId, problemId)]++;
+			entries.remove(key(userId, problemId));
+		}
+	}
+	
+	/**
+	 * Apply logged changes to the cached documents.
+	 * Once the returned changes have been queued for writing (or stored),
+	 * {@link #changesQueued(Change[])} must be called with them.
+	 * 
+	 * @param changeList the logged changes
+	 * @return the changes to store: the logged changes, with a checkpoint
+	 *         inserted after any delta which makes one due
+	 */
+	public Change[] addChanges(Change[] changeList) {
+		synchronized (lock) {
+			for (Change change : changeList) {
+				int stripe = stripe(change.getEvent().getUserId(), change.getEvent().getProblemId());
+				versions[stripe]++;
+				numInFlight[stripe]++;
+			}
+		}
+		
+		List<Change> result = null;
+		for (int i = 0; i < changeList.length; i++) {
+			Change change = changeList[i];
+			Change checkpoint = apply(change);
+			if (checkpoint != null && result == null) {
+				result = new ArrayList<Change>();
+				for (int j = 0; j < i; j++) {
+					result.add(changeList[j]);
+				}
+			}
+			if (result != null) {
+				result.add(change);
+				if (checkpoint != null) {
+					// In flight until queued, like the logged changes
+					synchronized (lock) {
+						numInFlight[stripe(checkpoint.getEvent().getUserId(), checkpoint.getEvent().getProblemId())]++;
+					}
+					result.add(checkpoint);
+				}
+			}
+		}
+		return result != null ? result.toArray(new Change[result.size()]) : changeList;
+	}
+	
+	/**
+	 * Called when changes returned by {@link #addChanges(Change[])} have been
+	 * queued for writing (or stored, or have failed to be queued).
+	 * 
+	 * @param changeList the changes returned by {@link #addChanges(Change[])}
+	 */
+	public void changesQueued(Change[] changeList) {
+		synchronized (lock) {
+			for (Change change : changeList) {
+				numInFlight[stripe(change.getEvent().getUserId(), change.getEvent().getProblemId())]--;
+			}
+		}
+	}
+
+	private Change apply(Change change) {
+		int userId = change.getEvent().getUserId();
+		int problemId = change.getEvent().getProblemId();
+		long now = System.currentTimeMillis();
+		
+		Entry entry;
+		synchronized (lock) {
+			entry = entries.get(key(userId, problemId));
+			if (entry == null) {
+				if (change.getType() == ChangeType.FULL_TEXT) {
+					entries.put(key(userId, problemId), new Entry(change.getText(), 0, now));
+				}
+				return null;
+			}
+		}
+		
+		synchronized (entry) {
+			if (change.getType() == ChangeType.FULL_TEXT) {
+				entry.doc.setText(change.getText());
+				entry.numDeltas = 0;
+				entry.lastCheckpointTime = now;
+				return null;
+			}
+			
+			try {
+				new ApplyChangeToTextDocument().apply(change, entry.doc);
+			} catch (RuntimeException e) {
+				// The cached text is no longer trustworthy
+				logger.warn("Could not apply change for user " + userId + ", problem " + problemId, e);
+				invalidate(userId, problemId, entry);
+				return null;
+			}
+			entry.numDeltas++;
+			
+			if (entry.numDeltas < checkpointDeltas && now - entry.lastCheckpointTime < checkpointIntervalMs) {
+				return null;
+			}
+			String text = entry.doc.getText();
+			if (!isExactSnapshot(entry.doc, text)) {
+				// Replaying from a checkpoint now would not reproduce the document
+				// (it has an empty line without a newline): try again later
+				return null;
+			}
+			entry.numDeltas = 0;
+			entry.lastCheckpointTime = now;
+			synchronized (lock) {
+				numCheckpoints++;
+			}
+			return new Change(
+					ChangeType.FULL_TEXT,
+					0, 0, 0, 0,
+					change.getEvent().getTimestamp(),
+					userId, problemId,
+					text);
+		}
+	}
+	
+	private static boolean isExactSnapshot(TextDocument doc, String text) {
+		TextDocument check = new TextDocument();
+		check.setText(text);
+		if (check.getNumLines() != doc.getNumLines()) {
+			return false;
+		}
+		for (int i = 0; i < doc.getNumLines(); i++) {
+			if (!check.getLine(i).equals(doc.getLine(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private void invalidate(int userId, int problemId, Entry entry) {
+		synchronized (lock) {
+			Long key = key(userId, problemId);
+			if (entries.get(key) == entry) {
+				entries.remove(key);
+			}
+		}
+	}
+	
+	/**
+	 * @return number of requests for text which was cached
+	 */
+	public long getNumHits() {
+		synchronized (lock) {
+			return numHits;
+		}
+	}
+	
+	/**
+	 * @return number of requests for text which wasn't cached
+	 */
+	public long getNumMisses() {
+		synchronized (lock) {
+			return numMisses;
+		}
+	}
+	
+	/**
+	 * @return number of checkpoints added
+	 */
+	public long getNumCheckpoints() {
+		synchronized (lock) {
+			return numCheckpoints;
+		}
+	}
+}
@@ -47,6 +47,14 @@ public interface IConnectionPool {
 	 */
 	public void releaseConnection() throws SQLException;
 	
+	/**
+	 * Get statistics about the connection pool.
+	 * 
+	 * @return the {@link ConnectionPoolStatistics}
+	 * @throws SQLException
+	 */
+	public ConnectionPoolStatistics getStatistics() throws SQLException;
+	
 	/**
 	 * Clean up all resources associated with this connection pool.
 	 * @throws SQLException 
@@ -36,7 +36,9 @@ import org.cloudcoder.app.shared.model.CourseRegistrationType;
 import org.cloudcoder.app.shared.model.EditedUser;
 import org.cloudcoder.app.shared.model.Event;
 import org.cloudcoder.app.shared.model.ICallback;
+import org.cloudcoder.app.shared.model.IFactory;
 import org.cloudcoder.app.shared.model.IModelObject;
+import org.cloudcoder.app.shared.model.ModelObjectSchema;
 import org.cloudcoder.app.shared.model.Module;
 import org.cloudcoder.app.shared.model.NamedTestResult;
 import org.cloudcoder.app.shared.model.OperationResult;
@@ -230,6 +232,16 @@ public interface IDatabase {
 	 */
 	public List<Change> loadChangesForAllUsersOnProblem(int problemId);
 	
+	/**
+	 * Stream sequence of {@link Change}s for all users on given problem
+	 * to a {@link ResultVisitor}.
+	 * Changes are ordered by user id, and then by event id.
+	 * 
+	 * @param problemId the problem id
+	 * @param visitor   the {@link ResultVisitor} to receive the {@link Change}s
+	 */
+	public void loadChangesForAllUsersOnProblem(int problemId, ResultVisitor<Change> visitor);
+	
 	/**
 	 * Get List of {@link TestCase}s for {@link Problem} with given id.
 	 * Note that no authentication is done to ensure that the caller
@@ -747,6 +759,18 @@ public interface IDatabase {
 	 */
 	public List<WorkSession> findWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds);
 	
+	/**
+	 * Find all {@link WorkSession}s matching given {@link SnapshotSelectionCriteria},
+	 * passing each one to a {@link ResultVisitor} as soon as it is found.
+	 * Work sessions are found in order of user id.
+	 * 
+	 * @param criteria             the {@link SnapshotSelectionCriteria}
+	 * @param separationSeconds    events separated by this much time are considered to be
+	 *                             in separate sessions
+	 * @param visitor              the {@link ResultVisitor} to receive the {@link WorkSession}s
+	 */
+	public void findWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds, ResultVisitor<WorkSession> visitor);
+	
 	/**
 	 * Retrieve submissions/snapshots matching given {@link SnapshotSelectionCriteria}.
 	 * 
@@ -842,4 +866,47 @@ public interface IDatabase {
 	 *              the {@link Change} or {@link SubmissionReceipt}
 	 */
 	public List<Triple<Event, Change, SubmissionReceipt>> retrieveEvents(Problem problem, User user);
+	
+	/**
+	 * Stream all {@link Event}s for specified problem/user to a {@link ResultVisitor},
+	 * in order of timestamp.
+	 * Associated {@link Change} and {@link SubmissionReceipt} objects are included
+	 * (when appropriate), as for {@link #retrieveEvents(Problem, User)}.
+	 * 
+	 * @param problem the {@link Problem}
+	 * @param user    the {@link User}
+	 * @param visitor the {@link ResultVisitor} to receive the {@link Triple}s with the
+	 *                {@link Event}, and when appropriate, the {@link Change} or
+	 *                {@link SubmissionReceipt}
+	 */
+	public void retrieveEvents(Problem problem, User user, ResultVisitor<Triple<Event, Change, SubmissionReceipt>> visitor);
+	
+	/**
+	 * Stream all {@link Event}s, for all users and problems, to a {@link ResultVisitor},
+	 * ordered by user id, then timestamp, then event id.
+	 * Associated {@link Change} and {@link SubmissionReceipt} objects are included
+	 * (when appropriate), as for {@link #retrieveEvents(Problem, User)}.
+	 * 
+	 * @param visitor the {@link ResultVisitor} to receive the {@link Triple}s with the
+	 *                {@link Event}, and when appropriate, the {@link Change} or
+	 *                {@link SubmissionReceipt}
+	 */
+	public void visitAllEvents(ResultVisitor<Triple<Event, Change, SubmissionReceipt>> visitor);
+	
+	/**
+	 * Stream all model objects of specified type to a {@link ResultVisitor},
+	 * ordered by unique id (if the type has one).
+	 * 
+	 * @param schema  the type of model object to retrieve
+	 * @param factory factory to create new instances of model objects
+	 * @param visitor the {@link ResultVisitor} to receive the model objects
+	 */
+	public<E> void visitAllModelObjects(ModelObjectSchema<E> schema, IFactory<E> factory, ResultVisitor<E> visitor);
+	
+	/**
+	 * Get statistics about the database connection pool.
+	 * 
+	 * @return the {@link ConnectionPoolStatistics}
+	 */
+	public ConnectionPoolStatistics getConnectionPoolStatistics();
 }
@@ -99,6 +99,8 @@ import org.cloudcoder.app.server.persist.txn.StudentStartOrContinueQuiz;
 import org.cloudcoder.app.server.persist.txn.SuggestTagNames;
 import org.cloudcoder.app.server.persist.txn.SuggestUsernames;
 import org.cloudcoder.app.server.persist.txn.UpdateConfigurationSettings;
+import org.cloudcoder.app.server.persist.txn.VisitAllEvents;
+import org.cloudcoder.app.server.persist.txn.VisitAllModelObjects;
 import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnable;
 import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnableNoAuthException;
 import org.cloudcoder.app.server.persist.util.DatabaseRunnable;
@@ -115,7 +117,9 @@ import org.cloudcoder.app.shared.model.CourseRegistrationType;
 import org.cloudcoder.app.shared.model.EditedUser;
 import org.cloudcoder.app.shared.model.Event;
 import org.cloudcoder.app.shared.model.ICallback;
+import org.cloudcoder.app.shared.model.IFactory;
 import org.cloudcoder.app.shared.model.IModelObject;
+import org.cloudcoder.app.shared.model.ModelObjectSchema;
 import org.cloudcoder.app.shared.model.Module;
 import org.cloudcoder.app.shared.model.NamedTestResult;
 import org.cloudcoder.app.shared.model.OperationResult;
@@ -157,13 +161,44 @@ public class JDBCDatabase implements IDatabase {
 	public static final String JDBC_DRIVER_CLASS = "org.mariadb.jdbc.Driver";
 	
 	static final Logger logger=LoggerFactory.getLogger(JDBCDatabase.class);
+	
+	/**
+	 * {@link ResultVisitor} which collects the results of a streaming
+	 * query in a list, for the methods which return all of the results.
+	 */
+	private static class ListResultVisitor<E> implements ResultVisitor<E> {
+		final List<E> list = new ArrayList<E>();
+		
+		@Override
+		public void visit(E result) {
+			list.add(result);
+		}
+	}
 
 	private IConnectionPool connectionPool;
 	
 	public JDBCDatabase() throws SQLException {
 		JDBCDatabaseConfig.ConfigProperties config = JDBCDatabaseConfig.getInstance().getConfigProperties();
-		this.connectionPool = new MysqlConnectionPool(config);
-//		this.connectionPool = new C3P0ConnectionPool(config);
+		
+		// Connections are pooled unless cloudcoder.db.pool.type is "none",
+		// in which case a new connection is made for each transaction
+		String poolType = config.getOptionalProperty("pool.type", "c3p0");
+		if (poolType.equals("none")) {
+			this.connectionPool = new MysqlConnectionPool(config);
+		} else if (poolType.equals("c3p0")) {
+			this.connectionPool = new C3P0ConnectionPool(config);
+		} else {
+			throw new IllegalArgumentException("Unknown connection pool type: " + poolType);
+		}
+	}
+	
+	@Override
+	public ConnectionPoolStatistics getConnectionPoolStatistics() {
+		try {
+			return connectionPool.getStatistics();
+		} catch (SQLException e) {
+			throw new PersistenceException("SQLException", e);
+		}
 	}
 	
 	@Override
@@ -261,7 +296,14 @@ public class JDBCDatabase implements IDatabase {
 
 	@Override
 	public List<Change> loadChangesForAllUsersOnProblem(int problemId) {
-		return databaseRun(new LoadChangesForAllUsersOnProblem(problemId));
+		ListResultVisitor<Change> visitor = new ListResultVisitor<Change>();
+		loadChangesForAllUsersOnProblem(problemId, visitor);
+		return visitor.list;
+	}
+	
+	@Override
+	public void loadChangesForAllUsersOnProblem(int problemId, ResultVisitor<Change> visitor) {
+		databaseRun(new LoadChangesForAllUsersOnProblem(problemId, visitor));
 	}
 	
 	@Override
@@ -524,7 +566,14 @@ public class JDBCDatabase implements IDatabase {
 	
 	@Override
 	public List<WorkSession> findWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds) {
-		return databaseRun(new FindWorkSessions(criteria, separationSeconds));
+		ListResultVisitor<WorkSession> visitor = new ListResultVisitor<WorkSession>();
+		findWorkSessions(criteria, separationSeconds, visitor);
+		return visitor.list;
+	}
+	
+	@Override
+	public void findWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds, ResultVisitor<WorkSession> visitor) {
+		databaseRun(new FindWorkSessions(criteria, separationSeconds, visitor));
 	}
 	
 	@Override
@@ -574,7 +623,25 @@ public class JDBCDatabase implements IDatabase {
 	
 	@Override
 	public List<Triple<Event, Change, SubmissionReceipt>> retrieveEvents(Problem problem, User user) {
-		return databaseRun(new RetrieveEvents(problem, user));
+		ListResultVisitor<Triple<Event, Change, SubmissionReceipt>> visitor =
+				new ListResultVisitor<Triple<Event, Change, SubmissionReceipt>>();
+		retrieveEvents(problem, user, visitor);
+		return visitor.list;
+	}
+	
+	@Override
+	public void retrieveEvents(Problem problem, User user, ResultVisitor<Triple<Event, Change, SubmissionReceipt>> visitor) {
+		databaseRun(new RetrieveEvents(problem, user, visitor));
+	}
+	
+	@Override
+	public void visitAllEvents(ResultVisitor<Triple<Event, Change, SubmissionReceipt>> visitor) {
+		databaseRun(new VisitAllEvents(visitor));
+	}
+	
+	@Override
+	public <E> void visitAllModelObjects(ModelObjectSchema<E> schema, IFactory<E> factory, ResultVisitor<E> visitor) {
+		databaseRun(new VisitAllModelObjects<E>(schema, factory, visitor));
 	}
 
 	/**
@@ -643,7 +710,12 @@ public class JDBCDatabase implements IDatabase {
 				successfulCommit = true; // Hooray!
 			} catch (SQLException e) {
 				String sqlState = e.getSQLState();
-				if (sqlState != null && (sqlState.equals("40001") || sqlState.equals("41000") || sqlState.equals("23000"))) {
+				if (!databaseRunnable.isRetryable()) {
+					// Rows of a streaming query may already have been passed
+					// to a visitor, which would see them again on a retry
+					logger.error("Streaming transaction failed with SQLException", e);
+					throw new PersistenceException("SQLException", e);
+				} else if (sqlState != null && (sqlState.equals("40001") || sqlState.equals("41000") || sqlState.equals("23000"))) {
 					// Deadlock detected: retry transaction
 					// NOTE: I have also included duplicate key errors (23000).
 					// There is evidence that a MySQL bug can cause spurious
@@ -658,21 +730,30 @@ public class JDBCDatabase implements IDatabase {
 					throw new PersistenceException("SQLException", e);
 				}
 			} finally {
-				// If the transaction didn't succeed, roll back
-				if (!successfulCommit) {
+				try {
+					// If the transaction didn't succeed, roll back
+					if (!successfulCommit) {
+						try {
+							conn.rollback();
+						} catch (SQLException ex) {
+							throw new PersistenceException("SQLException (on rollback)", ex);
+						}
+					}
+					
+					// Restore the original autocommit value
 					try {
-						conn.rollback();
-					} catch (SQLException ex) {
-						throw new PersistenceException("SQLException (on rollback)", ex);
+						conn.setAutoCommit(origAutocommit);
+					} catch (SQLException e) {
+						throw new PersistenceException("SQLException (restoring autocommit)", e);
+					}
+				} finally {
+					// Always release the connection: otherwise, it would
+					// remain checked out by this thread
+					try {
+						connectionPool.releaseConnection();
+					} catch (SQLException e) {
+						throw new PersistenceException("SQLException (releasing connection)", e);
 					}
-				}
-				
-				// Restore the original autocommit value and release the connection.
-				try {
-					conn.setAutoCommit(origAutocommit);
-					connectionPool.releaseConnection();
-				} catch (SQLException e) {
-					throw new PersistenceException("SQLException (releasing connection)", e);
 				}
 			}
 		}
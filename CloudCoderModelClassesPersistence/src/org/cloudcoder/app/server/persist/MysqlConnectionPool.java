@@ -21,6 +21,7 @@ package org.cloudcoder.app.server.persist;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.cloudcoder.app.server.persist.JDBCDatabaseConfig.ConfigProperties;
 import org.slf4j.Logger;
@@ -47,6 +48,7 @@ public class MysqlConnectionPool extends AbstractConnectionPool {
 	}
 	
 	private String jdbcUrl;
+	private AtomicInteger numOpen = new AtomicInteger();
 	
 	/**
 	 * Constructor.
@@ -67,14 +69,24 @@ public class MysqlConnectionPool extends AbstractConnectionPool {
 	
 	@Override
 	protected Connection createConnection() throws SQLException {
-		return DriverManager.getConnection(jdbcUrl);
+		Connection conn = DriverManager.getConnection(jdbcUrl);
+		numOpen.incrementAndGet();
+		return conn;
 	}
 	
 	@Override
 	protected void closeConnection(Connection conn) throws SQLException {
+		numOpen.decrementAndGet();
 		conn.close();
 	}
 	
+	@Override
+	public ConnectionPoolStatistics getStatistics() {
+		// Every open connection is in use
+		int n = numOpen.get();
+		return new ConnectionPoolStatistics(n, n, 0, 0, 0, getNumLeaksDetected());
+	}
+	
 	@Override
 	public void destroy() {
 		// We don't actually do anything here
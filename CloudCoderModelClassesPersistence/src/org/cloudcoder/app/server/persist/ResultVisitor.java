@@ -0,0 +1,39 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.persist;
+
+/**
+ * Visitor interface for receiving the results of a bulk query
+ * one at a time, as they are read from the database, rather than
+ * as a (possibly very large) list.
+ * Because the query's result set is still open on the calling
+ * thread's database connection when {@link #visit(Object)} is called,
+ * a visitor must not access the database from the same thread.
+ * 
+ * @author David Hovemeyer
+ *
+ * @param <E> type of result
+ */
+public interface ResultVisitor<E> {
+	/**
+	 * Called for each result, in the order the query produces them.
+	 * 
+	 * @param result the result
+	 */
+	public void visit(E result);
+}
@@ -38,9 +38,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
 
+import org.cloudcoder.app.server.persist.ResultVisitor;
 import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnableNoAuthException;
 import org.cloudcoder.app.server.persist.util.DBUtil;
 import org.cloudcoder.app.shared.model.Event;
@@ -51,18 +50,23 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Find all {@link WorkSession}s in a course.
+ * The events are streamed from the database, and each {@link WorkSession}
+ * is passed to a {@link ResultVisitor} as soon as it is found, so
+ * memory use does not depend on the number of events or sessions.
  * 
  * @author David Hovemeyer
  */
-public class FindWorkSessions extends AbstractDatabaseRunnableNoAuthException<List<WorkSession>> {
+public class FindWorkSessions extends AbstractDatabaseRunnableNoAuthException<Boolean> {
 	private static final Logger logger = LoggerFactory.getLogger(FindWorkSessions.class);
 	
 	private SnapshotSelectionCriteria criteria;
 	private int separationSeconds;
+	private ResultVisitor<WorkSession> visitor;
 
-	public FindWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds) {
+	public FindWorkSessions(SnapshotSelectionCriteria criteria, int separationSeconds, ResultVisitor<WorkSession> visitor) {
 		this.criteria = criteria;
 		this.separationSeconds = separationSeconds;
+		this.visitor = visitor;
 	}
 	
 	private static class EventInCourse {
@@ -75,9 +79,9 @@ public class FindWorkSessions extends AbstractDatabaseRunnableNoAuthException<Li
 	}
 
 	@Override
-	public List<WorkSession> run(Connection conn) throws SQLException {
+	public Boolean run(Connection conn) throws SQLException {
 		// Select all events, ordered first by user id, then by timestamp
-		PreparedStatement stmt = prepareStatement(
+		PreparedStatement stmt = prepareStreamingStatement(
 				conn,
 				"select e.*, p.course_id from cc_events as e, cc_problems as p " +
 				" where e.problem_id = p.problem_id " +
@@ -93,7 +97,6 @@ public class FindWorkSessions extends AbstractDatabaseRunnableNoAuthException<Li
 		stmt.setInt(5, criteria.getProblemId());
 		stmt.setInt(6, criteria.getProblemId());
 		
-		List<WorkSession> workSessions = new ArrayList<WorkSession>();
 		ResultSet resultSet = executeQuery(stmt);
 
 		// Scan results to find sequences of events representing work on the same
@@ -115,7 +118,7 @@ public class FindWorkSessions extends AbstractDatabaseRunnableNoAuthException<Li
 				start = eventInCourse;
 				end = eventInCourse;
 			} else if (isDifferentSession(start, eventInCourse)) {
-				workSessions.add(createSession(start, end));
+				visitor.visit(createSession(start, end));
 				start = eventInCourse;
 				end = eventInCourse;
 			} else {
@@ -123,11 +126,11 @@ public class FindWorkSessions extends AbstractDatabaseRunnableNoAuthException<Li
 			}
 		}
 		if (start != null) {
-			workSessions.add(createSession(start, end));
+			visitor.visit(createSession(start, end));
 		}
 		logger.info("FindWorkSessions: processed {} events\n", count);
 		
-		return workSessions;
+		return true;
 	}
 
 	private boolean isDifferentSession(EventInCourse start, EventInCourse e) {
@@ -21,9 +21,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.List;
 
+import org.cloudcoder.app.server.persist.ResultVisitor;
 import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnableNoAuthException;
 import org.cloudcoder.app.shared.model.Change;
 import org.cloudcoder.app.shared.model.Event;
@@ -34,23 +33,26 @@ import org.cloudcoder.app.shared.model.User;
 
 /**
  * Query to retrieve events in a "unified" way for a specific
- * course/problem/user.
+ * course/problem/user.  The events are streamed from the database
+ * and passed to a {@link ResultVisitor} one at a time.
  */
-public class RetrieveEvents extends AbstractDatabaseRunnableNoAuthException<List<Triple<Event, Change, SubmissionReceipt>>> {
+public class RetrieveEvents extends AbstractDatabaseRunnableNoAuthException<Boolean> {
 
 	private Problem problem;
 	private User user;
+	private ResultVisitor<Triple<Event, Change, SubmissionReceipt>> visitor;
 
-	public RetrieveEvents(Problem problem, User user) {
+	public RetrieveEvents(Problem problem, User user, ResultVisitor<Triple<Event, Change, SubmissionReceipt>> visitor) {
 		this.problem = problem;
 		this.user = user;
+		this.visitor = visitor;
 	}
 
 	@Override
-	public List<Triple<Event, Change, SubmissionReceipt>> run(Connection conn) throws SQLException {
+	public Boolean run(Connection conn) throws SQLException {
 		// By doing left outer joins on both cc_changes and cc_submission_receipts
 		// we get the associated Change or SubmissionReceipt data as appropriate.
-		PreparedStatement stmt = prepareStatement(
+		PreparedStatement stmt = prepareStreamingStatement(
 				conn,
 				"select e.*, c.*, r.* " +
 				"  from cc_events as e" +
@@ -66,8 +68,6 @@ public class RetrieveEvents extends AbstractDatabaseRunnableNoAuthException<List
 		
 		ResultSet resultSet = executeQuery(stmt);
 		
-		List<Triple<Event, Change, SubmissionReceipt>> result = new ArrayList<Triple<Event,Change,SubmissionReceipt>>();
-		
 		while (resultSet.next()) {
 			Triple<Event, Change, SubmissionReceipt> triple = new Triple<Event, Change, SubmissionReceipt>();
 			
@@ -94,10 +94,10 @@ public class RetrieveEvents extends AbstractDatabaseRunnableNoAuthException<List
 				triple.setThird(receipt);
 			}
 			
-			result.add(triple);
+			visitor.visit(triple);
 		}
 		
-		return result;
+		return true;
 	}
 
 	@Override
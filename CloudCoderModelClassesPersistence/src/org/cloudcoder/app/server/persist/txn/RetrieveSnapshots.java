@@ -35,7 +35,9 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Transaction to retrieve snapshots/submissions matching given
- * {@link SnapshotSelectionCriteria}.
+ * {@link SnapshotSelectionCriteria}.  The snapshots are streamed
+ * from the database and passed to the {@link SnapshotCallback}
+ * one at a time.
  * 
  * @author David Hovemeyer
  */
@@ -74,7 +76,7 @@ public class RetrieveSnapshots extends AbstractDatabaseRunnableNoAuthException<B
 		String query = sql.toString();
 		logger.info("Retrieving snapshots: {}", query);
 		
-		PreparedStatement stmt = prepareStatement(conn, query);
+		PreparedStatement stmt = prepareStreamingStatement(conn, query);
 		int place = 1;
 		if (criteria.getCourseId() != SnapshotSelectionCriteria.ANY) {
 			stmt.setInt(place++, criteria.getCourseId());
@@ -26,9 +26,16 @@ import org.cloudcoder.app.shared.model.Change;
 
 /**
  * Store a sequence of {@link Change}s representing a user's edits
- * on a problem.
+ * on a problem.  The sequence may contain changes for several users
+ * and problems (see {@link org.cloudcoder.app.server.persist.ChangeWriter}),
+ * so the change rows are inserted using multi-row insert statements.
  */
 public class StoreChanges extends AbstractDatabaseRunnableNoAuthException<Boolean> {
+	/**
+	 * Maximum number of rows inserted by a single multi-row insert statement.
+	 */
+	private static final int MAX_ROWS_PER_INSERT = 250;
+	
 	private final Change[] changeList;
 
 	/**
@@ -46,21 +53,56 @@ public class StoreChanges extends AbstractDatabaseRunnableNoAuthException<Boolea
 		Queries.storeEvents(changeList, conn, this);
 		
 		// Store Changes
-		PreparedStatement insertChange = prepareStatement(
-				conn,
-				"insert into " + Change.SCHEMA.getDbTableName() + " values (?, ?, ?, ?, ?, ?, ?, ?)"
-		);
-		for (Change change : changeList) {
-			Queries.store(change, insertChange, 1);
-			insertChange.addBatch();
+		int numFields = Change.SCHEMA.getNumFields();
+		PreparedStatement insertFullChunk = null;
+		for (int start = 0; start < changeList.length; start += MAX_ROWS_PER_INSERT) {
+			int numRows = Math.min(MAX_ROWS_PER_INSERT, changeList.length - start);
+			PreparedStatement insertChange;
+			if (numRows == MAX_ROWS_PER_INSERT && insertFullChunk != null) {
+				insertChange = insertFullChunk;
+			} else {
+				insertChange = prepareStatement(conn, getInsertSql(numRows));
+				if (numRows == MAX_ROWS_PER_INSERT) {
+					insertFullChunk = insertChange;
+				}
+			}
+			int index = 1;
+			for (int i = start; i < start + numRows; i++) {
+				Queries.store(changeList[i], insertChange, index);
+				index += numFields;
+			}
+			insertChange.executeUpdate();
 		}
-		insertChange.executeBatch();
 		
 		return true;
 	}
 
+	private static String getInsertSql(int numRows) {
+		StringBuilder row = new StringBuilder();
+		row.append("(");
+		for (int i = 0; i < Change.SCHEMA.getNumFields(); i++) {
+			if (i > 0) {
+				row.append(", ");
+			}
+			row.append("?");
+		}
+		row.append(")");
+		
+		StringBuilder sql = new StringBuilder();
+		sql.append("insert into ");
+		sql.append(Change.SCHEMA.getDbTableName());
+		sql.append(" values ");
+		for (int i = 0; i < numRows; i++) {
+			if (i > 0) {
+				sql.append(", ");
+			}
+			sql.append(row);
+		}
+		return sql.toString();
+	}
+
 	@Override
 	public String getDescription() {
 		return "storing text changes";
 	}
-}
\ No newline at end of file
+}
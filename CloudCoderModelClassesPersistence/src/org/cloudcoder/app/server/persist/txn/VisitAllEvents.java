@@ -0,0 +1,94 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2012, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2019, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.persist.txn;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.cloudcoder.app.server.persist.ResultVisitor;
+import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnableNoAuthException;
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.Event;
+import org.cloudcoder.app.shared.model.SubmissionReceipt;
+import org.cloudcoder.app.shared.model.Triple;
+
+/**
+ * Query to retrieve all events, for all users and problems, in a "unified" way
+ * (as for {@link RetrieveEvents}).  The events are ordered by user id,
+ * then timestamp, then event id, and are streamed from the database
+ * and passed to a {@link ResultVisitor} one at a time.
+ */
+public class VisitAllEvents extends AbstractDatabaseRunnableNoAuthException<Boolean> {
+	private ResultVisitor<Triple<Event, Change, SubmissionReceipt>> visitor;
+
+	public VisitAllEvents(ResultVisitor<Triple<Event, Change, SubmissionReceipt>> visitor) {
+		this.visitor = visitor;
+	}
+
+	@Override
+	public Boolean run(Connection conn) throws SQLException {
+		PreparedStatement stmt = prepareStreamingStatement(
+				conn,
+				"select e.*, c.*, r.* " +
+				"  from cc_events as e" +
+				"  left outer join cc_changes as c on e.id = c.event_id " +
+				"  left outer join cc_submission_receipts as r on e.id = r.event_id " +
+				" order by e.user_id asc, e.timestamp asc, e.id asc"
+				);
+		
+		ResultSet resultSet = executeQuery(stmt);
+		
+		while (resultSet.next()) {
+			Triple<Event, Change, SubmissionReceipt> triple = new Triple<Event, Change, SubmissionReceipt>();
+			
+			int index;
+			Event event = new Event();
+			index = Queries.loadGeneric(event, resultSet, 1, Event.SCHEMA);
+			triple.setFirst(event);
+			
+			// See if there is a Change
+			if (resultSet.getObject(index) != null) {
+				Change change = new Change();
+				Queries.load(change, resultSet, index);
+				change.setEvent(event); // link to Event
+				triple.setSecond(change);
+			}
+			
+			index += Change.SCHEMA.getNumFields();
+			
+			// See if there is a SubmissionReceipt
+			if (resultSet.getObject(index) != null) {
+				SubmissionReceipt receipt = new SubmissionReceipt();
+				Queries.loadGeneric(receipt, resultSet, index, SubmissionReceipt.SCHEMA);
+				receipt.setEvent(event);
+				triple.setThird(receipt);
+			}
+			
+			visitor.visit(triple);
+		}
+		
+		return true;
+	}
+
+	@Override
+	public String getDescription() {
+		return " retrieve all events";
+	}
+}
@@ -0,0 +1,76 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2012, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2019, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.persist.txn;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.cloudcoder.app.server.persist.ResultVisitor;
+import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnableNoAuthException;
+import org.cloudcoder.app.server.persist.util.DBUtil;
+import org.cloudcoder.app.shared.model.IFactory;
+import org.cloudcoder.app.shared.model.ModelObjectField;
+import org.cloudcoder.app.shared.model.ModelObjectSchema;
+
+/**
+ * Query to retrieve all model objects of a specified type, ordered by
+ * unique id (if the type has one).  The model objects are streamed from
+ * the database and passed to a {@link ResultVisitor} one at a time.
+ * 
+ * @param <E> the model object type
+ */
+public class VisitAllModelObjects<E> extends AbstractDatabaseRunnableNoAuthException<Boolean> {
+	private ModelObjectSchema<E> schema;
+	private IFactory<E> factory;
+	private ResultVisitor<E> visitor;
+
+	public VisitAllModelObjects(ModelObjectSchema<E> schema, IFactory<E> factory, ResultVisitor<E> visitor) {
+		this.schema = schema;
+		this.factory = factory;
+		this.visitor = visitor;
+	}
+
+	@Override
+	public Boolean run(Connection conn) throws SQLException {
+		StringBuilder sql = new StringBuilder();
+		sql.append("select * from " + schema.getDbTableName());
+		for (ModelObjectField<? super E, ?> field : schema.getFieldList()) {
+			if (field.isUniqueId()) {
+				sql.append(" order by " + field.getName() + " asc");
+				break;
+			}
+		}
+		PreparedStatement stmt = prepareStreamingStatement(conn, sql.toString());
+		
+		ResultSet resultSet = executeQuery(stmt);
+		while (resultSet.next()) {
+			E obj = factory.create();
+			DBUtil.loadModelObjectFields(obj, schema, resultSet);
+			visitor.visit(obj);
+		}
+		
+		return true;
+	}
+
+	@Override
+	public String getDescription() {
+		return " retrieve all " + schema.getDbTableName();
+	}
+}
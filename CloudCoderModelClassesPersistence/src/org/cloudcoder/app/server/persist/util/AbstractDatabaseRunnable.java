@@ -4,6 +4,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Stack;
 
 import org.slf4j.Logger;
@@ -21,6 +23,8 @@ import org.slf4j.Logger;
 public abstract class AbstractDatabaseRunnable<E> implements DatabaseRunnable<E> {
 
 	private Stack<Object> cleanupStack = new Stack<Object>();
+	private Set<PreparedStatement> streamingStatements = new HashSet<PreparedStatement>();
+	private boolean streamingQueryExecuted;
 	private Logger logger;
 
 	/**
@@ -58,9 +62,28 @@ public abstract class AbstractDatabaseRunnable<E> implements DatabaseRunnable<E>
 		return stmt;
 	}
 
+	/**
+	 * Create a PreparedStatement for a streaming query, adding it to the cleanup stack.
+	 * This should be used for bulk queries whose results are processed
+	 * one row at a time: see {@link DBUtil#prepareStreamingStatement(Connection, String)}.
+	 * 
+	 * @param conn the database connection
+	 * @param sql  the SQL to execute
+	 * @return the PreparedStatement, which will be cleaned up automatically
+	 * @throws SQLException
+	 */
+	public PreparedStatement prepareStreamingStatement(Connection conn, String sql) throws SQLException {
+		PreparedStatement stmt = DBUtil.prepareStreamingStatement(conn, sql);
+		cleanupStack.push(stmt);
+		streamingStatements.add(stmt);
+		return stmt;
+	}
+
 	/**
 	 * Execute a PreparedStatement to produce a ResultSet.
 	 * The ResultSet will be added to the cleanup stack.
+	 * Once a streaming query has been executed, the transaction
+	 * is no longer retryable: see {@link #isRetryable()}.
 	 * 
 	 * @param stmt the PreparedStatement to execute
 	 * @return the ResultSet
@@ -69,6 +92,10 @@ public abstract class AbstractDatabaseRunnable<E> implements DatabaseRunnable<E>
 	public ResultSet executeQuery(PreparedStatement stmt) throws SQLException {
 		ResultSet resultSet = stmt.executeQuery();
 		cleanupStack.push(resultSet);
+		if (streamingStatements.contains(stmt)) {
+			// Rows will now be passed to a visitor as they are read
+			streamingQueryExecuted = true;
+		}
 		return resultSet;
 	}
 
@@ -95,6 +122,12 @@ public abstract class AbstractDatabaseRunnable<E> implements DatabaseRunnable<E>
 				DBUtil.closeQuietly((ResultSet) o);
 			}
 		}
+		streamingStatements.clear();
+	}
+	
+	@Override
+	public boolean isRetryable() {
+		return !streamingQueryExecuted;
 	}
 	
 	@Override
@@ -97,6 +97,32 @@ public class DBUtil {
 	    }
 	}
 
+	/**
+	 * Fetch size used for streaming queries.  Integer.MIN_VALUE is the
+	 * value which tells the MariaDB (and MySQL) JDBC driver to stream
+	 * rows from the server one at a time, rather than reading the entire
+	 * result set into memory.
+	 */
+	public static final int STREAMING_FETCH_SIZE = Integer.MIN_VALUE;
+	
+	/**
+	 * Create a PreparedStatement for a streaming query: one whose
+	 * result set is forward-only and read-only, and whose rows
+	 * are fetched from the server as they are read.
+	 * While the streaming result set is open, no other statements
+	 * may be executed using the same connection.
+	 * 
+	 * @param conn the database connection
+	 * @param sql  the SQL to execute
+	 * @return the PreparedStatement
+	 * @throws SQLException
+	 */
+	public static PreparedStatement prepareStreamingStatement(Connection conn, String sql) throws SQLException {
+		PreparedStatement stmt = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		stmt.setFetchSize(STREAMING_FETCH_SIZE);
+		return stmt;
+	}
+	
 	/**
 	 * Quietly close a {@link ResultSet}.
 	 * 
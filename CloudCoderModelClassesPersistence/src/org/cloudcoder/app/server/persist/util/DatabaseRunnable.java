@@ -34,6 +34,16 @@ public interface DatabaseRunnable<E> {
 	public E run(Connection conn) throws SQLException, CloudCoderAuthenticationException;
 	public String getDescription();
 	public void cleanup();
+	
+	/**
+	 * Determine whether the transaction can be retried after a recoverable
+	 * failure such as a deadlock.  A transaction that has started
+	 * passing rows of a streaming query to a {@link org.cloudcoder.app.server.persist.ResultVisitor}
+	 * can't be retried, since the visitor would see those rows again.
+	 * 
+	 * @return true if the transaction can be retried, false if not
+	 */
+	public boolean isRetryable();
 	public void setLogger(Logger logger);
 	public Logger getLogger();
 }
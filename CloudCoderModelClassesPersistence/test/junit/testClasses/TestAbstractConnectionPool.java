@@ -0,0 +1,93 @@
+package testClasses;
+
+import static org.junit.Assert.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.cloudcoder.app.server.persist.AbstractConnectionPool;
+import org.cloudcoder.app.server.persist.ConnectionPoolStatistics;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestAbstractConnectionPool
+{
+    private static class CountingConnectionPool extends AbstractConnectionPool {
+        int numCreated;
+        int numClosed;
+        
+        @Override
+        protected Connection createConnection() throws SQLException {
+            numCreated++;
+            return null;
+        }
+        
+        @Override
+        protected void closeConnection(Connection conn) throws SQLException {
+            numClosed++;
+        }
+        
+        @Override
+        public ConnectionPoolStatistics getStatistics() {
+            return new ConnectionPoolStatistics(0, 0, 0, 0, 0, getNumLeaksDetected());
+        }
+        
+        @Override
+        public void destroy() {
+        }
+    }
+    
+    private CountingConnectionPool pool;
+    
+    @Before
+    public void setUp() {
+        pool = new CountingConnectionPool();
+    }
+    
+    @Test
+    public void testNestedGetConnection()
+    throws Exception
+    {
+        pool.getConnection();
+        pool.getConnection();
+        pool.releaseConnection();
+        assertEquals(0, pool.numClosed);
+        pool.releaseConnection();
+        assertEquals(1, pool.numCreated);
+        assertEquals(1, pool.numClosed);
+    }
+    
+    @Test(expected=IllegalStateException.class)
+    public void testReleaseWithoutGet()
+    throws Exception
+    {
+        pool.releaseConnection();
+    }
+    
+    @Test
+    public void testLeakDetection()
+    throws Exception
+    {
+        pool.setLeakDetectionThreshold(20L);
+        pool.getConnection();
+        assertEquals(0, pool.getNumLeaksDetected());
+        Thread.sleep(50L);
+        assertEquals(1, pool.getNumLeaksDetected());
+        
+        // A leak is only reported once
+        Thread.sleep(50L);
+        assertEquals(1, pool.getNumLeaksDetected());
+        pool.releaseConnection();
+    }
+    
+    @Test
+    public void testNoLeakAfterRelease()
+    throws Exception
+    {
+        pool.setLeakDetectionThreshold(20L);
+        pool.getConnection();
+        pool.releaseConnection();
+        Thread.sleep(50L);
+        assertEquals(0, pool.getNumLeaksDetected());
+    }
+}
@@ -0,0 +1,226 @@
+package testClasses;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.cloudcoder.app.server.persist.ChangeWriter;
+import org.cloudcoder.app.server.persist.IDatabase;
+import org.cloudcoder.app.server.persist.PersistenceException;
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.ChangeType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestChangeWriter
+{
+    // Records the arrays passed to storeChanges
+    private static class RecordingDatabase implements InvocationHandler {
+        List<Change[]> stored = new ArrayList<Change[]>();
+        CountDownLatch firstWriteStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(0);
+        boolean failCombined;
+        int failuresLeft;
+        
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!method.getName().equals("storeChanges")) {
+                throw new UnsupportedOperationException(method.getName());
+            }
+            firstWriteStarted.countDown();
+            release.await();
+            Change[] changeList = (Change[]) args[0];
+            if (failCombined && changeList.length > 1) {
+                throw new IllegalStateException("combined write failed");
+            }
+            synchronized (this) {
+                if (failuresLeft > 0) {
+                    failuresLeft--;
+                    throw new IllegalStateException("transient failure");
+                }
+            }
+            synchronized (this) {
+                stored.add(changeList);
+            }
+            return null;
+        }
+    }
+    
+    private RecordingDatabase handler;
+    private ChangeWriter writer;
+    
+    @Before
+    public void setUp() {
+        handler = new RecordingDatabase();
+        IDatabase db = (IDatabase) Proxy.newProxyInstance(
+                IDatabase.class.getClassLoader(), new Class<?>[]{ IDatabase.class }, handler);
+        writer = new ChangeWriter(db, 100, 10);
+        writer.start();
+    }
+    
+    @After
+    public void tearDown() throws Exception {
+        writer.shutdown();
+    }
+    
+    private static Change change(int userId) {
+        return new Change(ChangeType.INSERT_TEXT, 0, 0, 0, 1, 1000L, userId, 1, "x");
+    }
+    
+    @Test
+    public void testBatchesQueuedWhileWritingAreCombined()
+    throws Exception
+    {
+        handler.release = new CountDownLatch(1);
+        Change a = change(1), b = change(2), c = change(3);
+        writer.enqueue(new Change[]{a});
+        handler.firstWriteStarted.await();
+        writer.enqueue(new Change[]{b});
+        writer.enqueue(new Change[]{c});
+        assertEquals(2, writer.getNumQueuedChanges());
+        handler.release.countDown();
+        writer.flush();
+        
+        assertEquals(2, handler.stored.size());
+        assertArrayEquals(new Change[]{a}, handler.stored.get(0));
+        assertArrayEquals(new Change[]{b, c}, handler.stored.get(1));
+        assertEquals(0, writer.getNumQueuedChanges());
+        assertEquals(2L, writer.getNumTransactions());
+        assertEquals(3L, writer.getNumChangesWritten());
+    }
+    
+    @Test
+    public void testMaxBatchSize()
+    throws Exception
+    {
+        handler.release = new CountDownLatch(1);
+        writer.enqueue(new Change[]{change(1)});
+        handler.firstWriteStarted.await();
+        for (int i = 0; i < 3; i++) {
+            writer.enqueue(new Change[]{change(2), change(2), change(2), change(2)});
+        }
+        handler.release.countDown();
+        writer.flush();
+        
+        // Whole client batches are kept together: 4+4 fit in 10, the third doesn't
+        assertEquals(3, handler.stored.size());
+        assertEquals(8, handler.stored.get(1).length);
+        assertEquals(4, handler.stored.get(2).length);
+    }
+    
+    @Test
+    public void testFailedCombinedWriteIsRetriedPerBatch()
+    throws Exception
+    {
+        handler.failCombined = true;
+        handler.release = new CountDownLatch(1);
+        writer.enqueue(new Change[]{change(1)});
+        handler.firstWriteStarted.await();
+        writer.enqueue(new Change[]{change(2)});
+        writer.enqueue(new Change[]{change(3), change(3)});
+        handler.release.countDown();
+        writer.flush();
+        
+        // The second client batch can't be stored even on its own
+        assertEquals(2, handler.stored.size());
+        assertEquals(1L, writer.getNumWriteErrors());
+    }
+    
+    @Test
+    public void testFailureIsReportedForSameUser()
+    throws Exception
+    {
+        handler.failCombined = true;
+        handler.release = new CountDownLatch(1);
+        writer.enqueue(new Change[]{change(1)});
+        handler.firstWriteStarted.await();
+        writer.enqueue(new Change[]{change(2), change(2)});
+        handler.release.countDown();
+        
+        try {
+            writer.flush(2, 1);
+            fail("flush should report the lost changes");
+        } catch (PersistenceException e) {
+            // expected
+        }
+        
+        // Other users aren't affected, and the failure is reported once
+        writer.flush(1, 1);
+        writer.flush(2, 1);
+        writer.enqueue(new Change[]{change(2)});
+        writer.flush(2, 1);
+        assertEquals(2, handler.stored.size());
+    }
+    
+    @Test
+    public void testFailureFailsNextEnqueue()
+    throws Exception
+    {
+        handler.failCombined = true;
+        writer.enqueue(new Change[]{change(2), change(2)});
+        writer.flush();
+        try {
+            writer.enqueue(new Change[]{change(2)});
+            fail("enqueue should report the lost changes");
+        } catch (PersistenceException e) {
+            // expected
+        }
+        writer.flush();
+        assertEquals(0, handler.stored.size());
+    }
+    
+    @Test
+    public void testTransientFailureIsRetried()
+    throws Exception
+    {
+        handler.failuresLeft = 2;
+        Change a = change(1);
+        writer.enqueue(new Change[]{a});
+        writer.flush(1, 1);
+        
+        assertEquals(1, handler.stored.size());
+        assertArrayEquals(new Change[]{a}, handler.stored.get(0));
+        assertEquals(0L, writer.getNumWriteErrors());
+    }
+    
+    @Test
+    public void testFlushDoesNotWaitForOtherUsers()
+    throws Exception
+    {
+        handler.release = new CountDownLatch(1);
+        writer.enqueue(new Change[]{change(1)});
+        handler.firstWriteStarted.await();
+        writer.enqueue(new Change[]{change(2)});
+        
+        // User 3 has nothing queued, so this returns while the writer is blocked
+        writer.flush(3, 1);
+        assertEquals(0, handler.stored.size());
+        
+        handler.release.countDown();
+        writer.flush(2, 1);
+        assertEquals(2, handler.stored.size());
+    }
+    
+    @Test
+    public void testShutdownWritesQueuedChanges()
+    throws Exception
+    {
+        handler.release = new CountDownLatch(1);
+        writer.enqueue(new Change[]{change(1)});
+        handler.firstWriteStarted.await();
+        writer.enqueue(new Change[]{change(2)});
+        handler.release.countDown();
+        writer.shutdown();
+        assertEquals(2, handler.stored.size());
+        
+        // After shutdown, changes are stored synchronously
+        writer.enqueue(new Change[]{change(3)});
+        assertEquals(3, handler.stored.size());
+    }
+}
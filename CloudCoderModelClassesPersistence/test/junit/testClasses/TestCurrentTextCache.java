@@ -0,0 +1,138 @@
+package testClasses;
+
+import static org.junit.Assert.*;
+
+import org.cloudcoder.app.server.persist.CurrentTextCache;
+import org.cloudcoder.app.shared.model.ApplyChangeToTextDocument;
+import org.cloudcoder.app.shared.model.Change;
+import org.cloudcoder.app.shared.model.ChangeType;
+import org.cloudcoder.app.shared.model.TextDocument;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TestCurrentTextCache
+{
+    private static final int USER = 1;
+    private static final int PROBLEM = 2;
+    
+    private CurrentTextCache cache;
+    
+    @Before
+    public void setUp() {
+        cache = new CurrentTextCache(10, 3, 60L*60*1000);
+    }
+    
+    private static Change insert(int row, int col, String text) {
+        return new Change(ChangeType.INSERT_TEXT, row, col, row, col + text.length(), 1000L, USER, PROBLEM, text);
+    }
+    
+    private static String replay(Change[] changeList) {
+        TextDocument doc = new TextDocument();
+        ApplyChangeToTextDocument applicator = new ApplyChangeToTextDocument();
+        for (Change change : changeList) {
+            applicator.apply(change, doc);
+        }
+        return doc.getText();
+    }
+    
+    @Test
+    public void testUncachedChangesPassThrough()
+    throws Exception
+    {
+        Change[] changeList = new Change[]{ insert(0, 0, "a"), insert(0, 1, "b"), insert(0, 2, "c"), insert(0, 3, "d") };
+        assertSame(changeList, cache.addChanges(changeList));
+        assertNull(cache.getText(USER, PROBLEM));
+    }
+    
+    @Test
+    public void testCheckpointAfterDeltas()
+    throws Exception
+    {
+        assertTrue(cache.put(USER, PROBLEM, "", 0, cache.startLoad(USER, PROBLEM)));
+        Change[] changeList = new Change[]{ insert(0, 0, "int x"), insert(0, 5, ";\n"), insert(1, 0, "y"), insert(1, 1, "z") };
+        Change[] result = cache.addChanges(changeList);
+        
+        assertEquals(5, result.length);
+        assertEquals(ChangeType.FULL_TEXT, result[3].getType());
+        assertEquals("int x;\ny", result[3].getText());
+        assertSame(changeList[3], result[4]);
+        assertEquals("int x;\nyz", cache.getText(USER, PROBLEM));
+        assertEquals(1L, cache.getNumCheckpoints());
+        
+        // Replaying with the checkpoint yields the same text
+        assertEquals(replay(changeList), replay(result));
+    }
+    
+    @Test
+    public void testFullTextChangeCreatesEntry()
+    throws Exception
+    {
+        Change fullText = new Change(ChangeType.FULL_TEXT, 0, 0, 0, 0, 1000L, USER, PROBLEM, "abc\n\n");
+        cache.addChanges(new Change[]{ fullText });
+        cache.addChanges(new Change[]{ insert(2, 0, "d") });
+        assertEquals("abc\n\nd", cache.getText(USER, PROBLEM));
+    }
+    
+    @Test
+    public void testLoadRacingChangeIsNotCached()
+    throws Exception
+    {
+        // A change is logged while the text is being read from the database
+        long version = cache.startLoad(USER, PROBLEM);
+        Change[] changeList = cache.addChanges(new Change[]{ insert(0, 3, "d") });
+        cache.changesQueued(changeList);
+        
+        // The text read may not include the change, so it can't be cached
+        assertFalse(cache.put(USER, PROBLEM, "abc", 0, version));
+        assertNull(cache.getText(USER, PROBLEM));
+        
+        // A later load sees the change
+        assertTrue(cache.put(USER, PROBLEM, "abcd", 1, cache.startLoad(USER, PROBLEM)));
+        assertEquals("abcd", cache.getText(USER, PROBLEM));
+    }
+    
+    @Test
+    public void testLoadDuringChangeInFlightIsNotCached()
+    throws Exception
+    {
+        // A change is applied, but not yet queued, when the load starts:
+        // flushing the writer won't wait for it
+        Change[] changeList = cache.addChanges(new Change[]{ insert(0, 3, "d") });
+        long version = cache.startLoad(USER, PROBLEM);
+        assertFalse(cache.put(USER, PROBLEM, "abc", 0, version));
+        cache.changesQueued(changeList);
+        assertNull(cache.getText(USER, PROBLEM));
+        
+        // Changes for other problems don't interfere
+        Change[] other = cache.addChanges(new Change[]{
+                new Change(ChangeType.INSERT_TEXT, 0, 0, 0, 1, 1000L, USER, PROBLEM + 1, "x") });
+        assertTrue(cache.put(USER, PROBLEM, "abcd", 1, cache.startLoad(USER, PROBLEM)));
+        cache.changesQueued(other);
+        assertEquals("abcd", cache.getText(USER, PROBLEM));
+    }
+    
+    @Test
+    public void testInvalidate()
+    throws Exception
+    {
+        long version = cache.startLoad(USER, PROBLEM);
+        cache.invalidate(USER, PROBLEM);
+        assertFalse(cache.put(USER, PROBLEM, "abc", 0, version));
+        
+        assertTrue(cache.put(USER, PROBLEM, "abc", 0, cache.startLoad(USER, PROBLEM)));
+        cache.invalidate(USER, PROBLEM);
+        assertNull(cache.getText(USER, PROBLEM));
+    }
+    
+    @Test
+    public void testSetTextPreservesText()
+    throws Exception
+    {
+        String[] texts = { "", "a", "a\n", "a\nb", "a\n\n\n", "\n" };
+        for (String text : texts) {
+            TextDocument doc = new TextDocument();
+            doc.setText(text);
+            assertEquals(text, doc.getText());
+        }
+    }
+}
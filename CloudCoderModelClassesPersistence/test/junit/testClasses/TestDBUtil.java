@@ -3,7 +3,18 @@ package testClasses;
 import static org.junit.Assert.*;
 
 import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
+import org.cloudcoder.app.server.persist.util.AbstractDatabaseRunnableNoAuthException;
 import org.cloudcoder.app.server.persist.util.DBUtil;
 import org.junit.Test;
 
@@ -24,4 +35,81 @@ public class TestDBUtil
         File f=DBUtil.findRecursively("FODOFODOFODOFODODOFJDFDFdfdDF");
         assertNull(f);
     }
+    
+    @Test
+    public void testPrepareStreamingStatement()
+    throws Exception
+    {
+        final List<String> calls=new ArrayList<String>();
+        final PreparedStatement stmt=(PreparedStatement) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        calls.add(method.getName() + Arrays.asList(args));
+                        return null;
+                    }
+                });
+        Connection conn=(Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        calls.add(method.getName() + Arrays.asList(args));
+                        return stmt;
+                    }
+                });
+        
+        assertSame(stmt, DBUtil.prepareStreamingStatement(conn, "select * from cc_events"));
+        assertEquals(Arrays.asList(
+                "prepareStatement[select * from cc_events, " + ResultSet.TYPE_FORWARD_ONLY + ", " + ResultSet.CONCUR_READ_ONLY + "]",
+                "setFetchSize[" + Integer.MIN_VALUE + "]"), calls);
+    }
+    
+    private static Connection createConnection()
+    {
+        final InvocationHandler stmtHandler=new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("hashCode")) {
+                    return System.identityHashCode(proxy);
+                } else if (method.getName().equals("equals")) {
+                    return proxy == args[0];
+                }
+                return null;
+            }
+        };
+        return (Connection) Proxy.newProxyInstance(
+                TestDBUtil.class.getClassLoader(), new Class<?>[]{Connection.class},
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        return Proxy.newProxyInstance(
+                                TestDBUtil.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, stmtHandler);
+                    }
+                });
+    }
+    
+    @Test
+    public void testStreamingQueryIsNotRetryable()
+    throws Exception
+    {
+        AbstractDatabaseRunnableNoAuthException<Boolean> txn=new AbstractDatabaseRunnableNoAuthException<Boolean>() {
+            @Override
+            public Boolean run(Connection conn) throws SQLException {
+                executeQuery(prepareStatement(conn, "select * from cc_users"));
+                PreparedStatement stmt=prepareStreamingStatement(conn, "select * from cc_events");
+                assertTrue(isRetryable());
+                executeQuery(stmt);
+                return isRetryable();
+            }
+            @Override
+            public String getDescription() {
+                return "streaming query";
+            }
+        };
+        
+        assertTrue(txn.isRetryable());
+        assertFalse(txn.run(createConnection()));
+    }
 }
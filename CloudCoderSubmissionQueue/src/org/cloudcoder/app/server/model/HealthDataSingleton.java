@@ -18,10 +18,14 @@
 
 package org.cloudcoder.app.server.model;
 
+import java.util.Arrays;
+import java.util.EnumMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
 import org.cloudcoder.app.server.submitsvc.oop.OutOfProcessSubmitService;
+import org.cloudcoder.app.server.submitsvc.oop.SubmissionCoalescer;
 import org.cloudcoder.app.shared.model.HealthData;
 
 /**
@@ -52,12 +56,28 @@ public class HealthDataSingleton {
 		long timestamp;
 	}
 	
+	private static class QueueWaitTimeSample {
+		public QueueWaitTimeSample(long waitTime, long timestamp) {
+			this.waitTime = waitTime;
+			this.timestamp = timestamp;
+		}
+		long waitTime;
+		long timestamp;
+	}
+	
 	private LinkedList<SubmissionQueueSizeSample> submissionQueueSizeSampleList;
 	private volatile int submissionQueueSizeCurrent;
 	private volatile int submissionQueueSizeMaxLastFiveMinutes;
+	private Object queueWaitTimeLock;
+	private EnumMap<SubmissionPriority, LinkedList<QueueWaitTimeSample>> queueWaitTimeSampleLists;
 	
 	private HealthDataSingleton() {
 		this.submissionQueueSizeSampleList = new LinkedList<SubmissionQueueSizeSample>();
+		this.queueWaitTimeLock = new Object();
+		this.queueWaitTimeSampleLists = new EnumMap<SubmissionPriority, LinkedList<QueueWaitTimeSample>>(SubmissionPriority.class);
+		for (SubmissionPriority priority : SubmissionPriority.values()) {
+			queueWaitTimeSampleLists.put(priority, new LinkedList<QueueWaitTimeSample>());
+		}
 	}
 	
 	/**
@@ -90,6 +110,64 @@ public class HealthDataSingleton {
 		this.submissionQueueSizeMaxLastFiveMinutes = max;
 	}
 	
+	/**
+	 * Record the time a submission waited in the submission queue
+	 * before being sent to a Builder.  Samples are kept for 5 minutes.
+	 * This method may be called from any thread.
+	 * 
+	 * @param priority  the submission's {@link SubmissionPriority}
+	 * @param waitTime  the time the submission waited, in milliseconds
+	 */
+	public void recordQueueWaitTime(SubmissionPriority priority, long waitTime) {
+		long now = System.currentTimeMillis();
+		synchronized (queueWaitTimeLock) {
+			LinkedList<QueueWaitTimeSample> sampleList = queueWaitTimeSampleLists.get(priority);
+			sampleList.add(new QueueWaitTimeSample(waitTime, now));
+			purgeQueueWaitTimeSamples(sampleList, now);
+		}
+	}
+	
+	// Must be called with queueWaitTimeLock held.
+	private static void purgeQueueWaitTimeSamples(LinkedList<QueueWaitTimeSample> sampleList, long now) {
+		// Samples are in chronological order
+		while (!sampleList.isEmpty() && now - sampleList.getFirst().timestamp > 5L*60*1000) {
+			sampleList.removeFirst();
+		}
+	}
+	
+	/**
+	 * Get the average and 99th percentile queue wait times, in milliseconds,
+	 * for submissions in given priority class in the last 5 minutes.
+	 * 
+	 * @param priority the {@link SubmissionPriority}
+	 * @return array containing the average and 99th percentile wait times
+	 *         (both 0 if there were no submissions)
+	 */
+	public int[] getQueueWaitTimes(SubmissionPriority priority) {
+		long[] waitTimes;
+		synchronized (queueWaitTimeLock) {
+			LinkedList<QueueWaitTimeSample> sampleList = queueWaitTimeSampleLists.get(priority);
+			purgeQueueWaitTimeSamples(sampleList, System.currentTimeMillis());
+			waitTimes = new long[sampleList.size()];
+			int count = 0;
+			for (QueueWaitTimeSample sample : sampleList) {
+				waitTimes[count++] = sample.waitTime;
+			}
+		}
+		
+		if (waitTimes.length == 0) {
+			return new int[]{ 0, 0 };
+		}
+		
+		long total = 0;
+		for (long waitTime : waitTimes) {
+			total += waitTime;
+		}
+		Arrays.sort(waitTimes);
+		int p99Index = (int) Math.ceil(waitTimes.length * 0.99) - 1;
+		return new int[]{ (int) (total / waitTimes.length), (int) waitTimes[p99Index] };
+	}
+	
 	/**
 	 * Get the current submission queue size.
 	 * 
@@ -118,6 +196,27 @@ public class HealthDataSingleton {
 		healthData.setSubmissionQueueSizeCurrent(submissionQueueSizeCurrent);
 		healthData.setSubmissionQueueSizeMaxLastFiveMinutes(submissionQueueSizeMaxLastFiveMinutes);
 		healthData.setNumConnectedBuilderThreads(OutOfProcessSubmitService.getInstance().getNumBuilderThreads());
+		
+		SubmissionCoalescer coalescer = OutOfProcessSubmitService.getInstance().getSubmissionCoalescer();
+		if (coalescer != null) {
+			healthData.setSubmissionsCoalesced(coalescer.getNumInFlightHits());
+			healthData.setSubmissionResultCacheHits(coalescer.getNumResultHits());
+			healthData.setSubmissionResultCacheMisses(coalescer.getNumMisses());
+		}
+		
+		int[] quiz = getQueueWaitTimes(SubmissionPriority.QUIZ);
+		healthData.setQueueWaitAvgQuiz(quiz[0]);
+		healthData.setQueueWaitP99Quiz(quiz[1]);
+		int[] submit = getQueueWaitTimes(SubmissionPriority.SUBMIT);
+		healthData.setQueueWaitAvgSubmit(submit[0]);
+		healthData.setQueueWaitP99Submit(submit[1]);
+		int[] run = getQueueWaitTimes(SubmissionPriority.RUN);
+		healthData.setQueueWaitAvgRun(run[0]);
+		healthData.setQueueWaitP99Run(run[1]);
+		int[] batch = getQueueWaitTimes(SubmissionPriority.BATCH);
+		healthData.setQueueWaitAvgBatch(batch[0]);
+		healthData.setQueueWaitP99Batch(batch[1]);
+		
 		return healthData;
 	}
 }
@@ -46,4 +46,15 @@ public interface IFutureSubmissionResult {
 	 * @throws InterruptedException 
 	 */
 	public SubmissionResult waitFor(long timeoutMs) throws SubmissionException, InterruptedException;
+	
+	/**
+	 * Register a listener to be notified when compilation/testing completes.
+	 * The listener is called exactly once: immediately, in the calling thread,
+	 * if compilation/testing has already completed, and otherwise when it
+	 * completes.  This allows callers to wait for the result without
+	 * blocking a thread.
+	 * 
+	 * @param listener the {@link ISubmissionCompletionListener}
+	 */
+	public void addCompletionListener(ISubmissionCompletionListener listener);
 }
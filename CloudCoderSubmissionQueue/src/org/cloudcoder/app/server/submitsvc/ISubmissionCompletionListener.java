@@ -0,0 +1,37 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2012, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2012, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc;
+
+/**
+ * Listener to be notified when an {@link IFutureSubmissionResult}
+ * completes, either successfully or with an error.
+ * 
+ * @author David Hovemeyer
+ */
+public interface ISubmissionCompletionListener {
+	/**
+	 * Called when compilation/testing of a submission has completed.
+	 * This may be called from a thread belonging to the {@link ISubmitService},
+	 * so it should return promptly and must not block.
+	 * 
+	 * @param future the completed {@link IFutureSubmissionResult}: its
+	 *               {@link IFutureSubmissionResult#waitFor(long)} method will
+	 *               return (or throw) immediately
+	 */
+	public void onSubmissionComplete(IFutureSubmissionResult future);
+}
@@ -50,4 +50,18 @@ public interface ISubmitService {
 	 *         a {@link SubmissionResult}
 	 */
 	public IFutureSubmissionResult submitAsync(Problem problem, List<TestCase> testCaseList, String programText) throws SubmissionException;
+	
+	/**
+	 * Submit a problem and program text, specifying the submission's
+	 * {@link SubmissionOrigin}, which determines how it is scheduled
+	 * relative to other submissions waiting to be tested.
+	 * 
+	 * @param problem      a Problem
+	 * @param testCaseList the test cases
+	 * @param programText  program text
+	 * @param origin       the {@link SubmissionOrigin}
+	 * @return an {@link IFutureSubmissionResult}, which will eventually yield
+	 *         a {@link SubmissionResult}
+	 */
+	public IFutureSubmissionResult submitAsync(Problem problem, List<TestCase> testCaseList, String programText, SubmissionOrigin origin) throws SubmissionException;
 }
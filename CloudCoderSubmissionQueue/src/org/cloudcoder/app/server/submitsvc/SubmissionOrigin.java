@@ -0,0 +1,83 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc;
+
+import org.cloudcoder.app.shared.model.Problem;
+
+/**
+ * Where a submission came from: its {@link SubmissionPriority}, and
+ * the user and course it belongs to.  This information is used to
+ * decide the order in which waiting submissions are tested.
+ * 
+ * @author David Hovemeyer
+ */
+public class SubmissionOrigin {
+	/** User or course id used when the user or course is not known. */
+	public static final int UNKNOWN_ID = -1;
+	
+	private final SubmissionPriority priority;
+	private final int userId;
+	private final int courseId;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param priority  the {@link SubmissionPriority}
+	 * @param userId    the id of the user making the submission, or {@link #UNKNOWN_ID}
+	 * @param courseId  the id of the course, or {@link #UNKNOWN_ID}
+	 */
+	public SubmissionOrigin(SubmissionPriority priority, int userId, int courseId) {
+		this.priority = priority;
+		this.userId = userId;
+		this.courseId = courseId;
+	}
+	
+	/**
+	 * Create a SubmissionOrigin for a submission of given {@link Problem}.
+	 * 
+	 * @param priority  the {@link SubmissionPriority}
+	 * @param userId    the id of the user making the submission, or {@link #UNKNOWN_ID}
+	 * @param problem   the {@link Problem}
+	 * @return the SubmissionOrigin
+	 */
+	public static SubmissionOrigin forProblem(SubmissionPriority priority, int userId, Problem problem) {
+		Integer courseId = problem.getCourseId();
+		return new SubmissionOrigin(priority, userId, courseId != null ? courseId : UNKNOWN_ID);
+	}
+	
+	/**
+	 * @return the {@link SubmissionPriority}
+	 */
+	public SubmissionPriority getPriority() {
+		return priority;
+	}
+	
+	/**
+	 * @return the id of the user making the submission, or {@link #UNKNOWN_ID}
+	 */
+	public int getUserId() {
+		return userId;
+	}
+	
+	/**
+	 * @return the id of the course, or {@link #UNKNOWN_ID}
+	 */
+	public int getCourseId() {
+		return courseId;
+	}
+}
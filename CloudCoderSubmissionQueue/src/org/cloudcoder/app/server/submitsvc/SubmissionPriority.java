@@ -0,0 +1,36 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc;
+
+/**
+ * Priority classes of submissions.  Members are listed from highest
+ * to lowest priority: when Builders are busy, a waiting submission
+ * is always tested before waiting submissions of a lower priority class.
+ * 
+ * @author David Hovemeyer
+ */
+public enum SubmissionPriority {
+	/** Submission made while the student is taking a timed quiz. */
+	QUIZ,
+	/** Ordinary submission of a problem. */
+	SUBMIT,
+	/** Playground "Run" request. */
+	RUN,
+	/** Batch testing, e.g., retesting of previous submissions. */
+	BATCH,
+}
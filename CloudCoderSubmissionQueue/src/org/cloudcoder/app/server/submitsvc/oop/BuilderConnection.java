@@ -0,0 +1,257 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Connection to a remote Builder process.
+ * A Builder may have several submissions in flight on a single
+ * connection (up to the capacity it announces in the handshake):
+ * each one is identified by a correlation id, and results may
+ * arrive in any order.
+ * The {@link SubmissionDispatcher} decides when the connection is used
+ * to send a submission or a keepalive signal, and tracks
+ * whether the connection is idle or busy.
+ *
+ * @author David Hovemeyer
+ */
+public class BuilderConnection {
+	private static Logger logger = LoggerFactory.getLogger(BuilderConnection.class);
+
+	/**
+	 * Maximum time to wait for the Builder to complete the handshake.
+	 */
+	private static final int HANDSHAKE_TIMEOUT_MILLIS = 30000;
+
+	/**
+	 * States of a BuilderConnection.
+	 * State transitions are made (and must only be made) by
+	 * the {@link SubmissionDispatcher}, while holding its lock.
+	 */
+	public enum State {
+		/** Connected, no submissions in flight. */
+		IDLE,
+		/** At least one submission is in flight. */
+		BUSY,
+		/** The connection has been closed. */
+		CLOSED,
+	}
+
+	private Socket clientSocket;
+	private MessageChannel channel;
+	private PayloadCodec codec;
+	private int capacity;
+	private State state;
+	private Map<Integer, OOPBuildServiceSubmission> inFlight;
+	private volatile long lastSendMillis;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param clientSocket socket connected to the remote Builder process
+	 * @param codec        the {@link PayloadCodec} used to encode submissions
+	 * @throws IOException
+	 */
+	public BuilderConnection(Socket clientSocket, PayloadCodec codec) throws IOException {
+		this.clientSocket = clientSocket;
+		this.codec = codec;
+		this.channel = new MessageChannel(clientSocket.getInputStream(), clientSocket.getOutputStream());
+		this.state = State.BUSY;
+		this.inFlight = new HashMap<Integer, OOPBuildServiceSubmission>();
+		this.lastSendMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * Perform the protocol handshake with the Builder.
+	 *
+	 * @throws IOException if the handshake fails
+	 */
+	public void handshake() throws IOException {
+		clientSocket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+		this.capacity = channel.receiveHandshake();
+		clientSocket.setSoTimeout(0);
+		logger.info("Builder at {} accepts {} in-flight submission(s)", clientSocket.getInetAddress(), capacity);
+	}
+
+	/**
+	 * @return maximum number of in-flight submissions the Builder accepts
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the current {@link State}
+	 */
+	State getState() {
+		return state;
+	}
+
+	/**
+	 * Set the current {@link State}.
+	 *
+	 * @param state the {@link State} to set
+	 */
+	void setState(State state) {
+		this.state = state;
+	}
+
+	/**
+	 * @return number of submissions currently in flight
+	 */
+	int getNumInFlight() {
+		return inFlight.size();
+	}
+
+	/**
+	 * @return true if another submission may be sent to the Builder
+	 */
+	boolean hasFreeSlot() {
+		return state != State.CLOSED && inFlight.size() < capacity;
+	}
+
+	/**
+	 * Record that a submission is in flight.
+	 *
+	 * @param correlationId the submission's correlation id
+	 * @param submission    the submission
+	 */
+	void addInFlight(int correlationId, OOPBuildServiceSubmission submission) {
+		inFlight.put(correlationId, submission);
+	}
+
+	/**
+	 * Record that a submission is no longer in flight.
+	 *
+	 * @param correlationId the submission's correlation id
+	 * @return the submission, or null if there is no such submission in flight
+	 */
+	OOPBuildServiceSubmission removeInFlight(int correlationId) {
+		return inFlight.remove(correlationId);
+	}
+
+	/**
+	 * Get an in-flight submission.
+	 *
+	 * @param correlationId the submission's correlation id
+	 * @return the submission, or null if there is no such submission in flight
+	 */
+	OOPBuildServiceSubmission getInFlight(int correlationId) {
+		return inFlight.get(correlationId);
+	}
+
+	/**
+	 * Remove all in-flight submissions.
+	 *
+	 * @return the submissions that were in flight
+	 */
+	List<OOPBuildServiceSubmission> removeAllInFlight() {
+		List<OOPBuildServiceSubmission> result = new ArrayList<OOPBuildServiceSubmission>(inFlight.values());
+		inFlight.clear();
+		return result;
+	}
+
+	/**
+	 * @return timestamp of the most recent message sent to the Builder
+	 */
+	long getLastSendMillis() {
+		return lastSendMillis;
+	}
+
+	/**
+	 * Send a keepalive signal to the Builder to avoid the TCP connection
+	 * timing out.  The Builder will ignore this.
+	 *
+	 * @throws IOException
+	 */
+	public void sendKeepalive() throws IOException {
+		send(new Message(MessageType.KEEPALIVE, 0, null));
+	}
+
+	/**
+	 * Send a submission to the Builder for testing.
+	 *
+	 * @param correlationId the correlation id identifying the submission
+	 * @param submission    the submission to test
+	 * @throws IOException
+	 */
+	public void sendSubmission(int correlationId, OOPBuildServiceSubmission submission) throws IOException {
+		// Only the hash of the problem data is sent: the Builder will
+		// ask for the data itself if it doesn't have it cached
+		Integer problemId = submission.getProblem().getProblemId();
+		SubmissionRequest request = new SubmissionRequest(
+				problemId != null ? problemId : -1, getEncodedProblem(submission).getHash(), submission.getProgramText());
+		send(new Message(MessageType.SUBMISSION, correlationId, codec.encodeSubmissionRequest(request)));
+	}
+
+	/**
+	 * Send the problem data for a submission, in response to
+	 * a NEED_PROBLEM message from the Builder.
+	 *
+	 * @param correlationId the correlation id identifying the submission
+	 * @param submission    the submission
+	 * @throws IOException
+	 */
+	public void sendProblemData(int correlationId, OOPBuildServiceSubmission submission) throws IOException {
+		send(new Message(MessageType.PROBLEM_DATA, correlationId, getEncodedProblem(submission).getData()));
+	}
+	
+	private EncodedProblem getEncodedProblem(OOPBuildServiceSubmission submission) throws IOException {
+		EncodedProblem encodedProblem = submission.getEncodedProblem();
+		if (encodedProblem == null) {
+			encodedProblem = EncodedProblem.encode(codec, submission.getProblem(), submission.getTestCaseList());
+		}
+		return encodedProblem;
+	}
+
+	private void send(Message msg) throws IOException {
+		channel.send(msg);
+		lastSendMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * Wait for the next message from the Builder.
+	 *
+	 * @return the next {@link Message}
+	 * @throws IOException
+	 */
+	public Message receive() throws IOException {
+		return channel.receive();
+	}
+
+	/**
+	 * End the connection with the Builder.
+	 */
+	public void close() {
+		channel.close();
+		try {
+			clientSocket.close();
+		} catch (IOException e) {
+			logger.warn("Exception closing client socket", e);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+/**
+ * Constants for the framed protocol used between
+ * the webapp and Builder processes.
+ * 
+ * <p>When a Builder connects, it sends a handshake consisting of
+ * {@link #MAGIC}, its protocol version, and the maximum number of
+ * submissions it is willing to have in flight on the connection.
+ * The webapp replies with {@link #MAGIC} and the protocol version
+ * it accepted.  After the handshake, each side sends
+ * {@link Message}s framed as
+ * <pre>
+ *     int  length (of everything that follows)
+ *     byte message type
+ *     int  correlation id
+ *     ...  payload
+ * </pre>
+ * Each SUBMISSION message carries a correlation id chosen by the
+ * webapp, and the Builder's RESULT message echoes it back,
+ * so results may be returned in any order.
+ * Payloads are encoded by a {@link PayloadCodec}.
+ * 
+ * <p>A SUBMISSION message identifies the problem by its id and the hash
+ * of its encoded data (see {@link PayloadCodec#computeHash(byte[])}).
+ * If the Builder does not have data matching the hash in its cache, it
+ * replies with a NEED_PROBLEM message (with the submission's correlation
+ * id), and the webapp sends the Problem and TestCases in a
+ * PROBLEM_DATA message with the same correlation id.
+ * 
+ * @author David Hovemeyer
+ */
+public class BuilderProtocol {
+	/** Magic number identifying the framed protocol ("CCBP"). */
+	public static final int MAGIC = 0x43434250;
+	
+	/**
+	 * Current protocol version.  (Version 1 was the original
+	 * lockstep protocol using a single object stream, version 2
+	 * used Java serialization for message payloads, and version 3
+	 * sent the problem data with every submission.)
+	 */
+	public static final int VERSION = 4;
+	
+	/** Maximum allowed frame length: protects against corrupt streams. */
+	public static final int MAX_FRAME_LENGTH = 64*1024*1024;
+	
+	/** Upper limit on the number of in-flight submissions a Builder may request. */
+	public static final int MAX_IN_FLIGHT = 256;
+}
@@ -0,0 +1,77 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import java.io.IOException;
+
+import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
+import org.cloudcoder.app.server.submitsvc.ISubmissionCompletionListener;
+import org.cloudcoder.app.shared.model.SubmissionException;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+
+/**
+ * {@link IFutureSubmissionResult} for one of several identical submissions
+ * which share a single {@link OOPBuildServiceSubmission} (see
+ * {@link SubmissionCoalescer}).  Each caller receives its own copy
+ * of the {@link SubmissionResult}, since callers may modify the
+ * result (e.g., when storing it in the database).
+ * 
+ * @author David Hovemeyer
+ */
+public class CoalescedSubmissionResult implements IFutureSubmissionResult {
+	private final OOPBuildServiceSubmission shared;
+	private final PayloadCodec codec;
+	private SubmissionResult copy;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param shared the shared {@link OOPBuildServiceSubmission}
+	 * @param codec  the {@link PayloadCodec} used to copy the result
+	 */
+	public CoalescedSubmissionResult(OOPBuildServiceSubmission shared, PayloadCodec codec) {
+		this.shared = shared;
+		this.codec = codec;
+	}
+	
+	@Override
+	public synchronized SubmissionResult waitFor(long timeoutMs) throws SubmissionException, InterruptedException {
+		if (copy == null) {
+			SubmissionResult result = shared.waitFor(timeoutMs);
+			if (result == null) {
+				return null;
+			}
+			try {
+				copy = codec.decodeSubmissionResult(codec.encodeSubmissionResult(result));
+			} catch (IOException e) {
+				throw new SubmissionException("Could not copy submission result", e);
+			}
+		}
+		return copy;
+	}
+	
+	@Override
+	public void addCompletionListener(final ISubmissionCompletionListener listener) {
+		shared.addCompletionListener(new ISubmissionCompletionListener() {
+			@Override
+			public void onSubmissionComplete(IFutureSubmissionResult future) {
+				listener.onSubmissionComplete(CoalescedSubmissionResult.this);
+			}
+		});
+	}
+}
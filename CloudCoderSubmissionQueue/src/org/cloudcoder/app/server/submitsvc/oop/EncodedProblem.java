@@ -0,0 +1,77 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.TestCase;
+
+/**
+ * A problem and its test cases encoded as the payload of a
+ * PROBLEM_DATA message, together with the hash of the payload
+ * (see {@link PayloadCodec#computeHash(byte[])}).
+ * Instances may be shared by any number of submissions, so the
+ * encoded data must not be modified.
+ * 
+ * @author David Hovemeyer
+ */
+public class EncodedProblem {
+	private final byte[] data;
+	private final String hash;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param data the encoded problem data
+	 * @param hash the hash of the encoded problem data
+	 */
+	public EncodedProblem(byte[] data, String hash) {
+		this.data = data;
+		this.hash = hash;
+	}
+	
+	/**
+	 * Encode a problem and its test cases.
+	 * 
+	 * @param codec         the {@link PayloadCodec}
+	 * @param problem       the {@link Problem}
+	 * @param testCaseList  the list of {@link TestCase}s
+	 * @return the {@link EncodedProblem}
+	 * @throws IOException
+	 */
+	public static EncodedProblem encode(PayloadCodec codec, Problem problem, List<TestCase> testCaseList) throws IOException {
+		byte[] data = codec.encodeProblemData(problem, testCaseList);
+		return new EncodedProblem(data, PayloadCodec.computeHash(data));
+	}
+	
+	/**
+	 * @return the encoded problem data
+	 */
+	public byte[] getData() {
+		return data;
+	}
+	
+	/**
+	 * @return the hash of the encoded problem data
+	 */
+	public String getHash() {
+		return hash;
+	}
+}
@@ -0,0 +1,140 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cloudcoder.app.shared.model.ModelObjectField;
+import org.cloudcoder.app.shared.model.ModelObjectSchema;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.TestCase;
+
+/**
+ * Cache of the most recently seen version of each problem, encoded
+ * as an {@link EncodedProblem}.  This is the webapp's counterpart of
+ * the Builder's problem cache: the webapp identifies problem data
+ * to the Builder by its hash, and the cache ensures that the data is
+ * encoded and hashed once per version of a problem, rather than
+ * once per submission (and again each time it is sent to a Builder).
+ * 
+ * <p>There is no version number for a problem and its test cases
+ * (they are loaded from the database for each submission, and
+ * may be edited at any time), so the cached version is identified
+ * by the values of all of the fields that are encoded.  Comparing
+ * the field values is much cheaper than encoding (and possibly
+ * compressing) and hashing the problem data.
+ * The least recently used problems are evicted when the cache is full.
+ * 
+ * @author David Hovemeyer
+ */
+public class EncodedProblemCache {
+	/**
+	 * Default maximum number of problems to cache.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 100;
+	
+	private static class Entry {
+		final Object[][] fieldValues;
+		final EncodedProblem encoded;
+		
+		Entry(Object[][] fieldValues, EncodedProblem encoded) {
+			this.fieldValues = fieldValues;
+			this.encoded = encoded;
+		}
+	}
+	
+	private final PayloadCodec codec;
+	private final Map<Integer, Entry> map;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param codec   the {@link PayloadCodec} used to encode problem data
+	 * @param maxSize maximum number of problems to cache
+	 */
+	public EncodedProblemCache(PayloadCodec codec, final int maxSize) {
+		this.codec = codec;
+		this.map = new LinkedHashMap<Integer, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, EncodedProblemCache.Entry> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+	
+	/**
+	 * Get the {@link EncodedProblem} for given problem and test cases,
+	 * encoding them only if they differ from the cached version
+	 * of the problem.
+	 * 
+	 * @param problem       the {@link Problem}
+	 * @param testCaseList  the list of {@link TestCase}s
+	 * @return the {@link EncodedProblem}
+	 * @throws IOException
+	 */
+	public EncodedProblem get(Problem problem, List<TestCase> testCaseList) throws IOException {
+		Integer problemId = problem.getProblemId();
+		if (problemId == null) {
+			// Not a persistent problem, so there is no version to cache
+			return EncodedProblem.encode(codec, problem, testCaseList);
+		}
+		
+		Object[][] fieldValues = getFieldValues(problem, testCaseList);
+		synchronized (this) {
+			Entry entry = map.get(problemId);
+			if (entry != null && Arrays.deepEquals(entry.fieldValues, fieldValues)) {
+				return entry.encoded;
+			}
+		}
+		
+		// Encode outside the lock: submissions for other problems
+		// shouldn't have to wait
+		EncodedProblem encoded = EncodedProblem.encode(codec, problem, testCaseList);
+		synchronized (this) {
+			map.put(problemId, new Entry(fieldValues, encoded));
+		}
+		return encoded;
+	}
+	
+	private static Object[][] getFieldValues(Problem problem, List<TestCase> testCaseList) {
+		Object[][] result = new Object[1 + testCaseList.size()][];
+		result[0] = getFieldValues(Problem.SCHEMA, problem);
+		int i = 1;
+		for (TestCase testCase : testCaseList) {
+			result[i++] = getFieldValues(TestCase.SCHEMA, testCase);
+		}
+		return result;
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static<E> Object[] getFieldValues(ModelObjectSchema<? super E> schema, E obj) {
+		List<? extends ModelObjectField<?, ?>> fieldList = schema.getFieldList();
+		Object[] result = new Object[fieldList.size()];
+		int i = 0;
+		for (ModelObjectField<?, ?> field : fieldList) {
+			result[i++] = ((ModelObjectField<Object, Object>) field).get(obj);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,189 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import org.cloudcoder.app.server.submitsvc.SubmissionOrigin;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
+
+/**
+ * {@link ISubmissionScheduler} implementing priority classes,
+ * per-user fair share, and per-course quotas:
+ * <ul>
+ * <li>Submissions in a higher {@link SubmissionPriority} class are always
+ *     tested before submissions in a lower class.</li>
+ * <li>Within a class, each user has their own queue, and the users
+ *     with waiting submissions take turns (round robin), so a user
+ *     making many submissions only delays their own submissions.</li>
+ * <li>If a course quota is set, a course with that many submissions
+ *     in flight only gets a Builder slot when no other course in the
+ *     same class has a waiting submission.  (So Builders are never
+ *     left idle because of a quota.)</li>
+ * </ul>
+ * 
+ * @author David Hovemeyer
+ */
+public class FairShareSubmissionScheduler implements ISubmissionScheduler {
+	/**
+	 * Queue of waiting submissions belonging to a single user.
+	 */
+	private static class UserQueue {
+		final int userId;
+		final LinkedList<OOPBuildServiceSubmission> submissions;
+		
+		UserQueue(int userId) {
+			this.userId = userId;
+			this.submissions = new LinkedList<OOPBuildServiceSubmission>();
+		}
+	}
+	
+	/**
+	 * Waiting submissions of a single priority class:
+	 * user queues, in round robin order.
+	 */
+	private static class PriorityClass {
+		final LinkedList<UserQueue> userQueues = new LinkedList<UserQueue>();
+		final Map<Integer, UserQueue> userQueueMap = new HashMap<Integer, UserQueue>();
+	}
+	
+	private final int courseQuota;
+	private EnumMap<SubmissionPriority, PriorityClass> classes;
+	private Map<Integer, Integer> numInFlightByCourse;
+	private int size;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param courseQuota maximum number of in-flight submissions per course
+	 *                    before the course's submissions are deferred;
+	 *                    0 for no quota
+	 */
+	public FairShareSubmissionScheduler(int courseQuota) {
+		this.courseQuota = courseQuota;
+		this.classes = new EnumMap<SubmissionPriority, PriorityClass>(SubmissionPriority.class);
+		for (SubmissionPriority priority : SubmissionPriority.values()) {
+			classes.put(priority, new PriorityClass());
+		}
+		this.numInFlightByCourse = new HashMap<Integer, Integer>();
+	}
+	
+	@Override
+	public void add(OOPBuildServiceSubmission submission) {
+		PriorityClass pc = classes.get(submission.getOrigin().getPriority());
+		UserQueue userQueue = pc.userQueueMap.get(submission.getOrigin().getUserId());
+		if (userQueue == null) {
+			userQueue = addUserQueue(pc, submission.getOrigin().getUserId());
+			pc.userQueues.addLast(userQueue);
+		}
+		userQueue.submissions.addLast(submission);
+		size++;
+	}
+	
+	@Override
+	public void requeue(OOPBuildServiceSubmission submission) {
+		// Put the submission at the front of its user's queue,
+		// and give the user the next turn
+		PriorityClass pc = classes.get(submission.getOrigin().getPriority());
+		UserQueue userQueue = pc.userQueueMap.get(submission.getOrigin().getUserId());
+		if (userQueue == null) {
+			userQueue = addUserQueue(pc, submission.getOrigin().getUserId());
+		} else {
+			pc.userQueues.remove(userQueue);
+		}
+		pc.userQueues.addFirst(userQueue);
+		userQueue.submissions.addFirst(submission);
+		size++;
+	}
+	
+	private UserQueue addUserQueue(PriorityClass pc, int userId) {
+		UserQueue userQueue = new UserQueue(userId);
+		pc.userQueueMap.put(userId, userQueue);
+		return userQueue;
+	}
+	
+	@Override
+	public OOPBuildServiceSubmission poll() {
+		for (PriorityClass pc : classes.values()) {
+			if (pc.userQueues.isEmpty()) {
+				continue;
+			}
+			UserQueue userQueue = (courseQuota > 0) ? findUserUnderQuota(pc) : null;
+			if (userQueue == null) {
+				userQueue = pc.userQueues.getFirst();
+			}
+			return takeFrom(pc, userQueue);
+		}
+		return null;
+	}
+	
+	private UserQueue findUserUnderQuota(PriorityClass pc) {
+		for (UserQueue userQueue : pc.userQueues) {
+			int courseId = userQueue.submissions.getFirst().getOrigin().getCourseId();
+			if (courseId == SubmissionOrigin.UNKNOWN_ID || getNumInFlight(courseId) < courseQuota) {
+				return userQueue;
+			}
+		}
+		return null;
+	}
+	
+	private OOPBuildServiceSubmission takeFrom(PriorityClass pc, UserQueue userQueue) {
+		OOPBuildServiceSubmission submission = userQueue.submissions.removeFirst();
+		size--;
+		
+		// The user's turn is over
+		pc.userQueues.remove(userQueue);
+		if (userQueue.submissions.isEmpty()) {
+			pc.userQueueMap.remove(userQueue.userId);
+		} else {
+			pc.userQueues.addLast(userQueue);
+		}
+		
+		return submission;
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public void onDispatched(OOPBuildServiceSubmission submission) {
+		int courseId = submission.getOrigin().getCourseId();
+		numInFlightByCourse.put(courseId, getNumInFlight(courseId) + 1);
+	}
+	
+	@Override
+	public void onFinished(OOPBuildServiceSubmission submission) {
+		int courseId = submission.getOrigin().getCourseId();
+		int numInFlight = getNumInFlight(courseId) - 1;
+		if (numInFlight <= 0) {
+			numInFlightByCourse.remove(courseId);
+		} else {
+			numInFlightByCourse.put(courseId, numInFlight);
+		}
+	}
+	
+	private int getNumInFlight(int courseId) {
+		Integer count = numInFlightByCourse.get(courseId);
+		return count != null ? count : 0;
+	}
+}
@@ -0,0 +1,65 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import java.util.LinkedList;
+
+/**
+ * {@link ISubmissionScheduler} which tests submissions in the order
+ * in which they were submitted, ignoring their origin.
+ * 
+ * @author David Hovemeyer
+ */
+public class FifoSubmissionScheduler implements ISubmissionScheduler {
+	private LinkedList<OOPBuildServiceSubmission> queue;
+	
+	/**
+	 * Constructor.
+	 */
+	public FifoSubmissionScheduler() {
+		this.queue = new LinkedList<OOPBuildServiceSubmission>();
+	}
+	
+	@Override
+	public void add(OOPBuildServiceSubmission submission) {
+		queue.addLast(submission);
+	}
+	
+	@Override
+	public void requeue(OOPBuildServiceSubmission submission) {
+		queue.addFirst(submission);
+	}
+	
+	@Override
+	public OOPBuildServiceSubmission poll() {
+		return queue.pollFirst();
+	}
+	
+	@Override
+	public int size() {
+		return queue.size();
+	}
+	
+	@Override
+	public void onDispatched(OOPBuildServiceSubmission submission) {
+	}
+	
+	@Override
+	public void onFinished(OOPBuildServiceSubmission submission) {
+	}
+}
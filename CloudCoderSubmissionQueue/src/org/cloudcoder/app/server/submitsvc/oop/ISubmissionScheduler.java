@@ -0,0 +1,71 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+/**
+ * Policy deciding the order in which submissions waiting for a
+ * Builder are tested.  The {@link SubmissionDispatcher} calls
+ * all methods while holding its lock, so implementations do not
+ * need to do their own synchronization.
+ * 
+ * @author David Hovemeyer
+ */
+public interface ISubmissionScheduler {
+	/**
+	 * Add a newly-submitted submission.
+	 * 
+	 * @param submission the submission
+	 */
+	public void add(OOPBuildServiceSubmission submission);
+	
+	/**
+	 * Add a submission whose testing failed (because the connection
+	 * to the Builder was lost) so that it is retried as soon as possible.
+	 * 
+	 * @param submission the submission
+	 */
+	public void requeue(OOPBuildServiceSubmission submission);
+	
+	/**
+	 * Remove and return the next submission to test.
+	 * 
+	 * @return the next submission, or null if there are no waiting submissions
+	 */
+	public OOPBuildServiceSubmission poll();
+	
+	/**
+	 * @return number of waiting submissions
+	 */
+	public int size();
+	
+	/**
+	 * Called when a submission is sent to a Builder.
+	 * 
+	 * @param submission the submission
+	 */
+	public void onDispatched(OOPBuildServiceSubmission submission);
+	
+	/**
+	 * Called when a submission sent to a Builder is no longer
+	 * in flight (because a result was received, or the connection
+	 * to the Builder was lost).
+	 * 
+	 * @param submission the submission
+	 */
+	public void onFinished(OOPBuildServiceSubmission submission);
+}
@@ -0,0 +1,67 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+/**
+ * A single frame of the builder protocol: a {@link MessageType},
+ * a correlation id identifying the submission the message refers to,
+ * and an encoded payload.
+ * 
+ * @author David Hovemeyer
+ */
+public class Message {
+	private static final byte[] EMPTY = new byte[0];
+	
+	private final MessageType type;
+	private final int correlationId;
+	private final byte[] payload;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param type          the {@link MessageType}
+	 * @param correlationId the correlation id
+	 * @param payload       the encoded payload (null for an empty payload)
+	 */
+	public Message(MessageType type, int correlationId, byte[] payload) {
+		this.type = type;
+		this.correlationId = correlationId;
+		this.payload = payload != null ? payload : EMPTY;
+	}
+	
+	/**
+	 * @return the {@link MessageType}
+	 */
+	public MessageType getType() {
+		return type;
+	}
+	
+	/**
+	 * @return the correlation id
+	 */
+	public int getCorrelationId() {
+		return correlationId;
+	}
+	
+	/**
+	 * @return the encoded payload
+	 */
+	public byte[] getPayload() {
+		return payload;
+	}
+}
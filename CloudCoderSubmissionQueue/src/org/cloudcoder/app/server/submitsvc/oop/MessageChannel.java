@@ -0,0 +1,151 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Sends and receives framed {@link Message}s over a connection
+ * between the webapp and a Builder.  Sending is synchronized, so
+ * multiple threads may send messages concurrently.  Only one thread
+ * should receive messages.
+ * 
+ * @author David Hovemeyer
+ */
+public class MessageChannel {
+	private DataInputStream in;
+	private DataOutputStream out;
+	private Object sendLock;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param in   the connection's InputStream
+	 * @param out  the connection's OutputStream
+	 */
+	public MessageChannel(InputStream in, OutputStream out) {
+		this.in = new DataInputStream(new BufferedInputStream(in));
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.sendLock = new Object();
+	}
+	
+	/**
+	 * Builder side of the handshake: announce the protocol version and the
+	 * number of submissions the Builder can have in flight, and wait for
+	 * the webapp to accept.
+	 * 
+	 * @param maxInFlight maximum number of in-flight submissions
+	 * @throws IOException if the webapp does not accept the protocol version
+	 */
+	public void sendHandshake(int maxInFlight) throws IOException {
+		synchronized (sendLock) {
+			out.writeInt(BuilderProtocol.MAGIC);
+			out.writeInt(BuilderProtocol.VERSION);
+			out.writeInt(maxInFlight);
+			out.flush();
+		}
+		int magic = in.readInt();
+		int version = in.readInt();
+		if (magic != BuilderProtocol.MAGIC || version != BuilderProtocol.VERSION) {
+			throw new IOException("Webapp did not accept builder protocol version " + BuilderProtocol.VERSION);
+		}
+	}
+	
+	/**
+	 * Webapp side of the handshake: read the Builder's announcement and
+	 * accept it if the protocol version matches.
+	 * 
+	 * @return the maximum number of in-flight submissions requested by the Builder
+	 * @throws IOException if the Builder does not speak a compatible protocol version
+	 */
+	public int receiveHandshake() throws IOException {
+		int magic = in.readInt();
+		if (magic != BuilderProtocol.MAGIC) {
+			throw new IOException("Builder is not using the framed builder protocol (old builder version?)");
+		}
+		int version = in.readInt();
+		if (version != BuilderProtocol.VERSION) {
+			throw new IOException("Builder uses unsupported protocol version " + version);
+		}
+		int maxInFlight = in.readInt();
+		if (maxInFlight < 1 || maxInFlight > BuilderProtocol.MAX_IN_FLIGHT) {
+			throw new IOException("Builder requested invalid number of in-flight submissions: " + maxInFlight);
+		}
+		synchronized (sendLock) {
+			out.writeInt(BuilderProtocol.MAGIC);
+			out.writeInt(BuilderProtocol.VERSION);
+			out.flush();
+		}
+		return maxInFlight;
+	}
+	
+	/**
+	 * Send a {@link Message}.
+	 * 
+	 * @param msg the {@link Message} to send
+	 * @throws IOException
+	 */
+	public void send(Message msg) throws IOException {
+		byte[] payload = msg.getPayload();
+		synchronized (sendLock) {
+			out.writeInt(1 + 4 + payload.length);
+			out.writeByte(msg.getType().getCode());
+			out.writeInt(msg.getCorrelationId());
+			out.write(payload);
+			out.flush();
+		}
+	}
+	
+	/**
+	 * Receive a {@link Message}.  Blocks until a message is available.
+	 * 
+	 * @return the {@link Message}
+	 * @throws IOException if the connection is closed or the frame is invalid
+	 */
+	public Message receive() throws IOException {
+		int length = in.readInt();
+		if (length < 5 || length > BuilderProtocol.MAX_FRAME_LENGTH) {
+			throw new IOException("Invalid frame length " + length);
+		}
+		int code = in.readUnsignedByte();
+		MessageType type = MessageType.fromCode(code);
+		if (type == null) {
+			throw new IOException("Unknown message type " + code);
+		}
+		int correlationId = in.readInt();
+		byte[] payload = new byte[length - 5];
+		in.readFully(payload);
+		return new Message(type, correlationId, payload);
+	}
+	
+	/**
+	 * Close the channel's streams.
+	 */
+	public void close() {
+		IOUtils.closeQuietly(in);
+		IOUtils.closeQuietly(out);
+	}
+}
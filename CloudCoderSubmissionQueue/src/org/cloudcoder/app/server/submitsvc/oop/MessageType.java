@@ -0,0 +1,65 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+/**
+ * Types of messages exchanged between the webapp and a Builder
+ * using the framed builder protocol (see {@link BuilderProtocol}).
+ * 
+ * @author David Hovemeyer
+ */
+public enum MessageType {
+	/** Webapp to Builder: keepalive signal, ignored by the Builder. */
+	KEEPALIVE(0),
+	/** Webapp to Builder: a submission (problem id and hash, and program text) to test. */
+	SUBMISSION(1),
+	/** Builder to webapp: the SubmissionResult for a submission. */
+	RESULT(2),
+	/** Builder to webapp: the problem data for a submission is not cached, please send it. */
+	NEED_PROBLEM(3),
+	/** Webapp to Builder: the Problem and TestCases for a submission. */
+	PROBLEM_DATA(4);
+	
+	private final int code;
+	
+	private MessageType(int code) {
+		this.code = code;
+	}
+	
+	/**
+	 * @return the code identifying this message type on the wire
+	 */
+	public int getCode() {
+		return code;
+	}
+	
+	/**
+	 * Find the MessageType with given code.
+	 * 
+	 * @param code the code
+	 * @return the MessageType, or null if the code is not recognized
+	 */
+	public static MessageType fromCode(int code) {
+		for (MessageType type : values()) {
+			if (type.code == code) {
+				return type;
+			}
+		}
+		return null;
+	}
+}
@@ -17,14 +17,19 @@
 
 package org.cloudcoder.app.server.submitsvc.oop;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
+import org.cloudcoder.app.server.submitsvc.ISubmissionCompletionListener;
+import org.cloudcoder.app.server.submitsvc.SubmissionOrigin;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.Submission;
 import org.cloudcoder.app.shared.model.SubmissionException;
 import org.cloudcoder.app.shared.model.SubmissionResult;
 import org.cloudcoder.app.shared.model.TestCase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A Submission (Problem, TestCases, and program text)
@@ -33,15 +38,36 @@ import org.cloudcoder.app.shared.model.TestCase;
  * @author David Hovemeyer
  */
 public class OOPBuildServiceSubmission implements IFutureSubmissionResult {
+	private static final Logger logger = LoggerFactory.getLogger(OOPBuildServiceSubmission.class);
+	
 	private Object lock = new Object();
 	private Submission submission;
+	private final EncodedProblem encodedProblem;
 	private boolean ready;
 	private SubmissionResult submissionResult;
 	private Exception error;
 	private int numAttempts;
+	private final SubmissionOrigin origin;
+	private final long submitTime;
+	private List<ISubmissionCompletionListener> listeners;
+	
+	public OOPBuildServiceSubmission(Submission submission, SubmissionOrigin origin) {
+		this(submission, origin, null);
+	}
 	
-	public OOPBuildServiceSubmission(Submission submission) {
+	/**
+	 * Constructor.
+	 * 
+	 * @param submission      the {@link Submission}
+	 * @param origin          the {@link SubmissionOrigin}
+	 * @param encodedProblem  the submission's problem and test cases, already encoded
+	 *                        (null if they should be encoded when the submission is sent)
+	 */
+	public OOPBuildServiceSubmission(Submission submission, SubmissionOrigin origin, EncodedProblem encodedProblem) {
 		this.submission = submission;
+		this.origin = origin;
+		this.encodedProblem = encodedProblem;
+		this.submitTime = System.currentTimeMillis();
 	}
 	
 	@Override
@@ -60,6 +86,30 @@ public class OOPBuildServiceSubmission implements IFutureSubmissionResult {
 		}
 	}
 	
+	@Override
+	public void addCompletionListener(ISubmissionCompletionListener listener) {
+		synchronized (lock) {
+			if (!ready) {
+				if (listeners == null) {
+					listeners = new ArrayList<ISubmissionCompletionListener>();
+				}
+				listeners.add(listener);
+				return;
+			}
+		}
+		
+		// Already complete
+		notifyListener(listener);
+	}
+	
+	private void notifyListener(ISubmissionCompletionListener listener) {
+		try {
+			listener.onSubmissionComplete(this);
+		} catch (RuntimeException e) {
+			logger.error("Submission completion listener threw exception", e);
+		}
+	}
+	
 	public Problem getProblem() {
 		synchronized (lock) {
 			return submission.getProblem();
@@ -78,6 +128,55 @@ public class OOPBuildServiceSubmission implements IFutureSubmissionResult {
 		}
 	}
 	
+	/**
+	 * @return the encoded problem and test cases, or null if they
+	 *         weren't encoded when the submission was made
+	 */
+	public EncodedProblem getEncodedProblem() {
+		return encodedProblem;
+	}
+	
+	/**
+	 * @return the {@link SubmissionOrigin}
+	 */
+	public SubmissionOrigin getOrigin() {
+		return origin;
+	}
+	
+	/**
+	 * @return the time (in milliseconds since the epoch) at which the submission was made
+	 */
+	public long getSubmitTime() {
+		return submitTime;
+	}
+	
+	/**
+	 * @return true if the submission is ready (see {@link #setReady()})
+	 */
+	public boolean isReady() {
+		synchronized (lock) {
+			return ready;
+		}
+	}
+	
+	/**
+	 * @return the {@link SubmissionResult}, or null if there is none (yet)
+	 */
+	public SubmissionResult getSubmissionResult() {
+		synchronized (lock) {
+			return submissionResult;
+		}
+	}
+	
+	/**
+	 * @return the error which occurred testing the submission, or null if none
+	 */
+	public Exception getError() {
+		synchronized (lock) {
+			return error;
+		}
+	}
+	
 	public void setSubmissionResult(SubmissionResult result) {
 		this.submissionResult = result;
 	}
@@ -92,11 +191,22 @@ public class OOPBuildServiceSubmission implements IFutureSubmissionResult {
 	 * completed due to repeated failures, and we've given up.
 	 * Either setSubmissionResult() or setError()
 	 * must be called before setting ready to true.
+	 * Threads waiting in {@link #waitFor(long)} are woken, and
+	 * completion listeners are notified (in the calling thread).
 	 */
 	public void setReady() {
+		List<ISubmissionCompletionListener> toNotify;
 		synchronized (lock) {
 			this.ready = true;
 			lock.notifyAll();
+			toNotify = listeners;
+			listeners = null;
+		}
+		
+		if (toNotify != null) {
+			for (ISubmissionCompletionListener listener : toNotify) {
+				notifyListener(listener);
+			}
 		}
 	}
 	
@@ -43,6 +43,8 @@ import javax.net.ssl.X509TrustManager;
 
 import org.cloudcoder.app.server.submitsvc.IFutureSubmissionResult;
 import org.cloudcoder.app.server.submitsvc.ISubmitService;
+import org.cloudcoder.app.server.submitsvc.SubmissionOrigin;
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
 import org.cloudcoder.app.shared.model.Problem;
 import org.cloudcoder.app.shared.model.Submission;
 import org.cloudcoder.app.shared.model.SubmissionException;
@@ -88,6 +90,14 @@ public class OutOfProcessSubmitService implements ISubmitService {
 	private String keystoreFilename;
 	private String keystorePassword;
 	private int port;
+	private int compressionThreshold = PayloadCodec.DEFAULT_COMPRESSION_THRESHOLD;
+	private String scheduler = "fairshare";
+	private int courseQuota = 0;
+	private int resultCacheSize = SubmissionCoalescer.DEFAULT_MAX_ENTRIES;
+	private long resultCacheMaxAgeMs = SubmissionCoalescer.DEFAULT_MAX_AGE_MS;
+	private volatile PayloadCodec codec;
+	private volatile SubmissionCoalescer coalescer;
+	private volatile EncodedProblemCache problemCache;
 
 	/**
 	 * Poll to see how many worker tasks, and thus how many connected builder threads,
@@ -108,6 +118,16 @@ public class OutOfProcessSubmitService implements ISubmitService {
 		return theServerTask.getNumWorkerTasks();
 	}
 	
+	/**
+	 * Get the {@link SubmissionCoalescer} used to coalesce identical submissions.
+	 * 
+	 * @return the {@link SubmissionCoalescer}, or null if coalescing is disabled
+	 *         or the service has not been started
+	 */
+	public SubmissionCoalescer getSubmissionCoalescer() {
+		return coalescer;
+	}
+	
 	private String getOptionalProperty(Properties config, String propName, String defVal) {
 		String value = config.getProperty(propName);
 		if (value == null) {
@@ -140,11 +160,42 @@ public class OutOfProcessSubmitService implements ISubmitService {
 			logger.info("Using keystore {}. password={}", this.keystoreFilename, this.keystorePassword);
 		}
 		this.port = Integer.parseInt(getRequiredProperty(config, "cloudcoder.submitsvc.oop.port"));
+		this.compressionThreshold = Integer.parseInt(getOptionalProperty(config,
+				PayloadCodec.COMPRESSION_THRESHOLD_PROPERTY, String.valueOf(PayloadCodec.DEFAULT_COMPRESSION_THRESHOLD)));
+		this.scheduler = getOptionalProperty(config, "cloudcoder.submitsvc.oop.scheduler", "fairshare");
+		this.courseQuota = Integer.parseInt(getOptionalProperty(config, "cloudcoder.submitsvc.oop.courseQuota", "0"));
+		this.resultCacheSize = Integer.parseInt(getOptionalProperty(config,
+				"cloudcoder.submitsvc.oop.resultCacheSize", String.valueOf(SubmissionCoalescer.DEFAULT_MAX_ENTRIES)));
+		this.resultCacheMaxAgeMs = 1000L * Integer.parseInt(getOptionalProperty(config,
+				"cloudcoder.submitsvc.oop.resultCacheMaxAge", String.valueOf(SubmissionCoalescer.DEFAULT_MAX_AGE_MS / 1000)));
+	}
+	
+	/**
+	 * Create the {@link ISubmissionScheduler} specified by the
+	 * <code>cloudcoder.submitsvc.oop.scheduler</code> property:
+	 * either "fairshare" (the default) or "fifo".
+	 */
+	private ISubmissionScheduler createScheduler() {
+		if (scheduler.equals("fifo")) {
+			return new FifoSubmissionScheduler();
+		} else if (scheduler.equals("fairshare")) {
+			return new FairShareSubmissionScheduler(courseQuota);
+		} else {
+			throw new IllegalArgumentException("Unknown submission scheduler: " + scheduler);
+		}
 	}
 	
 	@Override
 	public IFutureSubmissionResult submitAsync(Problem problem, List<TestCase> testCaseList, String programText) 
 	throws SubmissionException 
+	{
+		return submitAsync(problem, testCaseList, programText,
+				SubmissionOrigin.forProblem(SubmissionPriority.SUBMIT, SubmissionOrigin.UNKNOWN_ID, problem));
+	}
+	
+	@Override
+	public IFutureSubmissionResult submitAsync(Problem problem, List<TestCase> testCaseList, String programText, SubmissionOrigin origin) 
+	throws SubmissionException 
 	{
 		if (serverTask == null) {
 			throw new IllegalStateException();
@@ -158,12 +209,35 @@ public class OutOfProcessSubmitService implements ISubmitService {
 			throw new SubmissionException("Cannot test submission: no Builders are available");
 		}
 
-		// Add the submission to the queue.
+		// The problem data is identified by its hash both when coalescing
+		// and when sending the submission to a Builder
+		EncodedProblem encodedProblem;
+		try {
+			encodedProblem = problemCache.get(problem, testCaseList);
+		} catch (IOException e) {
+			throw new SubmissionException("Could not encode submission", e);
+		}
 		OOPBuildServiceSubmission future = new OOPBuildServiceSubmission(
-				new Submission(problem, testCaseList, programText));
-		serverTask.submit(future);
+				new Submission(problem, testCaseList, programText), origin, encodedProblem);
 		
-		return future;
+		// Batch submissions (e.g., retests) are always tested, since
+		// the point is usually to get a fresh result.
+		SubmissionCoalescer theCoalescer = coalescer;
+		if (theCoalescer == null || origin.getPriority() == SubmissionPriority.BATCH) {
+			serverTask.submit(future);
+			return future;
+		}
+		
+		// If there is an identical submission in flight, or one that was
+		// recently tested, share it rather than using a Builder.
+		String key = SubmissionCoalescer.computeKey(encodedProblem, programText);
+		OOPBuildServiceSubmission shared = theCoalescer.getOrAdd(key, future);
+		if (shared == future) {
+			// Add the submission to the queue.
+			serverTask.submit(future);
+		}
+		
+		return new CoalescedSubmissionResult(shared, codec);
 	}
 	
 	private ServerSocket createSSLServerSocket(int port)
@@ -259,7 +333,12 @@ public class OutOfProcessSubmitService implements ISubmitService {
 	    	serverSocket = new ServerSocket(port);
 	    }
 		
-		serverTask = new ServerTask(serverSocket, useSSL, hostName);
+		codec = new PayloadCodec(compressionThreshold);
+		problemCache = new EncodedProblemCache(codec, EncodedProblemCache.DEFAULT_MAX_SIZE);
+		if (resultCacheSize > 0) {
+			coalescer = new SubmissionCoalescer(resultCacheSize, resultCacheMaxAgeMs);
+		}
+		serverTask = new ServerTask(serverSocket, useSSL, hostName, codec, createScheduler());
 		serverThread = new Thread(serverTask);
 		serverThread.start();
 		logger.info("Out of process submit service server thread started");
@@ -0,0 +1,553 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.cloudcoder.app.shared.model.CompilationOutcome;
+import org.cloudcoder.app.shared.model.CompilationResult;
+import org.cloudcoder.app.shared.model.CompilerDiagnostic;
+import org.cloudcoder.app.shared.model.ConvertBytesToHex;
+import org.cloudcoder.app.shared.model.HashProblemAndTestCaseData;
+import org.cloudcoder.app.shared.model.ModelObjectField;
+import org.cloudcoder.app.shared.model.ModelObjectSchema;
+import org.cloudcoder.app.shared.model.Problem;
+import org.cloudcoder.app.shared.model.ProblemAndTestCaseList;
+import org.cloudcoder.app.shared.model.SHA1;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.cloudcoder.app.shared.model.SubmissionResultAnnotation;
+import org.cloudcoder.app.shared.model.TestCase;
+import org.cloudcoder.app.shared.model.TestResult;
+
+/**
+ * Compact binary encoding of the payloads of SUBMISSION, PROBLEM_DATA,
+ * and RESULT {@link Message}s.  Model objects which have a {@link ModelObjectSchema}
+ * ({@link Problem}, {@link TestCase}, {@link TestResult}) are encoded
+ * field by field in schema order, preceded by the schema version:
+ * no class descriptors or field names are sent, and each payload
+ * is self-contained, so nothing accumulates over the lifetime of
+ * a connection.
+ * 
+ * <p>Strings whose UTF-8 encoding is at least as long as the
+ * compression threshold are deflated (if that makes them smaller).
+ * The decoder does not need to know the threshold, so the webapp and
+ * the Builders may be configured with different thresholds.
+ * 
+ * <p>Instances are immutable, and may be shared between threads.
+ * 
+ * @author David Hovemeyer
+ */
+public class PayloadCodec {
+	/**
+	 * Default compression threshold (in bytes of UTF-8): large enough that
+	 * typical program texts and outputs are sent uncompressed.
+	 */
+	public static final int DEFAULT_COMPRESSION_THRESHOLD = 4096;
+	
+	/**
+	 * Name of the configuration property specifying the compression threshold.
+	 * A value of 0 disables compression.
+	 */
+	public static final String COMPRESSION_THRESHOLD_PROPERTY = "cloudcoder.submitsvc.oop.compressionThreshold";
+	
+	// Tags for encoded strings
+	private static final int STRING_NULL = 0;
+	private static final int STRING_PLAIN = 1;
+	private static final int STRING_DEFLATED = 2;
+	
+	private final int compressionThreshold;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param compressionThreshold minimum length (in bytes of UTF-8) of strings which
+	 *                             will be compressed; 0 to disable compression
+	 */
+	public PayloadCodec(int compressionThreshold) {
+		if (compressionThreshold < 0) {
+			throw new IllegalArgumentException("Invalid compression threshold: " + compressionThreshold);
+		}
+		this.compressionThreshold = compressionThreshold;
+	}
+	
+	/**
+	 * @return the compression threshold (0 if compression is disabled)
+	 */
+	public int getCompressionThreshold() {
+		return compressionThreshold;
+	}
+	
+	/**
+	 * Encode a problem and its test cases as the payload of a
+	 * PROBLEM_DATA message.
+	 * 
+	 * @param problem       the {@link Problem}
+	 * @param testCaseList  the list of {@link TestCase}s
+	 * @return the encoded payload
+	 * @throws IOException
+	 */
+	public byte[] encodeProblemData(Problem problem, List<TestCase> testCaseList) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeModelObject(out, Problem.SCHEMA, problem);
+		writeVarInt(out, testCaseList.size());
+		for (TestCase testCase : testCaseList) {
+			writeModelObject(out, TestCase.SCHEMA, testCase);
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Decode the payload of a PROBLEM_DATA message.
+	 * 
+	 * @param payload the encoded payload
+	 * @return the decoded {@link ProblemAndTestCaseList}
+	 * @throws IOException
+	 */
+	public ProblemAndTestCaseList decodeProblemData(byte[] payload) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		Problem problem = new Problem();
+		readModelObject(in, Problem.SCHEMA, problem);
+		int numTestCases = readCount(in);
+		List<TestCase> testCaseList = new ArrayList<TestCase>(numTestCases);
+		for (int i = 0; i < numTestCases; i++) {
+			TestCase testCase = new TestCase();
+			readModelObject(in, TestCase.SCHEMA, testCase);
+			testCaseList.add(testCase);
+		}
+		checkEnd(in);
+		ProblemAndTestCaseList result = new ProblemAndTestCaseList();
+		result.setProblem(problem);
+		result.setTestCaseList(testCaseList);
+		return result;
+	}
+	
+	/**
+	 * Compute the hash identifying encoded problem data.
+	 * Note that unlike {@link HashProblemAndTestCaseData}, which hashes
+	 * only the (trimmed) content of a problem in order to identify it
+	 * across CloudCoder instances, this hash covers the exact encoded
+	 * data, so it changes if any field of the problem or test cases changes.
+	 * 
+	 * @param problemData the encoded problem data
+	 * @return the hash, as a 40-character hex string
+	 */
+	public static String computeHash(byte[] problemData) {
+		return new ConvertBytesToHex(new SHA1().digest(problemData)).convert();
+	}
+	
+	/**
+	 * Encode a {@link SubmissionRequest} as the payload of a SUBMISSION message.
+	 * 
+	 * @param request the {@link SubmissionRequest}
+	 * @return the encoded payload
+	 * @throws IOException
+	 */
+	public byte[] encodeSubmissionRequest(SubmissionRequest request) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		writeVarInt(out, request.getProblemId());
+		writeString(out, request.getProblemHash());
+		writeString(out, request.getProgramText());
+		out.flush();
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Decode the payload of a SUBMISSION message.
+	 * 
+	 * @param payload the encoded payload
+	 * @return the decoded {@link SubmissionRequest}
+	 * @throws IOException
+	 */
+	public SubmissionRequest decodeSubmissionRequest(byte[] payload) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		int problemId = readVarInt(in);
+		String problemHash = readString(in);
+		String programText = readString(in);
+		checkEnd(in);
+		if (problemHash == null) {
+			throw new IOException("Missing problem hash in submission");
+		}
+		return new SubmissionRequest(problemId, problemHash, programText);
+	}
+	
+	/**
+	 * Encode a {@link SubmissionResult} as the payload of a RESULT message.
+	 * 
+	 * @param result the {@link SubmissionResult}
+	 * @return the encoded payload
+	 * @throws IOException
+	 */
+	public byte[] encodeSubmissionResult(SubmissionResult result) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		
+		writeCompilationResult(out, result.getCompilationResult());
+		
+		TestResult[] testResults = result.getTestResults();
+		if (testResults == null) {
+			writeVarInt(out, -1);
+		} else {
+			writeVarInt(out, testResults.length);
+			for (TestResult testResult : testResults) {
+				writeModelObject(out, TestResult.SCHEMA, testResult);
+			}
+		}
+		
+		List<SubmissionResultAnnotation> annotationList = result.getAnnotationList();
+		writeVarInt(out, annotationList.size());
+		for (SubmissionResultAnnotation annotation : annotationList) {
+			writeString(out, annotation.getKey());
+			writeString(out, annotation.getValue());
+		}
+		
+		out.flush();
+		return bytes.toByteArray();
+	}
+	
+	/**
+	 * Decode the payload of a RESULT message.
+	 * 
+	 * @param payload the encoded payload
+	 * @return the decoded {@link SubmissionResult}
+	 * @throws IOException
+	 */
+	public SubmissionResult decodeSubmissionResult(byte[] payload) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		SubmissionResult result = new SubmissionResult();
+		
+		result.setCompilationResult(readCompilationResult(in));
+		
+		int numTestResults = readVarInt(in);
+		if (numTestResults >= 0) {
+			checkCount(in, numTestResults);
+			TestResult[] testResults = new TestResult[numTestResults];
+			for (int i = 0; i < numTestResults; i++) {
+				testResults[i] = new TestResult();
+				readModelObject(in, TestResult.SCHEMA, testResults[i]);
+			}
+			result.setTestResults(testResults);
+		}
+		
+		int numAnnotations = readCount(in);
+		for (int i = 0; i < numAnnotations; i++) {
+			String key = readString(in);
+			String value = readString(in);
+			result.addAnnotation(new SubmissionResultAnnotation(key, value));
+		}
+		
+		checkEnd(in);
+		return result;
+	}
+	
+	/**
+	 * Encode a model object using its {@link ModelObjectSchema}.
+	 * 
+	 * @param out     the DataOutputStream to write to
+	 * @param schema  the {@link ModelObjectSchema}
+	 * @param obj     the model object
+	 * @throws IOException
+	 */
+	public<E> void writeModelObject(DataOutputStream out, ModelObjectSchema<? super E> schema, E obj) throws IOException {
+		writeVarInt(out, schema.getVersion());
+		for (ModelObjectField<?, ?> field : schema.getFieldList()) {
+			writeValue(out, field.getType(), getFieldValue(field, obj));
+		}
+	}
+	
+	/**
+	 * Decode a model object using its {@link ModelObjectSchema}.
+	 * The schema version must match the one used to encode the object.
+	 * 
+	 * @param in      the DataInputStream to read from
+	 * @param schema  the {@link ModelObjectSchema}
+	 * @param obj     the model object whose fields should be set
+	 * @throws IOException
+	 */
+	public<E> void readModelObject(DataInputStream in, ModelObjectSchema<? super E> schema, E obj) throws IOException {
+		int version = readVarInt(in);
+		if (version != schema.getVersion()) {
+			throw new IOException("Received " + schema.getName() + " with schema version " + version +
+					", expected " + schema.getVersion());
+		}
+		for (ModelObjectField<?, ?> field : schema.getFieldList()) {
+			setFieldValue(field, obj, readValue(in, field.getType()));
+		}
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static Object getFieldValue(ModelObjectField<?, ?> field, Object obj) {
+		return ((ModelObjectField<Object, Object>) field).get(obj);
+	}
+	
+	@SuppressWarnings("unchecked")
+	private static void setFieldValue(ModelObjectField<?, ?> field, Object obj, Object value) {
+		// Note that we don't use setUntyped: enum constants may be instances
+		// of subclasses of the enum type
+		((ModelObjectField<Object, Object>) field).set(obj, value);
+	}
+	
+	private void writeValue(DataOutputStream out, Class<?> type, Object value) throws IOException {
+		if (type == String.class) {
+			writeString(out, (String) value);
+			return;
+		}
+		
+		// All other values are preceded by a flag indicating whether they are null
+		out.writeBoolean(value != null);
+		if (value == null) {
+			return;
+		}
+		if (type == Integer.class) {
+			writeVarInt(out, (Integer) value);
+		} else if (type == Long.class) {
+			out.writeLong((Long) value);
+		} else if (type == Boolean.class) {
+			out.writeBoolean((Boolean) value);
+		} else if (type.isEnum()) {
+			writeVarInt(out, ((Enum<?>) value).ordinal());
+		} else {
+			throw new IOException("Don't know how to encode values of type " + type.getName());
+		}
+	}
+	
+	private Object readValue(DataInputStream in, Class<?> type) throws IOException {
+		if (type == String.class) {
+			return readString(in);
+		}
+		
+		if (!in.readBoolean()) {
+			return null;
+		}
+		if (type == Integer.class) {
+			return Integer.valueOf(readVarInt(in));
+		} else if (type == Long.class) {
+			return Long.valueOf(in.readLong());
+		} else if (type == Boolean.class) {
+			return Boolean.valueOf(in.readBoolean());
+		} else if (type.isEnum()) {
+			return readEnum(in, type.getEnumConstants());
+		} else {
+			throw new IOException("Don't know how to decode values of type " + type.getName());
+		}
+	}
+	
+	private static<E> E readEnum(DataInputStream in, E[] values) throws IOException {
+		int ordinal = readVarInt(in);
+		if (ordinal < 0 || ordinal >= values.length) {
+			throw new IOException("Invalid enum ordinal " + ordinal);
+		}
+		return values[ordinal];
+	}
+	
+	private void writeCompilationResult(DataOutputStream out, CompilationResult compilationResult) throws IOException {
+		out.writeBoolean(compilationResult != null);
+		if (compilationResult == null) {
+			return;
+		}
+		writeValue(out, CompilationOutcome.class, compilationResult.getOutcome());
+		CompilerDiagnostic[] diagnostics = compilationResult.getCompilerDiagnosticList();
+		if (diagnostics == null) {
+			writeVarInt(out, -1);
+			return;
+		}
+		writeVarInt(out, diagnostics.length);
+		for (CompilerDiagnostic d : diagnostics) {
+			out.writeLong(d.getStartLine());
+			out.writeLong(d.getStartColumn());
+			out.writeLong(d.getEndLine());
+			out.writeLong(d.getEndColumn());
+			writeString(out, d.getMessage());
+		}
+	}
+	
+	private CompilationResult readCompilationResult(DataInputStream in) throws IOException {
+		if (!in.readBoolean()) {
+			return null;
+		}
+		CompilationResult compilationResult = new CompilationResult((CompilationOutcome) readValue(in, CompilationOutcome.class));
+		int numDiagnostics = readVarInt(in);
+		if (numDiagnostics < 0) {
+			compilationResult.setCompilerDiagnosticList(null);
+			return compilationResult;
+		}
+		checkCount(in, numDiagnostics);
+		CompilerDiagnostic[] diagnostics = new CompilerDiagnostic[numDiagnostics];
+		for (int i = 0; i < numDiagnostics; i++) {
+			CompilerDiagnostic d = new CompilerDiagnostic();
+			d.setStartLine(in.readLong());
+			d.setStartColumn(in.readLong());
+			d.setEndLine(in.readLong());
+			d.setEndColumn(in.readLong());
+			d.setMessage(readString(in));
+			diagnostics[i] = d;
+		}
+		compilationResult.setCompilerDiagnosticList(diagnostics);
+		return compilationResult;
+	}
+	
+	private void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeByte(STRING_NULL);
+			return;
+		}
+		
+		byte[] utf8 = s.getBytes("UTF-8");
+		if (compressionThreshold > 0 && utf8.length >= compressionThreshold) {
+			byte[] compressed = deflate(utf8);
+			if (compressed.length < utf8.length) {
+				out.writeByte(STRING_DEFLATED);
+				writeVarInt(out, utf8.length);
+				writeVarInt(out, compressed.length);
+				out.write(compressed);
+				return;
+			}
+		}
+		
+		out.writeByte(STRING_PLAIN);
+		writeVarInt(out, utf8.length);
+		out.write(utf8);
+	}
+	
+	private String readString(DataInputStream in) throws IOException {
+		int tag = in.readUnsignedByte();
+		switch (tag) {
+		case STRING_NULL:
+			return null;
+			
+		case STRING_PLAIN:
+			{
+				byte[] utf8 = new byte[readCount(in)];
+				in.readFully(utf8);
+				return new String(utf8, "UTF-8");
+			}
+			
+		case STRING_DEFLATED:
+			{
+				int length = readVarInt(in);
+				if (length < 0 || length > BuilderProtocol.MAX_FRAME_LENGTH) {
+					throw new IOException("Invalid uncompressed string length " + length);
+				}
+				byte[] compressed = new byte[readCount(in)];
+				in.readFully(compressed);
+				return new String(inflate(compressed, length), "UTF-8");
+			}
+			
+		default:
+			throw new IOException("Invalid string tag " + tag);
+		}
+	}
+	
+	private static byte[] deflate(byte[] data) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2);
+			byte[] buf = new byte[8192];
+			while (!deflater.finished()) {
+				int n = deflater.deflate(buf);
+				out.write(buf, 0, n);
+			}
+			return out.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+	
+	private static byte[] inflate(byte[] compressed, int length) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(compressed);
+			byte[] data = new byte[length];
+			int off = 0;
+			while (off < length) {
+				int n = inflater.inflate(data, off, length - off);
+				if (n == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				off += n;
+			}
+			if (off != length || !inflater.finished()) {
+				throw new IOException("Compressed string has wrong length");
+			}
+			return data;
+		} catch (DataFormatException e) {
+			throw new IOException("Invalid compressed string", e);
+		} finally {
+			inflater.end();
+		}
+	}
+	
+	/**
+	 * Write an int as a variable-length (zig-zag encoded) sequence
+	 * of 1 to 5 bytes: small magnitudes, positive or negative,
+	 * take a single byte.
+	 */
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+		int v = (value << 1) ^ (value >> 31);
+		while ((v & ~0x7F) != 0) {
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+	
+	private static int readVarInt(DataInputStream in) throws IOException {
+		int v = 0;
+		for (int shift = 0; shift < 35; shift += 7) {
+			int b = in.readUnsignedByte();
+			v |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return (v >>> 1) ^ -(v & 1);
+			}
+		}
+		throw new IOException("Invalid variable-length int");
+	}
+	
+	private static int readCount(DataInputStream in) throws IOException {
+		int count = readVarInt(in);
+		checkCount(in, count);
+		return count;
+	}
+	
+	private static void checkCount(DataInputStream in, int count) throws IOException {
+		// Every element takes at least one byte, so a count exceeding the
+		// number of remaining bytes indicates a corrupt payload
+		if (count < 0 || count > in.available()) {
+			throw new IOException("Invalid count " + count + " in message payload");
+		}
+	}
+	
+	private static void checkEnd(DataInputStream in) throws IOException {
+		if (in.available() != 0) {
+			throw new IOException("Unexpected data at end of message payload");
+		}
+	}
+}
@@ -22,7 +22,6 @@ import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.UnknownHostException;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import org.cloudcoder.app.server.model.HealthDataSingleton;
 import org.cloudcoder.app.shared.model.SubmissionException;
@@ -31,7 +30,7 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Server to listen for connections from remote Builder processes
- * and start WorkerTask threads to communicate with them.
+ * and hand them to the {@link SubmissionDispatcher}.
  * 
  * @author David Hovemeyer
  */
@@ -46,7 +45,7 @@ public class ServerTask implements Runnable {
     	public void run() {
     		while (!shutdownRequested) {
     			try {
-    				int size = submissionQueue.size();
+    				int size = dispatcher.getQueueSize();
     				HealthDataSingleton.getInstance().updateSubmissionQueueSize(size);
     				
     				Thread.sleep(UPDATE_SUBMISSION_QUEUE_SIZE_INTERVAL);
@@ -58,9 +57,8 @@ public class ServerTask implements Runnable {
     	}
     }
 
-	private LinkedBlockingQueue<OOPBuildServiceSubmission> submissionQueue;
 	private ServerSocket serverSocket;
-	private WorkerTaskSet workerTaskSet;
+	private SubmissionDispatcher dispatcher;
 	private volatile boolean shutdownRequested;
 	private Thread healthMonitorThread;
 	private boolean usingSSL;
@@ -74,23 +72,25 @@ public class ServerTask implements Runnable {
 	 *                     if false, we will reject connections originating from the
 	 *                     external network
 	 * @param hostName     the (external) hostname of this host 
+	 * @param codec        the {@link PayloadCodec} used to encode and decode message payloads
+	 * @param scheduler    the {@link ISubmissionScheduler} deciding the order in which
+	 *                     waiting submissions are tested
 	 */
-	public ServerTask(ServerSocket serverSocket, boolean usingSSL, String hostName) {
-		this.submissionQueue = new LinkedBlockingQueue<OOPBuildServiceSubmission>();
+	public ServerTask(ServerSocket serverSocket, boolean usingSSL, String hostName, PayloadCodec codec, ISubmissionScheduler scheduler) {
 		this.serverSocket = serverSocket;
-		this.workerTaskSet = new WorkerTaskSet();
+		this.dispatcher = new SubmissionDispatcher(codec, scheduler);
 		this.shutdownRequested = false;
 		this.usingSSL = usingSSL;
 		this.hostName = hostName;
 	}
 	
 	public int getNumWorkerTasks() {
-		return workerTaskSet.getNumWorkerTasks();
+		return dispatcher.getNumBuilderThreads();
 	}
 	
 	public void submit(OOPBuildServiceSubmission submission) throws SubmissionException {
-		// add it to the queue so a worker can grab it	
-	    submissionQueue.add(submission);
+		// hand it to an idle builder, or queue it until one is available
+	    dispatcher.submit(submission);
 	}
 	
 	@Override
@@ -116,8 +116,8 @@ public class ServerTask implements Runnable {
 				if (!usingSSL && !clientAddress.equals(localHost) && !clientAddress.equals(hostAddress)) {
 					logger.info("Rejecting non-SSL connection from {}", clientAddress);
 				} else {
-					// create worker task and thread
-					workerTaskSet.createWorker(clientSocket, submissionQueue);
+					// register the builder with the dispatcher
+					dispatcher.addBuilder(clientSocket);
 				}
 			}
 		
@@ -143,8 +143,7 @@ public class ServerTask implements Runnable {
 		    logger.error("Exception closing ServerTask's socket", e);
 		}
 		
-		// shut down worker tasks and wait for them to exit
-		workerTaskSet.shutdownAll();
-		workerTaskSet.waitForAll();
+		// wait for in-progress submissions and close builder connections
+		dispatcher.shutdown();
 	}
 }
\ No newline at end of file
@@ -0,0 +1,161 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.cloudcoder.app.server.submitsvc.SubmissionPriority;
+
+/**
+ * Coalesce identical submissions.  Two submissions are identical if
+ * their problem data (problem and test cases) and program text are
+ * byte-for-byte the same.  A submission identical to one that is
+ * still in flight attaches to the in-flight submission, and a
+ * submission identical to one that was recently tested successfully
+ * is answered with the earlier result, so in neither case is a
+ * Builder used.
+ * 
+ * A submission only attaches to an in-flight submission of the same or
+ * higher {@link SubmissionPriority}, so that (for example) a quiz
+ * submission never waits behind a Run request.  An identical in-flight
+ * submission of lower priority is replaced by the new submission,
+ * which is tested at its own priority.
+ * 
+ * Submissions are tracked in a bounded LRU map, so both in-flight
+ * and completed submissions are forgotten once enough other
+ * submissions have been made.
+ * 
+ * @author David Hovemeyer
+ */
+public class SubmissionCoalescer {
+	/** Default maximum number of submissions remembered. */
+	public static final int DEFAULT_MAX_ENTRIES = 1000;
+	
+	/** Default maximum age (in milliseconds) of a reusable result. */
+	public static final long DEFAULT_MAX_AGE_MS = 5L*60*1000;
+	
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	
+	private final Object lock = new Object();
+	private final long maxAgeMs;
+	private final LinkedHashMap<String, OOPBuildServiceSubmission> entries;
+	private long numInFlightHits;
+	private long numResultHits;
+	private long numMisses;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param maxEntries maximum number of submissions to remember
+	 * @param maxAgeMs   maximum age (in milliseconds, measured from
+	 *                   the time of the original submission) of a
+	 *                   result that may be reused
+	 */
+	public SubmissionCoalescer(final int maxEntries, long maxAgeMs) {
+		this.maxAgeMs = maxAgeMs;
+		this.entries = new LinkedHashMap<String, OOPBuildServiceSubmission>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, OOPBuildServiceSubmission> eldest) {
+				return size() > maxEntries;
+			}
+		};
+	}
+	
+	/**
+	 * Compute the key identifying a submission.
+	 * 
+	 * @param encodedProblem  the submission's {@link EncodedProblem}
+	 * @param programText     the program text
+	 * @return the key
+	 */
+	public static String computeKey(EncodedProblem encodedProblem, String programText) {
+		String problemHash = encodedProblem.getHash();
+		String programTextHash = PayloadCodec.computeHash(programText.getBytes(UTF8));
+		return problemHash + ":" + programTextHash;
+	}
+	
+	/**
+	 * Find the submission with given key: if there is an in-flight
+	 * submission with the key (whose priority is at least that of the
+	 * candidate), or a completed submission that was tested
+	 * successfully and is not too old, it is returned.  Otherwise, the
+	 * candidate submission is recorded under the key and returned,
+	 * and the caller is responsible for having it tested.
+	 * 
+	 * @param key        the key (see {@link #computeKey(EncodedProblem, String)})
+	 * @param candidate  the candidate submission
+	 * @return the submission to use: if this is the candidate, it must be tested
+	 */
+	public OOPBuildServiceSubmission getOrAdd(String key, OOPBuildServiceSubmission candidate) {
+		synchronized (lock) {
+			OOPBuildServiceSubmission existing = entries.get(key);
+			if (existing != null && existing.getError() == null) {
+				if (!existing.isReady()) {
+					if (!isLowerPriority(existing, candidate)) {
+						numInFlightHits++;
+						return existing;
+					}
+				} else if (existing.getSubmissionResult() != null
+						&& candidate.getSubmitTime() - existing.getSubmitTime() <= maxAgeMs) {
+					numResultHits++;
+					return existing;
+				}
+			}
+			
+			numMisses++;
+			entries.put(key, candidate);
+			return candidate;
+		}
+	}
+	
+	// SubmissionPriority members are listed from highest to lowest priority.
+	private static boolean isLowerPriority(OOPBuildServiceSubmission a, OOPBuildServiceSubmission b) {
+		return a.getOrigin().getPriority().compareTo(b.getOrigin().getPriority()) > 0;
+	}
+	
+	/**
+	 * @return number of submissions which attached to an identical in-flight submission
+	 */
+	public long getNumInFlightHits() {
+		synchronized (lock) {
+			return numInFlightHits;
+		}
+	}
+	
+	/**
+	 * @return number of submissions answered with the result of an identical earlier submission
+	 */
+	public long getNumResultHits() {
+		synchronized (lock) {
+			return numResultHits;
+		}
+	}
+	
+	/**
+	 * @return number of submissions which had to be tested by a Builder
+	 */
+	public long getNumMisses() {
+		synchronized (lock) {
+			return numMisses;
+		}
+	}
+}
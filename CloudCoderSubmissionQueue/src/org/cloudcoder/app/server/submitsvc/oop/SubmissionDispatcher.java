@@ -0,0 +1,474 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cloudcoder.app.server.model.HealthDataSingleton;
+import org.cloudcoder.app.shared.model.SubmissionResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dispatches submissions to connected remote Builders.
+ * Each {@link BuilderConnection} can have several submissions in flight,
+ * up to the capacity the Builder announced in its handshake.
+ * The dispatcher tracks the idle/busy state and free slots of each
+ * connection explicitly: when a submission is enqueued and a Builder
+ * has a free slot, the submission is sent to that Builder immediately.
+ * When a result comes back, the freed slot takes the next pending
+ * submission (if any), as chosen by the {@link ISubmissionScheduler}.
+ *
+ * Each connection has one thread (from a shared pool) reading results
+ * from the Builder.  Submissions are sent using the same pool, and a
+ * single scheduler thread sends keepalive signals to Builders
+ * that have not been sent anything for a while.
+ *
+ * @author David Hovemeyer
+ */
+public class SubmissionDispatcher {
+	private static final Logger logger = LoggerFactory.getLogger(SubmissionDispatcher.class);
+
+	/**
+	 * Maximum number of milliseconds that a connection is allowed to
+	 * go without a message being sent to the Builder before a
+	 * keepalive signal is sent.
+	 */
+	private static final long MAX_IDLE_TIME_MILLIS = 5000L;
+
+	/**
+	 * Number of milliseconds between checks for Builders needing
+	 * a keepalive signal.
+	 */
+	private static final long KEEPALIVE_CHECK_INTERVAL_MILLIS = 1000L;
+
+	/**
+	 * Maximum number of times we will attempt to test a submission
+	 * before giving up.
+	 */
+	private static final int MAX_ATTEMPTS = 10;
+
+	private static class DispatcherThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count;
+
+		public DispatcherThreadFactory(String prefix) {
+			this.prefix = prefix;
+			this.count = new AtomicInteger(0);
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, prefix + count.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	private Object lock;
+	private List<BuilderConnection> builderList;
+	private LinkedList<BuilderConnection> availableBuilders;
+	private ISubmissionScheduler scheduler;
+	private int nextCorrelationId;
+	private boolean shutdownRequested;
+	private ExecutorService exchangeExecutor;
+	private ScheduledExecutorService keepaliveExecutor;
+	private PayloadCodec codec;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param codec     the {@link PayloadCodec} used to encode and decode message payloads
+	 * @param scheduler the {@link ISubmissionScheduler} deciding the order in which
+	 *                  pending submissions are dispatched
+	 */
+	public SubmissionDispatcher(PayloadCodec codec, ISubmissionScheduler scheduler) {
+		this.codec = codec;
+		this.lock = new Object();
+		this.builderList = new ArrayList<BuilderConnection>();
+		this.availableBuilders = new LinkedList<BuilderConnection>();
+		this.scheduler = scheduler;
+		this.nextCorrelationId = 1;
+		this.shutdownRequested = false;
+		this.exchangeExecutor = Executors.newCachedThreadPool(new DispatcherThreadFactory("oop-builder-exchange-"));
+		this.keepaliveExecutor = Executors.newSingleThreadScheduledExecutor(new DispatcherThreadFactory("oop-builder-keepalive-"));
+		this.keepaliveExecutor.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				sendKeepalives();
+			}
+		}, KEEPALIVE_CHECK_INTERVAL_MILLIS, KEEPALIVE_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Get the number of connected Builders.
+	 *
+	 * @return number of connected Builders
+	 */
+	public int getNumBuilders() {
+		synchronized (lock) {
+			return builderList.size();
+		}
+	}
+
+	/**
+	 * Get the total number of submissions that connected Builders
+	 * can test concurrently, which is the number of Builder threads.
+	 *
+	 * @return number of connected Builder threads
+	 */
+	public int getNumBuilderThreads() {
+		synchronized (lock) {
+			int count = 0;
+			for (BuilderConnection builder : builderList) {
+				count += builder.getCapacity();
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Get the number of connected Builders that are idle.
+	 *
+	 * @return number of idle Builders
+	 */
+	public int getNumIdleBuilders() {
+		synchronized (lock) {
+			int count = 0;
+			for (BuilderConnection builder : builderList) {
+				if (builder.getState() == BuilderConnection.State.IDLE) {
+					count++;
+				}
+			}
+			return count;
+		}
+	}
+
+	/**
+	 * Get the number of submissions waiting for a Builder.
+	 *
+	 * @return number of pending submissions
+	 */
+	public int getQueueSize() {
+		synchronized (lock) {
+			return scheduler.size();
+		}
+	}
+
+	/**
+	 * Add a connection from a remote Builder.  The protocol handshake
+	 * is done asynchronously; once it completes, the Builder becomes
+	 * available to test submissions.
+	 *
+	 * @param clientSocket Socket with which to communicate with remote Builder
+	 */
+	public void addBuilder(final Socket clientSocket) {
+		exchangeExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				BuilderConnection builder;
+				try {
+					builder = new BuilderConnection(clientSocket, codec);
+					builder.handshake();
+				} catch (IOException e) {
+					logger.error("Could not complete handshake with Builder", e);
+					try {
+						clientSocket.close();
+					} catch (IOException ee) {
+						logger.warn("Exception closing client socket", ee);
+					}
+					return;
+				}
+				if (register(builder)) {
+					readResults(builder);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Submit a submission for testing.  If a Builder has a free slot,
+	 * it is dispatched to that Builder immediately.  Otherwise, it
+	 * is added to the queue of pending submissions.
+	 *
+	 * @param submission the submission
+	 */
+	public void submit(OOPBuildServiceSubmission submission) {
+		synchronized (lock) {
+			assignOrEnqueue(submission, false);
+		}
+	}
+
+	/**
+	 * Shut down the dispatcher.  Submissions that are in flight
+	 * are allowed to complete, after which all Builder connections
+	 * are closed.
+	 */
+	public void shutdown() {
+		keepaliveExecutor.shutdownNow();
+
+		synchronized (lock) {
+			shutdownRequested = true;
+			while (hasInFlightSubmissions()) {
+				logger.info("Waiting for in-flight submissions to complete");
+				try {
+					lock.wait(2000L);
+				} catch (InterruptedException e) {
+					logger.error("SubmissionDispatcher interrupted while waiting for in-flight submissions");
+					break;
+				}
+			}
+			for (BuilderConnection builder : builderList) {
+				builder.setState(BuilderConnection.State.CLOSED);
+				builder.close();
+			}
+			builderList.clear();
+			availableBuilders.clear();
+		}
+
+		exchangeExecutor.shutdownNow();
+	}
+
+	// Must be called with lock held.
+	private boolean hasInFlightSubmissions() {
+		for (BuilderConnection builder : builderList) {
+			if (builder.getNumInFlight() > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean register(BuilderConnection builder) {
+		synchronized (lock) {
+			if (shutdownRequested) {
+				builder.setState(BuilderConnection.State.CLOSED);
+				builder.close();
+				return false;
+			}
+			builderList.add(builder);
+			logger.info("Builder connected: {} builder(s) now connected", builderList.size());
+			builder.setState(BuilderConnection.State.IDLE);
+			fillFreeSlots(builder);
+			return true;
+		}
+	}
+
+	/**
+	 * Read messages from a Builder until the connection fails or
+	 * is closed.  Each RESULT message completes the corresponding
+	 * in-flight submission and frees a slot on the connection.
+	 * NEED_PROBLEM messages are answered with the problem data
+	 * for the corresponding in-flight submission.
+	 */
+	private void readResults(BuilderConnection builder) {
+		try {
+			while (true) {
+				Message msg = builder.receive();
+				if (msg.getType() == MessageType.NEED_PROBLEM) {
+					OOPBuildServiceSubmission submission;
+					synchronized (lock) {
+						submission = builder.getInFlight(msg.getCorrelationId());
+					}
+					if (submission == null) {
+						throw new IOException("Builder requested problem data for unknown correlation id " + msg.getCorrelationId());
+					}
+					builder.sendProblemData(msg.getCorrelationId(), submission);
+					continue;
+				}
+				if (msg.getType() != MessageType.RESULT) {
+					throw new IOException("Unexpected message type " + msg.getType() + " from Builder");
+				}
+				SubmissionResult result = codec.decodeSubmissionResult(msg.getPayload());
+
+				OOPBuildServiceSubmission submission;
+				synchronized (lock) {
+					submission = builder.removeInFlight(msg.getCorrelationId());
+					if (submission != null) {
+						scheduler.onFinished(submission);
+					}
+				}
+				if (submission == null) {
+					logger.warn("Received result with unknown correlation id {}", msg.getCorrelationId());
+				} else {
+					submission.setSubmissionResult(result);
+					submission.setReady();
+				}
+
+				onSlotFreed(builder);
+			}
+		} catch (IOException e) {
+			onBuilderFailed(builder, e);
+		}
+	}
+
+	/**
+	 * Called when a slot on a Builder connection becomes free:
+	 * it either takes the next pending submission or becomes available.
+	 */
+	private void onSlotFreed(BuilderConnection builder) {
+		synchronized (lock) {
+			if (builder.getState() == BuilderConnection.State.CLOSED) {
+				return;
+			}
+			if (shutdownRequested) {
+				updateState(builder);
+				lock.notifyAll();
+				return;
+			}
+			fillFreeSlots(builder);
+		}
+	}
+
+	/**
+	 * Called when communication with a Builder failed.
+	 * The Builder is removed, and the submissions it was testing
+	 * are placed back at the front of the queue so they
+	 * have an opportunity to be re-tested.
+	 */
+	private void onBuilderFailed(BuilderConnection builder, Exception e) {
+		synchronized (lock) {
+			if (builder.getState() == BuilderConnection.State.CLOSED) {
+				// Already removed (e.g., closed during shutdown)
+				return;
+			}
+			logger.error("Error communicating with Builder", e);
+			builder.setState(BuilderConnection.State.CLOSED);
+			builder.close();
+			builderList.remove(builder);
+			availableBuilders.remove(builder);
+			logger.info("Builder disconnected: {} builder(s) now connected", builderList.size());
+
+			List<OOPBuildServiceSubmission> orphans = builder.removeAllInFlight();
+			for (OOPBuildServiceSubmission submission : orphans) {
+				scheduler.onFinished(submission);
+				submission.setError(e);
+				assignOrEnqueue(submission, true);
+			}
+			lock.notifyAll();
+		}
+	}
+
+	// Must be called with lock held.
+	private void assignOrEnqueue(OOPBuildServiceSubmission submission, boolean atFront) {
+		BuilderConnection builder = shutdownRequested ? null : availableBuilders.pollFirst();
+		if (builder != null) {
+			dispatch(builder, submission);
+			if (builder.hasFreeSlot()) {
+				// Rotate so that submissions are spread across Builders
+				availableBuilders.addLast(builder);
+			}
+		} else if (atFront) {
+			scheduler.requeue(submission);
+		} else {
+			scheduler.add(submission);
+		}
+	}
+
+	// Must be called with lock held.
+	private void fillFreeSlots(BuilderConnection builder) {
+		while (builder.hasFreeSlot()) {
+			OOPBuildServiceSubmission submission = takeNextSubmission();
+			if (submission == null) {
+				break;
+			}
+			dispatch(builder, submission);
+		}
+		updateState(builder);
+		if (builder.hasFreeSlot() && !availableBuilders.contains(builder)) {
+			availableBuilders.addLast(builder);
+		}
+	}
+
+	// Must be called with lock held.
+	private void updateState(BuilderConnection builder) {
+		builder.setState(builder.getNumInFlight() > 0 ? BuilderConnection.State.BUSY : BuilderConnection.State.IDLE);
+	}
+
+	// Must be called with lock held.
+	private OOPBuildServiceSubmission takeNextSubmission() {
+		OOPBuildServiceSubmission submission;
+		while ((submission = scheduler.poll()) != null) {
+			// Check to make sure there isn't some kind of persistent error
+			// affecting the testing of this submission
+			if (submission.getNumAttempts() >= MAX_ATTEMPTS) {
+				// Too many testing failures for this submission!
+				submission.setReady();
+				continue;
+			}
+
+			return submission;
+		}
+		return null;
+	}
+
+	// Must be called with lock held.
+	private void dispatch(final BuilderConnection builder, final OOPBuildServiceSubmission submission) {
+		final int correlationId = nextCorrelationId++;
+		builder.addInFlight(correlationId, submission);
+		builder.setState(BuilderConnection.State.BUSY);
+		scheduler.onDispatched(submission);
+		if (submission.getNumAttempts() == 0) {
+			HealthDataSingleton.getInstance().recordQueueWaitTime(submission.getOrigin().getPriority(),
+					System.currentTimeMillis() - submission.getSubmitTime());
+		}
+		submission.setNumAttempts(submission.getNumAttempts() + 1);
+		exchangeExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					builder.sendSubmission(correlationId, submission);
+				} catch (IOException e) {
+					logger.error("IOException attempting to send submission for testing", e);
+					onBuilderFailed(builder, e);
+				}
+			}
+		});
+	}
+
+	private void sendKeepalives() {
+		List<BuilderConnection> toPing = new ArrayList<BuilderConnection>();
+		long now = System.currentTimeMillis();
+		synchronized (lock) {
+			for (BuilderConnection builder : builderList) {
+				if (now - builder.getLastSendMillis() >= MAX_IDLE_TIME_MILLIS) {
+					toPing.add(builder);
+				}
+			}
+		}
+
+		for (BuilderConnection builder : toPing) {
+			try {
+				builder.sendKeepalive();
+			} catch (IOException e) {
+				logger.error("Error sending keepalive signal to Builder", e);
+				onBuilderFailed(builder, e);
+			}
+		}
+	}
+}
@@ -0,0 +1,66 @@
+// CloudCoder - a web-based pedagogical programming environment
+// Copyright (C) 2011-2014, Jaime Spacco <jspacco@knox.edu>
+// Copyright (C) 2011-2014, David H. Hovemeyer <david.hovemeyer@gmail.com>
+//
+// This program is free software: you can redistribute it and/or modify
+// it under the terms of the GNU Affero General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU Affero General Public License for more details.
+//
+// You should have received a copy of the GNU Affero General Public License
+// along with this program.  If not, see <http://www.gnu.org/licenses/>.
+
+package org.cloudcoder.app.server.submitsvc.oop;
+
+/**
+ * Contents of a SUBMISSION message: the program text, and the id and
+ * content hash of the problem.  The problem and its test cases are
+ * sent separately (in a PROBLEM_DATA message), and only if the
+ * Builder does not already have data matching the hash.
+ * 
+ * @author David Hovemeyer
+ */
+public class SubmissionRequest {
+	private final int problemId;
+	private final String problemHash;
+	private final String programText;
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param problemId    the problem id
+	 * @param problemHash  the hash of the encoded problem data (see {@link PayloadCodec#computeHash(byte[])})
+	 * @param programText  the program text
+	 */
+	public SubmissionRequest(int problemId, String problemHash, String programText) {
+		this.problemId = problemId;
+		this.problemHash = problemHash;
+		this.programText = programText;
+	}
+	
+	/**
+	 * @return the problem id
+	 */
+	public int getProblemId() {
+		return problemId;
+	}
+	
+	/**
+	 * @return the hash of the encoded problem data
+	 */
+	public String getProblemHash() {
+		return problemHash;
+	}
+	
+	/**
+	 * @return the program text
+	 */
+	public String getProgramText() {
+		return programText;
+	}
+}
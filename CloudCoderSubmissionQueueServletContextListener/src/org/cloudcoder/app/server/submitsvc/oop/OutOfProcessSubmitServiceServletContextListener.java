@@ -69,6 +69,11 @@ public class OutOfProcessSubmitServiceServletContextListener implements ServletC
 				setPropertyFromContextParameter(servletContext, config, "cloudcoder.submitsvc.ssl.keystore.password", null);
 			}
 			setPropertyFromContextParameter(servletContext, config, "cloudcoder.submitsvc.oop.port", String.valueOf(OutOfProcessSubmitService.DEFAULT_PORT));
+			setPropertyFromContextParameter(servletContext, config, PayloadCodec.COMPRESSION_THRESHOLD_PROPERTY, String.valueOf(PayloadCodec.DEFAULT_COMPRESSION_THRESHOLD));
+			setPropertyFromContextParameter(servletContext, config, "cloudcoder.submitsvc.oop.scheduler", "fairshare");
+			setPropertyFromContextParameter(servletContext, config, "cloudcoder.submitsvc.oop.courseQuota", "0");
+			setPropertyFromContextParameter(servletContext, config, "cloudcoder.submitsvc.oop.resultCacheSize", String.valueOf(SubmissionCoalescer.DEFAULT_MAX_ENTRIES));
+			setPropertyFromContextParameter(servletContext, config, "cloudcoder.submitsvc.oop.resultCacheMaxAge", String.valueOf(SubmissionCoalescer.DEFAULT_MAX_AGE_MS / 1000));
 
 			// Initialize and start the OutOfProcessSubmitService
 			svc.initFromConfigProperties(config);